@@ -0,0 +1,74 @@
+package com.shrine.particlesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Force pass of each compute backend on the same scenes as ForceCalculationTaskBenchmark,
+ * so the optimized kernels are measured against the legacy one. One op = N(N-1)/2 interactions.
+ * Warmup is longer than elsewhere: vector kernels run orders of magnitude slower until C2
+ * has compiled them, which otherwise leaks into the first measured iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class BackendBenchmark {
+    @Param({"300", "900", "3000"})
+    public int n;
+
+    @Param({"mixed", "nucleons"})
+    public String mix;
+
+    // Backend specs; the scalar backend has no thread count, so it is measured once
+    @Param({"scalar", "multithreaded:threads=1", "multithreaded:threads=4", "tiled:threads=1", "tiled:threads=4",
+            "vector:threads=1", "vector:threads=4"})
+    public String backend;
+
+    private ComputeBackend compute;
+    private final ParticleArrays scene = new ParticleArrays();
+    private final ParticleArrays state = new ParticleArrays();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compute = BackendAutotuner.create(backend);
+        scene.gather(BenchmarkScenes.create(n, mix, 42));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetScene() {
+        state.copyFrom(scene);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        compute.close();
+    }
+
+    @Benchmark
+    public ParticleArrays forcePass() {
+        compute.resetForces(state);
+        compute.computeForces(state, PhysicsConstants.DEFAULT);
+        compute.resolveCollisions(state);
+        return state;
+    }
+}
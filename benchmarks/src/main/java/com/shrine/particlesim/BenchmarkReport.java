@@ -0,0 +1,170 @@
+package com.shrine.particlesim;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Turns a JMH JSON result file into ns/interaction and bytes/op, optionally next to a
+ * baseline. Exits with status 1 when any benchmark got slower than the baseline by more than
+ * the threshold (default 10%). A baseline is either another JMH result file or the trimmed
+ * summary written by {@code --write-baseline}: the machine it ran on and one score per
+ * benchmark, without JMH's raw iteration data.
+ *
+ * <p>Usage: {@code BenchmarkReport result.json [baseline.json] [thresholdPercent]}, or
+ * {@code BenchmarkReport --write-baseline result.json baseline.json}
+ */
+public final class BenchmarkReport {
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    private BenchmarkReport() {
+    }
+
+    record Row(double nsPerOp, double nsPerOpError, double nsPerInteraction, double bytesPerOp) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--write-baseline")) {
+            writeBaseline(Path.of(args[1]), Path.of(args[2]));
+            return;
+        }
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: BenchmarkReport result.json [baseline.json] [thresholdPercent]");
+            System.err.println("       BenchmarkReport --write-baseline result.json baseline.json");
+            System.exit(2);
+        }
+        Map<String, Row> results = load(Path.of(args[0]));
+        Map<String, Row> baseline = args.length > 1 ? load(Path.of(args[1])) : Map.of();
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %12s %10s %10s%n", "benchmark", "ns/op", "ns/interact", "B/op", "vs base");
+        for (Map.Entry<String, Row> entry : results.entrySet()) {
+            Row row = entry.getValue();
+            Row base = baseline.get(entry.getKey());
+            String change = "";
+            if (base != null) {
+                double percent = (row.nsPerOp() - base.nsPerOp()) / base.nsPerOp() * 100;
+                change = String.format("%+.1f%%", percent);
+                if (percent > threshold) {
+                    change += " !";
+                    regressions++;
+                }
+            }
+            System.out.printf("%-90s %14.1f %12.3f %10.1f %10s%n", entry.getKey(), row.nsPerOp(),
+                    row.nsPerInteraction(), row.bytesPerOp(), change);
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Row> load(Path file) throws IOException {
+        String json = Files.readString(file).trim();
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (!json.startsWith("[")) {
+            JSONObject benchmarks = new JSONObject(json).getJSONObject("benchmarks");
+            for (String key : benchmarks.keySet()) {
+                JSONObject row = benchmarks.getJSONObject(key);
+                rows.put(key, new Row(row.getDouble("nsPerOp"), row.optDouble("nsPerOpError"),
+                        row.getDouble("nsPerInteraction"), row.optDouble("bytesPerOp")));
+            }
+            return rows;
+        }
+        JSONArray runs = new JSONArray(json);
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            String benchmark = run.getString("benchmark");
+            Map<String, String> params = new TreeMap<>();
+            JSONObject paramJson = run.optJSONObject("params");
+            if (paramJson != null) {
+                for (String key : paramJson.keySet()) {
+                    params.put(key, paramJson.getString(key));
+                }
+            }
+
+            JSONObject primary = run.getJSONObject("primaryMetric");
+            String unit = primary.getString("scoreUnit");
+            double nsPerOp = toNanos(primary.getDouble("score"), unit);
+            double nsPerOpError = toNanos(primary.optDouble("scoreError"), unit);
+            double bytesPerOp = Double.NaN;
+            JSONObject secondary = run.optJSONObject("secondaryMetrics");
+            if (secondary != null) {
+                for (String key : secondary.keySet()) {
+                    if (key.replace("·", "").equals(ALLOC_METRIC)) {
+                        bytesPerOp = secondary.getJSONObject(key).getDouble("score");
+                    }
+                }
+            }
+
+            String shortName = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            rows.put(shortName + params, new Row(nsPerOp, nsPerOpError,
+                    nsPerOp / interactionsPerOp(shortName, params), bytesPerOp));
+        }
+        return rows;
+    }
+
+    // Keep one score per benchmark and the machine it ran on; JMH leaves the error NaN below 2 iterations
+    static void writeBaseline(Path result, Path baseline) throws IOException {
+        Map<String, Row> rows = load(result);
+        JSONObject benchmarks = new JSONObject();
+        int withoutError = 0;
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            Row row = entry.getValue();
+            JSONObject json = new JSONObject();
+            json.put("nsPerOp", row.nsPerOp());
+            json.put("nsPerInteraction", row.nsPerInteraction());
+            if (Double.isFinite(row.nsPerOpError())) {
+                json.put("nsPerOpError", row.nsPerOpError());
+            } else {
+                withoutError++;
+            }
+            if (Double.isFinite(row.bytesPerOp())) {
+                json.put("bytesPerOp", row.bytesPerOp());
+            }
+            benchmarks.put(entry.getKey(), json);
+        }
+        JSONObject machine = new JSONObject();
+        machine.put("osArch", System.getProperty("os.arch"));
+        machine.put("processors", Runtime.getRuntime().availableProcessors());
+        machine.put("javaVersion", System.getProperty("java.version"));
+        JSONObject summary = new JSONObject();
+        summary.put("machine", machine);
+        summary.put("benchmarks", benchmarks);
+        Files.writeString(baseline, summary.toString(2));
+        System.out.println("Wrote " + rows.size() + " benchmarks to " + baseline);
+        if (withoutError > 0) {
+            System.err.println(withoutError + " benchmark(s) have no error estimate; "
+                    + "record baselines with at least 2 measurement iterations");
+        }
+    }
+
+    // Pair benchmarks do N(N-1)/2 interactions per op; per-particle benchmarks do N
+    static double interactionsPerOp(String benchmark, Map<String, String> params) {
+        int n = Integer.parseInt(params.getOrDefault("n", "1"));
+        if (benchmark.startsWith("CollisionBenchmark") || benchmark.startsWith("IntegrationBenchmark")) {
+            return n;
+        }
+        return Math.max(1, BenchmarkScenes.pairCount(n));
+    }
+
+    private static double toNanos(double score, String unit) {
+        if (Double.isNaN(score)) {
+            return score;
+        }
+        return switch (unit) {
+            case "ns/op" -> score;
+            case "us/op" -> score * 1e3;
+            case "ms/op" -> score * 1e6;
+            case "s/op" -> score * 1e9;
+            default -> throw new IllegalArgumentException("Unsupported score unit " + unit + "; run in AverageTime mode");
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.shrine.particlesim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic particle scenes shared by the benchmarks.
+ * Mixes: "mixed" (equal electrons/protons/neutrons), "electrons", "nucleons".
+ */
+final class BenchmarkScenes {
+    static final double BOUNDARY = 500;
+
+    private BenchmarkScenes() {
+    }
+
+    static List<Particle> create(int count, String mix, long seed) {
+        return create(count, mix, seed, BOUNDARY);
+    }
+
+    static List<Particle> create(int count, String mix, long seed, double halfExtent) {
+        Random rand = new Random(seed);
+        List<Particle> particles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double x = rand.nextDouble() * halfExtent * 2 - halfExtent;
+            double y = rand.nextDouble() * halfExtent * 2 - halfExtent;
+            double z = rand.nextDouble() * halfExtent * 2 - halfExtent;
+            double vx = rand.nextDouble(-5, 5);
+            double vy = rand.nextDouble(-5, 5);
+            double vz = rand.nextDouble(-5, 5);
+            Species species = switch (mix) {
+                case "electrons" -> Species.ELECTRON;
+                case "nucleons" -> i % 2 == 0 ? Species.PROTON : Species.NEUTRON;
+                default -> i % 3 == 0 ? Species.ELECTRON : i % 3 == 1 ? Species.PROTON : Species.NEUTRON;
+            };
+            particles.add(new Particle(x, y, z, vx, vy, vz, species.getCharge(), species.getMass(),
+                    species.getTypeName()));
+        }
+        return particles;
+    }
+
+    static long pairCount(int count) {
+        return (long) count * (count - 1) / 2;
+    }
+}
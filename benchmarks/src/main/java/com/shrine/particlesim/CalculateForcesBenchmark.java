@@ -0,0 +1,49 @@
+package com.shrine.particlesim;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Particle.calculateForces over every pair of the scene; one op = N(N-1)/2 interactions
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalculateForcesBenchmark {
+    @Param({"100", "1000"})
+    public int n;
+
+    @Param({"mixed", "electrons", "nucleons"})
+    public String mix;
+
+    private List<Particle> particles;
+
+    @Setup
+    public void setup() {
+        particles = BenchmarkScenes.create(n, mix, 42);
+    }
+
+    @Benchmark
+    public void allPairs(Blackhole bh) {
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p1 = particles.get(i);
+            for (int j = i + 1; j < particles.size(); j++) {
+                bh.consume(p1.calculateForces(particles.get(j)));
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.shrine.particlesim;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ForceCalculationTask.handleCollision on n disjoint overlapping pairs, approaching each other
+ * so the impulse branch runs too. One op = n collisions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+    @Param({"1000"})
+    public int n;
+
+    @Param({"mixed", "electrons", "nucleons"})
+    public String mix;
+
+    private List<Particle> particles;
+    private ForceCalculationTask task;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        particles = BenchmarkScenes.create(2 * n, mix, 42);
+        task = new ForceCalculationTask(0, 0, particles);
+    }
+
+    // Put every pair back into an overlapping, approaching configuration
+    @Setup(Level.Invocation)
+    public void overlapPairs() {
+        for (int k = 0; k < n; k++) {
+            Particle p1 = particles.get(2 * k);
+            Particle p2 = particles.get(2 * k + 1);
+            double offset = (p1.getRadius() + p2.getRadius()) * 0.5;
+            p2.setxCor(p1.getxCor() + offset);
+            p2.setyCor(p1.getyCor());
+            p2.setzCor(p1.getzCor());
+            p1.setxVel(1);
+            p2.setxVel(-1);
+        }
+    }
+
+    @Benchmark
+    public List<Particle> handleCollisions() {
+        for (int k = 0; k < n; k++) {
+            Particle p1 = particles.get(2 * k);
+            Particle p2 = particles.get(2 * k + 1);
+            double distX = p2.getxCor() - p1.getxCor();
+            double distY = p2.getyCor() - p1.getyCor();
+            double distZ = p2.getzCor() - p1.getzCor();
+            task.handleCollision(p1, p2, distX, distY, distZ, distX * distX + distY * distY + distZ * distZ);
+        }
+        return particles;
+    }
+}
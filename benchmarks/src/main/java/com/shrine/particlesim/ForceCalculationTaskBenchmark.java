@@ -0,0 +1,81 @@
+package com.shrine.particlesim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The legacy force pass: reset forces, then ForceCalculationTask.call() over thread chunks the
+ * way the original game loop split the list. One op = N(N-1)/2 interactions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForceCalculationTaskBenchmark {
+    @Param({"300", "900", "3000"})
+    public int n;
+
+    @Param({"mixed", "nucleons"})
+    public String mix;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private List<Particle> particles;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void startExecutor() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    // Collisions move particles, so start every iteration from the same scene
+    @Setup(Level.Iteration)
+    public void setup() {
+        particles = BenchmarkScenes.create(n, mix, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Particle> forcePass() throws InterruptedException, ExecutionException {
+        for (Particle p : particles) {
+            p.resetForce();
+        }
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        int chunkSize = particles.size() / threads;
+        for (int i = 0; i < threads; i++) {
+            int startIndex = i * chunkSize;
+            int endIndex = (i == threads - 1) ? particles.size() : startIndex + chunkSize;
+            futures.add(executor.submit(new ForceCalculationTask(startIndex, endIndex, particles)));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        return particles;
+    }
+}
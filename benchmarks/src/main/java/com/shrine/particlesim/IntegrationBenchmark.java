@@ -0,0 +1,52 @@
+package com.shrine.particlesim;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Particle.updateVelocity + updatePos over the whole scene; one op = N particle updates
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntegrationBenchmark {
+    private static final double TIMESTEP = 0.166666666667;
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    @Param({"mixed"})
+    public String mix;
+
+    private List<Particle> particles;
+
+    @Setup
+    public void setup() {
+        particles = BenchmarkScenes.create(n, mix, 42);
+        for (Particle p : particles) {
+            p.addForce(1, -1, 0.5);
+        }
+    }
+
+    @Benchmark
+    public List<Particle> updateVelocityAndPos() {
+        for (Particle p : particles) {
+            p.updateVelocity(TIMESTEP);
+            p.updatePos(TIMESTEP, BenchmarkScenes.BOUNDARY);
+        }
+        return particles;
+    }
+}
@@ -0,0 +1,260 @@
+package com.shrine.particlesim.bench;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.diagnostics.StepProfiler;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * Headless macro-benchmark: runs named scenarios for a fixed number of steps and reports
+ * steps/sec, p50/p99 step latency, GC time and peak RSS as JSON, optionally checked
+ * against a stored baseline.
+ *
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp benchmarks/target/benchmarks.jar \
+ *     com.shrine.particlesim.bench.ScenarioBenchmark
+ *     [--scenarios startup,dense-nucleus] [--steps 200] [--warmup 20] [--seed 42]
+ *     [--backend name[:params]] [--threads N] [--out result.json]
+ *     [--baseline baseline.json [--threshold 10]] [--write-baseline baseline.json]
+ * </pre>
+ *
+ * By default every built-in scenario runs, uniform-1m included; it gets one warmup step and two
+ * measured steps unless {@code --steps} or {@code --warmup} is given, since each step at a
+ * million particles takes minutes on the all-pairs kernels.
+ *
+ * <p>Exits with status 1 when a scenario regressed beyond the threshold (percent), and 2 when a
+ * scenario ran on a different backend than its baseline. Scenarios the baseline has no entry
+ * for are reported as not compared.
+ */
+public final class ScenarioBenchmark {
+    private static final double BASE_TIMESTEP = 0.166666666667;
+    private static final double BOUNDARY_SIZE = 500;
+    private static final List<String> DEFAULT_SCENARIOS = List.of(BuiltInScenarios.STARTUP,
+            BuiltInScenarios.DENSE_NUCLEUS, BuiltInScenarios.ELECTRON_CLOUD, BuiltInScenarios.UNIFORM_1M);
+    // All-pairs kernels take minutes per step at a million particles: {warmup, steps} unless given
+    private static final Map<String, int[]> SHORT_RUNS = Map.of(BuiltInScenarios.UNIFORM_1M, new int[] {1, 2});
+
+    private ScenarioBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> scenarios = DEFAULT_SCENARIOS;
+        Integer steps = null;
+        Integer warmup = null;
+        long seed = 42;
+        String backendSpec = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+        Path baseline = null;
+        Path writeBaseline = null;
+        double threshold = 10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scenarios" -> scenarios = Arrays.asList(args[++i].split(","));
+                case "--steps" -> steps = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--backend" -> backendSpec = args[++i];
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                case "--write-baseline" -> writeBaseline = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("machine", machineInfo(threads));
+        JSONObject results = new JSONObject();
+        for (String scenario : scenarios) {
+            int[] shortRun = SHORT_RUNS.get(scenario);
+            int scenarioWarmup = warmup != null ? warmup : shortRun != null ? shortRun[0] : 20;
+            int scenarioSteps = steps != null ? steps : shortRun != null ? shortRun[1] : 200;
+            System.err.println("Running " + scenario + " (" + scenarioSteps + " steps) ...");
+            results.put(scenario, run(scenario, scenarioSteps, scenarioWarmup, seed, backendSpec, threads));
+        }
+        report.put("scenarios", results);
+
+        String json = report.toString(2);
+        System.out.println(json);
+        if (out != null) {
+            Files.writeString(out, json);
+        }
+        if (writeBaseline != null) {
+            Files.writeString(writeBaseline, json);
+        }
+        if (baseline != null) {
+            JSONObject base = new JSONObject(Files.readString(baseline));
+            List<String> regressions;
+            try {
+                regressions = compare(base.getJSONObject("scenarios"), results, threshold);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(2);
+                return;
+            }
+            for (String regression : regressions) {
+                System.err.println("REGRESSION " + regression);
+            }
+            List<String> unchecked = withoutBaseline(base.getJSONObject("scenarios"), results);
+            for (String scenario : unchecked) {
+                System.err.println("NO BASELINE " + scenario + " was not compared; record one with --write-baseline");
+            }
+            if (!regressions.isEmpty()) {
+                System.exit(1);
+            }
+            System.err.println("No regressions beyond " + threshold + "% against " + baseline
+                    + (unchecked.isEmpty() ? "" : " in the " + (results.length() - unchecked.size())
+                    + " scenarios it covers"));
+        }
+    }
+
+    public static JSONObject run(String scenario, int steps, int warmup, long seed, String backendSpec, int threads) {
+        try (Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, BOUNDARY_SIZE, null)) {
+            BuiltInScenarios.populate(scenario, simulation.getState(), new Random(seed), BOUNDARY_SIZE);
+            int particleCount = simulation.getParticleCount();
+            ComputeBackend backend = backendSpec != null
+                    ? BackendAutotuner.create(backendSpec)
+                    : BackendAutotuner.select(particleCount, threads, PhysicsConstants.DEFAULT);
+            simulation.setBackend(backend);
+
+            for (int i = 0; i < warmup; i++) {
+                simulation.step(BASE_TIMESTEP);
+            }
+
+            long[] stepNanos = new long[steps];
+            long gcBefore = totalGcMillis();
+            long start = System.nanoTime();
+            for (int i = 0; i < steps; i++) {
+                long stepStart = System.nanoTime();
+                simulation.step(BASE_TIMESTEP);
+                stepNanos[i] = System.nanoTime() - stepStart;
+            }
+            long elapsed = System.nanoTime() - start;
+            long gcMillis = totalGcMillis() - gcBefore;
+
+            Arrays.sort(stepNanos);
+            JSONObject result = new JSONObject();
+            result.put("backend", BackendAutotuner.describe(backend));
+            result.put("particles", particleCount);
+            result.put("steps", steps);
+            result.put("stepsPerSec", steps / (elapsed / 1e9));
+            result.put("p50Millis", StepProfiler.percentile(stepNanos, stepNanos.length, 0.50) / 1e6);
+            result.put("p99Millis", StepProfiler.percentile(stepNanos, stepNanos.length, 0.99) / 1e6);
+            result.put("gcMillis", gcMillis);
+            result.put("peakRssBytes", peakRssBytes());
+            return result;
+        }
+    }
+
+    /**
+     * Scenarios that got slower than the baseline by more than threshold percent. Throws
+     * {@link IllegalArgumentException} if any scenario ran on a different backend than its
+     * baseline, since those numbers measure different kernels.
+     */
+    static List<String> compare(JSONObject baseline, JSONObject results, double threshold) {
+        List<String> mismatches = new ArrayList<>();
+        for (String scenario : results.keySet()) {
+            if (baseline.has(scenario)) {
+                String baseBackend = baseline.getJSONObject(scenario).optString("backend", "?");
+                String backend = results.getJSONObject(scenario).getString("backend");
+                if (!baseBackend.equals(backend)) {
+                    mismatches.add(scenario + " ran on " + backend + ", baseline on " + baseBackend);
+                }
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalArgumentException("Not comparable with the baseline (use --backend to match): "
+                    + String.join("; ", mismatches));
+        }
+
+        List<String> regressions = new ArrayList<>();
+        for (String scenario : results.keySet()) {
+            if (!baseline.has(scenario)) {
+                continue;
+            }
+            JSONObject base = baseline.getJSONObject(scenario);
+            JSONObject now = results.getJSONObject(scenario);
+            double baseRate = base.getDouble("stepsPerSec");
+            double rate = now.getDouble("stepsPerSec");
+            if (rate < baseRate * (1 - threshold / 100)) {
+                regressions.add(String.format("%s: %.1f steps/sec vs baseline %.1f", scenario, rate, baseRate));
+            }
+            double baseP99 = base.getDouble("p99Millis");
+            double p99 = now.getDouble("p99Millis");
+            if (p99 > baseP99 * (1 + threshold / 100)) {
+                regressions.add(String.format("%s: p99 %.3f ms vs baseline %.3f ms", scenario, p99, baseP99));
+            }
+        }
+        return regressions;
+    }
+
+    // Scenarios that ran but have no baseline entry, so compare could not check them
+    static List<String> withoutBaseline(JSONObject baseline, JSONObject results) {
+        List<String> missing = new ArrayList<>();
+        for (String scenario : results.keySet()) {
+            if (!baseline.has(scenario)) {
+                missing.add(scenario);
+            }
+        }
+        missing.sort(null);
+        return missing;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // VmHWM from /proc on Linux, otherwise committed heap plus non-heap as a rough stand-in
+    static long peakRssBytes() {
+        Path status = Path.of("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmHWM:")) {
+                        String[] parts = line.substring(6).trim().split("\\s+");
+                        return Long.parseLong(parts[0]) * 1024;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Could not read peak RSS: " + e.getMessage());
+            }
+        }
+        var memory = ManagementFactory.getMemoryMXBean();
+        return memory.getHeapMemoryUsage().getCommitted() + memory.getNonHeapMemoryUsage().getCommitted();
+    }
+
+    private static JSONObject machineInfo(int threads) {
+        JSONObject machine = new JSONObject();
+        machine.put("osArch", System.getProperty("os.arch"));
+        machine.put("processors", Runtime.getRuntime().availableProcessors());
+        machine.put("threads", threads);
+        machine.put("javaVersion", System.getProperty("java.version"));
+        machine.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        return machine;
+    }
+}
@@ -0,0 +1,120 @@
+package com.shrine.particlesim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.shrine.particlesim.analysis.AnalyticsPipeline;
+import com.shrine.particlesim.analysis.AnalyticsResult;
+import com.shrine.particlesim.analysis.SnapshotAnalyzer;
+
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+/**
+ * Controls-panel view of the background analytics: the radial distribution function,
+ * mean speed per species and an export button. The pipeline only receives snapshots
+ * while the panel is shown.
+ */
+public class AnalyticsPanel implements AutoCloseable {
+    private static final int SNAPSHOT_INTERVAL = 10; // Steps between snapshots
+
+    private final Simulation simulation;
+    private final AnalyticsPipeline<AnalyticsResult> pipeline =
+            new AnalyticsPipeline<>(SNAPSHOT_INTERVAL, new SnapshotAnalyzer());
+    private final CheckBox toggle = new CheckBox("Show Analytics");
+    private final XYChart.Series<Number, Number> rdfSeries = new XYChart.Series<>();
+    private final Label speedLabel = new Label();
+    private final VBox view;
+    private AnalyticsResult shown;
+
+    public AnalyticsPanel(Simulation simulation) {
+        this.simulation = simulation;
+
+        NumberAxis distanceAxis = new NumberAxis();
+        NumberAxis gAxis = new NumberAxis();
+        LineChart<Number, Number> chart = new LineChart<>(distanceAxis, gAxis);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(false);
+        chart.setTitle("g(r)");
+        chart.setPrefSize(200, 160);
+        chart.getData().add(rdfSeries);
+
+        Button exportButton = new Button("Export Analytics");
+        exportButton.setOnAction(e -> export());
+
+        view = new VBox(2, chart, speedLabel, exportButton);
+        view.setVisible(false);
+        view.setManaged(false);
+        toggle.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            view.setVisible(newVal);
+            view.setManaged(newVal);
+            if (newVal) {
+                simulation.addStepListener(pipeline);
+            } else {
+                simulation.removeStepListener(pipeline);
+            }
+        });
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public VBox getView() {
+        return view;
+    }
+
+    // Show the newest result, if there is one we have not shown yet
+    public void refresh() {
+        AnalyticsResult result = pipeline.getLatest();
+        if (!toggle.isSelected() || result == null || result == shown) {
+            return;
+        }
+        shown = result;
+        double[] rdf = result.getRdf();
+        rdfSeries.getData().clear();
+        for (int k = 0; k < rdf.length; k++) {
+            rdfSeries.getData().add(new XYChart.Data<>((k + 0.5) * result.getRdfBinWidth(), rdf[k]));
+        }
+        StringBuilder text = new StringBuilder();
+        for (Species species : Species.values()) {
+            text.append(String.format("%s mean speed %.2f%n", species.getTypeName(),
+                    result.getMeanSpeed(species.getTypeCode())));
+        }
+        text.append("dropped snapshots ").append(result.getSnapshotsDropped());
+        speedLabel.setText(text.toString());
+    }
+
+    private void export() {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("analytics-" + simulation.getStepCount() + ".json");
+        File file = chooser.showSaveDialog(view.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        AnalyticsResult result = pipeline.getLatest();
+        if (result == null) {
+            new Alert(Alert.AlertType.INFORMATION, "No analytics computed yet.").showAndWait();
+            return;
+        }
+        try {
+            Files.writeString(file.toPath(), result.toJson().toString(2));
+        } catch (IOException e) {
+            System.err.println("Could not export analytics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+}
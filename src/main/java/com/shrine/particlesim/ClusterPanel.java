@@ -0,0 +1,76 @@
+package com.shrine.particlesim;
+
+import com.shrine.particlesim.analysis.AnalyticsPipeline;
+import com.shrine.particlesim.analysis.ClusterAnalyzer;
+import com.shrine.particlesim.analysis.ClusterDetector;
+import com.shrine.particlesim.analysis.ClusterReport;
+
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.text.Font;
+
+/**
+ * Cluster and nucleus readout for the controls panel. While the toggle is on, detection runs
+ * every few steps on an {@link AnalyticsPipeline} thread, linking bound particles within the
+ * strong force's outer radius; the FX thread only formats the newest report.
+ */
+public class ClusterPanel implements AutoCloseable {
+    private static final int DETECT_INTERVAL = 10; // Steps between detections
+    private static final int LISTED_CLUSTERS = 5;
+
+    private final AnalyticsPipeline<ClusterReport> pipeline;
+    private final CheckBox toggle = new CheckBox("Detect Clusters");
+    private final Label label = new Label();
+    private ClusterReport shown;
+
+    public ClusterPanel(Simulation simulation) {
+        ClusterDetector detector = new ClusterDetector(simulation.getConstants().getStrongForceOuterRadius(), true);
+        pipeline = new AnalyticsPipeline<>(DETECT_INTERVAL, new ClusterAnalyzer(detector));
+        label.setFont(Font.font("Monospaced", 11));
+        label.setVisible(false);
+        label.setManaged(false);
+        toggle.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            label.setVisible(newVal);
+            label.setManaged(newVal);
+            if (newVal) {
+                simulation.addStepListener(pipeline);
+            } else {
+                simulation.removeStepListener(pipeline);
+            }
+        });
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public Label getLabel() {
+        return label;
+    }
+
+    // Show the newest report, if there is one we have not shown yet
+    public void refresh() {
+        ClusterReport report = pipeline.getLatest();
+        if (!toggle.isSelected() || report == null || report == shown) {
+            return;
+        }
+        shown = report;
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("clusters %d  nuclei %d%n", report.getClusterCount(), report.getNucleusCount()));
+        text.append(String.format("largest %d  +%d -%d%n", report.getLargestSize(), report.getFormed(),
+                report.getDissolved()));
+        int listed = Math.min(LISTED_CLUSTERS, report.getClusterCount());
+        for (int k = 0; k < listed; k++) {
+            ClusterReport.Cluster cluster = report.getClusters().get(k);
+            text.append(String.format("#%-4d %3dp %3dn %3de%n", cluster.getId(), cluster.getProtons(),
+                    cluster.getNeutrons(), cluster.getElectrons()));
+        }
+        label.setText(text.toString().trim());
+    }
+
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+}
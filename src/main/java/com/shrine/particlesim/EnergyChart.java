@@ -0,0 +1,96 @@
+package com.shrine.particlesim;
+
+import java.util.List;
+
+import com.shrine.particlesim.compute.EnergyDiagnostics;
+
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+
+/**
+ * Kinetic, potential and total energy over recent steps, plus the current momentum,
+ * for the controls panel. Energy diagnostics run in the backend only while the chart is shown
+ * (or when something else, like the metrics endpoint, already needs them).
+ */
+public class EnergyChart {
+    private static final int MAX_POINTS = 300;
+    private static final int SAMPLE_EVERY = 5; // Steps between chart points
+
+    private final Simulation simulation;
+    private final boolean diagnosticsAlwaysOn;
+    private final CheckBox toggle = new CheckBox("Show Energy");
+    private final XYChart.Series<Number, Number> kinetic = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> potential = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> total = new XYChart.Series<>();
+    private final Label momentumLabel = new Label();
+    private final VBox view;
+    private long lastSampledStep = -1;
+
+    public EnergyChart(Simulation simulation) {
+        this.simulation = simulation;
+        this.diagnosticsAlwaysOn = simulation.isDiagnosticsEnabled();
+
+        NumberAxis stepAxis = new NumberAxis();
+        stepAxis.setForceZeroInRange(false);
+        stepAxis.setTickLabelsVisible(false);
+        NumberAxis energyAxis = new NumberAxis();
+        energyAxis.setForceZeroInRange(false);
+        LineChart<Number, Number> chart = new LineChart<>(stepAxis, energyAxis);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(true);
+        chart.setPrefSize(200, 180);
+        kinetic.setName("kinetic");
+        potential.setName("potential");
+        total.setName("total");
+        chart.getData().addAll(List.of(kinetic, potential, total));
+
+        view = new VBox(2, chart, momentumLabel);
+        view.setVisible(false);
+        view.setManaged(false);
+        toggle.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            view.setVisible(newVal);
+            view.setManaged(newVal);
+            simulation.setDiagnosticsEnabled(newVal || diagnosticsAlwaysOn);
+            kinetic.getData().clear();
+            potential.getData().clear();
+            total.getData().clear();
+        });
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public VBox getView() {
+        return view;
+    }
+
+    // Add a point for the latest step every SAMPLE_EVERY steps
+    public void refresh() {
+        if (!toggle.isSelected()) {
+            return;
+        }
+        EnergyDiagnostics diagnostics = simulation.getDiagnostics();
+        long step = diagnostics.getStep();
+        if (step == lastSampledStep || step % SAMPLE_EVERY != 0) {
+            return;
+        }
+        lastSampledStep = step;
+        append(kinetic, step, diagnostics.getKineticEnergy());
+        append(potential, step, diagnostics.getPotentialEnergy());
+        append(total, step, diagnostics.getTotalEnergy());
+        momentumLabel.setText(String.format("|p| = %.4g", diagnostics.getMomentumMagnitude()));
+    }
+
+    private static void append(XYChart.Series<Number, Number> series, long step, double value) {
+        series.getData().add(new XYChart.Data<>(step, value));
+        if (series.getData().size() > MAX_POINTS) {
+            series.getData().remove(0);
+        }
+    }
+}
@@ -62,7 +62,7 @@ public class ForceCalculationTask implements Callable<Void> {
         return null;
     }
 
-    private void handleCollision(Particle p1, Particle p2, double distX, double distY, double distZ, double distSq) {
+    void handleCollision(Particle p1, Particle p2, double distX, double distY, double distZ, double distSq) {
         double dist = Math.sqrt(distSq);
         double overlap = (p1.getRadius() + p2.getRadius()) - dist;
         
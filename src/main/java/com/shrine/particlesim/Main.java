@@ -1,12 +1,29 @@
 package com.shrine.particlesim;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+
+import com.shrine.particlesim.checkpoint.AutoCheckpointer;
+import com.shrine.particlesim.checkpoint.Checkpoint;
+import com.shrine.particlesim.checkpoint.CheckpointFile;
+import com.shrine.particlesim.command.CommandServer;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.diagnostics.MetricsServer;
+import com.shrine.particlesim.diagnostics.PhaseEvent;
+import com.shrine.particlesim.diagnostics.SimulationMetrics;
+import com.shrine.particlesim.diagnostics.SpawnEvent;
+import com.shrine.particlesim.diagnostics.StepProfiler.Phase;
+import com.shrine.particlesim.io.SimDataReader;
+import com.shrine.particlesim.io.SimDataWriter;
+import com.shrine.particlesim.recording.FrameStreamServer;
+import com.shrine.particlesim.recording.SharedFrameSubscriber;
+import com.shrine.particlesim.recording.TrajectoryFrame;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+import com.shrine.particlesim.scenario.ScenarioGenerator;
+import com.shrine.particlesim.scenario.ScenarioSpec;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
@@ -31,16 +48,33 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Sphere;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class Main extends Application {
-    private static final ArrayList<Particle> particles = new ArrayList<>();
-    private static final ArrayList<Sphere> particleSpheres = new ArrayList<>();
-    private static ExecutorService executor;
+    private static Simulation simulation;
+    private static ProfilerOverlay profilerOverlay;
+    private static EnergyChart energyChart;
+    private static AnalyticsPanel analyticsPanel;
+    private static ClusterPanel clusterPanel;
+    private static TrajectoryControls trajectoryControls;
+    private static ReplayControls replayControls;
+    private static RewindControls rewindControls;
+    private static MetricsServer metricsServer;
+    private static FrameStreamServer frameStreamServer;
+    private static CommandServer commandServer;
+    private static AutoCheckpointer autoCheckpointer;
+    private static SharedFrameSubscriber sharedFrames;
+    private static final TrajectoryFrame sharedFrame = new TrajectoryFrame();
+    private static ParticleMeshRenderer particleMeshes;
     private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final String AUTOSAVE_PROPERTY = "particlesim.autosave";
+    private static final String AUTOSAVE_INTERVAL_PROPERTY = "particlesim.autosave.interval";
+    private static final String REWIND_MB_PROPERTY = "particlesim.rewind.mb";
+    private static final String ATTACH_PROPERTY = "particlesim.attach";
+    private static final String SCENARIO_PROPERTY = "particlesim.scenario";
 
     // JavaFx
     private static final double WINDOW_WIDTH = 1000;
@@ -57,6 +91,7 @@ public class Main extends Application {
 
     private PerspectiveCamera camera;
     private Group root;
+    private final Translate pivot = new Translate(); // Camera position
     private final Rotate rotateX = new Rotate(0, Rotate.X_AXIS);
     private final Rotate rotateY = new Rotate(0, Rotate.Y_AXIS);
 
@@ -65,27 +100,28 @@ public class Main extends Application {
     private double lastMouseY = -1;
 
     // Constants
-    private static final double STRONG_FORCE_CONSTANT = 6e5;
-    private static final double GRAVITY_CONSTANT = 1e1;
-    private static final double COULOMB_CONSTANT = 4e5;
-    private static final double STRONG_FORCE_INNER_RADIUS = 9;
-    private static final double STRONG_FORCE_OUTER_RADIUS = 27; 
-    private static final double MAX_SPEED = 1e4; 
+    private static final PhysicsConstants PHYSICS_CONSTANTS = PhysicsConstants.DEFAULT;
+    private static final double STRONG_FORCE_CONSTANT = PHYSICS_CONSTANTS.getStrongForceConstant();
+    private static final double GRAVITY_CONSTANT = PHYSICS_CONSTANTS.getGravityConstant();
+    private static final double COULOMB_CONSTANT = PHYSICS_CONSTANTS.getCoulombConstant();
+    private static final double STRONG_FORCE_INNER_RADIUS = PHYSICS_CONSTANTS.getStrongForceInnerRadius();
+    private static final double STRONG_FORCE_OUTER_RADIUS = PHYSICS_CONSTANTS.getStrongForceOuterRadius();
+    private static final double MAX_SPEED = PHYSICS_CONSTANTS.getMaxSpeed();
     private static final double FPS = 60;
     
     // Random
     private static Random rand;
 
     // Electron
-    protected static final double electronCharge = -1; // Original = -1.6-19 
-    protected static final double electronMass = 10; // Original = 9.109e-31
+    protected static final double electronCharge = Species.ELECTRON.getCharge();
+    protected static final double electronMass = Species.ELECTRON.getMass();
     // Proton
-    protected static final double protonCharge = 1; // Original = 1.6e-19
-    protected static final double protonMass = 100; // Original = 1.67262158e-29
+    protected static final double protonCharge = Species.PROTON.getCharge();
+    protected static final double protonMass = Species.PROTON.getMass();
 
     // Neutron
-    protected static final double neutronCharge = 0;
-    protected static final double neutronMass = 100; // Original = 1.67492749804e-29
+    protected static final double neutronCharge = Species.NEUTRON.getCharge();
+    protected static final double neutronMass = Species.NEUTRON.getMass();
 
     private static PhongMaterial electronMaterial;
     private static PhongMaterial protonMaterial;
@@ -98,6 +134,7 @@ public class Main extends Application {
     private TextField particleCountField;
     private ComboBox<String> particleTypeComboBox;
     private Button spawnButton;
+    private Slider timeStepSlider;
     
     private void initializeMaterials() {
         electronMaterial = new PhongMaterial();
@@ -154,8 +191,6 @@ public class Main extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        executor = Executors.newFixedThreadPool(NUM_THREADS);
-        
         initializeMaterials();
         root = new Group();
         rand = new Random();
@@ -192,10 +227,19 @@ public class Main extends Application {
 
         Button clearButton = new Button("Clear Particles");
         clearButton.setOnAction(e -> clearParticles());
+
+        Button saveButton = new Button("Save Checkpoint");
+        saveButton.setOnAction(e -> saveCheckpoint());
+        Button loadButton = new Button("Load Checkpoint");
+        loadButton.setOnAction(e -> loadCheckpoint());
+        Button importButton = new Button("Import JSON");
+        importButton.setOnAction(e -> importSimData());
+        Button exportButton = new Button("Export JSON");
+        exportButton.setOnAction(e -> exportSimData());
         
         // Add timestep slider
         Label timeStepLabel = new Label("Simulation Speed:");
-        Slider timeStepSlider = new Slider(0.1, 2.0, 1.0);
+        timeStepSlider = new Slider(0.1, 2.0, 1.0);
         timeStepSlider.setShowTickLabels(true);
         timeStepSlider.setShowTickMarks(true);
         timeStepSlider.setMajorTickUnit(0.5);
@@ -204,6 +248,10 @@ public class Main extends Application {
             timeStep = newVal.doubleValue();
         });
 
+        // Spawn Inital Particles
+        simulation = new Simulation(PHYSICS_CONSTANTS, boundarySize, null);
+        profilerOverlay = new ProfilerOverlay(simulation);
+
         controls.getChildren().addAll(
             countLabel,
             particleCountField,
@@ -213,33 +261,68 @@ public class Main extends Application {
             boundarySizeField,
             spawnButton,
             clearButton,
+            saveButton,
+            loadButton,
+            importButton,
+            exportButton,
             timeStepLabel,
-            timeStepSlider
+            timeStepSlider,
+            profilerOverlay.getToggle(),
+            profilerOverlay.getLabel()
         );
 
-        // Spawn Inital Particles
-        for (int i = 0; i < 300; i++) {
-            double x = rand.nextDouble() * boundarySize * 2 - boundarySize;
-            double y = rand.nextDouble() * boundarySize * 2 - boundarySize;
-            double z = rand.nextDouble() * boundarySize * 2 - boundarySize;
-
-            particles.add(new Particle(x, y, z, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), electronCharge, electronMass, "electron"));
-            particles.add(new Particle(x + 100, y + 100, z + 100, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), protonCharge, protonMass, "proton"));
-            particles.add(new Particle(x - 100, y - 100, z - 100, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), neutronCharge, neutronMass, "neutron"));
+        ParticleArrays state = simulation.getState();
+        populateStartScene(state);
+
+        // Pick the fastest compute backend for this machine (cached after the first run)
+        simulation.setBackend(BackendAutotuner.select(state.size(), NUM_THREADS, simulation.getConstants()));
+        System.out.println("Compute backend: " + BackendAutotuner.describe(simulation.getBackend()));
+
+        // Prometheus metrics on localhost when -Dparticlesim.metrics.port is set
+        SimulationMetrics metrics = new SimulationMetrics();
+        metricsServer = MetricsServer.startFromProperty(metrics);
+        if (metricsServer != null) {
+            simulation.setDiagnosticsEnabled(true);
+            simulation.addStepListener(metrics);
+        }
+        // Encoded frames for remote viewers when -Dparticlesim.stream.port is set
+        frameStreamServer = FrameStreamServer.startFromProperty(simulation);
+        // Spawn/remove/config commands from scripts when -Dparticlesim.commands.port is set
+        commandServer = CommandServer.startFromProperty(simulation);
+        energyChart = new EnergyChart(simulation);
+        analyticsPanel = new AnalyticsPanel(simulation);
+        clusterPanel = new ClusterPanel(simulation);
+        trajectoryControls = new TrajectoryControls(simulation);
+        replayControls = new ReplayControls(this::showSimulation);
+        rewindControls = new RewindControls(simulation, Integer.getInteger(REWIND_MB_PROPERTY, 64),
+                this::stepAndSync, this::syncParticles);
+        controls.getChildren().addAll(energyChart.getToggle(), energyChart.getView(),
+                analyticsPanel.getToggle(), analyticsPanel.getView(),
+                clusterPanel.getToggle(), clusterPanel.getLabel(),
+                trajectoryControls.getToggle(), trajectoryControls.getLabel(),
+                replayControls.getOpenButton(), replayControls.getView(),
+                rewindControls.getToggle(), rewindControls.getView());
+
+        // Periodic checkpoints in the background when -Dparticlesim.autosave=<file> is set
+        String autosave = System.getProperty(AUTOSAVE_PROPERTY);
+        if (autosave != null) {
+            int interval = Integer.getInteger(AUTOSAVE_INTERVAL_PROPERTY, 600);
+            autoCheckpointer = new AutoCheckpointer(Path.of(autosave), interval, this::captureView);
+            simulation.addStepListener(autoCheckpointer);
         }
 
-        // Pre-create and configure all sphere objects
-        for (Particle p : particles) {
-            Sphere particleSphere = new Sphere(p.getRadius());
-            switch (p.getParticleType()) {
-                case "electron" -> particleSphere.setMaterial(electronMaterial);
-                case "proton" -> particleSphere.setMaterial(protonMaterial);
-                default -> particleSphere.setMaterial(neutronMaterial);
-            }
-            particleSpheres.add(particleSphere);
-            root.getChildren().add(particleSphere);
+        // Show a headless simulator's frames instead of stepping when -Dparticlesim.attach=<ring file> is set
+        String attach = System.getProperty(ATTACH_PROPERTY);
+        if (attach != null) {
+            sharedFrames = new SharedFrameSubscriber(Path.of(attach));
+            System.out.println("Attached to frame ring " + attach);
         }
 
+        // One batch of meshes per species instead of a node per particle
+        particleMeshes = new ParticleMeshRenderer(electronMaterial, protonMaterial, neutronMaterial);
+        root.getChildren().add(particleMeshes.getNode());
+        showSimulation();
+
         // Add multiple light sources for better depth perception
         AmbientLight ambientLight = new AmbientLight(Color.rgb(50, 50, 50));
         root.getChildren().add(ambientLight);
@@ -262,7 +345,6 @@ public class Main extends Application {
         camera.setNearClip(CAMERA_NEAR_CLIP);
         camera.setFarClip(CAMERA_FAR_CLIP);
 
-        Translate pivot = new Translate(); // Used for positioning
         camera.getTransforms().addAll(
                 pivot, // Controls position
                 rotateY, // Controls rotation around Y
@@ -281,6 +363,7 @@ public class Main extends Application {
         
         // Create the main scene with the StackPane
         Scene scene = new Scene(stackPane, WINDOW_WIDTH, WINDOW_HEIGHT);
+        scene.addPostLayoutPulseListener(profilerOverlay::endRender);
 
         // --- 5. Setup Input Handlers ---
         setupKeyHandlers(scene, pivot);
@@ -298,43 +381,39 @@ public class Main extends Application {
                 }
                 lastUpdate = now;
 
-                // Reset forces
-                particles.parallelStream().forEach(Particle::resetForce);
-
-                // Calculate forces in parallel
-                List<Future<Void>> futures = new ArrayList<>();
-                int chunkSize = particles.size() / NUM_THREADS;
-                for (int i = 0; i < NUM_THREADS; i++) {
-                    int startIndex = i * chunkSize;
-                    int endIndex = (i == NUM_THREADS - 1) ? particles.size() : startIndex + chunkSize;
-                    futures.add(executor.submit(new ForceCalculationTask(startIndex, endIndex, particles)));
+                // A replay takes over the view; the simulation waits until it is closed
+                if (replayControls.isActive()) {
+                    TrajectoryFrame frame = replayControls.update(now);
+                    if (frame != null) {
+                        showFrame(frame);
+                    }
+                    return;
                 }
 
-                // Wait for force calculations to complete
-                for (Future<Void> future : futures) {
-                    try {
-                        future.get();
-                    } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
-                        Thread.currentThread().interrupt();
-                        System.err.println("Error in force calculation: " + e.getMessage());
+                // Attached to a headless simulator: its frames replace the local simulation
+                if (sharedFrames != null) {
+                    if (sharedFrames.poll(sharedFrame)) {
+                        showFrame(sharedFrame);
                     }
+                    return;
                 }
 
-                double currentTimeStep = BASE_TIMESTEP * timeStep;
-                // Update velocities and positions with scaled timestep
-                for (Particle p : particles) {
-                    p.updateVelocity(currentTimeStep);
-                    p.updatePos(currentTimeStep);
+                // Paused for rewinding: only past frames are shown until it resumes
+                if (rewindControls.isPaused()) {
+                    TrajectoryFrame frame = rewindControls.update();
+                    if (frame != null) {
+                        showFrame(frame);
+                    }
+                    return;
                 }
 
-                // Update sphere positions
-                for (int i = 0; i < particles.size(); i++) {
-                    Particle p = particles.get(i);
-                    Sphere particleSphere = particleSpheres.get(i);
-                    particleSphere.setTranslateX(p.getxCor());
-                    particleSphere.setTranslateY(p.getyCor());
-                    particleSphere.setTranslateZ(p.getzCor());
-                }
+                stepAndSync();
+                profilerOverlay.refresh(now);
+                energyChart.refresh();
+                analyticsPanel.refresh();
+                clusterPanel.refresh();
+                trajectoryControls.refresh();
+                rewindControls.refresh();
             }
         };
         gameLoop.start();
@@ -350,16 +429,41 @@ public class Main extends Application {
 
     @Override
     public void stop() throws Exception {
-        // Shutdown the thread pool gracefully
-        if (executor != null) {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(800, TimeUnit.MILLISECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-            }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        if (commandServer != null) {
+            commandServer.close();
+        }
+        if (frameStreamServer != null) {
+            simulation.removeStepListener(frameStreamServer);
+            frameStreamServer.close();
+        }
+        if (autoCheckpointer != null) {
+            simulation.removeStepListener(autoCheckpointer);
+            autoCheckpointer.close();
+        }
+        if (analyticsPanel != null) {
+            analyticsPanel.close();
+        }
+        if (clusterPanel != null) {
+            clusterPanel.close();
+        }
+        if (trajectoryControls != null) {
+            trajectoryControls.close();
+        }
+        if (replayControls != null) {
+            replayControls.close();
+        }
+        if (rewindControls != null) {
+            rewindControls.close();
+        }
+        if (sharedFrames != null) {
+            sharedFrames.close();
+        }
+        // Shutdown the backend's worker threads
+        if (simulation != null) {
+            simulation.close();
         }
         super.stop();
     }
@@ -453,6 +557,7 @@ public class Main extends Application {
         try {
             int count = Integer.parseInt(particleCountField.getText());
             String type = particleTypeComboBox.getValue();
+            SpawnEvent spawnEvent = simulation.beginSpawn();
             
             for (int i = 0; i < count; i++) {
                 double x = rand.nextDouble() * boundarySize * 2 - boundarySize;
@@ -478,19 +583,9 @@ public class Main extends Application {
                         break;
                 }
                 
-                particles.add(newParticle);
-                
-                Sphere particleSphere = new Sphere(newParticle.getRadius());
-                if (type.equals("electron")) {
-                    particleSphere.setMaterial(electronMaterial);
-                } else if (type.equals("proton")) {
-                    particleSphere.setMaterial(protonMaterial);
-                } else {
-                    particleSphere.setMaterial(neutronMaterial);
-                }
-                particleSpheres.add(particleSphere);
-                root.getChildren().add(particleSphere);
+                simulation.getState().add(newParticle);
             }
+            simulation.endSpawn(spawnEvent, type, count);
         } catch (NumberFormatException e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Invalid Input");
@@ -500,12 +595,152 @@ public class Main extends Application {
         }
     }
 
+    // Calculate forces, resolve collisions and integrate with scaled timestep, then redraw the particles
+    private void stepAndSync() {
+        simulation.step(BASE_TIMESTEP * timeStep);
+        syncParticles();
+    }
+
+    // Rewrite the particle meshes from the live state; also picks up particles added or removed by commands
+    private void syncParticles() {
+        profilerOverlay.beginSync();
+        PhaseEvent syncEvent = simulation.beginPhase();
+        particleMeshes.update(simulation.getState());
+        simulation.endPhase(syncEvent, Phase.SYNC);
+        profilerOverlay.endSync();
+    }
+
+    // Draw a replay, rewind or shared-memory frame instead of the live particles
+    private void showFrame(TrajectoryFrame frame) {
+        particleMeshes.update(frame);
+    }
+
+    // Back from a replay or rewind: draw the live particles again
+    private void showSimulation() {
+        particleMeshes.update(simulation.getState());
+    }
+
+    // Add the state the simulation does not own to a checkpoint
+    private void captureView(Checkpoint checkpoint) {
+        checkpoint.setTimeStep(timeStep);
+        checkpoint.setCamera(pivot.getX(), pivot.getY(), pivot.getZ(), rotateX.getAngle(), rotateY.getAngle());
+        checkpoint.setRandom(rand);
+    }
+
+    private void saveCheckpoint() {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("checkpoint-" + simulation.getStepCount() + ".ckpt");
+        File file = chooser.showSaveDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        Checkpoint checkpoint = Checkpoint.capture(simulation);
+        captureView(checkpoint);
+        try {
+            CheckpointFile.write(checkpoint, file.toPath());
+        } catch (IOException e) {
+            System.err.println("Could not save checkpoint: " + e.getMessage());
+        }
+    }
+
+    private void loadCheckpoint() {
+        FileChooser chooser = new FileChooser();
+        File file = chooser.showOpenDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        Checkpoint checkpoint;
+        try {
+            checkpoint = CheckpointFile.read(file.toPath());
+        } catch (IOException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Invalid Checkpoint");
+            alert.setHeaderText(null);
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            return;
+        }
+        checkpoint.restoreTo(simulation);
+        showSimulation();
+
+        boundarySize = checkpoint.getBoundarySize();
+        boundarySizeField.setText(String.valueOf((int) boundarySize));
+        timeStepSlider.setValue(checkpoint.getTimeStep());
+        timeStep = checkpoint.getTimeStep();
+        pivot.setX(checkpoint.getCameraX());
+        pivot.setY(checkpoint.getCameraY());
+        pivot.setZ(checkpoint.getCameraZ());
+        rotateX.setAngle(checkpoint.getCameraPitch());
+        rotateY.setAngle(checkpoint.getCameraYaw());
+        Random restored = checkpoint.restoreRandom();
+        if (restored != null) {
+            rand = restored;
+        }
+    }
+
+    // Replace the particles with the first frame of a sim_data.json file
+    private void importSimData() {
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Sim data", "*.json"));
+        File file = chooser.showOpenDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        ParticleArrays imported = new ParticleArrays();
+        try {
+            SimDataReader.importFirstFrame(file.toPath(), imported);
+        } catch (IOException | IllegalArgumentException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Invalid Sim Data");
+            alert.setHeaderText(null);
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            return;
+        }
+        clearParticles();
+        simulation.getState().copyFrom(imported);
+        syncParticles();
+    }
+
+    // Write the current particles as a one-frame sim_data.json file
+    private void exportSimData() {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("sim_data-" + simulation.getStepCount() + ".json");
+        File file = chooser.showSaveDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        try (SimDataWriter writer = new SimDataWriter(file.toPath())) {
+            writer.writeFrame(simulation.getStepCount(), simulation.getState());
+        } catch (IOException e) {
+            System.err.println("Could not export sim data: " + e.getMessage());
+        }
+    }
+
     private void clearParticles() {
-        // Remove all sphere objects from the 3D scene
-        root.getChildren().removeAll(particleSpheres);
-        // Clear the collections
-        particles.clear();
-        particleSpheres.clear();
+        simulation.clear();
+        particleMeshes.clear();
+    }
+
+    // The scenario file named by -Dparticlesim.scenario, or the built-in start scene
+    private void populateStartScene(ParticleArrays state) {
+        String scenarioFile = System.getProperty(SCENARIO_PROPERTY);
+        if (scenarioFile != null) {
+            try {
+                ScenarioSpec spec = ScenarioSpec.read(Path.of(scenarioFile));
+                ScenarioGenerator.generate(spec, state, NUM_THREADS);
+                // Only a scenario that generated replaces the start scene's boundary and constants
+                boundarySize = spec.getBoundarySize();
+                boundarySizeField.setText(String.valueOf((int) boundarySize));
+                simulation.setBoundarySize(boundarySize);
+                simulation.setConstants(spec.getConstants());
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not load scenario " + scenarioFile + ": " + e.getMessage());
+                state.clear();
+            }
+        }
+        BuiltInScenarios.startupScene(state, rand, boundarySize);
     }
 
     private void updateBoundarySize() {
@@ -513,6 +748,7 @@ public class Main extends Application {
             double newSize = Double.parseDouble(boundarySizeField.getText());
             if (newSize > 0) {
                 boundarySize = newSize;
+                simulation.setBoundarySize(newSize);
             } else {
                 boundarySizeField.setText(String.valueOf((int)boundarySize));
                 Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -39,9 +39,9 @@ public class Particle {
         this(xCor, yCor, 0, xVel, yVel, 0, charge, mass, particleType);
     }
 
-    public void updatePos(double timeStep) {
-        // Get max speed from Main class
-        double maxSpeed = Main.getMaxSpeed();
+    // boundary is the half-width of the simulation cube, as in Simulation.getBoundarySize
+    public void updatePos(double timeStep, double boundary) {
+        double maxSpeed = PhysicsConstants.DEFAULT.getMaxSpeed();
 
         double speed = Math.sqrt(xVel * xVel + yVel * yVel + zVel * zVel);
         if (speed > maxSpeed) {
@@ -60,9 +60,6 @@ public class Particle {
         yCor += yVel * timeStep;
         zCor += zVel * timeStep;
 
-        // Get current boundary size from Main class
-        double boundary = Main.getBoundarySize();
-        
         // Bounce off simulation boundary
         if (xCor < -boundary + radius) {
             xCor = -boundary + radius;
@@ -100,12 +97,13 @@ public class Particle {
     }
 
     public double[] calculateForces(Particle p2) {
-        // Get constants from Main class
-        double kConstant = Main.getCoulombConstant();
-        double strongForceOuterRadius = Main.getStrongForceOuterRadius();
-        double strongForceInnerRadius = Main.getStrongForceInnerRadius();
-        double strongForceConstant = Main.getStrongForceConstant();
-        double gravityConstant = Main.getGravityConstant();
+        // Constants come from PhysicsConstants so this class never loads the JavaFX viewer
+        PhysicsConstants constants = PhysicsConstants.DEFAULT;
+        double kConstant = constants.getCoulombConstant();
+        double strongForceOuterRadius = constants.getStrongForceOuterRadius();
+        double strongForceInnerRadius = constants.getStrongForceInnerRadius();
+        double strongForceConstant = constants.getStrongForceConstant();
+        double gravityConstant = constants.getGravityConstant();
 
         Particle p1 = this;
         double forceX = 0;
@@ -0,0 +1,203 @@
+package com.shrine.particlesim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.recording.TrajectoryFrame;
+
+import javafx.collections.ObservableFloatArray;
+import javafx.scene.Group;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+
+/**
+ * Draws the particles as a few meshes per species instead of one {@code Sphere} node each.
+ * Every particle is a small icosahedron; each species fills meshes of up to {@value #CHUNK}
+ * particles, so one index fits in 16 bits on every pipeline. Each frame rewrites the vertex
+ * positions of every mesh in one bulk copy. Faces, normals and texture coordinates only
+ * change when a mesh's particle count does, so the scene graph stays a few dozen nodes
+ * at any particle count.
+ */
+public class ParticleMeshRenderer {
+    private static final int VERTICES = 12;
+    private static final int FACES = 20;
+    private static final int CHUNK = 65536 / VERTICES; // Particles per mesh
+    private static final int POINT_FLOATS = VERTICES * 3;
+    private static final int FACE_INTS = FACES * 9; // point, normal and texture index per corner
+
+    // Unit icosahedron; its vertices double as the per-vertex normals
+    private static final float[] UNIT = new float[POINT_FLOATS];
+    private static final int[][] TRIANGLES = {
+        {0, 11, 5}, {0, 5, 1}, {0, 1, 7}, {0, 7, 10}, {0, 10, 11},
+        {1, 5, 9}, {5, 11, 4}, {11, 10, 2}, {10, 7, 6}, {7, 1, 8},
+        {3, 9, 4}, {3, 4, 2}, {3, 2, 6}, {3, 6, 8}, {3, 8, 9},
+        {4, 9, 5}, {2, 4, 11}, {6, 2, 10}, {8, 6, 7}, {9, 8, 1}
+    };
+    private static final int[] FACE_TEMPLATE = new int[CHUNK * FACE_INTS];
+
+    static {
+        double t = (1 + Math.sqrt(5)) / 2;
+        double[][] v = {
+            {-1, t, 0}, {1, t, 0}, {-1, -t, 0}, {1, -t, 0},
+            {0, -1, t}, {0, 1, t}, {0, -1, -t}, {0, 1, -t},
+            {t, 0, -1}, {t, 0, 1}, {-t, 0, -1}, {-t, 0, 1}
+        };
+        double norm = Math.sqrt(1 + t * t);
+        for (int i = 0; i < VERTICES; i++) {
+            for (int k = 0; k < 3; k++) {
+                UNIT[i * 3 + k] = (float) (v[i][k] / norm);
+            }
+        }
+        for (int p = 0; p < CHUNK; p++) {
+            for (int f = 0; f < FACES; f++) {
+                int[] tri = outward(TRIANGLES[f]);
+                int base = (p * FACES + f) * 9;
+                for (int c = 0; c < 3; c++) {
+                    FACE_TEMPLATE[base + c * 3] = p * VERTICES + tri[c];
+                    FACE_TEMPLATE[base + c * 3 + 1] = tri[c];
+                    FACE_TEMPLATE[base + c * 3 + 2] = 0;
+                }
+            }
+        }
+    }
+
+    private final Group node = new Group();
+    private final Layer[] layers;
+
+    public ParticleMeshRenderer(PhongMaterial electron, PhongMaterial proton, PhongMaterial neutron) {
+        layers = new Layer[] {new Layer(electron, Species.ELECTRON), new Layer(proton, Species.PROTON),
+                new Layer(neutron, Species.NEUTRON)};
+    }
+
+    public Group getNode() {
+        return node;
+    }
+
+    // Redraw from the live particles
+    public void update(ParticleArrays state) {
+        begin();
+        double[] xs = state.getX(), ys = state.getY(), zs = state.getZ();
+        double[] radii = state.getRadius();
+        byte[] types = state.getType();
+        for (int i = 0, n = state.size(); i < n; i++) {
+            layerFor(types[i]).add(xs[i], ys[i], zs[i], radii[i]);
+        }
+        end();
+    }
+
+    // Redraw from a replay, rewind or shared-memory frame; frames carry no radius, so use the species'
+    public void update(TrajectoryFrame frame) {
+        begin();
+        float[] xs = frame.getX(), ys = frame.getY(), zs = frame.getZ();
+        byte[] types = frame.getType();
+        for (int i = 0, n = frame.size(); i < n; i++) {
+            Layer layer = layerFor(types[i]);
+            layer.add(xs[i], ys[i], zs[i], layer.radius);
+        }
+        end();
+    }
+
+    public void clear() {
+        begin();
+        end();
+    }
+
+    private Layer layerFor(byte type) {
+        return switch (type) {
+            case ParticleArrays.ELECTRON -> layers[0];
+            case ParticleArrays.PROTON -> layers[1];
+            default -> layers[2];
+        };
+    }
+
+    private void begin() {
+        for (Layer layer : layers) {
+            layer.count = 0;
+        }
+    }
+
+    private void end() {
+        for (Layer layer : layers) {
+            layer.upload();
+        }
+    }
+
+    // Reorder a triangle so its normal points away from the center, the side JavaFX draws
+    private static int[] outward(int[] tri) {
+        float[] a = vertex(tri[0]), b = vertex(tri[1]), c = vertex(tri[2]);
+        float ux = b[0] - a[0], uy = b[1] - a[1], uz = b[2] - a[2];
+        float wx = c[0] - a[0], wy = c[1] - a[1], wz = c[2] - a[2];
+        float nx = uy * wz - uz * wy, ny = uz * wx - ux * wz, nz = ux * wy - uy * wx;
+        float dot = nx * (a[0] + b[0] + c[0]) + ny * (a[1] + b[1] + c[1]) + nz * (a[2] + b[2] + c[2]);
+        return dot >= 0 ? tri : new int[] {tri[0], tri[2], tri[1]};
+    }
+
+    private static float[] vertex(int i) {
+        return new float[] {UNIT[i * 3], UNIT[i * 3 + 1], UNIT[i * 3 + 2]};
+    }
+
+    // All meshes of one species
+    private final class Layer {
+        private final PhongMaterial material;
+        private final double radius;
+        private final List<MeshView> views = new ArrayList<>();
+        private float[] points = new float[0];
+        private int count;
+
+        Layer(PhongMaterial material, Species species) {
+            this.material = material;
+            this.radius = species.getRadius();
+        }
+
+        void add(double x, double y, double z, double radius) {
+            if ((count + 1) * POINT_FLOATS > points.length) {
+                points = Arrays.copyOf(points, Math.max(POINT_FLOATS * 64, points.length * 2));
+            }
+            int base = count * POINT_FLOATS;
+            for (int k = 0; k < POINT_FLOATS; k += 3) {
+                points[base + k] = (float) (x + UNIT[k] * radius);
+                points[base + k + 1] = (float) (y + UNIT[k + 1] * radius);
+                points[base + k + 2] = (float) (z + UNIT[k + 2] * radius);
+            }
+            count++;
+        }
+
+        void upload() {
+            int meshes = (count + CHUNK - 1) / CHUNK;
+            while (views.size() < meshes) {
+                MeshView view = new MeshView(createMesh());
+                view.setMaterial(material);
+                views.add(view);
+                node.getChildren().add(view);
+            }
+            while (views.size() > meshes) {
+                node.getChildren().remove(views.remove(views.size() - 1));
+            }
+            for (int m = 0; m < meshes; m++) {
+                int from = m * CHUNK;
+                int used = Math.min(CHUNK, count - from);
+                TriangleMesh mesh = (TriangleMesh) views.get(m).getMesh();
+                ObservableFloatArray meshPoints = mesh.getPoints();
+                if (meshPoints.size() == used * POINT_FLOATS) {
+                    meshPoints.set(0, points, from * POINT_FLOATS, used * POINT_FLOATS);
+                } else {
+                    meshPoints.setAll(points, from * POINT_FLOATS, used * POINT_FLOATS);
+                }
+                if (mesh.getFaces().size() != used * FACE_INTS) {
+                    mesh.getFaces().setAll(FACE_TEMPLATE, 0, used * FACE_INTS);
+                }
+            }
+        }
+
+        private TriangleMesh createMesh() {
+            TriangleMesh mesh = new TriangleMesh(VertexFormat.POINT_NORMAL_TEXCOORD);
+            mesh.getNormals().setAll(UNIT);
+            mesh.getTexCoords().setAll(0, 0);
+            return mesh;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.shrine.particlesim;
+
+/**
+ * Immutable set of force constants used by the compute backends.
+ * Kept free of JavaFX so it can be shared with headless code.
+ */
+public final class PhysicsConstants {
+    public static final PhysicsConstants DEFAULT = new PhysicsConstants(6e5, 1e1, 4e5, 9, 27, 1e4);
+
+    private final double strongForceConstant;
+    private final double gravityConstant;
+    private final double coulombConstant;
+    private final double strongForceInnerRadius;
+    private final double strongForceOuterRadius;
+    private final double maxSpeed;
+
+    public PhysicsConstants(double strongForceConstant, double gravityConstant, double coulombConstant,
+                            double strongForceInnerRadius, double strongForceOuterRadius, double maxSpeed) {
+        this.strongForceConstant = strongForceConstant;
+        this.gravityConstant = gravityConstant;
+        this.coulombConstant = coulombConstant;
+        this.strongForceInnerRadius = strongForceInnerRadius;
+        this.strongForceOuterRadius = strongForceOuterRadius;
+        this.maxSpeed = maxSpeed;
+    }
+
+    public double getStrongForceConstant() {
+        return strongForceConstant;
+    }
+
+    public double getGravityConstant() {
+        return gravityConstant;
+    }
+
+    public double getCoulombConstant() {
+        return coulombConstant;
+    }
+
+    public double getStrongForceInnerRadius() {
+        return strongForceInnerRadius;
+    }
+
+    public double getStrongForceOuterRadius() {
+        return strongForceOuterRadius;
+    }
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicsConstants[strong=" + strongForceConstant + ", gravity=" + gravityConstant
+                + ", coulomb=" + coulombConstant + ", strongInner=" + strongForceInnerRadius
+                + ", strongOuter=" + strongForceOuterRadius + ", maxSpeed=" + maxSpeed + "]";
+    }
+}
@@ -0,0 +1,92 @@
+package com.shrine.particlesim;
+
+import com.shrine.particlesim.diagnostics.StepProfiler;
+import com.shrine.particlesim.diagnostics.StepProfiler.Phase;
+
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.text.Font;
+
+/**
+ * Profiler readout for the controls panel: a toggle and a text block with the phase breakdown,
+ * FPS and thread imbalance. The profiler is only attached to the simulation while the
+ * overlay is shown, so a hidden overlay costs nothing.
+ */
+public class ProfilerOverlay {
+    private static final long REFRESH_INTERVAL = 250_000_000L; // Redraw the text 4 times a second
+
+    private final Simulation simulation;
+    private final StepProfiler profiler = new StepProfiler();
+    private final CheckBox toggle = new CheckBox("Show Profiler");
+    private final Label label = new Label();
+    private long lastRefresh;
+    private long syncStart;
+    private long renderStart;
+
+    public ProfilerOverlay(Simulation simulation) {
+        this.simulation = simulation;
+        label.setFont(Font.font("Monospaced", 11));
+        label.setVisible(false);
+        label.setManaged(false);
+        toggle.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            label.setVisible(newVal);
+            label.setManaged(newVal);
+            simulation.setProfiler(newVal ? profiler : null);
+        });
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public Label getLabel() {
+        return label;
+    }
+
+    private boolean isActive() {
+        return simulation.getProfiler() == profiler;
+    }
+
+    // Call around the particle mesh updates
+    public void beginSync() {
+        syncStart = System.nanoTime();
+    }
+
+    public void endSync() {
+        long now = System.nanoTime();
+        if (isActive()) {
+            profiler.record(Phase.SYNC, now - syncStart);
+        }
+        renderStart = now;
+    }
+
+    // Called after the scene graph pulse that follows the sync (CSS, layout and render submission)
+    public void endRender() {
+        if (renderStart != 0 && isActive()) {
+            profiler.record(Phase.RENDER, System.nanoTime() - renderStart);
+        }
+        renderStart = 0;
+    }
+
+    public void refresh(long now) {
+        if (!isActive() || now - lastRefresh < REFRESH_INTERVAL) {
+            return;
+        }
+        lastRefresh = now;
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("FPS %.1f  particles %d%n", profiler.getFps(), profiler.getParticleCount()));
+        text.append(String.format("pairs %,d%n", profiler.getPairCount()));
+        text.append(String.format("%-9s %6s %6s %6s%n", "ms", "mean", "p50", "p99"));
+        for (Phase phase : Phase.values()) {
+            text.append(String.format("%-9s %6.2f %6.2f %6.2f%n", phase.getLabel(), profiler.mean(phase) / 1e6,
+                    profiler.percentile(phase, 0.50) / 1e6, profiler.percentile(phase, 0.99) / 1e6));
+        }
+        text.append(String.format("imbalance %.2fx%n", profiler.getImbalance()));
+        for (int w = 0; w < profiler.getWorkerCount(); w++) {
+            text.append(String.format("w%-2d busy %6.2f idle %6.2f%n", w, profiler.getWorkerBusyNanos(w) / 1e6,
+                    profiler.getWorkerIdleNanos(w) / 1e6));
+        }
+        label.setText(text.toString().trim());
+    }
+}
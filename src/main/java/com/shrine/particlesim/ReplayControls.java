@@ -0,0 +1,173 @@
+package com.shrine.particlesim;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.shrine.particlesim.recording.ReplayPlayer;
+import com.shrine.particlesim.recording.TrajectoryFrame;
+
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+/**
+ * Replay mode for the controls panel: open a recorded trajectory, then play, pause, scrub
+ * and change speed. While a replay is open the game loop shows its frames instead of
+ * stepping the simulation.
+ */
+public class ReplayControls implements AutoCloseable {
+    private static final String[] SPEEDS = {"-2x", "-1x", "0.25x", "0.5x", "1x", "2x", "4x", "8x"};
+
+    private final Runnable onExit;
+    private final Button openButton = new Button("Open Replay");
+    private final Button playButton = new Button("Play");
+    private final Slider scrubSlider = new Slider(0, 1, 0);
+    private final ComboBox<String> speedBox = new ComboBox<>();
+    private final Label label = new Label();
+    private final VBox view;
+    private final TrajectoryFrame frame = new TrajectoryFrame();
+    private ReplayPlayer player;
+    private long lastUpdate;
+    private int shownFrame = -1;
+    private boolean updatingSlider;
+
+    // onExit runs after a replay is closed, so the caller can show the live simulation again
+    public ReplayControls(Runnable onExit) {
+        this.onExit = onExit;
+        openButton.setOnAction(e -> open());
+        playButton.setOnAction(e -> togglePlay());
+        scrubSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (!updatingSlider && player != null) {
+                player.seek(newVal.intValue());
+            }
+        });
+        speedBox.getItems().addAll(SPEEDS);
+        speedBox.setValue("1x");
+        speedBox.setOnAction(e -> {
+            if (player != null) {
+                player.setSpeed(Double.parseDouble(speedBox.getValue().replace("x", "")));
+            }
+        });
+        Button exitButton = new Button("Exit Replay");
+        exitButton.setOnAction(e -> exit());
+
+        view = new VBox(2, label, playButton, scrubSlider, speedBox, exitButton);
+        view.setVisible(false);
+        view.setManaged(false);
+    }
+
+    public Button getOpenButton() {
+        return openButton;
+    }
+
+    public VBox getView() {
+        return view;
+    }
+
+    public boolean isActive() {
+        return player != null;
+    }
+
+    private void open() {
+        FileChooser chooser = new FileChooser();
+        File file = chooser.showOpenDialog(openButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        exit();
+        try {
+            player = ReplayPlayer.open(file.toPath());
+        } catch (IOException | IllegalArgumentException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Invalid Recording");
+            alert.setHeaderText(null);
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            return;
+        }
+        player.setSpeed(Double.parseDouble(speedBox.getValue().replace("x", "")));
+        updatingSlider = true;
+        scrubSlider.setMax(Math.max(1, player.getFrameCount() - 1));
+        scrubSlider.setValue(0);
+        updatingSlider = false;
+        shownFrame = -1;
+        lastUpdate = 0;
+        playButton.setText("Play");
+        view.setVisible(true);
+        view.setManaged(true);
+    }
+
+    private void togglePlay() {
+        if (player == null) {
+            return;
+        }
+        if (player.isPlaying()) {
+            player.pause();
+        } else {
+            player.play();
+        }
+    }
+
+    /**
+     * Advance playback to {@code now} and return the frame to show, or null when the shown
+     * frame has not changed. The returned frame is reused by the next call.
+     */
+    public TrajectoryFrame update(long now) {
+        if (player == null) {
+            return null;
+        }
+        if (lastUpdate != 0) {
+            player.advance(now - lastUpdate);
+        }
+        lastUpdate = now;
+        playButton.setText(player.isPlaying() ? "Pause" : "Play");
+        int index = player.getFrameIndex();
+        updatingSlider = true;
+        scrubSlider.setValue(index);
+        updatingSlider = false;
+        if (index == shownFrame) {
+            return null;
+        }
+        try {
+            player.current(frame);
+        } catch (IOException e) {
+            System.err.println("Could not read replay frame " + index + ": " + e.getMessage());
+            player.pause();
+            return null;
+        }
+        shownFrame = index;
+        label.setText(String.format("frame %d / %d  step %d", index + 1, player.getFrameCount(), frame.getStep()));
+        return frame;
+    }
+
+    private void exit() {
+        if (player == null) {
+            return;
+        }
+        try {
+            player.close();
+        } catch (IOException e) {
+            System.err.println("Could not close replay: " + e.getMessage());
+        }
+        player = null;
+        view.setVisible(false);
+        view.setManaged(false);
+        onExit.run();
+    }
+
+    @Override
+    public void close() {
+        if (player != null) {
+            try {
+                player.close();
+            } catch (IOException e) {
+                System.err.println("Could not close replay: " + e.getMessage());
+            }
+            player = null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.shrine.particlesim;
+
+import com.shrine.particlesim.recording.RewindBuffer;
+import com.shrine.particlesim.recording.TrajectoryFrame;
+
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+/**
+ * Time travel for the controls panel. While the toggle is on, every step goes into a
+ * {@link RewindBuffer}; pausing then lets you step back through the buffered frames and
+ * forward again. Stepping forward from the newest frame advances the live simulation by
+ * one step. Past frames are only shown: resuming continues from the live state.
+ */
+public class RewindControls implements AutoCloseable {
+    private final Simulation simulation;
+    private final Runnable stepOnce;
+    private final Runnable onLive;
+    private final RewindBuffer buffer;
+    private final CheckBox toggle = new CheckBox("Rewind Buffer");
+    private final Button pauseButton = new Button("Pause");
+    private final Label label = new Label();
+    private final VBox view;
+    private final TrajectoryFrame frame = new TrajectoryFrame();
+    private boolean paused;
+    private int framesBack; // 0 shows the live simulation
+    private boolean frameChanged;
+
+    // stepOnce advances the simulation and shows it; onLive shows the live particles after past frames
+    public RewindControls(Simulation simulation, int megabytes, Runnable stepOnce, Runnable onLive) {
+        this.simulation = simulation;
+        this.stepOnce = stepOnce;
+        this.onLive = onLive;
+        this.buffer = new RewindBuffer(megabytes);
+        toggle.setOnAction(e -> setEnabled(toggle.isSelected()));
+        pauseButton.setOnAction(e -> {
+            if (paused) {
+                resume();
+            } else {
+                paused = true;
+                pauseButton.setText("Resume");
+            }
+            updateLabel();
+        });
+        Button backButton = new Button("Step Back");
+        backButton.setOnAction(e -> stepBack());
+        Button forwardButton = new Button("Step Forward");
+        forwardButton.setOnAction(e -> stepForward());
+
+        view = new VBox(2, label, new HBox(2, pauseButton, backButton, forwardButton));
+        view.setVisible(false);
+        view.setManaged(false);
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public VBox getView() {
+        return view;
+    }
+
+    // While paused the game loop shows update()'s frames instead of stepping
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // The past frame to show if the view moved since the last call, otherwise null
+    public TrajectoryFrame update() {
+        if (!frameChanged) {
+            return null;
+        }
+        frameChanged = false;
+        buffer.read(buffer.getFrameCount() - 1 - framesBack, frame);
+        return frame;
+    }
+
+    public void refresh() {
+        if (toggle.isSelected()) {
+            updateLabel();
+        }
+    }
+
+    private void setEnabled(boolean enabled) {
+        if (enabled) {
+            simulation.addStepListener(buffer);
+        } else {
+            simulation.removeStepListener(buffer);
+            resume();
+            buffer.clear();
+        }
+        view.setVisible(enabled);
+        view.setManaged(enabled);
+        updateLabel();
+    }
+
+    private void stepBack() {
+        if (!paused) {
+            paused = true;
+            pauseButton.setText("Resume");
+        }
+        if (framesBack < buffer.getFrameCount() - 1) {
+            framesBack++;
+            frameChanged = true;
+        }
+        updateLabel();
+    }
+
+    private void stepForward() {
+        if (!paused) {
+            paused = true;
+            pauseButton.setText("Resume");
+        }
+        if (framesBack == 0) {
+            stepOnce.run();
+        } else if (--framesBack == 0) {
+            frameChanged = false;
+            onLive.run();
+        } else {
+            frameChanged = true;
+        }
+        updateLabel();
+    }
+
+    private void resume() {
+        if (framesBack > 0) {
+            framesBack = 0;
+            frameChanged = false;
+            onLive.run();
+        }
+        paused = false;
+        pauseButton.setText("Pause");
+    }
+
+    private void updateLabel() {
+        int frames = buffer.getFrameCount();
+        String position = framesBack == 0 ? "live, step " + simulation.getStepCount() : framesBack + " steps back";
+        label.setText(String.format("%s%n%d frames buffered (%d MB)", position, frames,
+                buffer.getCapacityBytes() >> 20));
+    }
+
+    @Override
+    public void close() {
+        simulation.removeStepListener(buffer);
+        buffer.close();
+    }
+}
@@ -0,0 +1,282 @@
+package com.shrine.particlesim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.shrine.particlesim.command.CommandQueue;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.EnergyDiagnostics;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.diagnostics.BoundaryChangeEvent;
+import com.shrine.particlesim.diagnostics.ClearEvent;
+import com.shrine.particlesim.diagnostics.PhaseEvent;
+import com.shrine.particlesim.diagnostics.SimulationEvent;
+import com.shrine.particlesim.diagnostics.SpawnEvent;
+import com.shrine.particlesim.diagnostics.StepEvent;
+import com.shrine.particlesim.diagnostics.StepListener;
+import com.shrine.particlesim.diagnostics.StepProfiler;
+import com.shrine.particlesim.diagnostics.StepProfiler.Phase;
+
+/**
+ * Headless simulation: particle state, constants, boundary and the backend that steps them.
+ * Nothing here touches JavaFX, so it can run on machines without a display.
+ */
+public class Simulation implements AutoCloseable {
+    private final ParticleArrays state = new ParticleArrays();
+    private PhysicsConstants constants;
+    private ComputeBackend backend;
+    private double boundarySize;
+    private long stepCount;
+    private StepProfiler profiler;
+    private volatile StepListener[] listeners = new StepListener[0];
+    private long lastStepNanos;
+    private long lastForceNanos;
+    private final EnergyDiagnostics diagnostics = new EnergyDiagnostics();
+    private boolean diagnosticsEnabled;
+    private final CommandQueue commands = new CommandQueue();
+    private long commandsApplied;
+
+    public Simulation(PhysicsConstants constants, double boundarySize, ComputeBackend backend) {
+        this.constants = constants;
+        this.boundarySize = boundarySize;
+        this.backend = backend;
+    }
+
+    // Apply queued commands, then advance one step: forces, collisions, then velocities and positions
+    public void step(double timeStep) {
+        applyCommands();
+        StepProfiler profiler = this.profiler;
+        if (profiler != null) {
+            profiler.beginFrame();
+        }
+        StepEvent stepEvent = new StepEvent();
+        stepEvent.begin();
+        PhaseEvent phaseEvent = beginPhase();
+
+        long start = System.nanoTime();
+        backend.resetForces(state);
+        phaseEvent = nextPhase(phaseEvent, Phase.RESET);
+        long forceStart = System.nanoTime();
+        backend.computeForces(state, constants);
+        phaseEvent = nextPhase(phaseEvent, Phase.FORCE);
+        long collisionStart = System.nanoTime();
+        backend.resolveCollisions(state);
+        phaseEvent = nextPhase(phaseEvent, Phase.COLLISION);
+        long integrateStart = System.nanoTime();
+        backend.integrate(state, constants, timeStep, boundarySize);
+        endPhase(phaseEvent, Phase.INTEGRATE);
+        long end = System.nanoTime();
+
+        if (stepEvent.shouldCommit()) {
+            setCounts(stepEvent);
+            stepEvent.stepNumber = stepCount;
+            stepEvent.timeStep = timeStep;
+            stepEvent.backend = backend.getName();
+            stepEvent.commit();
+        }
+        if (diagnosticsEnabled && backend.collectDiagnostics(diagnostics)) {
+            diagnostics.setStep(stepCount);
+        }
+        stepCount++;
+        lastStepNanos = end - start;
+        lastForceNanos = collisionStart - forceStart;
+
+        if (profiler != null) {
+            profiler.record(Phase.RESET, forceStart - start);
+            profiler.record(Phase.FORCE, collisionStart - forceStart);
+            profiler.record(Phase.COLLISION, integrateStart - collisionStart);
+            profiler.record(Phase.INTEGRATE, end - integrateStart);
+            profiler.recordWorkers(backend, collisionStart - forceStart);
+            profiler.recordCounts(state.size(), backend.getPairCount(state.size()));
+        }
+        for (StepListener listener : listeners) {
+            listener.stepCompleted(this);
+        }
+    }
+
+    // Apply the commands queued so far without stepping, e.g. while paused
+    public int applyCommands() {
+        int applied = commands.applyPending(this);
+        commandsApplied += applied;
+        return applied;
+    }
+
+    // Commands queued here from any thread are applied by the stepping thread before the next step
+    public CommandQueue getCommandQueue() {
+        return commands;
+    }
+
+    // Total commands applied; changes whenever queued commands may have changed the particles
+    public long getCommandsApplied() {
+        return commandsApplied;
+    }
+
+    // Listeners live in a copy-on-write array so stepping never allocates an iterator
+    public synchronized void addStepListener(StepListener listener) {
+        StepListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeStepListener(StepListener listener) {
+        List<StepListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        remaining.remove(listener);
+        listeners = remaining.toArray(new StepListener[0]);
+    }
+
+    // Wall time of the last step's reset, force, collision and integrate phases
+    public long getLastStepNanos() {
+        return lastStepNanos;
+    }
+
+    public long getLastForceNanos() {
+        return lastForceNanos;
+    }
+
+    // JFR phase events; callers outside step() use these for phases such as the particle mesh sync
+    public PhaseEvent beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    public void endPhase(PhaseEvent event, Phase phase) {
+        if (event.shouldCommit()) {
+            setCounts(event);
+            event.phase = phase.getLabel();
+            event.stepNumber = stepCount;
+            event.commit();
+        }
+    }
+
+    private PhaseEvent nextPhase(PhaseEvent event, Phase phase) {
+        endPhase(event, phase);
+        return beginPhase();
+    }
+
+    private void setCounts(SimulationEvent event) {
+        int particles = state.size();
+        event.setCounts(particles, backend != null ? backend.getPairCount(particles) : 0,
+                backend != null ? backend.getWorkerCount() : 0);
+    }
+
+    // Remove every particle
+    public void clear() {
+        ClearEvent event = new ClearEvent();
+        event.begin();
+        int removed = state.size();
+        state.clear();
+        if (event.shouldCommit()) {
+            setCounts(event);
+            event.removed = removed;
+            event.commit();
+        }
+    }
+
+    public ParticleArrays getState() {
+        return state;
+    }
+
+    public int getParticleCount() {
+        return state.size();
+    }
+
+    public PhysicsConstants getConstants() {
+        return constants;
+    }
+
+    public void setConstants(PhysicsConstants constants) {
+        this.constants = constants;
+    }
+
+    public ComputeBackend getBackend() {
+        return backend;
+    }
+
+    // Swap backends, closing the old one
+    public void setBackend(ComputeBackend backend) {
+        ComputeBackend old = this.backend;
+        this.backend = backend;
+        if (backend != null) {
+            backend.setDiagnosticsEnabled(diagnosticsEnabled);
+        }
+        if (old != null && old != backend) {
+            old.close();
+        }
+    }
+
+    public double getBoundarySize() {
+        return boundarySize;
+    }
+
+    public void setBoundarySize(double boundarySize) {
+        BoundaryChangeEvent event = new BoundaryChangeEvent();
+        event.begin();
+        double oldSize = this.boundarySize;
+        this.boundarySize = boundarySize;
+        if (event.shouldCommit()) {
+            setCounts(event);
+            event.oldSize = oldSize;
+            event.newSize = boundarySize;
+            event.commit();
+        }
+    }
+
+    // JFR spawn event around particles added straight to the state
+    public SpawnEvent beginSpawn() {
+        SpawnEvent event = new SpawnEvent();
+        event.begin();
+        return event;
+    }
+
+    public void endSpawn(SpawnEvent event, String particleType, int spawned) {
+        if (event.shouldCommit()) {
+            setCounts(event);
+            event.particleType = particleType;
+            event.spawned = spawned;
+            event.commit();
+        }
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public void setStepCount(long stepCount) {
+        this.stepCount = stepCount;
+    }
+
+    // Energy and momentum are computed alongside the force pass and integration while enabled
+    public void setDiagnosticsEnabled(boolean enabled) {
+        diagnosticsEnabled = enabled;
+        if (backend != null) {
+            backend.setDiagnosticsEnabled(enabled);
+        }
+    }
+
+    public boolean isDiagnosticsEnabled() {
+        return diagnosticsEnabled;
+    }
+
+    // Energy and momentum of the last step; only meaningful while diagnostics are enabled
+    public EnergyDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public StepProfiler getProfiler() {
+        return profiler;
+    }
+
+    // Null turns profiling off
+    public void setProfiler(StepProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public void close() {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+}
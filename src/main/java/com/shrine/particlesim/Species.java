@@ -0,0 +1,65 @@
+package com.shrine.particlesim;
+
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * The particle species the simulation spawns, with the charge, mass and radius
+ * {@link Particle} gives them. JavaFX-free so headless code can create particles.
+ */
+public enum Species {
+    ELECTRON("electron", -1, 10, 3.0, ParticleArrays.ELECTRON),   // Original = -1.6-19 C, 9.109e-31 kg
+    PROTON("proton", 1, 100, 9.0, ParticleArrays.PROTON),         // Original = 1.6e-19 C, 1.67262158e-29 kg
+    NEUTRON("neutron", 0, 100, 9.0, ParticleArrays.NEUTRON);      // Original = 1.67492749804e-29 kg
+
+    private final String typeName;
+    private final double charge;
+    private final double mass;
+    private final double radius;
+    private final byte typeCode;
+
+    Species(String typeName, double charge, double mass, double radius, byte typeCode) {
+        this.typeName = typeName;
+        this.charge = charge;
+        this.mass = mass;
+        this.radius = radius;
+        this.typeCode = typeCode;
+    }
+
+    public static Species fromTypeName(String typeName) {
+        for (Species species : values()) {
+            if (species.typeName.equals(typeName)) {
+                return species;
+            }
+        }
+        throw new IllegalArgumentException("Unknown particle type: " + typeName);
+    }
+
+    public static Species fromTypeCode(byte typeCode) {
+        for (Species species : values()) {
+            if (species.typeCode == typeCode) {
+                return species;
+            }
+        }
+        throw new IllegalArgumentException("Unknown particle type code: " + typeCode);
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public double getCharge() {
+        return charge;
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public byte getTypeCode() {
+        return typeCode;
+    }
+}
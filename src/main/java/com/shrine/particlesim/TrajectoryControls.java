@@ -0,0 +1,97 @@
+package com.shrine.particlesim;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.shrine.particlesim.recording.TrajectoryRecorder;
+
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.stage.FileChooser;
+
+/**
+ * Record toggle for the controls panel. Checking it asks for a file and attaches a
+ * {@link TrajectoryRecorder} that stores quantized positions and drops frames rather than
+ * slowing the simulation down.
+ */
+public class TrajectoryControls implements AutoCloseable {
+    private static final int RECORD_INTERVAL = 1; // Steps between recorded frames
+    private static final int BITS_PER_AXIS = 21; // Quantized positions are all the replay viewer needs
+    private static final int KEYFRAME_INTERVAL = 60;
+
+    private final Simulation simulation;
+    private final CheckBox toggle = new CheckBox("Record Trajectory");
+    private final Label label = new Label();
+    private TrajectoryRecorder recorder;
+
+    public TrajectoryControls(Simulation simulation) {
+        this.simulation = simulation;
+        label.setVisible(false);
+        label.setManaged(false);
+        toggle.setOnAction(e -> {
+            if (toggle.isSelected()) {
+                start();
+            } else {
+                stop();
+            }
+        });
+    }
+
+    public CheckBox getToggle() {
+        return toggle;
+    }
+
+    public Label getLabel() {
+        return label;
+    }
+
+    private void start() {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("trajectory-" + simulation.getStepCount() + ".traj");
+        File file = chooser.showSaveDialog(toggle.getScene().getWindow());
+        if (file == null) {
+            toggle.setSelected(false);
+            return;
+        }
+        try {
+            recorder = new TrajectoryRecorder(file.toPath(), RECORD_INTERVAL, TrajectoryRecorder.Backpressure.DROP,
+                    BITS_PER_AXIS, KEYFRAME_INTERVAL);
+        } catch (IOException e) {
+            System.err.println("Could not start recording: " + e.getMessage());
+            toggle.setSelected(false);
+            return;
+        }
+        simulation.addStepListener(recorder);
+        label.setVisible(true);
+        label.setManaged(true);
+    }
+
+    private void stop() {
+        if (recorder == null) {
+            return;
+        }
+        simulation.removeStepListener(recorder);
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.err.println("Recording failed: " + e.getMessage());
+        }
+        recorder = null;
+        label.setVisible(false);
+        label.setManaged(false);
+    }
+
+    public void refresh() {
+        TrajectoryRecorder current = recorder;
+        if (current == null) {
+            return;
+        }
+        label.setText(String.format("frames %d  dropped %d%n%.1f MB", current.getFramesWritten(),
+                current.getDroppedFrames(), current.getBytesWritten() / 1e6));
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
@@ -0,0 +1,110 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.diagnostics.StepListener;
+
+/**
+ * Publishes a particle snapshot every few steps to a low-priority analytics thread. Snapshots
+ * come from a small fixed pool; when the analyzer is still busy with all of them the new one
+ * is dropped, so the simulation never waits for analytics and never allocates for it.
+ * Results are available through {@link #getLatest()} and to listeners, which run on the
+ * analytics thread.
+ */
+public class AnalyticsPipeline<R> implements StepListener, AutoCloseable {
+    private static final int POOL_SIZE = 2;
+
+    // Work done on the analytics thread for each snapshot; dropped counts the snapshots skipped so far
+    public interface Analyzer<R> {
+        R analyze(ParticleSnapshot snapshot, long dropped);
+    }
+
+    private final int interval;
+    private final Analyzer<R> analyzer;
+    private final BlockingQueue<ParticleSnapshot> free = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<ParticleSnapshot> ready = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final CopyOnWriteArrayList<Consumer<R>> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+    private volatile R latest;
+    private volatile long dropped;
+    private volatile boolean running = true;
+
+    public AnalyticsPipeline(int interval, Analyzer<R> analyzer) {
+        this.interval = Math.max(1, interval);
+        this.analyzer = analyzer;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            free.add(new ParticleSnapshot());
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "analytics");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.execute(this::consume);
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        if (simulation.getStepCount() % interval != 0) {
+            return;
+        }
+        ParticleSnapshot snapshot = free.poll();
+        if (snapshot == null) {
+            dropped++; // Only the simulation thread writes this
+            return;
+        }
+        snapshot.copyFrom(simulation);
+        ready.offer(snapshot);
+    }
+
+    private void consume() {
+        while (running) {
+            ParticleSnapshot snapshot;
+            try {
+                snapshot = ready.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (snapshot == null) {
+                continue;
+            }
+            try {
+                R result = analyzer.analyze(snapshot, dropped);
+                latest = result;
+                for (Consumer<R> listener : listeners) {
+                    listener.accept(result);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Analytics failed at step " + snapshot.getStep() + ": " + e);
+            } finally {
+                free.offer(snapshot);
+            }
+        }
+    }
+
+    public R getLatest() {
+        return latest;
+    }
+
+    public long getDroppedSnapshots() {
+        return dropped;
+    }
+
+    public void addListener(Consumer<R> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        executor.shutdownNow();
+    }
+}
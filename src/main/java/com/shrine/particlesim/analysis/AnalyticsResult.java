@@ -0,0 +1,116 @@
+package com.shrine.particlesim.analysis;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.shrine.particlesim.Species;
+
+/**
+ * Immutable analytics published after each analyzed snapshot. Histograms are exponentially
+ * weighted averages over the snapshots seen so far, so they settle instead of flickering.
+ * Species-indexed arrays use the particle type codes, with one extra row for unknown types.
+ */
+public final class AnalyticsResult {
+    private final long step;
+    private final long snapshotsAnalyzed;
+    private final long snapshotsDropped;
+    private final double rdfBinWidth;
+    private final double[] rdf;
+    private final double speedBinWidth;
+    private final double[][] speedHistograms;
+    private final double[] meanSpeeds;
+    private final double densityBinWidth;
+    private final double[][] densityProfiles;
+
+    AnalyticsResult(long step, long snapshotsAnalyzed, long snapshotsDropped, double rdfBinWidth, double[] rdf,
+                    double speedBinWidth, double[][] speedHistograms, double[] meanSpeeds, double densityBinWidth,
+                    double[][] densityProfiles) {
+        this.step = step;
+        this.snapshotsAnalyzed = snapshotsAnalyzed;
+        this.snapshotsDropped = snapshotsDropped;
+        this.rdfBinWidth = rdfBinWidth;
+        this.rdf = rdf.clone();
+        this.speedBinWidth = speedBinWidth;
+        this.speedHistograms = deepClone(speedHistograms);
+        this.meanSpeeds = meanSpeeds.clone();
+        this.densityBinWidth = densityBinWidth;
+        this.densityProfiles = deepClone(densityProfiles);
+    }
+
+    private static double[][] deepClone(double[][] values) {
+        double[][] copy = new double[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            copy[i] = values[i].clone();
+        }
+        return copy;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public long getSnapshotsAnalyzed() {
+        return snapshotsAnalyzed;
+    }
+
+    public long getSnapshotsDropped() {
+        return snapshotsDropped;
+    }
+
+    public double getRdfBinWidth() {
+        return rdfBinWidth;
+    }
+
+    // g(r) for bin k covers distances [k, k + 1) * rdfBinWidth
+    public double[] getRdf() {
+        return rdf.clone();
+    }
+
+    public double getSpeedBinWidth() {
+        return speedBinWidth;
+    }
+
+    // Fraction of the species' particles per speed bin; the last bin also holds faster ones
+    public double[] getSpeedHistogram(byte typeCode) {
+        return speedHistograms[typeCode].clone();
+    }
+
+    public double getMeanSpeed(byte typeCode) {
+        return meanSpeeds[typeCode];
+    }
+
+    public double getDensityBinWidth() {
+        return densityBinWidth;
+    }
+
+    // Particles per unit volume in spherical shells around the box centre
+    public double[] getDensityProfile(byte typeCode) {
+        return densityProfiles[typeCode].clone();
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("step", step);
+        json.put("snapshotsAnalyzed", snapshotsAnalyzed);
+        json.put("snapshotsDropped", snapshotsDropped);
+        JSONObject rdfJson = new JSONObject();
+        rdfJson.put("binWidth", rdfBinWidth);
+        rdfJson.put("g", new JSONArray(rdf));
+        json.put("rdf", rdfJson);
+
+        JSONObject speeds = new JSONObject();
+        speeds.put("binWidth", speedBinWidth);
+        JSONObject density = new JSONObject();
+        density.put("binWidth", densityBinWidth);
+        for (Species species : Species.values()) {
+            JSONObject speciesSpeeds = new JSONObject();
+            speciesSpeeds.put("mean", meanSpeeds[species.getTypeCode()]);
+            speciesSpeeds.put("histogram", new JSONArray(speedHistograms[species.getTypeCode()]));
+            speeds.put(species.getTypeName(), speciesSpeeds);
+            density.put(species.getTypeName(), new JSONArray(densityProfiles[species.getTypeCode()]));
+        }
+        json.put("speeds", speeds);
+        json.put("density", density);
+        return json;
+    }
+}
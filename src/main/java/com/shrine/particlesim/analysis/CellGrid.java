@@ -0,0 +1,136 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the [-boundary, boundary] cube for short-range pair searches. Particles are
+ * bucketed with a counting sort, so a rebuild is O(N) and reuses its arrays. Pairs are visited
+ * over the cell itself plus 13 of its 26 neighbours, which sees every pair within one cell
+ * size exactly once.
+ */
+public final class CellGrid {
+    private static final int MAX_CELLS_PER_AXIS = 128;
+    // Half of the 26 neighbour offsets; the other half is covered from the neighbouring cell
+    private static final int[][] HALF_SHELL = {
+            {1, 0, 0}, {-1, 1, 0}, {0, 1, 0}, {1, 1, 0},
+            {-1, -1, 1}, {0, -1, 1}, {1, -1, 1},
+            {-1, 0, 1}, {0, 0, 1}, {1, 0, 1},
+            {-1, 1, 1}, {0, 1, 1}, {1, 1, 1}
+    };
+
+    public interface PairVisitor {
+        void visit(int i, int j, double distSq);
+    }
+
+    private int cellsPerAxis;
+    private double origin;
+    private double inverseCellSize;
+    private int[] cellStart = new int[0];
+    private int[] cellParticles = new int[0];
+    private int[] particleCell = new int[0];
+    private double[] x;
+    private double[] y;
+    private double[] z;
+
+    // Bucket n particles into cells at least cellSize wide
+    public void build(double[] x, double[] y, double[] z, int n, double boundary, double cellSize) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        cellsPerAxis = (int) Math.max(1, Math.min(MAX_CELLS_PER_AXIS, Math.floor(2 * boundary / cellSize)));
+        origin = -boundary;
+        inverseCellSize = cellsPerAxis / (2 * boundary);
+        int cellCount = cellsPerAxis * cellsPerAxis * cellsPerAxis;
+        if (cellStart.length < cellCount + 1) {
+            cellStart = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cellCount + 1, 0);
+        }
+        if (particleCell.length < n) {
+            particleCell = new int[n];
+            cellParticles = new int[n];
+        }
+
+        for (int i = 0; i < n; i++) {
+            int cell = cellIndex(axisCell(x[i]), axisCell(y[i]), axisCell(z[i]));
+            particleCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // Fill back to front from each cell's end, so particles stay in index order and
+        // cellStart[c + 1] ends up at the start of cell c; then shift it into place
+        for (int i = n - 1; i >= 0; i--) {
+            int cell = particleCell[i];
+            cellParticles[--cellStart[cell + 1]] = i;
+        }
+        System.arraycopy(cellStart, 1, cellStart, 0, cellCount);
+        cellStart[cellCount] = n;
+    }
+
+    // Visit every pair closer than maxDist, which must not exceed the cell size used in build()
+    public void forEachPair(double maxDist, PairVisitor visitor) {
+        double maxDistSq = maxDist * maxDist;
+        int cells = cellsPerAxis;
+        for (int cz = 0; cz < cells; cz++) {
+            for (int cy = 0; cy < cells; cy++) {
+                for (int cx = 0; cx < cells; cx++) {
+                    int cell = cellIndex(cx, cy, cz);
+                    int start = cellStart[cell];
+                    int end = cellStart[cell + 1];
+                    // Pairs inside the cell
+                    for (int a = start; a < end; a++) {
+                        int i = cellParticles[a];
+                        for (int b = a + 1; b < end; b++) {
+                            visitIfClose(i, cellParticles[b], maxDistSq, visitor);
+                        }
+                    }
+                    // Pairs with half of the neighbouring cells
+                    for (int[] offset : HALF_SHELL) {
+                        int nx = cx + offset[0], ny = cy + offset[1], nz = cz + offset[2];
+                        if (nx < 0 || ny < 0 || nz < 0 || nx >= cells || ny >= cells || nz >= cells) {
+                            continue;
+                        }
+                        int neighbour = cellIndex(nx, ny, nz);
+                        int neighbourEnd = cellStart[neighbour + 1];
+                        for (int a = start; a < end; a++) {
+                            int i = cellParticles[a];
+                            for (int b = cellStart[neighbour]; b < neighbourEnd; b++) {
+                                visitIfClose(i, cellParticles[b], maxDistSq, visitor);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitIfClose(int i, int j, double maxDistSq, PairVisitor visitor) {
+        double dx = x[j] - x[i];
+        double dy = y[j] - y[i];
+        double dz = z[j] - z[i];
+        double distSq = dx * dx + dy * dy + dz * dz;
+        if (distSq < maxDistSq) {
+            visitor.visit(Math.min(i, j), Math.max(i, j), distSq);
+        }
+    }
+
+    public int getCellsPerAxis() {
+        return cellsPerAxis;
+    }
+
+    // Cell side length actually used, at least the requested cell size unless capped
+    public double getCellSize() {
+        return 1 / inverseCellSize;
+    }
+
+    private int axisCell(double coordinate) {
+        int cell = (int) ((coordinate - origin) * inverseCellSize);
+        return Math.max(0, Math.min(cellsPerAxis - 1, cell));
+    }
+
+    private int cellIndex(int cx, int cy, int cz) {
+        return (cz * cellsPerAxis + cy) * cellsPerAxis + cx;
+    }
+}
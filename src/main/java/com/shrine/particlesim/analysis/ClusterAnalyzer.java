@@ -0,0 +1,23 @@
+package com.shrine.particlesim.analysis;
+
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Runs a {@link ClusterDetector} over each snapshot of an {@link AnalyticsPipeline}. The
+ * detector keeps cluster ids between calls, so one analyzer belongs to one pipeline. Used from
+ * the analytics thread only.
+ */
+public class ClusterAnalyzer implements AnalyticsPipeline.Analyzer<ClusterReport> {
+    private final ClusterDetector detector;
+    private final ParticleArrays state = new ParticleArrays();
+
+    public ClusterAnalyzer(ClusterDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    public ClusterReport analyze(ParticleSnapshot snapshot, long dropped) {
+        snapshot.copyTo(state);
+        return detector.detect(state, snapshot.boundarySize, snapshot.constants, snapshot.step);
+    }
+}
@@ -0,0 +1,206 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.PairPotential;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Groups particles into clusters with union-find over neighbour pairs closer than a link
+ * distance (e.g. the strong-force outer radius or the collision radius). With the binding
+ * check on, a pair is only linked when its relative kinetic energy plus pair potential is
+ * negative. Neighbours come from a {@link CellGrid}, so a frame costs O(N).
+ *
+ * <p>All buffers are kept between frames, and cluster ids carry over: a cluster inherits the
+ * id of the first of its members (by index) whose previous cluster's id is still unclaimed,
+ * so a nucleus keeps its id while it gains or loses particles.
+ */
+public class ClusterDetector {
+    private static final int SIZE_BUCKETS = 32;
+
+    private final double linkDistance;
+    private final boolean bindingCheck;
+    private final CellGrid grid = new CellGrid();
+    private final CellGrid.PairVisitor linkVisitor = this::link;
+
+    private int[] parent = new int[0];
+    private int[] rootSize = new int[0];
+    private int[] rootProtons = new int[0];
+    private int[] rootNeutrons = new int[0];
+    private int[] rootElectrons = new int[0];
+    private double[] rootX = new double[0];
+    private double[] rootY = new double[0];
+    private double[] rootZ = new double[0];
+    private int[] rootId = new int[0];
+    private int[] previousId = new int[0];
+    private int[] idClaimedFrame = new int[64];
+    private int previousParticleCount;
+    private int previousClusterCount;
+    private int nextId = 1;
+    private int frame;
+
+    // Set for the duration of detect() so the pair visitor needs no captured state
+    private ParticleArrays state;
+    private PhysicsConstants constants;
+
+    public ClusterDetector(double linkDistance, boolean bindingCheck) {
+        this.linkDistance = linkDistance;
+        this.bindingCheck = bindingCheck;
+    }
+
+    public ClusterReport detect(ParticleArrays s, double boundary, PhysicsConstants c, long step) {
+        int n = s.size();
+        ensureCapacity(n);
+        if (n < previousParticleCount) {
+            // Particles were removed, so indices no longer match the previous frame
+            Arrays.fill(previousId, 0);
+            previousClusterCount = 0;
+        }
+        frame++;
+
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        state = s;
+        constants = c;
+        grid.build(s.getX(), s.getY(), s.getZ(), n, boundary, linkDistance);
+        grid.forEachPair(linkDistance, linkVisitor);
+        state = null;
+        constants = null;
+
+        Arrays.fill(rootSize, 0, n, 0);
+        Arrays.fill(rootProtons, 0, n, 0);
+        Arrays.fill(rootNeutrons, 0, n, 0);
+        Arrays.fill(rootElectrons, 0, n, 0);
+        Arrays.fill(rootX, 0, n, 0);
+        Arrays.fill(rootY, 0, n, 0);
+        Arrays.fill(rootZ, 0, n, 0);
+        Arrays.fill(rootId, 0, n, 0);
+        byte[] type = s.getType();
+        for (int i = 0; i < n; i++) {
+            int root = find(i);
+            parent[i] = root;
+            rootSize[root]++;
+            switch (type[i]) {
+                case ParticleArrays.PROTON -> rootProtons[root]++;
+                case ParticleArrays.NEUTRON -> rootNeutrons[root]++;
+                case ParticleArrays.ELECTRON -> rootElectrons[root]++;
+                default -> {
+                }
+            }
+            rootX[root] += s.getX()[i];
+            rootY[root] += s.getY()[i];
+            rootZ[root] += s.getZ()[i];
+        }
+
+        // Carry ids over from the previous frame, then number the new clusters
+        int inherited = 0;
+        for (int i = 0; i < n; i++) {
+            int root = parent[i];
+            int id = previousId[i];
+            if (rootSize[root] > 1 && rootId[root] == 0 && id > 0 && idClaimedFrame[id] != frame) {
+                rootId[root] = id;
+                idClaimedFrame[id] = frame;
+                inherited++;
+            }
+        }
+        int formed = 0;
+        List<ClusterReport.Cluster> clusters = new ArrayList<>();
+        long[] sizeDistribution = new long[SIZE_BUCKETS];
+        for (int i = 0; i < n; i++) {
+            if (parent[i] != i) {
+                continue;
+            }
+            int size = rootSize[i];
+            sizeDistribution[31 - Integer.numberOfLeadingZeros(size)]++;
+            if (size == 1) {
+                continue;
+            }
+            if (rootId[i] == 0) {
+                rootId[i] = claimNewId();
+                formed++;
+            }
+            clusters.add(new ClusterReport.Cluster(rootId[i], size, rootProtons[i], rootNeutrons[i],
+                    rootElectrons[i], rootX[i] / size, rootY[i] / size, rootZ[i] / size));
+        }
+        for (int i = 0; i < n; i++) {
+            previousId[i] = rootSize[parent[i]] > 1 ? rootId[parent[i]] : 0;
+        }
+        int dissolved = previousClusterCount - inherited;
+        previousClusterCount = clusters.size();
+        previousParticleCount = n;
+
+        clusters.sort(Comparator.comparingInt(ClusterReport.Cluster::getSize).reversed());
+        return new ClusterReport(step, clusters, sizeDistribution, formed, dissolved);
+    }
+
+    private void link(int i, int j, double distSq) {
+        if (bindingCheck && !isBound(i, j)) {
+            return;
+        }
+        int rootI = find(i);
+        int rootJ = find(j);
+        if (rootI != rootJ) {
+            // Smaller index becomes the root so roots are stable for a given set of links
+            if (rootI < rootJ) {
+                parent[rootJ] = rootI;
+            } else {
+                parent[rootI] = rootJ;
+            }
+        }
+    }
+
+    // Relative kinetic energy in the pair's centre-of-mass frame plus their potential is negative
+    private boolean isBound(int i, int j) {
+        double[] mass = state.getMass();
+        double totalMass = mass[i] + mass[j];
+        if (totalMass == 0) {
+            return false;
+        }
+        double reducedMass = mass[i] * mass[j] / totalMass;
+        double dvx = state.getVx()[j] - state.getVx()[i];
+        double dvy = state.getVy()[j] - state.getVy()[i];
+        double dvz = state.getVz()[j] - state.getVz()[i];
+        double kinetic = 0.5 * reducedMass * (dvx * dvx + dvy * dvy + dvz * dvz);
+        return kinetic + PairPotential.between(state, i, j, constants) < 0;
+    }
+
+    // Path halving
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private int claimNewId() {
+        int id = nextId++;
+        if (id >= idClaimedFrame.length) {
+            idClaimedFrame = Arrays.copyOf(idClaimedFrame, idClaimedFrame.length * 2);
+        }
+        idClaimedFrame[id] = frame;
+        return id;
+    }
+
+    private void ensureCapacity(int n) {
+        if (parent.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, parent.length + (parent.length >> 1));
+        parent = new int[capacity];
+        rootSize = new int[capacity];
+        rootProtons = new int[capacity];
+        rootNeutrons = new int[capacity];
+        rootElectrons = new int[capacity];
+        rootX = new double[capacity];
+        rootY = new double[capacity];
+        rootZ = new double[capacity];
+        rootId = new int[capacity];
+        previousId = Arrays.copyOf(previousId, capacity);
+    }
+}
@@ -0,0 +1,124 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.List;
+
+/**
+ * Clusters found in one frame, largest first. Single particles are not listed but are
+ * counted in the size distribution.
+ */
+public final class ClusterReport {
+    public static final class Cluster {
+        private final int id;
+        private final int size;
+        private final int protons;
+        private final int neutrons;
+        private final int electrons;
+        private final double centerX;
+        private final double centerY;
+        private final double centerZ;
+
+        Cluster(int id, int size, int protons, int neutrons, int electrons, double centerX, double centerY,
+                double centerZ) {
+            this.id = id;
+            this.size = size;
+            this.protons = protons;
+            this.neutrons = neutrons;
+            this.electrons = electrons;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.centerZ = centerZ;
+        }
+
+        // Stable across frames while the cluster keeps most of its members
+        public int getId() {
+            return id;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getProtons() {
+            return protons;
+        }
+
+        public int getNeutrons() {
+            return neutrons;
+        }
+
+        public int getElectrons() {
+            return electrons;
+        }
+
+        // A nucleus: at least one proton bound to at least one other nucleon
+        public boolean isNucleus() {
+            return protons >= 1 && protons + neutrons >= 2;
+        }
+
+        public double getCenterX() {
+            return centerX;
+        }
+
+        public double getCenterY() {
+            return centerY;
+        }
+
+        public double getCenterZ() {
+            return centerZ;
+        }
+    }
+
+    private final long step;
+    private final List<Cluster> clusters;
+    private final long[] sizeDistribution;
+    private final int formed;
+    private final int dissolved;
+
+    ClusterReport(long step, List<Cluster> clusters, long[] sizeDistribution, int formed, int dissolved) {
+        this.step = step;
+        this.clusters = List.copyOf(clusters);
+        this.sizeDistribution = sizeDistribution.clone();
+        this.formed = formed;
+        this.dissolved = dissolved;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    public int getClusterCount() {
+        return clusters.size();
+    }
+
+    public int getLargestSize() {
+        return clusters.isEmpty() ? 1 : clusters.get(0).getSize();
+    }
+
+    public int getNucleusCount() {
+        int count = 0;
+        for (Cluster cluster : clusters) {
+            if (cluster.isNucleus()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Number of clusters by size bucket: bucket k holds sizes in [2^k, 2^(k+1))
+    public long[] getSizeDistribution() {
+        return sizeDistribution.clone();
+    }
+
+    // Clusters that got a new id this frame, and ids from the previous frame that disappeared
+    public int getFormed() {
+        return formed;
+    }
+
+    public int getDissolved() {
+        return dissolved;
+    }
+}
@@ -0,0 +1,78 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.Arrays;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Copy of the particles at one step (everything but forces and ids) and the constants in force,
+ * handed from the simulation thread to the analytics thread. Snapshots are pooled and their
+ * arrays reused.
+ */
+public final class ParticleSnapshot {
+    long step;
+    double boundarySize;
+    PhysicsConstants constants;
+    int size;
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] z = new double[0];
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    double[] vz = new double[0];
+    double[] mass = new double[0];
+    double[] charge = new double[0];
+    double[] radius = new double[0];
+    byte[] type = new byte[0];
+
+    void copyFrom(Simulation simulation) {
+        ParticleArrays state = simulation.getState();
+        int n = state.size();
+        if (x.length < n) {
+            int capacity = Math.max(n, x.length + (x.length >> 1));
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            vx = Arrays.copyOf(vx, capacity);
+            vy = Arrays.copyOf(vy, capacity);
+            vz = Arrays.copyOf(vz, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            charge = Arrays.copyOf(charge, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            type = Arrays.copyOf(type, capacity);
+        }
+        System.arraycopy(state.getX(), 0, x, 0, n);
+        System.arraycopy(state.getY(), 0, y, 0, n);
+        System.arraycopy(state.getZ(), 0, z, 0, n);
+        System.arraycopy(state.getVx(), 0, vx, 0, n);
+        System.arraycopy(state.getVy(), 0, vy, 0, n);
+        System.arraycopy(state.getVz(), 0, vz, 0, n);
+        System.arraycopy(state.getMass(), 0, mass, 0, n);
+        System.arraycopy(state.getCharge(), 0, charge, 0, n);
+        System.arraycopy(state.getRadius(), 0, radius, 0, n);
+        System.arraycopy(state.getType(), 0, type, 0, n);
+        size = n;
+        step = simulation.getStepCount();
+        boundarySize = simulation.getBoundarySize();
+        constants = simulation.getConstants();
+    }
+
+    // Refill out with the snapshot's particles, in the same order, for code that works on ParticleArrays
+    void copyTo(ParticleArrays out) {
+        out.clear();
+        out.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            out.add(x[i], y[i], z[i], vx[i], vy[i], vz[i], charge[i], mass[i], radius[i], type[i]);
+        }
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public int size() {
+        return size;
+    }
+}
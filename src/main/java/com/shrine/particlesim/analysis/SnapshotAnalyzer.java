@@ -0,0 +1,132 @@
+package com.shrine.particlesim.analysis;
+
+import java.util.Arrays;
+
+import com.shrine.particlesim.Species;
+
+/**
+ * Computes the RDF, per-species speed histograms and radial density profiles of snapshots,
+ * folding each one into exponentially weighted running averages. The RDF only counts pairs
+ * closer than its cut-off, found through a {@link CellGrid}, so a snapshot costs O(N) for
+ * roughly uniform scenes. Used from the analytics thread only.
+ */
+public class SnapshotAnalyzer implements AnalyticsPipeline.Analyzer<AnalyticsResult> {
+    private static final int SPECIES_ROWS = Species.values().length + 1;
+
+    private final double rdfMaxDistance;
+    private final int rdfBins;
+    private final double speedMax;
+    private final int speedBins;
+    private final int densityBins;
+    private final double weight; // Weight of the newest snapshot in the running averages
+
+    private final CellGrid grid = new CellGrid();
+    private final long[] pairCounts;
+    private final double[] rdf;
+    private final double[][] speedHistograms;
+    private final double[] meanSpeeds;
+    private final double[][] densityProfiles;
+    private final long[][] speedCounts;
+    private final long[][] densityCounts;
+    private final int[] speciesCounts = new int[SPECIES_ROWS];
+    private final double[] speedSums = new double[SPECIES_ROWS];
+    private long analyzed;
+
+    public SnapshotAnalyzer() {
+        this(100, 50, 100, 40, 30, 0.2);
+    }
+
+    public SnapshotAnalyzer(double rdfMaxDistance, int rdfBins, double speedMax, int speedBins, int densityBins,
+                            double weight) {
+        this.rdfMaxDistance = rdfMaxDistance;
+        this.rdfBins = rdfBins;
+        this.speedMax = speedMax;
+        this.speedBins = speedBins;
+        this.densityBins = densityBins;
+        this.weight = weight;
+        this.pairCounts = new long[rdfBins];
+        this.rdf = new double[rdfBins];
+        this.speedHistograms = new double[SPECIES_ROWS][speedBins];
+        this.meanSpeeds = new double[SPECIES_ROWS];
+        this.densityProfiles = new double[SPECIES_ROWS][densityBins];
+        this.speedCounts = new long[SPECIES_ROWS][speedBins];
+        this.densityCounts = new long[SPECIES_ROWS][densityBins];
+    }
+
+    @Override
+    public AnalyticsResult analyze(ParticleSnapshot snapshot, long dropped) {
+        int n = snapshot.size;
+        double boundary = snapshot.boundarySize;
+        // The first snapshot replaces the empty averages outright
+        double w = analyzed == 0 ? 1.0 : weight;
+
+        countPairs(snapshot);
+        double volume = Math.pow(2 * boundary, 3);
+        double rdfBinWidth = rdfMaxDistance / rdfBins;
+        double totalPairs = n * (n - 1) / 2.0;
+        for (int k = 0; k < rdfBins; k++) {
+            double inner = k * rdfBinWidth;
+            double outer = inner + rdfBinWidth;
+            double shellVolume = 4.0 / 3.0 * Math.PI * (outer * outer * outer - inner * inner * inner);
+            double expected = totalPairs * shellVolume / volume;
+            double g = expected > 0 ? pairCounts[k] / expected : 0;
+            rdf[k] += w * (g - rdf[k]);
+        }
+
+        countSpeedsAndDensity(snapshot);
+        double densityBinWidth = Math.sqrt(3) * boundary / densityBins;
+        for (int s = 0; s < SPECIES_ROWS; s++) {
+            int count = speciesCounts[s];
+            double mean = count > 0 ? speedSums[s] / count : 0;
+            meanSpeeds[s] += w * (mean - meanSpeeds[s]);
+            for (int k = 0; k < speedBins; k++) {
+                double fraction = count > 0 ? speedCounts[s][k] / (double) count : 0;
+                speedHistograms[s][k] += w * (fraction - speedHistograms[s][k]);
+            }
+            for (int k = 0; k < densityBins; k++) {
+                double inner = k * densityBinWidth;
+                double outer = inner + densityBinWidth;
+                double shellVolume = 4.0 / 3.0 * Math.PI * (outer * outer * outer - inner * inner * inner);
+                double density = densityCounts[s][k] / shellVolume;
+                densityProfiles[s][k] += w * (density - densityProfiles[s][k]);
+            }
+        }
+        analyzed++;
+        return new AnalyticsResult(snapshot.step, analyzed, dropped, rdfBinWidth, rdf, speedMax / speedBins,
+                speedHistograms, meanSpeeds, densityBinWidth, densityProfiles);
+    }
+
+    private void countPairs(ParticleSnapshot snapshot) {
+        Arrays.fill(pairCounts, 0);
+        grid.build(snapshot.x, snapshot.y, snapshot.z, snapshot.size, snapshot.boundarySize, rdfMaxDistance);
+        double binsPerUnit = rdfBins / rdfMaxDistance;
+        grid.forEachPair(rdfMaxDistance, (i, j, distSq) -> {
+            int bin = (int) (Math.sqrt(distSq) * binsPerUnit);
+            if (bin < rdfBins) {
+                pairCounts[bin]++;
+            }
+        });
+    }
+
+    private void countSpeedsAndDensity(ParticleSnapshot snapshot) {
+        Arrays.fill(speciesCounts, 0);
+        Arrays.fill(speedSums, 0);
+        for (int s = 0; s < SPECIES_ROWS; s++) {
+            Arrays.fill(speedCounts[s], 0);
+            Arrays.fill(densityCounts[s], 0);
+        }
+        double speedBinsPerUnit = speedBins / speedMax;
+        double densityBinsPerUnit = densityBins / (Math.sqrt(3) * snapshot.boundarySize);
+        for (int i = 0; i < snapshot.size; i++) {
+            int s = Math.min(snapshot.type[i], SPECIES_ROWS - 1);
+            double speed = Math.sqrt(snapshot.vx[i] * snapshot.vx[i] + snapshot.vy[i] * snapshot.vy[i]
+                    + snapshot.vz[i] * snapshot.vz[i]);
+            speciesCounts[s]++;
+            speedSums[s] += speed;
+            speedCounts[s][Math.min(speedBins - 1, (int) (speed * speedBinsPerUnit))]++;
+            double radius = Math.sqrt(snapshot.x[i] * snapshot.x[i] + snapshot.y[i] * snapshot.y[i]
+                    + snapshot.z[i] * snapshot.z[i]);
+            densityCounts[s][Math.min(densityBins - 1, (int) (radius * densityBinsPerUnit))]++;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.shrine.particlesim.checkpoint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.diagnostics.StepListener;
+
+/**
+ * Writes a checkpoint every few steps, or at the next step after {@link #requestCheckpoint()}.
+ * The stepping thread only copies the state; the file is written on a background thread.
+ * While a write is still running the next checkpoint is skipped rather than queued, so a slow
+ * disk never holds up the simulation.
+ */
+public class AutoCheckpointer implements StepListener, AutoCloseable {
+    private final Path file;
+    private final int interval;
+    private final Consumer<Checkpoint> viewState;
+    private final ExecutorService executor;
+    // Reused; nothing captures into it while a write is running
+    private final Checkpoint checkpoint = new Checkpoint();
+    private volatile boolean writing;
+    private volatile boolean requested;
+    private volatile long written;
+    private volatile long skipped;
+    private volatile long lastWrittenStep = -1;
+
+    /**
+     * @param viewState called on the stepping thread after each capture to add state the
+     *                  simulation does not own (timestep, camera, random generator); may be null
+     */
+    public AutoCheckpointer(Path file, int interval, Consumer<Checkpoint> viewState) {
+        this.file = file;
+        this.interval = Math.max(1, interval);
+        this.viewState = viewState;
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void requestCheckpoint() {
+        requested = true;
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        if (!requested && simulation.getStepCount() % interval != 0) {
+            return;
+        }
+        if (writing) {
+            skipped++; // Only the simulation thread writes this
+            return;
+        }
+        requested = false;
+        checkpoint.captureFrom(simulation);
+        if (viewState != null) {
+            viewState.accept(checkpoint);
+        }
+        writing = true;
+        executor.execute(() -> {
+            try {
+                CheckpointFile.write(checkpoint, file);
+                lastWrittenStep = checkpoint.getStep();
+                written++;
+            } catch (IOException e) {
+                System.err.println("Could not write checkpoint " + file + ": " + e.getMessage());
+            } finally {
+                writing = false;
+            }
+        });
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getCheckpointsWritten() {
+        return written;
+    }
+
+    public long getCheckpointsSkipped() {
+        return skipped;
+    }
+
+    // Step of the newest checkpoint on disk, or -1 before the first one
+    public long getLastWrittenStep() {
+        return lastWrittenStep;
+    }
+
+    // Waits for a running write to finish
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shrine.particlesim.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Everything needed to resume a run: the particles (including ids), constants, boundary size
+ * and step count from the {@link Simulation}, plus view state the simulation does not own:
+ * the timestep, camera and random generator. Checkpoints can be reused; capturing into an
+ * existing one only allocates when the particle count grows.
+ */
+public final class Checkpoint {
+    private static final ObjectInputFilter RANDOM_ONLY = ObjectInputFilter.Config.createFilter("java.util.Random;!*");
+
+    final ParticleArrays particles = new ParticleArrays();
+    PhysicsConstants constants = PhysicsConstants.DEFAULT;
+    double boundarySize;
+    long step;
+    double timeStep;
+    double cameraX;
+    double cameraY;
+    double cameraZ;
+    double cameraPitch;
+    double cameraYaw;
+    byte[] randomState = new byte[0];
+
+    public static Checkpoint capture(Simulation simulation) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.captureFrom(simulation);
+        return checkpoint;
+    }
+
+    // Copy the simulation's state; call between steps
+    public void captureFrom(Simulation simulation) {
+        particles.copyFrom(simulation.getState());
+        constants = simulation.getConstants();
+        boundarySize = simulation.getBoundarySize();
+        step = simulation.getStepCount();
+    }
+
+    // Replace the simulation's state with this checkpoint's
+    public void restoreTo(Simulation simulation) {
+        simulation.clear();
+        simulation.getState().copyFrom(particles);
+        simulation.setConstants(constants);
+        simulation.setBoundarySize(boundarySize);
+        simulation.setStepCount(step);
+    }
+
+    public int getParticleCount() {
+        return particles.size();
+    }
+
+    public PhysicsConstants getConstants() {
+        return constants;
+    }
+
+    public double getBoundarySize() {
+        return boundarySize;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    public void setTimeStep(double timeStep) {
+        this.timeStep = timeStep;
+    }
+
+    // Camera position and rotation angles in degrees
+    public void setCamera(double x, double y, double z, double pitch, double yaw) {
+        cameraX = x;
+        cameraY = y;
+        cameraZ = z;
+        cameraPitch = pitch;
+        cameraYaw = yaw;
+    }
+
+    public double getCameraX() {
+        return cameraX;
+    }
+
+    public double getCameraY() {
+        return cameraY;
+    }
+
+    public double getCameraZ() {
+        return cameraZ;
+    }
+
+    public double getCameraPitch() {
+        return cameraPitch;
+    }
+
+    public double getCameraYaw() {
+        return cameraYaw;
+    }
+
+    // Store the generator's exact state, so a resumed run draws the same numbers
+    public void setRandom(Random random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save random state", e);
+        }
+        randomState = bytes.toByteArray();
+    }
+
+    // A generator in the stored state, or null if none was stored
+    public Random restoreRandom() {
+        if (randomState.length == 0) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(randomState))) {
+            in.setObjectInputFilter(RANDOM_ONLY); // Checkpoint files may come from anywhere
+            return (Random) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("Could not restore random state: " + e.getMessage());
+            return null;
+        }
+    }
+}
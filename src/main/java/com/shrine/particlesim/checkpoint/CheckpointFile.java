@@ -0,0 +1,175 @@
+package com.shrine.particlesim.checkpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Reads and writes {@link Checkpoint}s as one bulk, little-endian binary dump through a memory
+ * mapping.
+ *
+ * <pre>
+ * header   magic "PSIMCKPT", int version, int header size, long payload size,
+ *          long CRC-32C of the payload, int particle count, padded to HEADER_BYTES
+ * payload  long step, double boundary size, double timestep, 6 doubles of constants,
+ *          5 doubles of camera, int next id, int random state length, random state,
+ *          then columns x, y, z, vx, vy, vz, mass, charge, radius (doubles), id (ints),
+ *          type (bytes); the random state and every column are padded to 8 bytes
+ * </pre>
+ *
+ * A checkpoint is written to a temporary file and moved over the target, so a crash while
+ * writing leaves the previous checkpoint intact.
+ */
+public final class CheckpointFile {
+    private static final byte[] MAGIC = "PSIMCKPT".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SCALARS_BYTES = 8 + 8 + 8 + 6 * 8 + 5 * 8 + 4 + 4;
+    private static final int DOUBLE_COLUMNS = 9;
+
+    private CheckpointFile() {
+    }
+
+    public static void write(Checkpoint checkpoint, Path file) throws IOException {
+        ParticleArrays p = checkpoint.particles;
+        int n = p.size();
+        long payloadBytes = SCALARS_BYTES + padded(checkpoint.randomState.length)
+                + DOUBLE_COLUMNS * 8L * n + padded(4L * n) + padded(n);
+        if (HEADER_BYTES + payloadBytes > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint of " + n + " particles is too large for one file");
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + payloadBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(HEADER_BYTES);
+            buffer.putLong(checkpoint.step);
+            buffer.putDouble(checkpoint.boundarySize);
+            buffer.putDouble(checkpoint.timeStep);
+            PhysicsConstants c = checkpoint.constants;
+            buffer.putDouble(c.getStrongForceConstant());
+            buffer.putDouble(c.getGravityConstant());
+            buffer.putDouble(c.getCoulombConstant());
+            buffer.putDouble(c.getStrongForceInnerRadius());
+            buffer.putDouble(c.getStrongForceOuterRadius());
+            buffer.putDouble(c.getMaxSpeed());
+            buffer.putDouble(checkpoint.cameraX);
+            buffer.putDouble(checkpoint.cameraY);
+            buffer.putDouble(checkpoint.cameraZ);
+            buffer.putDouble(checkpoint.cameraPitch);
+            buffer.putDouble(checkpoint.cameraYaw);
+            buffer.putInt(p.getNextId());
+            buffer.putInt(checkpoint.randomState.length);
+            buffer.put(checkpoint.randomState);
+            pad(buffer);
+            for (double[] column : doubleColumns(p)) {
+                buffer.asDoubleBuffer().put(column, 0, n);
+                buffer.position(buffer.position() + 8 * n);
+            }
+            buffer.asIntBuffer().put(p.getId(), 0, n);
+            buffer.position(buffer.position() + 4 * n);
+            pad(buffer);
+            buffer.put(p.getType(), 0, n);
+            pad(buffer);
+
+            buffer.put(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, HEADER_BYTES);
+            buffer.putLong(16, payloadBytes);
+            buffer.putLong(24, checksum(buffer, payloadBytes));
+            buffer.putInt(32, n);
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Throws IOException if the file is not a checkpoint or its checksum does not match
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a checkpoint");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            for (int b = 0; b < MAGIC.length; b++) {
+                if (buffer.get(b) != MAGIC[b]) {
+                    throw new IOException(file + " is not a checkpoint");
+                }
+            }
+            if (buffer.getInt(8) != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + buffer.getInt(8));
+            }
+            long payloadBytes = buffer.getLong(16);
+            if (HEADER_BYTES + payloadBytes != channel.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            if (checksum(buffer, payloadBytes) != buffer.getLong(24)) {
+                throw new IOException(file + " is corrupt (checksum mismatch)");
+            }
+            int n = buffer.getInt(32);
+
+            Checkpoint checkpoint = new Checkpoint();
+            buffer.position(HEADER_BYTES);
+            checkpoint.step = buffer.getLong();
+            checkpoint.boundarySize = buffer.getDouble();
+            checkpoint.timeStep = buffer.getDouble();
+            checkpoint.constants = new PhysicsConstants(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            checkpoint.cameraX = buffer.getDouble();
+            checkpoint.cameraY = buffer.getDouble();
+            checkpoint.cameraZ = buffer.getDouble();
+            checkpoint.cameraPitch = buffer.getDouble();
+            checkpoint.cameraYaw = buffer.getDouble();
+            int nextId = buffer.getInt();
+            checkpoint.randomState = new byte[buffer.getInt()];
+            buffer.get(checkpoint.randomState);
+            pad(buffer);
+
+            ParticleArrays p = checkpoint.particles;
+            p.setSize(n);
+            p.setNextId(nextId);
+            for (double[] column : doubleColumns(p)) {
+                buffer.asDoubleBuffer().get(column, 0, n);
+                buffer.position(buffer.position() + 8 * n);
+            }
+            buffer.asIntBuffer().get(p.getId(), 0, n);
+            buffer.position(buffer.position() + 4 * n);
+            pad(buffer);
+            buffer.get(p.getType(), 0, n);
+            p.clearForces();
+            return checkpoint;
+        }
+    }
+
+    private static double[][] doubleColumns(ParticleArrays p) {
+        return new double[][] {p.getX(), p.getY(), p.getZ(), p.getVx(), p.getVy(), p.getVz(),
+                p.getMass(), p.getCharge(), p.getRadius()};
+    }
+
+    private static long checksum(ByteBuffer buffer, long payloadBytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(HEADER_BYTES, (int) payloadBytes));
+        return crc.getValue();
+    }
+
+    private static long padded(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static void pad(ByteBuffer buffer) {
+        buffer.position((int) padded(buffer.position()));
+    }
+}
@@ -0,0 +1,260 @@
+package com.shrine.particlesim.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.checkpoint.AutoCheckpointer;
+import com.shrine.particlesim.checkpoint.Checkpoint;
+import com.shrine.particlesim.checkpoint.CheckpointFile;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.diagnostics.MetricsServer;
+import com.shrine.particlesim.diagnostics.SimulationMetrics;
+import com.shrine.particlesim.diagnostics.StepProfiler;
+import com.shrine.particlesim.recording.SharedFramePublisher;
+import com.shrine.particlesim.recording.TrajectoryRecorder;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+import com.shrine.particlesim.scenario.ScenarioGenerator;
+import com.shrine.particlesim.scenario.ScenarioSpec;
+
+/**
+ * Batch entry point for machines without a display: runs a scenario (or resumes a checkpoint)
+ * for a fixed number of steps as fast as the backend goes, with the viewer's outputs available
+ * as options, and prints a JSON summary. Nothing here touches {@code Main} or any other JavaFX
+ * class, so the JavaFX runtime is never loaded.
+ *
+ * <pre>
+ * java -cp ... com.shrine.particlesim.cli.HeadlessRunner
+ *     [--scenario startup | --scenario scene.json | --particles N | --resume run.psim] [--seed 42] [--boundary 500]
+ *     [--steps 1000] [--timestep 0.1667] [--threads N] [--backend name[:params]]
+ *     [--record run.traj [--record-every 1] [--record-bits 0]]
+ *     [--checkpoint run.psim [--checkpoint-every 600]]
+ *     [--metrics-port 9090] [--ring frames.ring] [--summary summary.json]
+ * </pre>
+ *
+ * A {@code --scenario} ending in {@code .json} is a {@link ScenarioSpec} file; its seed,
+ * boundary and constants replace the defaults and it is generated on {@code --threads} threads.
+ * Without {@code --backend} the autotuner picks one for the thread count; with it,
+ * {@code --threads} is added to the backend parameters. The checkpoint is also written once
+ * more after the last step. Exits with status 1 if the run or an output failed.
+ */
+public final class HeadlessRunner {
+    private static final double BASE_TIMESTEP = 0.166666666667;
+    private static final int MAX_LATENCY_SAMPLES = 1 << 20;
+
+    private HeadlessRunner() {
+    }
+
+    public static void main(String[] args) {
+        String scenario = BuiltInScenarios.STARTUP;
+        int particles = 0;
+        Path resume = null;
+        long seed = 42;
+        double boundary = 500;
+        long steps = 1000;
+        double timeStep = Double.NaN;
+        int threads = 0;
+        String backendSpec = null;
+        Path record = null;
+        int recordEvery = 1;
+        int recordBits = 0;
+        Path checkpoint = null;
+        int checkpointEvery = 600;
+        int metricsPort = -1;
+        Path ring = null;
+        Path summary = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scenario" -> scenario = args[++i];
+                case "--particles" -> particles = Integer.parseInt(args[++i]);
+                case "--resume" -> resume = Path.of(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--boundary" -> boundary = Double.parseDouble(args[++i]);
+                case "--steps" -> steps = Long.parseLong(args[++i]);
+                case "--timestep" -> timeStep = Double.parseDouble(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--backend" -> backendSpec = args[++i];
+                case "--record" -> record = Path.of(args[++i]);
+                case "--record-every" -> recordEvery = Integer.parseInt(args[++i]);
+                case "--record-bits" -> recordBits = Integer.parseInt(args[++i]);
+                case "--checkpoint" -> checkpoint = Path.of(args[++i]);
+                case "--checkpoint-every" -> checkpointEvery = Integer.parseInt(args[++i]);
+                case "--metrics-port" -> metricsPort = Integer.parseInt(args[++i]);
+                case "--ring" -> ring = Path.of(args[++i]);
+                case "--summary" -> summary = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        List<AutoCloseable> outputs = new ArrayList<>();
+        JSONObject result = new JSONObject();
+        boolean failed = false;
+        int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        try (Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, boundary, null)) {
+            if (resume != null) {
+                Checkpoint loaded = CheckpointFile.read(resume);
+                loaded.restoreTo(simulation);
+                if (Double.isNaN(timeStep) && loaded.getTimeStep() > 0) {
+                    timeStep = loaded.getTimeStep() * BASE_TIMESTEP;
+                }
+                result.put("resumedFrom", resume.toString());
+            } else if (particles > 0) {
+                BuiltInScenarios.uniform(simulation.getState(), new Random(seed), boundary, particles);
+                result.put("scenario", "uniform-" + particles);
+            } else if (scenario.endsWith(".json")) {
+                ScenarioSpec spec = ScenarioSpec.read(Path.of(scenario));
+                boundary = spec.getBoundarySize();
+                simulation.setBoundarySize(boundary);
+                simulation.setConstants(spec.getConstants());
+                long generateStart = System.nanoTime();
+                ScenarioGenerator.generate(spec, simulation.getState(), threadCount);
+                System.err.printf("Generated %d particles in %.2f s%n", simulation.getParticleCount(),
+                        (System.nanoTime() - generateStart) / 1e9);
+                result.put("scenario", scenario);
+            } else {
+                BuiltInScenarios.populate(scenario, simulation.getState(), new Random(seed), boundary);
+                result.put("scenario", scenario);
+            }
+            if (Double.isNaN(timeStep)) {
+                timeStep = BASE_TIMESTEP;
+            }
+            simulation.setBackend(createBackend(backendSpec, threads, simulation.getParticleCount(), threadCount,
+                    simulation.getConstants()));
+
+            final double stepSize = timeStep;
+            TrajectoryRecorder recorder = null;
+            if (record != null) {
+                // Batch runs would rather wait for the disk than lose frames
+                recorder = new TrajectoryRecorder(record, recordEvery, TrajectoryRecorder.Backpressure.BLOCK,
+                        recordBits, 30);
+                outputs.add(recorder);
+                simulation.addStepListener(recorder);
+            }
+            AutoCheckpointer checkpointer = null;
+            if (checkpoint != null) {
+                // Same timestep convention as the viewer: a multiple of the base step
+                checkpointer = new AutoCheckpointer(checkpoint, checkpointEvery,
+                        c -> c.setTimeStep(stepSize / BASE_TIMESTEP));
+                outputs.add(checkpointer);
+                simulation.addStepListener(checkpointer);
+            }
+            if (metricsPort >= 0) {
+                SimulationMetrics metrics = new SimulationMetrics();
+                MetricsServer server = new MetricsServer(metricsPort, metrics);
+                server.start();
+                outputs.add(server);
+                simulation.setDiagnosticsEnabled(true);
+                simulation.addStepListener(metrics);
+                System.err.println("Metrics: http://localhost:" + server.getPort() + "/metrics");
+            }
+            SharedFramePublisher publisher = null;
+            if (ring != null) {
+                publisher = new SharedFramePublisher(ring, Math.max(1024, 2 * simulation.getParticleCount()),
+                        SharedFramePublisher.DEFAULT_SLOTS, 1);
+                outputs.add(publisher);
+                simulation.addStepListener(publisher);
+            }
+
+            System.err.println("Running " + steps + " steps of " + simulation.getParticleCount() + " particles on "
+                    + BackendAutotuner.describe(simulation.getBackend()));
+            long[] stepNanos = new long[(int) Math.min(steps, MAX_LATENCY_SAMPLES)];
+            long start = System.nanoTime();
+            for (long s = 0; s < steps; s++) {
+                simulation.step(stepSize);
+                stepNanos[(int) (s % stepNanos.length)] = simulation.getLastStepNanos();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            for (int i = outputs.size() - 1; i >= 0; i--) {
+                outputs.get(i).close();
+            }
+            outputs.clear();
+            // After the auto-checkpointer has finished, so the two writes never overlap
+            if (checkpoint != null) {
+                Checkpoint last = Checkpoint.capture(simulation);
+                last.setTimeStep(stepSize / BASE_TIMESTEP);
+                CheckpointFile.write(last, checkpoint);
+            }
+            if (recorder != null && recorder.getFailure() != null) {
+                System.err.println("Recording failed: " + recorder.getFailure().getMessage());
+                failed = true;
+            }
+
+            Arrays.sort(stepNanos);
+            double seconds = elapsed / 1e9;
+            result.put("backend", BackendAutotuner.describe(simulation.getBackend()));
+            result.put("particles", simulation.getParticleCount());
+            result.put("steps", steps);
+            result.put("finalStep", simulation.getStepCount());
+            result.put("timeStep", stepSize);
+            result.put("seconds", seconds);
+            result.put("stepsPerSec", seconds > 0 ? steps / seconds : 0);
+            result.put("p50Millis", StepProfiler.percentile(stepNanos, stepNanos.length, 0.50) / 1e6);
+            result.put("p99Millis", StepProfiler.percentile(stepNanos, stepNanos.length, 0.99) / 1e6);
+            result.put("kineticEnergy", simulation.getState().kineticEnergy());
+            if (recorder != null) {
+                result.put("recording", new JSONObject().put("file", record.toString())
+                        .put("frames", recorder.getFramesWritten()).put("bytes", recorder.getBytesWritten()));
+            }
+            if (checkpointer != null) {
+                result.put("checkpoint", new JSONObject().put("file", checkpoint.toString())
+                        .put("written", checkpointer.getCheckpointsWritten() + 1));
+            }
+            if (publisher != null) {
+                result.put("ring", new JSONObject().put("file", ring.toString())
+                        .put("frames", publisher.getFramesPublished()));
+            }
+        } catch (Exception e) {
+            System.err.println("Run failed: " + e.getMessage());
+            closeQuietly(outputs);
+            System.exit(1);
+        }
+
+        String json = result.toString(2);
+        System.out.println(json);
+        if (summary != null) {
+            try {
+                Files.writeString(summary, json);
+            } catch (IOException e) {
+                System.err.println("Could not write summary: " + e.getMessage());
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    // An explicit backend gets --threads as a parameter; otherwise the autotuner picks for the thread count
+    static ComputeBackend createBackend(String spec, int threads, int particleCount, int threadCount,
+                                        PhysicsConstants constants) {
+        if (spec == null) {
+            return BackendAutotuner.select(particleCount, threadCount, constants);
+        }
+        if (threads > 0 && !spec.contains("threads=")) {
+            spec += (spec.indexOf(':') < 0 ? ":" : ",") + "threads=" + threads;
+        }
+        return BackendAutotuner.create(spec);
+    }
+
+    private static void closeQuietly(List<AutoCloseable> outputs) {
+        for (int i = outputs.size() - 1; i >= 0; i--) {
+            try {
+                outputs.get(i).close();
+            } catch (Exception e) {
+                System.err.println("Error closing output: " + e.getMessage());
+            }
+        }
+    }
+}
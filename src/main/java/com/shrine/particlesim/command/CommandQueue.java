@@ -0,0 +1,118 @@
+package com.shrine.particlesim.command;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Lock-free multi-producer, single-consumer queue of {@link SimulationCommand}s. Any thread can
+ * {@link #submit}; the stepping thread calls {@link #applyPending} between steps, so a
+ * command never races the compute workers and every command is applied whole before the next
+ * step starts. Producers only swap the tail (a linked list with a stub head), so a submit
+ * never blocks and never waits for the simulation.
+ *
+ * <p>A drained batch grows the particle arrays once for all of its spawns, and consecutive
+ * removes are merged into a single compaction pass. A command that throws is reported and
+ * dropped; the rest of the batch is still applied.
+ */
+public final class CommandQueue {
+    private static final class Node {
+        SimulationCommand command;
+        volatile Node next;
+
+        Node(SimulationCommand command) {
+            this.command = command;
+        }
+    }
+
+    private final AtomicReference<Node> tail;
+    private Node head; // Only the consumer touches this
+    private static final int SCRATCH_KEEP_BITS = 1 << 20;
+
+    private BitSet removeScratch = new BitSet();
+    private long failed;
+
+    public CommandQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    public void submit(SimulationCommand command) {
+        Node node = new Node(command);
+        Node previous = tail.getAndSet(node);
+        previous.next = node; // Until this lands the consumer sees the queue ending at previous
+    }
+
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    // Apply every command submitted so far, in order; returns how many were applied
+    public int applyPending(Simulation simulation) {
+        Node first = head.next;
+        if (first == null) {
+            return 0;
+        }
+        // Fix the batch first: commands submitted while it is applied wait for the next step
+        Node last = first;
+        long spawns = first.command.spawnCount();
+        for (Node next = first.next; next != null; next = next.next) {
+            last = next;
+            spawns += next.command.spawnCount();
+        }
+        ParticleArrays state = simulation.getState();
+        if (state.size() + spawns <= Integer.MAX_VALUE - 8) {
+            try {
+                state.ensureCapacity((int) (state.size() + spawns));
+            } catch (OutOfMemoryError e) {
+                // Not enough memory for the whole batch at once; each spawn grows the arrays itself
+            }
+        }
+
+        int applied = 0;
+        while (true) {
+            // Dequeue before applying, so a failing command is dropped instead of retried every step
+            Node node = head.next;
+            head.command = null; // The old stub; let the applied command's arrays go
+            head = node;
+            SimulationCommand command = node.command;
+            try {
+                if (command instanceof SimulationCommand.Remove remove) {
+                    remove.addTo(removeScratch, state.getNextId());
+                    boolean nextIsRemove = node != last && node.next.command instanceof SimulationCommand.Remove;
+                    if (!nextIsRemove) {
+                        flushRemoves(state);
+                    }
+                } else {
+                    command.apply(simulation);
+                }
+                applied++;
+            } catch (RuntimeException e) {
+                failed++;
+                removeScratch.clear();
+                System.err.println("Dropped queued command: " + e);
+            }
+            if (node == last) {
+                break;
+            }
+        }
+        head.command = null;
+        return applied;
+    }
+
+    private void flushRemoves(ParticleArrays state) {
+        state.removeIds(removeScratch);
+        if (removeScratch.size() > SCRATCH_KEEP_BITS) {
+            removeScratch = new BitSet(); // Do not hold on to the words of a one-off huge remove
+        } else {
+            removeScratch.clear();
+        }
+    }
+
+    // Commands that threw when applied and were dropped
+    public long getFailedCount() {
+        return failed;
+    }
+}
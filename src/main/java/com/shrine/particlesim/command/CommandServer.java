@@ -0,0 +1,234 @@
+package com.shrine.particlesim.command;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+
+/**
+ * Accepts JSON commands from external tools over TCP and queues them on the simulation's
+ * {@link CommandQueue}. Each connection gets a virtual thread that reads a stream of JSON
+ * objects (newline-separated or back to back, as the Python socket example sends them):
+ *
+ * <pre>
+ * {"action": "spawn", "position": [x, y, z]}                  z may be left out, type defaults to neutron
+ * {"action": "spawn", "type": "proton", "positions": [[x, y, z], ...], "velocities": [[vx, vy, vz], ...]}
+ * {"action": "spawn", "type": "electron", "count": 1000}      random positions inside the boundary
+ * {"action": "remove", "ids": [3, 17, ...]}
+ * {"action": "clear"}
+ * {"action": "set_constants", "coulombConstant": 4e5, ...}  keys as in {@link PhysicsConstants}; others unchanged
+ * {"action": "set_boundary", "size": 800}
+ * </pre>
+ *
+ * Nothing is sent back for a queued command; a bad command is answered with one line
+ * {@code {"error": "..."}} and the connection stays open. One message spawns or removes at most
+ * {@link #MAX_PARTICLES_PER_COMMAND} particles.
+ */
+public class CommandServer implements AutoCloseable {
+    // Port for Main and the headless runner; the server is off when the property is unset
+    public static final String PORT_PROPERTY = "particlesim.commands.port";
+    // Largest spawn or remove one message may ask for; bigger requests are split by the client
+    public static final int MAX_PARTICLES_PER_COMMAND = 1_000_000;
+
+    private final Simulation simulation;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    public CommandServer(Simulation simulation, InetAddress bind, int port) throws IOException {
+        this.simulation = simulation;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(bind, port));
+        acceptor = Thread.ofVirtual().name("command-accept").start(this::accept);
+    }
+
+    // Starts a server on localhost if the port property is set, otherwise returns null
+    public static CommandServer startFromProperty(Simulation simulation) {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        try {
+            CommandServer server = new CommandServer(simulation, InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(port.trim()));
+            System.out.println("Commands: localhost:" + server.getPort());
+            return server;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start command server on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread.ofVirtual().name("command-client").start(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Command server accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            JSONTokener tokens = new JSONTokener(new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1 << 16));
+            OutputStream out = socket.getOutputStream();
+            while (running) {
+                char c = tokens.nextClean();
+                if (c == 0) {
+                    break; // End of stream
+                }
+                tokens.back();
+                Object value;
+                try {
+                    value = tokens.nextValue();
+                } catch (JSONException e) {
+                    reply(out, e.getMessage());
+                    break; // The stream is out of sync; the client has to reconnect
+                }
+                try {
+                    if (!(value instanceof JSONObject message)) {
+                        throw new IllegalArgumentException("expected a JSON object");
+                    }
+                    simulation.getCommandQueue().submit(parse(message));
+                } catch (JSONException | IllegalArgumentException e) {
+                    reply(out, e.getMessage());
+                }
+            }
+        } catch (IOException | JSONException e) {
+            // Client went away (the tokenizer wraps read errors)
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private static void reply(OutputStream out, String error) throws IOException {
+        out.write((new JSONObject().put("error", error) + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // Turn one message into a command; throws JSONException or IllegalArgumentException for bad input
+    public static SimulationCommand parse(JSONObject message) {
+        String action = message.optString("action", "");
+        return switch (action) {
+            case "spawn" -> parseSpawn(message);
+            case "remove" -> {
+                JSONArray ids = message.getJSONArray("ids");
+                checkSize(ids.length());
+                int[] values = new int[ids.length()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = ids.getInt(i);
+                }
+                yield SimulationCommand.remove(values);
+            }
+            case "clear" -> SimulationCommand.clear();
+            case "set_constants" -> SimulationCommand.updateConstants(
+                    message.optDouble("strongForceConstant"), message.optDouble("gravityConstant"),
+                    message.optDouble("coulombConstant"), message.optDouble("strongForceInnerRadius"),
+                    message.optDouble("strongForceOuterRadius"), message.optDouble("maxSpeed"));
+            case "set_boundary" -> SimulationCommand.setBoundary(message.getDouble("size"));
+            default -> throw new IllegalArgumentException("unknown action \"" + action + "\"");
+        };
+    }
+
+    private static SimulationCommand parseSpawn(JSONObject message) {
+        Species species = Species.fromTypeName(message.optString("type", Species.NEUTRON.getTypeName()));
+        if (message.has("count")) {
+            int count = message.getInt("count");
+            checkSize(count);
+            return SimulationCommand.spawnRandom(species, count, ThreadLocalRandom.current().nextLong());
+        }
+        double[] positions;
+        double[] velocities = null;
+        if (message.has("position")) {
+            positions = vector(message.getJSONArray("position"));
+            if (message.has("velocity")) {
+                velocities = vector(message.getJSONArray("velocity"));
+            }
+        } else {
+            checkSize(message.getJSONArray("positions").length());
+            positions = vectors(message.getJSONArray("positions"));
+            if (message.has("velocities")) {
+                checkSize(message.getJSONArray("velocities").length());
+                velocities = vectors(message.getJSONArray("velocities"));
+            }
+        }
+        return SimulationCommand.spawn(species, positions, velocities);
+    }
+
+    private static void checkSize(int particles) {
+        if (particles > MAX_PARTICLES_PER_COMMAND) {
+            throw new IllegalArgumentException("at most " + MAX_PARTICLES_PER_COMMAND + " particles per command");
+        }
+    }
+
+    private static double[] vectors(JSONArray array) {
+        double[] values = new double[3 * array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            JSONArray vector = array.getJSONArray(i);
+            putVector(vector, values, 3 * i);
+        }
+        return values;
+    }
+
+    private static double[] vector(JSONArray array) {
+        double[] values = new double[3];
+        putVector(array, values, 0);
+        return values;
+    }
+
+    // [x, y] or [x, y, z]
+    private static void putVector(JSONArray vector, double[] values, int offset) {
+        if (vector.length() < 2 || vector.length() > 3) {
+            throw new IllegalArgumentException("vectors need 2 or 3 components");
+        }
+        values[offset] = vector.getDouble(0);
+        values[offset + 1] = vector.getDouble(1);
+        values[offset + 2] = vector.length() == 3 ? vector.getDouble(2) : 0;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        acceptor.interrupt();
+    }
+}
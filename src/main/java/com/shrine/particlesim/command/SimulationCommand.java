@@ -0,0 +1,222 @@
+package com.shrine.particlesim.command;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * A change to the simulation that is queued on a {@link CommandQueue} and applied by the
+ * stepping thread between two steps. Create commands with the static factories.
+ */
+public abstract class SimulationCommand {
+    SimulationCommand() {
+    }
+
+    /**
+     * Add particles of one species.
+     *
+     * @param positions  x, y, z per particle
+     * @param velocities x, y, z per particle, or null to start them at rest
+     */
+    public static SimulationCommand spawn(Species species, double[] positions, double[] velocities) {
+        if (positions.length % 3 != 0 || (velocities != null && velocities.length != positions.length)) {
+            throw new IllegalArgumentException("Positions and velocities need 3 values per particle");
+        }
+        return new Spawn(species, positions.length / 3, positions, velocities, 0);
+    }
+
+    // Add particles at random positions inside the boundary, as the Spawn button does
+    public static SimulationCommand spawnRandom(Species species, int count, long seed) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative particle count");
+        }
+        return new Spawn(species, count, null, null, seed);
+    }
+
+    // Remove the particles with these ids; unknown ids are ignored
+    public static SimulationCommand remove(int... ids) {
+        return new Remove(ids.clone());
+    }
+
+    public static SimulationCommand clear() {
+        return new Clear();
+    }
+
+    public static SimulationCommand setConstants(PhysicsConstants constants) {
+        return new SetConstants(constants);
+    }
+
+    /**
+     * Change some of the constants; a NaN argument keeps the value the simulation has when the
+     * command is applied.
+     */
+    public static SimulationCommand updateConstants(double strongForceConstant, double gravityConstant,
+                                                    double coulombConstant, double strongForceInnerRadius,
+                                                    double strongForceOuterRadius, double maxSpeed) {
+        for (double value : new double[] {strongForceConstant, gravityConstant, coulombConstant,
+                strongForceInnerRadius, strongForceOuterRadius, maxSpeed}) {
+            if (Double.isInfinite(value)) {
+                throw new IllegalArgumentException("Constants must be finite");
+            }
+        }
+        for (double value : new double[] {strongForceInnerRadius, strongForceOuterRadius, maxSpeed}) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Radii and the speed limit must be greater than 0");
+            }
+        }
+        return new UpdateConstants(strongForceConstant, gravityConstant, coulombConstant, strongForceInnerRadius,
+                strongForceOuterRadius, maxSpeed);
+    }
+
+    public static SimulationCommand setBoundary(double size) {
+        if (!(size > 0)) {
+            throw new IllegalArgumentException("Boundary size must be greater than 0");
+        }
+        return new SetBoundary(size);
+    }
+
+    // Particles the command adds, so a batch can grow the arrays once
+    int spawnCount() {
+        return 0;
+    }
+
+    abstract void apply(Simulation simulation);
+
+    static final class Spawn extends SimulationCommand {
+        private final Species species;
+        private final int count;
+        private final double[] positions;
+        private final double[] velocities;
+        private final long seed;
+
+        Spawn(Species species, int count, double[] positions, double[] velocities, long seed) {
+            this.species = species;
+            this.count = count;
+            this.positions = positions;
+            this.velocities = velocities;
+            this.seed = seed;
+        }
+
+        @Override
+        int spawnCount() {
+            return count;
+        }
+
+        @Override
+        void apply(Simulation simulation) {
+            ParticleArrays state = simulation.getState();
+            var event = simulation.beginSpawn();
+            if (positions != null) {
+                for (int i = 0; i < count; i++) {
+                    int k = 3 * i;
+                    if (velocities != null) {
+                        state.add(positions[k], positions[k + 1], positions[k + 2],
+                                velocities[k], velocities[k + 1], velocities[k + 2], species);
+                    } else {
+                        state.add(positions[k], positions[k + 1], positions[k + 2], 0, 0, 0, species);
+                    }
+                }
+            } else {
+                SplittableRandom random = new SplittableRandom(seed);
+                double boundary = simulation.getBoundarySize();
+                for (int i = 0; i < count; i++) {
+                    state.add(random.nextDouble(-boundary, boundary), random.nextDouble(-boundary, boundary),
+                            random.nextDouble(-boundary, boundary), random.nextDouble(-5, 5),
+                            random.nextDouble(-5, 5), random.nextDouble(-5, 5), species);
+                }
+            }
+            simulation.endSpawn(event, species.getTypeName(), count);
+        }
+    }
+
+    static final class Remove extends SimulationCommand {
+        private final int[] ids;
+
+        Remove(int[] ids) {
+            this.ids = ids;
+        }
+
+        // Ids at or above nextId were never handed out, so they cannot grow the set
+        void addTo(BitSet set, int nextId) {
+            for (int id : ids) {
+                if (id >= 0 && id < nextId) {
+                    set.set(id);
+                }
+            }
+        }
+
+        @Override
+        void apply(Simulation simulation) {
+            BitSet set = new BitSet();
+            addTo(set, simulation.getState().getNextId());
+            simulation.getState().removeIds(set);
+        }
+    }
+
+    static final class Clear extends SimulationCommand {
+        @Override
+        void apply(Simulation simulation) {
+            simulation.clear();
+        }
+    }
+
+    static final class SetConstants extends SimulationCommand {
+        private final PhysicsConstants constants;
+
+        SetConstants(PhysicsConstants constants) {
+            this.constants = constants;
+        }
+
+        @Override
+        void apply(Simulation simulation) {
+            simulation.setConstants(constants);
+        }
+    }
+
+    static final class UpdateConstants extends SimulationCommand {
+        private final double strong;
+        private final double gravity;
+        private final double coulomb;
+        private final double inner;
+        private final double outer;
+        private final double maxSpeed;
+
+        UpdateConstants(double strong, double gravity, double coulomb, double inner, double outer, double maxSpeed) {
+            this.strong = strong;
+            this.gravity = gravity;
+            this.coulomb = coulomb;
+            this.inner = inner;
+            this.outer = outer;
+            this.maxSpeed = maxSpeed;
+        }
+
+        @Override
+        void apply(Simulation simulation) {
+            PhysicsConstants c = simulation.getConstants();
+            simulation.setConstants(new PhysicsConstants(
+                    Double.isNaN(strong) ? c.getStrongForceConstant() : strong,
+                    Double.isNaN(gravity) ? c.getGravityConstant() : gravity,
+                    Double.isNaN(coulomb) ? c.getCoulombConstant() : coulomb,
+                    Double.isNaN(inner) ? c.getStrongForceInnerRadius() : inner,
+                    Double.isNaN(outer) ? c.getStrongForceOuterRadius() : outer,
+                    Double.isNaN(maxSpeed) ? c.getMaxSpeed() : maxSpeed));
+        }
+    }
+
+    static final class SetBoundary extends SimulationCommand {
+        private final double size;
+
+        SetBoundary(double size) {
+            this.size = size;
+        }
+
+        @Override
+        void apply(Simulation simulation) {
+            simulation.setBoundarySize(size);
+        }
+    }
+}
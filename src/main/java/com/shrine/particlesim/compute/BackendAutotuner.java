@@ -0,0 +1,222 @@
+package com.shrine.particlesim.compute;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.ServiceLoader;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Picks the fastest {@link ComputeBackend} for this machine and particle count by timing a few
+ * steps of every supported provider/parameter combination on a synthetic scene.
+ * The winner is stored in a properties file keyed by machine and particle-count bucket,
+ * so later launches skip the probing.
+ *
+ * <p>{@code -Dparticlesim.backend=name[:params]} forces a backend, and
+ * {@code -Dparticlesim.autotune.cache=path} moves the cache file.
+ */
+public final class BackendAutotuner {
+    public static final String BACKEND_PROPERTY = "particlesim.backend";
+    public static final String CACHE_PROPERTY = "particlesim.autotune.cache";
+
+    private static final long PROBE_BUDGET_NANOS = 60_000_000L; // per candidate
+    private static final int MIN_PROBE_STEPS = 3;
+    private static final int MAX_PROBE_PARTICLES = 8192;
+    private static final double PROBE_BOUNDARY = 500;
+    private static final double PROBE_TIMESTEP = 0.166666666667;
+
+    private BackendAutotuner() {
+    }
+
+    public static List<ComputeBackendProvider> providers() {
+        List<ComputeBackendProvider> providers = new ArrayList<>();
+        for (ComputeBackendProvider provider : ServiceLoader.load(ComputeBackendProvider.class)) {
+            if (provider.isSupported()) {
+                providers.add(provider);
+            }
+        }
+        return providers;
+    }
+
+    // Create a backend from "name" or "name:params"
+    public static ComputeBackend create(String spec) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        String parameters = colon < 0 ? "" : spec.substring(colon + 1);
+        for (ComputeBackendProvider provider : providers()) {
+            if (provider.getName().equals(name)) {
+                return provider.create(parameters);
+            }
+        }
+        throw new IllegalArgumentException("Unknown or unsupported compute backend: " + name);
+    }
+
+    public static String describe(ComputeBackend backend) {
+        return backend.getParameters().isEmpty() ? backend.getName() : backend.getName() + ":" + backend.getParameters();
+    }
+
+    public static ComputeBackend select(int particleCount, int maxThreads, PhysicsConstants constants) {
+        String forced = System.getProperty(BACKEND_PROPERTY);
+        if (forced != null && !forced.isBlank()) {
+            return create(forced.trim());
+        }
+
+        int bucket = bucketFor(particleCount);
+        String key = machineKey(maxThreads) + ".n" + bucket;
+        Path cacheFile = cacheFile();
+        Properties cache = loadCache(cacheFile);
+        String cached = cache.getProperty(key);
+        if (cached != null) {
+            try {
+                return create(cached);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring stale autotune entry " + key + "=" + cached);
+            }
+        }
+
+        ComputeBackend best = probe(bucket, maxThreads, constants);
+        cache.setProperty(key, describe(best));
+        storeCache(cacheFile, cache);
+        return best;
+    }
+
+    // Time every candidate on a synthetic scene and return the fastest, closing the others
+    public static ComputeBackend probe(int particleCount, int maxThreads, PhysicsConstants constants) {
+        ParticleArrays scene = probeScene(Math.min(particleCount, MAX_PROBE_PARTICLES));
+        ParticleArrays work = new ParticleArrays();
+        ComputeBackend best = null;
+        long bestNanos = Long.MAX_VALUE;
+
+        for (ComputeBackendProvider provider : providers()) {
+            for (String parameters : provider.candidateParameters(maxThreads, scene.size())) {
+                ComputeBackend candidate = provider.create(parameters);
+                long nanos;
+                try {
+                    nanos = timeSteps(candidate, scene, work, constants);
+                } catch (RuntimeException e) {
+                    System.err.println("Backend " + describe(candidate) + " failed during probe: " + e.getMessage());
+                    candidate.close();
+                    continue;
+                }
+                if (nanos < bestNanos) {
+                    if (best != null) {
+                        best.close();
+                    }
+                    best = candidate;
+                    bestNanos = nanos;
+                } else {
+                    candidate.close();
+                }
+            }
+        }
+        if (best == null) {
+            return new ScalarBackend();
+        }
+        return best;
+    }
+
+    // Best single-step time after one warmup step
+    private static long timeSteps(ComputeBackend backend, ParticleArrays scene, ParticleArrays work,
+                                  PhysicsConstants constants) {
+        work.copyFrom(scene);
+        step(backend, work, constants);
+
+        long best = Long.MAX_VALUE;
+        long deadline = System.nanoTime() + PROBE_BUDGET_NANOS;
+        int steps = 0;
+        while (steps < MIN_PROBE_STEPS || System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            step(backend, work, constants);
+            best = Math.min(best, System.nanoTime() - start);
+            steps++;
+        }
+        return best;
+    }
+
+    private static void step(ComputeBackend backend, ParticleArrays state, PhysicsConstants constants) {
+        backend.resetForces(state);
+        backend.computeForces(state, constants);
+        backend.resolveCollisions(state);
+        backend.integrate(state, constants, PROBE_TIMESTEP, PROBE_BOUNDARY);
+    }
+
+    // Equal electron/proton/neutron mix spread over the default boundary, same masses as Main
+    private static ParticleArrays probeScene(int count) {
+        ParticleArrays scene = new ParticleArrays();
+        scene.ensureCapacity(count);
+        Random rand = new Random(42);
+        for (int i = 0; i < count; i++) {
+            scene.x[i] = rand.nextDouble(-PROBE_BOUNDARY, PROBE_BOUNDARY);
+            scene.y[i] = rand.nextDouble(-PROBE_BOUNDARY, PROBE_BOUNDARY);
+            scene.z[i] = rand.nextDouble(-PROBE_BOUNDARY, PROBE_BOUNDARY);
+            scene.vx[i] = rand.nextDouble(-5, 5);
+            scene.vy[i] = rand.nextDouble(-5, 5);
+            scene.vz[i] = rand.nextDouble(-5, 5);
+            switch (i % 3) {
+                case 0 -> setSpecies(scene, i, ParticleArrays.ELECTRON, -1, 10, 3.0);
+                case 1 -> setSpecies(scene, i, ParticleArrays.PROTON, 1, 100, 9.0);
+                default -> setSpecies(scene, i, ParticleArrays.NEUTRON, 0, 100, 9.0);
+            }
+        }
+        scene.setSize(count);
+        return scene;
+    }
+
+    private static void setSpecies(ParticleArrays scene, int i, byte type, double charge, double mass, double radius) {
+        scene.type[i] = type;
+        scene.charge[i] = charge;
+        scene.mass[i] = mass;
+        scene.radius[i] = radius;
+    }
+
+    // Round up to a power of two so nearby particle counts share a cache entry
+    static int bucketFor(int particleCount) {
+        int n = Math.max(64, particleCount);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static String machineKey(int maxThreads) {
+        return System.getProperty("os.arch") + "-" + maxThreads + "t-java" + Runtime.version().feature();
+    }
+
+    private static Path cacheFile() {
+        String override = System.getProperty(CACHE_PROPERTY);
+        if (override != null && !override.isBlank()) {
+            return Path.of(override);
+        }
+        return Path.of(System.getProperty("user.home"), ".particlesim", "autotune.properties");
+    }
+
+    private static Properties loadCache(Path file) {
+        Properties cache = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                cache.load(in);
+            } catch (IOException e) {
+                System.err.println("Could not read autotune cache " + file + ": " + e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    private static void storeCache(Path file, Properties cache) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                cache.store(out, "Particle Sim compute backend autotune results");
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write autotune cache " + file + ": " + e.getMessage());
+        }
+    }
+}
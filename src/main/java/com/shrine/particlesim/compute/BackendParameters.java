@@ -0,0 +1,27 @@
+package com.shrine.particlesim.compute;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Parses "key=value,key=value" parameter strings used by the providers
+final class BackendParameters {
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    BackendParameters(String parameters) {
+        if (parameters == null || parameters.isBlank()) {
+            return;
+        }
+        for (String part : parameters.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Bad backend parameter: " + part);
+            }
+            values.put(part.substring(0, eq).trim(), part.substring(eq + 1).trim());
+        }
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
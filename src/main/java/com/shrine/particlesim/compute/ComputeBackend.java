@@ -0,0 +1,54 @@
+package com.shrine.particlesim.compute;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * One way of running the force and integrate phases of a simulation step.
+ * A step is {@link #resetForces}, {@link #computeForces}, {@link #resolveCollisions}, then {@link #integrate}.
+ * Backends are created by a {@link ComputeBackendProvider} and picked by {@link BackendAutotuner}.
+ */
+public interface ComputeBackend extends AutoCloseable {
+    // Provider name, e.g. "tiled"
+    String getName();
+
+    // Tuned parameters in the form the provider's create() accepts, e.g. "threads=8,tile=128"
+    String getParameters();
+
+    // Zero the force accumulators and the contact list ahead of computeForces
+    void resetForces(ParticleArrays state);
+
+    // Leave the net force on every particle in fx/fy/fz and record overlapping pairs
+    void computeForces(ParticleArrays state, PhysicsConstants constants);
+
+    // Push apart and bounce the pairs found by the last computeForces call
+    void resolveCollisions(ParticleArrays state);
+
+    void integrate(ParticleArrays state, PhysicsConstants constants, double timeStep, double boundary);
+
+    // Accumulate potential energy in the force pass, and kinetic energy and momentum in integrate
+    default void setDiagnosticsEnabled(boolean enabled) {
+    }
+
+    // Copy the last step's energy and momentum into out; false if diagnostics are off or unsupported
+    default boolean collectDiagnostics(EnergyDiagnostics out) {
+        return false;
+    }
+
+    // Pair interactions evaluated by one force pass over particleCount particles
+    default long getPairCount(int particleCount) {
+        return (long) particleCount * (particleCount - 1) / 2;
+    }
+
+    default int getWorkerCount() {
+        return 1;
+    }
+
+    // Time the worker spent computing in the last force pass, or -1 if the backend does not track it
+    default long getWorkerBusyNanos(int worker) {
+        return -1;
+    }
+
+    @Override
+    default void close() {
+    }
+}
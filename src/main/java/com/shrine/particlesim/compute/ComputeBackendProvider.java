@@ -0,0 +1,21 @@
+package com.shrine.particlesim.compute;
+
+import java.util.List;
+
+/**
+ * Service-provider interface for compute backends, discovered with {@link java.util.ServiceLoader}
+ * from {@code META-INF/services/com.shrine.particlesim.compute.ComputeBackendProvider}.
+ */
+public interface ComputeBackendProvider {
+    String getName();
+
+    // False when the backend cannot run on this JVM or machine
+    default boolean isSupported() {
+        return true;
+    }
+
+    // Parameter strings worth probing for the given machine and particle count
+    List<String> candidateParameters(int maxThreads, int particleCount);
+
+    ComputeBackend create(String parameters);
+}
@@ -0,0 +1,38 @@
+package com.shrine.particlesim.compute;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of overlapping particle index pairs found during the force pass.
+ * Collisions are resolved after the pass so the force kernels stay free of writes
+ * to other particles' positions.
+ */
+public final class ContactList {
+    private int[] pairs = new int[64];
+    private int count;
+
+    public void add(int i, int j) {
+        if (2 * count + 2 > pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[2 * count] = i;
+        pairs[2 * count + 1] = j;
+        count++;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int first(int index) {
+        return pairs[2 * index];
+    }
+
+    public int second(int index) {
+        return pairs[2 * index + 1];
+    }
+}
@@ -0,0 +1,92 @@
+package com.shrine.particlesim.compute;
+
+/**
+ * Energy and momentum of the system after a step, filled by a backend with diagnostics
+ * enabled. Potential terms come from the force pass (positions before the step) and kinetic
+ * energy and momentum from the integration (velocities after it).
+ *
+ * <p>The swirl term is not conservative and drag and wall bounces remove energy, so the
+ * total is not expected to stay constant; sudden jumps are what point at instability.
+ */
+public final class EnergyDiagnostics {
+    private long step;
+    private double kineticEnergy;
+    private double coulombEnergy;
+    private double gravityEnergy;
+    private double strongEnergy;
+    private double momentumX;
+    private double momentumY;
+    private double momentumZ;
+
+    void setPotential(double coulomb, double gravity, double strong) {
+        coulombEnergy = coulomb;
+        gravityEnergy = gravity;
+        strongEnergy = strong;
+    }
+
+    void setKinetic(double kinetic, double px, double py, double pz) {
+        kineticEnergy = kinetic;
+        momentumX = px;
+        momentumY = py;
+        momentumZ = pz;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    public void copyFrom(EnergyDiagnostics other) {
+        step = other.step;
+        kineticEnergy = other.kineticEnergy;
+        coulombEnergy = other.coulombEnergy;
+        gravityEnergy = other.gravityEnergy;
+        strongEnergy = other.strongEnergy;
+        momentumX = other.momentumX;
+        momentumY = other.momentumY;
+        momentumZ = other.momentumZ;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public double getKineticEnergy() {
+        return kineticEnergy;
+    }
+
+    public double getCoulombEnergy() {
+        return coulombEnergy;
+    }
+
+    public double getGravityEnergy() {
+        return gravityEnergy;
+    }
+
+    public double getStrongEnergy() {
+        return strongEnergy;
+    }
+
+    public double getPotentialEnergy() {
+        return coulombEnergy + gravityEnergy + strongEnergy;
+    }
+
+    public double getTotalEnergy() {
+        return kineticEnergy + getPotentialEnergy();
+    }
+
+    public double getMomentumX() {
+        return momentumX;
+    }
+
+    public double getMomentumY() {
+        return momentumY;
+    }
+
+    public double getMomentumZ() {
+        return momentumZ;
+    }
+
+    public double getMomentumMagnitude() {
+        return Math.sqrt(momentumX * momentumX + momentumY * momentumY + momentumZ * momentumZ);
+    }
+}
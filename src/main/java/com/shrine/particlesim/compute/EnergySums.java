@@ -0,0 +1,26 @@
+package com.shrine.particlesim.compute;
+
+// Per-worker partial sums for the energy diagnostics, reduced in worker order after each phase
+final class EnergySums {
+    StrongPotential strongPotential;
+    double coulomb;
+    double gravity;
+    double strong;
+    double kinetic;
+    double momentumX;
+    double momentumY;
+    double momentumZ;
+
+    void clearPotential() {
+        coulomb = 0;
+        gravity = 0;
+        strong = 0;
+    }
+
+    void clearKinetic() {
+        kinetic = 0;
+        momentumX = 0;
+        momentumY = 0;
+        momentumZ = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.shrine.particlesim.compute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Splits the upper-triangular pair loop into contiguous row ranges holding roughly
+ * the same number of pairs, one range per worker.
+ */
+public class MultithreadedBackend extends PooledBackend {
+    private final int[] rowBounds;
+    private int partitionedSize = -1;
+
+    public MultithreadedBackend(int threads) {
+        this(threads, null);
+    }
+
+    // Workers run on a shared executor instead of threads of their own
+    public MultithreadedBackend(int threads, ExecutorService shared) {
+        super(threads, shared);
+        this.rowBounds = new int[this.threads + 1];
+    }
+
+    @Override
+    public String getName() {
+        return "multithreaded";
+    }
+
+    @Override
+    public String getParameters() {
+        return "threads=" + threads;
+    }
+
+    @Override
+    protected void prepare(ParticleArrays state, PhysicsConstants constants) {
+        int n = state.size();
+        if (n == partitionedSize) {
+            return;
+        }
+        // Row i owns n - 1 - i pairs; cut where the running total crosses each worker's share
+        long totalPairs = (long) n * (n - 1) / 2;
+        long running = 0;
+        int worker = 1;
+        rowBounds[0] = 0;
+        for (int i = 0; i < n && worker < threads; i++) {
+            running += n - 1 - i;
+            while (worker < threads && running >= totalPairs * worker / threads) {
+                rowBounds[worker++] = i + 1;
+            }
+        }
+        while (worker <= threads) {
+            rowBounds[worker++] = n;
+        }
+        partitionedSize = n;
+    }
+
+    @Override
+    protected void computeWorkerForces(int worker, ParticleArrays state, PhysicsConstants constants,
+                                       WorkerBuffers buffer) {
+        int n = state.size();
+        for (int i = rowBounds[worker]; i < rowBounds[worker + 1]; i++) {
+            accumulateRow(state, i, n, constants, buffer);
+        }
+    }
+
+    protected void accumulateRow(ParticleArrays state, int i, int n, PhysicsConstants constants, WorkerBuffers buffer) {
+        ScalarKernel.accumulateRow(state, i, i + 1, n, constants, buffer.fx, buffer.fy, buffer.fz, buffer.contacts,
+                buffer.energy);
+    }
+
+    static List<String> threadCandidates(int maxThreads) {
+        List<String> candidates = new ArrayList<>();
+        for (int t = maxThreads; t >= 1 && candidates.size() < 3; t /= 2) {
+            candidates.add("threads=" + t);
+        }
+        return candidates;
+    }
+
+    public static class Provider implements ComputeBackendProvider {
+        @Override
+        public String getName() {
+            return "multithreaded";
+        }
+
+        @Override
+        public List<String> candidateParameters(int maxThreads, int particleCount) {
+            return threadCandidates(maxThreads);
+        }
+
+        @Override
+        public ComputeBackend create(String parameters) {
+            BackendParameters params = new BackendParameters(parameters);
+            return new MultithreadedBackend(params.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        }
+    }
+}
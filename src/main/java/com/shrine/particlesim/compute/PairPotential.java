@@ -0,0 +1,30 @@
+package com.shrine.particlesim.compute;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Potential energy of a single pair, using the same terms as the energy diagnostics
+ * (Coulomb, gravity and the tabulated strong force). For short-range checks such as
+ * binding tests; the force kernels accumulate these sums themselves.
+ */
+public final class PairPotential {
+    private PairPotential() {
+    }
+
+    public static double between(ParticleArrays s, int i, int j, PhysicsConstants c) {
+        double dx = s.x[j] - s.x[i];
+        double dy = s.y[j] - s.y[i];
+        double dz = s.z[j] - s.z[i];
+        double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (dist < 1e-8) {
+            return 0;
+        }
+        double potential = c.getCoulombConstant() * s.charge[i] * s.charge[j] / dist
+                - c.getGravityConstant() * s.mass[i] * s.mass[j] / dist;
+        if (ParticleArrays.isNucleon(s.type[i]) && ParticleArrays.isNucleon(s.type[j])
+                && dist <= c.getStrongForceOuterRadius()) {
+            potential += StrongPotential.forConstants(c).at(dist);
+        }
+        return potential;
+    }
+}
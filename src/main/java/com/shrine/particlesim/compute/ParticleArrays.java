@@ -0,0 +1,322 @@
+package com.shrine.particlesim.compute;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.shrine.particlesim.Particle;
+import com.shrine.particlesim.Species;
+
+/**
+ * Structure-of-arrays particle state that the compute backends work on. It can also be
+ * filled from (or written back to) a list of {@link Particle} objects.
+ * Arrays are grown on demand and reused between steps, so a steady particle count
+ * never allocates. Each added particle gets an id that stays with it until the arrays
+ * are cleared, independent of its index.
+ */
+public final class ParticleArrays {
+    public static final byte ELECTRON = 0;
+    public static final byte PROTON = 1;
+    public static final byte NEUTRON = 2;
+    public static final byte OTHER = 3;
+
+    int size;
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] z = new double[0];
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    double[] vz = new double[0];
+    double[] fx = new double[0];
+    double[] fy = new double[0];
+    double[] fz = new double[0];
+    double[] mass = new double[0];
+    double[] charge = new double[0];
+    double[] radius = new double[0];
+    byte[] type = new byte[0];
+    int[] id = new int[0];
+    int nextId;
+    // Particles per type code, kept by add, removeIds, clear and copyFrom. gather and setSize
+    // leave type to be filled in bulk, so they only mark the counts for a recount on next read
+    private final int[] typeCounts = new int[OTHER + 1];
+    private boolean typeCountsStale;
+
+    public static byte typeCode(String particleType) {
+        return switch (particleType) {
+            case "electron" -> ELECTRON;
+            case "proton" -> PROTON;
+            case "neutron" -> NEUTRON;
+            default -> OTHER;
+        };
+    }
+
+    public static boolean isNucleon(byte typeCode) {
+        return typeCode == PROTON || typeCode == NEUTRON;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (x.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        z = Arrays.copyOf(z, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        vz = Arrays.copyOf(vz, newCapacity);
+        fx = Arrays.copyOf(fx, newCapacity);
+        fy = Arrays.copyOf(fy, newCapacity);
+        fz = Arrays.copyOf(fz, newCapacity);
+        mass = Arrays.copyOf(mass, newCapacity);
+        charge = Arrays.copyOf(charge, newCapacity);
+        radius = Arrays.copyOf(radius, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        id = Arrays.copyOf(id, newCapacity);
+    }
+
+    // Copy the particle list into the arrays
+    public void gather(List<Particle> particles) {
+        int n = particles.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Particle p = particles.get(i);
+            x[i] = p.getxCor();
+            y[i] = p.getyCor();
+            z[i] = p.getzCor();
+            vx[i] = p.getxVel();
+            vy[i] = p.getyVel();
+            vz[i] = p.getzVel();
+            fx[i] = p.getNetX();
+            fy[i] = p.getNetY();
+            fz[i] = p.getNetZ();
+            mass[i] = p.getMass();
+            charge[i] = p.getCharge();
+            radius[i] = p.getRadius();
+            type[i] = typeCode(p.getParticleType());
+            id[i] = i;
+        }
+        size = n;
+        nextId = n;
+        typeCountsStale = true;
+    }
+
+    // Write positions, velocities and net forces back to the particle list
+    public void scatter(List<Particle> particles) {
+        for (int i = 0; i < size; i++) {
+            Particle p = particles.get(i);
+            p.setxCor(x[i]);
+            p.setyCor(y[i]);
+            p.setzCor(z[i]);
+            p.setxVel(vx[i]);
+            p.setyVel(vy[i]);
+            p.setzVel(vz[i]);
+            p.setNetX(fx[i]);
+            p.setNetY(fy[i]);
+            p.setNetZ(fz[i]);
+        }
+    }
+
+    public int add(double xCor, double yCor, double zCor, double xVel, double yVel, double zVel,
+                   double particleCharge, double particleMass, double particleRadius, byte typeCode) {
+        ensureCapacity(size + 1);
+        int i = size++;
+        x[i] = xCor;
+        y[i] = yCor;
+        z[i] = zCor;
+        vx[i] = xVel;
+        vy[i] = yVel;
+        vz[i] = zVel;
+        fx[i] = 0;
+        fy[i] = 0;
+        fz[i] = 0;
+        charge[i] = particleCharge;
+        mass[i] = particleMass;
+        radius[i] = particleRadius;
+        type[i] = typeCode;
+        id[i] = nextId++;
+        typeCounts[Math.min(typeCode, OTHER)]++;
+        return i;
+    }
+
+    public int add(double xCor, double yCor, double zCor, double xVel, double yVel, double zVel, Species species) {
+        return add(xCor, yCor, zCor, xVel, yVel, zVel, species.getCharge(), species.getMass(), species.getRadius(),
+                species.getTypeCode());
+    }
+
+    public int add(Particle p) {
+        return add(p.getxCor(), p.getyCor(), p.getzCor(), p.getxVel(), p.getyVel(), p.getzVel(),
+                p.getCharge(), p.getMass(), p.getRadius(), typeCode(p.getParticleType()));
+    }
+
+    public void clear() {
+        size = 0;
+        nextId = 0;
+        Arrays.fill(typeCounts, 0);
+        typeCountsStale = false;
+    }
+
+    public void copyFrom(ParticleArrays other) {
+        ensureCapacity(other.size);
+        int n = other.size;
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.z, 0, z, 0, n);
+        System.arraycopy(other.vx, 0, vx, 0, n);
+        System.arraycopy(other.vy, 0, vy, 0, n);
+        System.arraycopy(other.vz, 0, vz, 0, n);
+        System.arraycopy(other.fx, 0, fx, 0, n);
+        System.arraycopy(other.fy, 0, fy, 0, n);
+        System.arraycopy(other.fz, 0, fz, 0, n);
+        System.arraycopy(other.mass, 0, mass, 0, n);
+        System.arraycopy(other.charge, 0, charge, 0, n);
+        System.arraycopy(other.radius, 0, radius, 0, n);
+        System.arraycopy(other.type, 0, type, 0, n);
+        System.arraycopy(other.id, 0, id, 0, n);
+        size = n;
+        nextId = other.nextId;
+        other.refreshTypeCounts();
+        System.arraycopy(other.typeCounts, 0, typeCounts, 0, typeCounts.length);
+        typeCountsStale = false;
+    }
+
+    // Remove every particle whose id is set, keeping the order of the rest; returns how many went
+    public int removeIds(BitSet ids) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (ids.get(id[i])) {
+                typeCounts[Math.min(type[i], OTHER)]--;
+                continue;
+            }
+            if (kept != i) {
+                x[kept] = x[i];
+                y[kept] = y[i];
+                z[kept] = z[i];
+                vx[kept] = vx[i];
+                vy[kept] = vy[i];
+                vz[kept] = vz[i];
+                fx[kept] = fx[i];
+                fy[kept] = fy[i];
+                fz[kept] = fz[i];
+                mass[kept] = mass[i];
+                charge[kept] = charge[i];
+                radius[kept] = radius[i];
+                type[kept] = type[i];
+                id[kept] = id[i];
+            }
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    public void clearForces() {
+        Arrays.fill(fx, 0, size, 0.0);
+        Arrays.fill(fy, 0, size, 0.0);
+        Arrays.fill(fz, 0, size, 0.0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Sum of m v^2 / 2 over every particle, for reports taken outside the step's own diagnostics
+    public double kineticEnergy() {
+        double kinetic = 0;
+        for (int i = 0; i < size; i++) {
+            kinetic += 0.5 * mass[i] * (vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]);
+        }
+        return kinetic;
+    }
+
+    // Grow to n particles without initializing them; the caller fills every array (e.g. from a file)
+    public void setSize(int n) {
+        ensureCapacity(n);
+        size = n;
+        typeCountsStale = true;
+    }
+
+    // Particles of each type code (OTHER and above share the last slot) into out; without a bulk
+    // write since the last call this is a copy, not a pass over the particles
+    public void countTypes(int[] out) {
+        refreshTypeCounts();
+        System.arraycopy(typeCounts, 0, out, 0, Math.min(out.length, typeCounts.length));
+    }
+
+    private void refreshTypeCounts() {
+        if (!typeCountsStale) {
+            return;
+        }
+        Arrays.fill(typeCounts, 0);
+        for (int i = 0; i < size; i++) {
+            typeCounts[Math.min(type[i], OTHER)]++;
+        }
+        typeCountsStale = false;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public double[] getVx() {
+        return vx;
+    }
+
+    public double[] getVy() {
+        return vy;
+    }
+
+    public double[] getVz() {
+        return vz;
+    }
+
+    public double[] getFx() {
+        return fx;
+    }
+
+    public double[] getFy() {
+        return fy;
+    }
+
+    public double[] getFz() {
+        return fz;
+    }
+
+    public double[] getMass() {
+        return mass;
+    }
+
+    public double[] getCharge() {
+        return charge;
+    }
+
+    public double[] getRadius() {
+        return radius;
+    }
+
+    public byte[] getType() {
+        return type;
+    }
+
+    public int[] getId() {
+        return id;
+    }
+
+    // Id the next added particle will get
+    public int getNextId() {
+        return nextId;
+    }
+
+    public void setNextId(int nextId) {
+        this.nextId = nextId;
+    }
+}
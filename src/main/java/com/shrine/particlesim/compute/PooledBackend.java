@@ -0,0 +1,207 @@
+package com.shrine.particlesim.compute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Base for backends that split the force pass over a fixed pool of workers. Each worker
+ * accumulates into its own {@link WorkerBuffers}; the buffers are summed afterwards, so
+ * no locking is needed on particles.
+ *
+ * <p>The workers run on the backend's own threads, or on a shared executor that several
+ * simulations submit to (the ensemble scheduler); a shared executor is not shut down on close.
+ */
+abstract class PooledBackend implements ComputeBackend {
+    protected final int threads;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    protected final WorkerBuffers[] buffers;
+    private final long[] busyNanos;
+
+    PooledBackend(int threads) {
+        this(threads, null);
+    }
+
+    // With a shared executor, steps must be driven from a thread outside that executor
+    PooledBackend(int threads, ExecutorService shared) {
+        this.threads = Math.max(1, threads);
+        this.buffers = new WorkerBuffers[this.threads];
+        this.busyNanos = new long[this.threads];
+        for (int i = 0; i < this.threads; i++) {
+            buffers[i] = new WorkerBuffers();
+        }
+        if (this.threads == 1) {
+            executor = null;
+            ownsExecutor = false;
+        } else if (shared != null) {
+            executor = shared;
+            ownsExecutor = false;
+        } else {
+            executor = Executors.newFixedThreadPool(this.threads, r -> {
+                Thread t = new Thread(r, getClass().getSimpleName() + "-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            ownsExecutor = true;
+        }
+    }
+
+    // Called once per step before the workers start
+    protected void prepare(ParticleArrays state, PhysicsConstants constants) {
+    }
+
+    protected abstract void computeWorkerForces(int worker, ParticleArrays state, PhysicsConstants constants,
+                                                WorkerBuffers buffer);
+
+    @Override
+    public void resetForces(ParticleArrays state) {
+        int n = state.size();
+        runWorkers(worker -> buffers[worker].reset(n));
+    }
+
+    @Override
+    public void computeForces(ParticleArrays state, PhysicsConstants constants) {
+        int n = state.size();
+        prepare(state, constants);
+        if (buffers[0].energy != null) {
+            StrongPotential strongPotential = StrongPotential.forConstants(constants);
+            for (WorkerBuffers buffer : buffers) {
+                buffer.energy.strongPotential = strongPotential;
+            }
+        }
+        runWorkers(worker -> {
+            long start = System.nanoTime();
+            computeWorkerForces(worker, state, constants, buffers[worker]);
+            busyNanos[worker] = System.nanoTime() - start;
+        });
+
+        // Reduce per-worker forces in worker order so results do not depend on scheduling
+        runWorkers(worker -> {
+            int from = (int) ((long) n * worker / threads);
+            int to = (int) ((long) n * (worker + 1) / threads);
+            for (int i = from; i < to; i++) {
+                double sumX = 0, sumY = 0, sumZ = 0;
+                for (WorkerBuffers buffer : buffers) {
+                    sumX += buffer.fx[i];
+                    sumY += buffer.fy[i];
+                    sumZ += buffer.fz[i];
+                }
+                state.fx[i] = sumX;
+                state.fy[i] = sumY;
+                state.fz[i] = sumZ;
+            }
+        });
+    }
+
+    @Override
+    public void resolveCollisions(ParticleArrays state) {
+        for (WorkerBuffers buffer : buffers) {
+            ScalarKernel.resolveContacts(state, buffer.contacts);
+        }
+    }
+
+    @Override
+    public void integrate(ParticleArrays state, PhysicsConstants constants, double timeStep, double boundary) {
+        int n = state.size();
+        runWorkers(worker -> {
+            EnergySums energy = buffers[worker].energy;
+            if (energy != null) {
+                energy.clearKinetic();
+            }
+            ScalarKernel.integrate(state, constants, timeStep, boundary,
+                    (int) ((long) n * worker / threads), (int) ((long) n * (worker + 1) / threads), energy);
+        });
+    }
+
+    @Override
+    public void setDiagnosticsEnabled(boolean enabled) {
+        for (WorkerBuffers buffer : buffers) {
+            buffer.energy = enabled ? new EnergySums() : null;
+        }
+    }
+
+    // Sum the per-worker partials in worker order
+    @Override
+    public boolean collectDiagnostics(EnergyDiagnostics out) {
+        if (buffers[0].energy == null) {
+            return false;
+        }
+        double coulomb = 0, gravity = 0, strong = 0, kinetic = 0, px = 0, py = 0, pz = 0;
+        for (WorkerBuffers buffer : buffers) {
+            EnergySums energy = buffer.energy;
+            coulomb += energy.coulomb;
+            gravity += energy.gravity;
+            strong += energy.strong;
+            kinetic += energy.kinetic;
+            px += energy.momentumX;
+            py += energy.momentumY;
+            pz += energy.momentumZ;
+        }
+        out.setPotential(coulomb, gravity, strong);
+        out.setKinetic(kinetic, px, py, pz);
+        return true;
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return threads;
+    }
+
+    @Override
+    public long getWorkerBusyNanos(int worker) {
+        return busyNanos[worker];
+    }
+
+    protected interface WorkerBody {
+        void run(int worker);
+    }
+
+    protected final void runWorkers(WorkerBody body) {
+        if (executor == null) {
+            body.run(0);
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        for (int w = 0; w < threads; w++) {
+            int worker = w;
+            Callable<Void> task = () -> {
+                body.run(worker);
+                return null;
+            };
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + getName() + " workers", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error in " + getName() + " worker", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(800, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
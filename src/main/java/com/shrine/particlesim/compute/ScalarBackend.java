@@ -0,0 +1,86 @@
+package com.shrine.particlesim.compute;
+
+import java.util.List;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Single-threaded backend running the scalar kernel over all pairs directly into the state arrays.
+ */
+public class ScalarBackend implements ComputeBackend {
+    private final ContactList contacts = new ContactList();
+    private final EnergySums energySums = new EnergySums();
+    private boolean diagnostics;
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public String getParameters() {
+        return "";
+    }
+
+    @Override
+    public void resetForces(ParticleArrays state) {
+        state.clearForces();
+        contacts.clear();
+        energySums.clearPotential();
+    }
+
+    @Override
+    public void computeForces(ParticleArrays state, PhysicsConstants constants) {
+        int n = state.size();
+        EnergySums energy = diagnostics ? energySums : null;
+        if (energy != null) {
+            energy.strongPotential = StrongPotential.forConstants(constants);
+        }
+        for (int i = 0; i < n; i++) {
+            ScalarKernel.accumulateRow(state, i, i + 1, n, constants, state.fx, state.fy, state.fz, contacts, energy);
+        }
+    }
+
+    @Override
+    public void resolveCollisions(ParticleArrays state) {
+        ScalarKernel.resolveContacts(state, contacts);
+    }
+
+    @Override
+    public void integrate(ParticleArrays state, PhysicsConstants constants, double timeStep, double boundary) {
+        energySums.clearKinetic();
+        ScalarKernel.integrate(state, constants, timeStep, boundary, 0, state.size(), diagnostics ? energySums : null);
+    }
+
+    @Override
+    public void setDiagnosticsEnabled(boolean enabled) {
+        diagnostics = enabled;
+    }
+
+    @Override
+    public boolean collectDiagnostics(EnergyDiagnostics out) {
+        if (!diagnostics) {
+            return false;
+        }
+        out.setPotential(energySums.coulomb, energySums.gravity, energySums.strong);
+        out.setKinetic(energySums.kinetic, energySums.momentumX, energySums.momentumY, energySums.momentumZ);
+        return true;
+    }
+
+    public static class Provider implements ComputeBackendProvider {
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public List<String> candidateParameters(int maxThreads, int particleCount) {
+            return List.of("");
+        }
+
+        @Override
+        public ComputeBackend create(String parameters) {
+            return new ScalarBackend();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.shrine.particlesim.compute;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Scalar versions of the force, collision and integration math shared by the
+ * non-vector backends. The physics mirrors {@code Particle.calculateForces},
+ * {@code ForceCalculationTask.handleCollision} and {@code Particle.updateVelocity/updatePos}.
+ */
+final class ScalarKernel {
+    static final double PROTON_RADIUS = 9.0;
+    static final double SWIRL_RANGE = 20;
+    static final double SWIRL_FACTOR = 0.5;
+    static final double ELASTICITY = 0.7;
+    static final double DRAG = 0.90;
+    static final double WALL_RESTITUTION = 0.8;
+
+    private ScalarKernel() {
+    }
+
+    /**
+     * Adds the forces of pairs (i, j) for j in [jStart, jEnd) to the given buffers,
+     * applying the reaction to j, and records overlapping pairs in contacts.
+     * When energy is not null the pair potentials are added to it as well.
+     */
+    static void accumulateRow(ParticleArrays s, int i, int jStart, int jEnd, PhysicsConstants c,
+                              double[] fx, double[] fy, double[] fz, ContactList contacts, EnergySums energy) {
+        final double kConstant = c.getCoulombConstant();
+        final double strongOuter = c.getStrongForceOuterRadius();
+        final double strongInner = c.getStrongForceInnerRadius();
+        final double strongConstant = c.getStrongForceConstant();
+        final double gravityConstant = c.getGravityConstant();
+
+        final double[] x = s.x, y = s.y, z = s.z;
+        final double[] charge = s.charge, mass = s.mass, radius = s.radius;
+        final byte[] type = s.type;
+
+        final double xi = x[i], yi = y[i], zi = z[i];
+        final double qi = charge[i], mi = mass[i], ri = radius[i];
+        final boolean electronI = type[i] == ParticleArrays.ELECTRON;
+        final boolean nucleonI = ParticleArrays.isNucleon(type[i]);
+
+        final boolean diagnostics = energy != null;
+        final StrongPotential strongPotential = diagnostics ? energy.strongPotential : null;
+        double sumX = 0, sumY = 0, sumZ = 0;
+        double coulombEnergy = 0, gravityEnergy = 0, strongEnergy = 0;
+        for (int j = jStart; j < jEnd; j++) {
+            double distX = x[j] - xi;
+            double distY = y[j] - yi;
+            double distZ = z[j] - zi;
+            double distSq = distX * distX + distY * distY + distZ * distZ;
+            double dist = Math.sqrt(distSq);
+
+            double radiusSum = ri + radius[j];
+            if (distSq < radiusSum * radiusSum && distSq > 1e-9) {
+                contacts.add(i, j);
+            }
+            if (dist < 1e-8) {
+                continue;
+            }
+
+            double dirX = distX / dist;
+            double dirY = distY / dist;
+            double dirZ = distZ / dist;
+            double qj = charge[j];
+
+            // Coulomb Force
+            double coulombForce = (kConstant * qi * qj) / distSq;
+            double forceX = -coulombForce * dirX;
+            double forceY = -coulombForce * dirY;
+            double forceZ = -coulombForce * dirZ;
+            if (diagnostics) {
+                coulombEnergy += coulombForce * dist;
+            }
+
+            // Swirl effect
+            if (((electronI && qj > 0) || (type[j] == ParticleArrays.ELECTRON && qi > 0))
+                    && dist < radiusSum + SWIRL_RANGE) {
+                forceX = -forceX;
+                forceY = -forceY;
+                forceZ = -forceZ;
+                // dir x (0, 1, 0) = (-dirZ, 0, dirX)
+                double mag = Math.sqrt(dirZ * dirZ + dirX * dirX);
+                if (mag != 0) {
+                    double tangentialForce = coulombForce * SWIRL_FACTOR;
+                    forceX += tangentialForce * (-dirZ / mag);
+                    forceZ += tangentialForce * (dirX / mag);
+                }
+            }
+
+            // Strong Force
+            if (nucleonI && ParticleArrays.isNucleon(type[j]) && dist <= strongOuter) {
+                double decayFactor = Math.exp(-(dist - PROTON_RADIUS) / PROTON_RADIUS);
+                double strongForce = (strongConstant / (distSq * dist)) * decayFactor;
+                if (dist < strongInner) {
+                    strongForce = -strongForce;
+                }
+                forceX += strongForce * dirX;
+                forceY += strongForce * dirY;
+                forceZ += strongForce * dirZ;
+                if (diagnostics) {
+                    strongEnergy += strongPotential.at(dist);
+                }
+            }
+
+            // Gravity
+            double gravityForce = (gravityConstant * mi * mass[j]) / distSq;
+            forceX += gravityForce * dirX;
+            forceY += gravityForce * dirY;
+            forceZ += gravityForce * dirZ;
+            if (diagnostics) {
+                gravityEnergy -= gravityForce * dist;
+            }
+
+            sumX += forceX;
+            sumY += forceY;
+            sumZ += forceZ;
+            fx[j] -= forceX;
+            fy[j] -= forceY;
+            fz[j] -= forceZ;
+        }
+        fx[i] += sumX;
+        fy[i] += sumY;
+        fz[i] += sumZ;
+        if (diagnostics) {
+            energy.coulomb += coulombEnergy;
+            energy.gravity += gravityEnergy;
+            energy.strong += strongEnergy;
+        }
+    }
+
+    // Resolve recorded contacts in order, re-checking overlap against current positions
+    static void resolveContacts(ParticleArrays s, ContactList contacts) {
+        final double[] x = s.x, y = s.y, z = s.z;
+        final double[] vx = s.vx, vy = s.vy, vz = s.vz;
+        final double[] mass = s.mass, radius = s.radius;
+        for (int k = 0; k < contacts.size(); k++) {
+            int p1 = contacts.first(k);
+            int p2 = contacts.second(k);
+            double distX = x[p2] - x[p1];
+            double distY = y[p2] - y[p1];
+            double distZ = z[p2] - z[p1];
+            double distSq = distX * distX + distY * distY + distZ * distZ;
+            double radiusSum = radius[p1] + radius[p2];
+            if (distSq >= radiusSum * radiusSum || distSq <= 1e-9) {
+                continue;
+            }
+
+            double dist = Math.sqrt(distSq);
+            double overlap = radiusSum - dist;
+            double dirX = distX / dist;
+            double dirY = distY / dist;
+            double dirZ = distZ / dist;
+
+            double totalMass = mass[p1] + mass[p2];
+            double pushFactor1 = (mass[p2] / totalMass) * overlap;
+            double pushFactor2 = (mass[p1] / totalMass) * overlap;
+            x[p1] -= dirX * pushFactor1;
+            y[p1] -= dirY * pushFactor1;
+            z[p1] -= dirZ * pushFactor1;
+            x[p2] += dirX * pushFactor2;
+            y[p2] += dirY * pushFactor2;
+            z[p2] += dirZ * pushFactor2;
+
+            double dotProduct = (vx[p2] - vx[p1]) * dirX + (vy[p2] - vy[p1]) * dirY + (vz[p2] - vz[p1]) * dirZ;
+            if (dotProduct < 0) {
+                double collisionScale = (1.0 + ELASTICITY) * dotProduct / totalMass;
+                double impulseFactorX = collisionScale * dirX;
+                double impulseFactorY = collisionScale * dirY;
+                double impulseFactorZ = collisionScale * dirZ;
+                vx[p1] += impulseFactorX * mass[p2];
+                vy[p1] += impulseFactorY * mass[p2];
+                vz[p1] += impulseFactorZ * mass[p2];
+                vx[p2] -= impulseFactorX * mass[p1];
+                vy[p2] -= impulseFactorY * mass[p1];
+                vz[p2] -= impulseFactorZ * mass[p1];
+            }
+        }
+    }
+
+    /**
+     * Velocity update, speed clamp, drag, position update and wall bounce for [from, to).
+     * When energy is not null the resulting kinetic energy and momentum are added to it.
+     */
+    static void integrate(ParticleArrays s, PhysicsConstants c, double timeStep, double boundary, int from, int to,
+                          EnergySums energy) {
+        final double maxSpeed = c.getMaxSpeed();
+        final double[] x = s.x, y = s.y, z = s.z;
+        final double[] vx = s.vx, vy = s.vy, vz = s.vz;
+        final double[] fx = s.fx, fy = s.fy, fz = s.fz;
+        final double[] mass = s.mass, radius = s.radius;
+        double kinetic = 0, momentumX = 0, momentumY = 0, momentumZ = 0;
+        for (int i = from; i < to; i++) {
+            double m = mass[i];
+            double xVel = vx[i], yVel = vy[i], zVel = vz[i];
+            if (m != 0) {
+                xVel += fx[i] / m * timeStep;
+                yVel += fy[i] / m * timeStep;
+                zVel += fz[i] / m * timeStep;
+            }
+
+            double speed = Math.sqrt(xVel * xVel + yVel * yVel + zVel * zVel);
+            if (speed > maxSpeed) {
+                xVel *= maxSpeed / speed;
+                yVel *= maxSpeed / speed;
+                zVel *= maxSpeed / speed;
+            }
+            xVel *= DRAG;
+            yVel *= DRAG;
+            zVel *= DRAG;
+
+            double xCor = x[i] + xVel * timeStep;
+            double yCor = y[i] + yVel * timeStep;
+            double zCor = z[i] + zVel * timeStep;
+
+            double r = radius[i];
+            if (xCor < -boundary + r) {
+                xCor = -boundary + r;
+                xVel = -xVel * WALL_RESTITUTION;
+            } else if (xCor > boundary - r) {
+                xCor = boundary - r;
+                xVel = -xVel * WALL_RESTITUTION;
+            }
+            if (yCor < -boundary + r) {
+                yCor = -boundary + r;
+                yVel = -yVel * WALL_RESTITUTION;
+            } else if (yCor > boundary - r) {
+                yCor = boundary - r;
+                yVel = -yVel * WALL_RESTITUTION;
+            }
+            if (zCor < -boundary + r) {
+                zCor = -boundary + r;
+                zVel = -zVel * WALL_RESTITUTION;
+            } else if (zCor > boundary - r) {
+                zCor = boundary - r;
+                zVel = -zVel * WALL_RESTITUTION;
+            }
+
+            x[i] = xCor;
+            y[i] = yCor;
+            z[i] = zCor;
+            vx[i] = xVel;
+            vy[i] = yVel;
+            vz[i] = zVel;
+            kinetic += 0.5 * m * (xVel * xVel + yVel * yVel + zVel * zVel);
+            momentumX += m * xVel;
+            momentumY += m * yVel;
+            momentumZ += m * zVel;
+        }
+        if (energy != null) {
+            energy.kinetic += kinetic;
+            energy.momentumX += momentumX;
+            energy.momentumY += momentumY;
+            energy.momentumZ += momentumZ;
+        }
+    }
+}
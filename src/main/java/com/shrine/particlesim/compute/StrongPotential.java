@@ -0,0 +1,68 @@
+package com.shrine.particlesim.compute;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Tabulated potential of the strong force. The force C * exp(-(r - 9) / 9) / r^3 has no
+ * elementary antiderivative, so the potential is integrated numerically once per set of
+ * constants, taking U = 0 at the outer radius, and read back by linear interpolation.
+ */
+final class StrongPotential {
+    private static final int SAMPLES = 2048;
+    private static final int SUBSTEPS = 8;
+    private static final double MIN_DISTANCE = 0.5;
+
+    private static volatile StrongPotential cached;
+
+    private final PhysicsConstants constants;
+    private final double[] table = new double[SAMPLES];
+    private final double outer;
+    private final double spacing;
+
+    private StrongPotential(PhysicsConstants constants) {
+        this.constants = constants;
+        this.outer = constants.getStrongForceOuterRadius();
+        this.spacing = (outer - MIN_DISTANCE) / (SAMPLES - 1);
+        // Walk inwards from the cutoff: U(r) = U(r + h) + integral of the repulsive radial force
+        table[SAMPLES - 1] = 0;
+        for (int k = SAMPLES - 2; k >= 0; k--) {
+            double from = MIN_DISTANCE + k * spacing;
+            table[k] = table[k + 1] + simpson(from, from + spacing);
+        }
+    }
+
+    static StrongPotential forConstants(PhysicsConstants constants) {
+        StrongPotential potential = cached;
+        if (potential == null || potential.constants != constants) {
+            potential = new StrongPotential(constants);
+            cached = potential;
+        }
+        return potential;
+    }
+
+    double at(double dist) {
+        if (dist >= outer) {
+            return 0;
+        }
+        double position = (Math.max(dist, MIN_DISTANCE) - MIN_DISTANCE) / spacing;
+        int k = Math.min((int) position, SAMPLES - 2);
+        double fraction = position - k;
+        return table[k] + (table[k + 1] - table[k]) * fraction;
+    }
+
+    // Radial force, positive when repulsive, matching the sign switch in the kernels
+    private double radialForce(double r) {
+        double magnitude = constants.getStrongForceConstant() / (r * r * r)
+                * Math.exp(-(r - ScalarKernel.PROTON_RADIUS) / ScalarKernel.PROTON_RADIUS);
+        return r < constants.getStrongForceInnerRadius() ? magnitude : -magnitude;
+    }
+
+    private double simpson(double from, double to) {
+        double h = (to - from) / SUBSTEPS;
+        double sum = radialForce(from) + radialForce(to);
+        for (int i = 1; i < SUBSTEPS; i++) {
+            sum += radialForce(from + i * h) * (i % 2 == 0 ? 2 : 4);
+        }
+        return sum * h / 3;
+    }
+}
@@ -0,0 +1,124 @@
+package com.shrine.particlesim.compute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+/**
+ * Cache-blocked variant: the pair triangle is cut into tile x tile blocks, so a block of j
+ * particles stays in cache across many i rows. Each worker owns a fixed run of tiles holding
+ * roughly the same number of pairs, so which worker adds up which pair, and the order of its
+ * contacts, does not depend on scheduling and runs are reproducible.
+ */
+public class TiledBackend extends PooledBackend {
+    private final int tileSize;
+    private final int[] tileBounds;
+    private int[] tileRows = new int[0];
+    private int[] tileCols = new int[0];
+    private int tileCount;
+    private int tiledSize = -1;
+
+    public TiledBackend(int threads, int tileSize) {
+        super(threads);
+        this.tileSize = Math.max(8, tileSize);
+        this.tileBounds = new int[this.threads + 1];
+    }
+
+    @Override
+    public String getName() {
+        return "tiled";
+    }
+
+    @Override
+    public String getParameters() {
+        return "threads=" + threads + ",tile=" + tileSize;
+    }
+
+    @Override
+    protected void prepare(ParticleArrays state, PhysicsConstants constants) {
+        int n = state.size();
+        if (n == tiledSize) {
+            return;
+        }
+        int tilesPerSide = (n + tileSize - 1) / tileSize;
+        tileCount = tilesPerSide * (tilesPerSide + 1) / 2;
+        if (tileRows.length < tileCount) {
+            tileRows = new int[tileCount];
+            tileCols = new int[tileCount];
+        }
+        // Upper-triangle tiles in row-major order; diagonal tiles only cover j > i
+        int k = 0;
+        for (int ti = 0; ti < tilesPerSide; ti++) {
+            for (int tj = ti; tj < tilesPerSide; tj++) {
+                tileRows[k] = ti;
+                tileCols[k] = tj;
+                k++;
+            }
+        }
+
+        // Cut the tile list where the running pair count crosses each worker's share
+        long totalPairs = (long) n * (n - 1) / 2;
+        long running = 0;
+        int worker = 1;
+        tileBounds[0] = 0;
+        for (int tile = 0; tile < tileCount && worker < threads; tile++) {
+            running += tilePairs(tile, n);
+            while (worker < threads && running >= totalPairs * worker / threads) {
+                tileBounds[worker++] = tile + 1;
+            }
+        }
+        while (worker <= threads) {
+            tileBounds[worker++] = tileCount;
+        }
+        tiledSize = n;
+    }
+
+    @Override
+    protected void computeWorkerForces(int worker, ParticleArrays state, PhysicsConstants constants,
+                                       WorkerBuffers buffer) {
+        int n = state.size();
+        for (int tile = tileBounds[worker]; tile < tileBounds[worker + 1]; tile++) {
+            int rowStart = tileRows[tile] * tileSize;
+            int rowEnd = Math.min(n, rowStart + tileSize);
+            int colStart = tileCols[tile] * tileSize;
+            int colEnd = Math.min(n, colStart + tileSize);
+            boolean diagonal = rowStart == colStart;
+            for (int i = rowStart; i < rowEnd; i++) {
+                ScalarKernel.accumulateRow(state, i, diagonal ? i + 1 : colStart, colEnd, constants,
+                        buffer.fx, buffer.fy, buffer.fz, buffer.contacts, buffer.energy);
+            }
+        }
+    }
+
+    private long tilePairs(int tile, int n) {
+        long rows = Math.min(n, (tileRows[tile] + 1) * tileSize) - (long) tileRows[tile] * tileSize;
+        long cols = Math.min(n, (tileCols[tile] + 1) * tileSize) - (long) tileCols[tile] * tileSize;
+        return tileRows[tile] == tileCols[tile] ? rows * (rows - 1) / 2 : rows * cols;
+    }
+
+    public static class Provider implements ComputeBackendProvider {
+        @Override
+        public String getName() {
+            return "tiled";
+        }
+
+        @Override
+        public List<String> candidateParameters(int maxThreads, int particleCount) {
+            List<String> candidates = new ArrayList<>();
+            for (int tile : new int[] {64, 256}) {
+                if (tile < particleCount) {
+                    candidates.add("threads=" + maxThreads + ",tile=" + tile);
+                }
+            }
+            return candidates;
+        }
+
+        @Override
+        public ComputeBackend create(String parameters) {
+            BackendParameters params = new BackendParameters(parameters);
+            return new TiledBackend(params.getInt("threads", Runtime.getRuntime().availableProcessors()),
+                    params.getInt("tile", 128));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.shrine.particlesim.compute;
+
+import com.shrine.particlesim.PhysicsConstants;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Multithreaded backend whose row kernel processes SPECIES.length() j-particles at a time
+ * with the incubating Vector API. Species-dependent terms (swirl, strong force) are
+ * computed for every lane and selected with masks.
+ */
+public class VectorBackend extends MultithreadedBackend {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final DoubleVector ZERO = DoubleVector.zero(SPECIES);
+    private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1.0);
+
+    // 1.0 / 0.0 lane flags, since type codes are bytes and cannot be loaded as double lanes
+    private double[] electronFlags = new double[0];
+    private double[] nucleonFlags = new double[0];
+    private double[] positiveFlags = new double[0];
+
+    public VectorBackend(int threads) {
+        super(threads);
+    }
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    protected void prepare(ParticleArrays state, PhysicsConstants constants) {
+        super.prepare(state, constants);
+        int n = state.size();
+        if (electronFlags.length < n) {
+            electronFlags = new double[state.x.length];
+            nucleonFlags = new double[state.x.length];
+            positiveFlags = new double[state.x.length];
+        }
+        for (int i = 0; i < n; i++) {
+            electronFlags[i] = state.type[i] == ParticleArrays.ELECTRON ? 1.0 : 0.0;
+            nucleonFlags[i] = ParticleArrays.isNucleon(state.type[i]) ? 1.0 : 0.0;
+            positiveFlags[i] = state.charge[i] > 0 ? 1.0 : 0.0;
+        }
+    }
+
+    /*
+     * Only full vectors are processed here: masked tail loads and vector values merging across
+     * branches make C2 box every operation. Lanes past the last full vector go through the
+     * scalar kernel. The strong-force exp is the one exception, skipped when no lane needs it,
+     * since it costs more than the rest of the lane math combined.
+     *
+     * The Coulomb and gravity potential sums are always carried, since they are two multiply-adds
+     * on values already in registers; only the scalar strong-force potential lookup and the final
+     * reductions depend on diagnostics being on.
+     */
+    @Override
+    protected void accumulateRow(ParticleArrays s, int i, int n, PhysicsConstants c, WorkerBuffers b) {
+        final double kConstant = c.getCoulombConstant();
+        final double strongOuter = c.getStrongForceOuterRadius();
+        final double strongInner = c.getStrongForceInnerRadius();
+        final double strongConstant = c.getStrongForceConstant();
+        final double gravityConstant = c.getGravityConstant();
+
+        final double[] x = s.x, y = s.y, z = s.z, charge = s.charge, mass = s.mass, radius = s.radius;
+        final double[] fx = b.fx, fy = b.fy, fz = b.fz;
+        final double xi = x[i], yi = y[i], zi = z[i];
+        final double qi = charge[i], mi = mass[i], ri = radius[i];
+        // Per-row weights turning the species rules into lane arithmetic
+        final double electronI = s.type[i] == ParticleArrays.ELECTRON ? 1.0 : 0.0;
+        final double positiveI = qi > 0 ? 1.0 : 0.0;
+        final double nucleonI = ParticleArrays.isNucleon(s.type[i]) ? 1.0 : 0.0;
+
+        DoubleVector sumX = DoubleVector.zero(SPECIES);
+        DoubleVector sumY = DoubleVector.zero(SPECIES);
+        DoubleVector sumZ = DoubleVector.zero(SPECIES);
+        DoubleVector coulombSum = DoubleVector.zero(SPECIES);
+        DoubleVector gravitySum = DoubleVector.zero(SPECIES);
+        final EnergySums energy = b.energy;
+        double strongEnergy = 0;
+
+        int j = i + 1;
+        int vectorEnd = j + SPECIES.loopBound(n - j);
+        for (; j < vectorEnd; j += SPECIES.length()) {
+            DoubleVector distX = DoubleVector.fromArray(SPECIES, x, j).sub(xi);
+            DoubleVector distY = DoubleVector.fromArray(SPECIES, y, j).sub(yi);
+            DoubleVector distZ = DoubleVector.fromArray(SPECIES, z, j).sub(zi);
+            DoubleVector distSq = distX.mul(distX).add(distY.mul(distY)).add(distZ.mul(distZ));
+            DoubleVector dist = distSq.sqrt();
+            DoubleVector radiusSum = DoubleVector.fromArray(SPECIES, radius, j).add(ri);
+
+            long contactBits = distSq.lt(radiusSum.mul(radiusSum))
+                    .and(distSq.compare(VectorOperators.GT, 1e-9)).toLong();
+            while (contactBits != 0) {
+                b.contacts.add(i, j + Long.numberOfTrailingZeros(contactBits));
+                contactBits &= contactBits - 1;
+            }
+
+            // One division per lane; everything else multiplies by the inverse distance
+            VectorMask<Double> invalid = dist.compare(VectorOperators.LT, 1e-8);
+            DoubleVector invDist = ONE.div(dist.blend(1.0, invalid));
+            DoubleVector invDistSq = invDist.mul(invDist);
+            DoubleVector dirX = distX.mul(invDist);
+            DoubleVector dirY = distY.mul(invDist);
+            DoubleVector dirZ = distZ.mul(invDist);
+            DoubleVector qj = DoubleVector.fromArray(SPECIES, charge, j);
+
+            // Coulomb Force
+            DoubleVector coulombForce = qj.mul(kConstant * qi).mul(invDistSq);
+            // Invalid lanes use distance 1 in the force terms, so force * dist is negligible there
+            coulombSum = coulombSum.add(coulombForce.mul(dist));
+
+            // Swirl effect: (electron i and q_j > 0) or (electron j and q_i > 0), within range
+            VectorMask<Double> swirl = DoubleVector.fromArray(SPECIES, positiveFlags, j).mul(electronI)
+                    .add(DoubleVector.fromArray(SPECIES, electronFlags, j).mul(positiveI))
+                    .compare(VectorOperators.GT, 0.0)
+                    .and(dist.lt(radiusSum.add(ScalarKernel.SWIRL_RANGE)));
+            DoubleVector sign = DoubleVector.broadcast(SPECIES, -1.0).blend(1.0, swirl);
+            // Tangent (-dirZ, 0, dirX) / |(dirX, dirZ)|; a zero tangent has zero components anyway
+            DoubleVector magSq = dirZ.mul(dirZ).add(dirX.mul(dirX));
+            DoubleVector tangentialScale = coulombForce.mul(ScalarKernel.SWIRL_FACTOR)
+                    .div(magSq.blend(1.0, magSq.compare(VectorOperators.EQ, 0.0)).sqrt())
+                    .blend(0.0, swirl.not());
+            DoubleVector forceX = coulombForce.mul(dirX).mul(sign).sub(tangentialScale.mul(dirZ));
+            DoubleVector forceY = coulombForce.mul(dirY).mul(sign);
+            DoubleVector forceZ = coulombForce.mul(dirZ).mul(sign).add(tangentialScale.mul(dirX));
+
+            // Strong Force, repulsive inside the inner radius
+            VectorMask<Double> strongPair = DoubleVector.fromArray(SPECIES, nucleonFlags, j).mul(nucleonI)
+                    .compare(VectorOperators.GT, 0.0)
+                    .and(dist.compare(VectorOperators.LE, strongOuter));
+            DoubleVector strongForce = ZERO;
+            if (strongPair.anyTrue()) {
+                DoubleVector decayFactor = dist.neg().add(ScalarKernel.PROTON_RADIUS)
+                        .mul(1.0 / ScalarKernel.PROTON_RADIUS).lanewise(VectorOperators.EXP);
+                strongForce = decayFactor.mul(strongConstant).mul(invDistSq).mul(invDist)
+                        .blend(0.0, strongPair.not());
+                strongForce = strongForce.blend(strongForce.neg(), dist.lt(strongInner));
+                if (energy != null) {
+                    strongEnergy += strongLaneEnergy(s, i, j, strongPair.toLong(), energy.strongPotential);
+                }
+            }
+
+            // Gravity
+            DoubleVector gravityForce = DoubleVector.fromArray(SPECIES, mass, j).mul(gravityConstant * mi)
+                    .mul(invDistSq);
+            gravitySum = gravitySum.sub(gravityForce.mul(dist));
+            DoubleVector radial = gravityForce.add(strongForce);
+            forceX = forceX.add(radial.mul(dirX)).blend(0.0, invalid);
+            forceY = forceY.add(radial.mul(dirY)).blend(0.0, invalid);
+            forceZ = forceZ.add(radial.mul(dirZ)).blend(0.0, invalid);
+
+            sumX = sumX.add(forceX);
+            sumY = sumY.add(forceY);
+            sumZ = sumZ.add(forceZ);
+            DoubleVector.fromArray(SPECIES, fx, j).sub(forceX).intoArray(fx, j);
+            DoubleVector.fromArray(SPECIES, fy, j).sub(forceY).intoArray(fy, j);
+            DoubleVector.fromArray(SPECIES, fz, j).sub(forceZ).intoArray(fz, j);
+        }
+        fx[i] += sumX.reduceLanes(VectorOperators.ADD);
+        fy[i] += sumY.reduceLanes(VectorOperators.ADD);
+        fz[i] += sumZ.reduceLanes(VectorOperators.ADD);
+        if (energy != null) {
+            energy.coulomb += coulombSum.reduceLanes(VectorOperators.ADD);
+            energy.gravity += gravitySum.reduceLanes(VectorOperators.ADD);
+            energy.strong += strongEnergy;
+        }
+
+        if (j < n) {
+            ScalarKernel.accumulateRow(s, i, j, n, c, fx, fy, fz, b.contacts, energy);
+        }
+    }
+
+    // Strong-force potential of the lanes set in strongBits, looked up per pair in scalar code
+    private static double strongLaneEnergy(ParticleArrays s, int i, int j, long strongBits, StrongPotential potential) {
+        double total = 0;
+        while (strongBits != 0) {
+            int k = j + Long.numberOfTrailingZeros(strongBits);
+            strongBits &= strongBits - 1;
+            double dx = s.x[k] - s.x[i];
+            double dy = s.y[k] - s.y[i];
+            double dz = s.z[k] - s.z[i];
+            double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (dist >= 1e-8) {
+                total += potential.at(dist);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,33 @@
+package com.shrine.particlesim.compute;
+
+import java.util.List;
+
+/**
+ * Provider for {@link VectorBackend}. Kept separate from the backend so the Vector API
+ * classes are only loaded when {@code --add-modules jdk.incubator.vector} is present.
+ */
+public class VectorBackendProvider implements ComputeBackendProvider {
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    public boolean isSupported() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    @Override
+    public List<String> candidateParameters(int maxThreads, int particleCount) {
+        return MultithreadedBackend.threadCandidates(maxThreads);
+    }
+
+    @Override
+    public ComputeBackend create(String parameters) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Vector backend needs --add-modules jdk.incubator.vector");
+        }
+        BackendParameters params = new BackendParameters(parameters);
+        return new VectorBackend(params.getInt("threads", Runtime.getRuntime().availableProcessors()));
+    }
+}
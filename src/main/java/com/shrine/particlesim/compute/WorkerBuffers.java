@@ -0,0 +1,29 @@
+package com.shrine.particlesim.compute;
+
+import java.util.Arrays;
+
+// Per-worker force accumulators and contact list, so workers never share writes
+final class WorkerBuffers {
+    double[] fx = new double[0];
+    double[] fy = new double[0];
+    double[] fz = new double[0];
+    final ContactList contacts = new ContactList();
+    // Null unless energy diagnostics are enabled
+    EnergySums energy;
+
+    void reset(int size) {
+        if (fx.length < size) {
+            fx = new double[size];
+            fy = new double[size];
+            fz = new double[size];
+        } else {
+            Arrays.fill(fx, 0, size, 0.0);
+            Arrays.fill(fy, 0, size, 0.0);
+            Arrays.fill(fz, 0, size, 0.0);
+        }
+        contacts.clear();
+        if (energy != null) {
+            energy.clearPotential();
+        }
+    }
+}
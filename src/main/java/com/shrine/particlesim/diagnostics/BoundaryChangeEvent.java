@@ -0,0 +1,14 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shrine.particlesim.BoundaryChange")
+@Label("Boundary Change")
+public class BoundaryChangeEvent extends SimulationEvent {
+    @Label("Old Size")
+    public double oldSize;
+
+    @Label("New Size")
+    public double newSize;
+}
@@ -0,0 +1,11 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shrine.particlesim.Clear")
+@Label("Clear Particles")
+public class ClearEvent extends SimulationEvent {
+    @Label("Removed")
+    public int removed;
+}
@@ -0,0 +1,84 @@
+package com.shrine.particlesim.diagnostics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Optional Prometheus endpoint on localhost: {@code GET /metrics} returns the text format
+ * written by {@link SimulationMetrics}. Requests are served on one daemon thread, so a
+ * scrape never runs on (or waits for) the physics threads.
+ */
+public class MetricsServer implements AutoCloseable {
+    // Port for Main and the headless runner; the server is off when the property is unset
+    public static final String PORT_PROPERTY = "particlesim.metrics.port";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsServer(int port, SimulationMetrics metrics) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> handle(exchange, metrics));
+    }
+
+    // Starts a server if the port property is set, otherwise returns null
+    public static MetricsServer startFromProperty(SimulationMetrics metrics) {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        try {
+            MetricsServer server = new MetricsServer(Integer.parseInt(port.trim()), metrics);
+            server.start();
+            System.out.println("Metrics: http://localhost:" + server.getPort() + "/metrics");
+            return server;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start metrics server on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void handle(HttpExchange exchange, SimulationMetrics metrics) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            metrics.writePrometheus(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
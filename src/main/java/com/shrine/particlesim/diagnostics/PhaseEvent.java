@@ -0,0 +1,16 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shrine.particlesim.Phase")
+@Label("Simulation Phase")
+@Description("One phase of a step, or the particle mesh sync that follows it")
+public class PhaseEvent extends SimulationEvent {
+    @Label("Phase")
+    public String phase;
+
+    @Label("Step Number")
+    public long stepNumber;
+}
@@ -0,0 +1,35 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Common fields of the simulation's JFR events. All of them are disabled by default;
+ * the {@code src/main/resources/jfr/particlesim.jfc} settings file turns them on:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:settings=default,settings=src/main/resources/jfr/particlesim.jfc,filename=run.jfr ...
+ * </pre>
+ */
+@Category("Particle Simulation")
+@Enabled(false)
+@StackTrace(false)
+public abstract class SimulationEvent extends Event {
+    @Label("Particle Count")
+    public int particleCount;
+
+    @Label("Pair Count")
+    public long pairCount;
+
+    @Label("Thread Count")
+    public int threadCount;
+
+    public void setCounts(int particles, long pairs, int threads) {
+        particleCount = particles;
+        pairCount = pairs;
+        threadCount = threads;
+    }
+}
@@ -0,0 +1,181 @@
+package com.shrine.particlesim.diagnostics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.EnergyDiagnostics;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Step listener that keeps the numbers {@link MetricsServer} exposes. The stepping thread only
+ * writes primitives into preallocated fields and arrays, and never walks the particles; everything
+ * that allocates (text formatting, GC bean queries, rates) happens in {@link #writePrometheus} on
+ * the HTTP thread. Energy and momentum are only exported while the simulation's energy
+ * diagnostics are enabled.
+ */
+public class SimulationMetrics implements StepListener {
+    // Upper bounds of the step latency histogram buckets, in seconds; the last bucket is +Inf
+    private static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.002, 0.005, 0.01, 0.02, 0.05, 0.1, 0.25, 0.5, 1.0
+    };
+    private static final int MAX_WORKERS = 256;
+
+    private final long[] bucketNanos = new long[LATENCY_BUCKETS.length];
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+    private final int[] speciesScratch = new int[ParticleArrays.OTHER + 1];
+    private final AtomicLongArray speciesCounts = new AtomicLongArray(ParticleArrays.OTHER + 1);
+    private final AtomicLongArray workerBusy = new AtomicLongArray(MAX_WORKERS);
+
+    private volatile long steps;
+    private volatile long stepNanosTotal;
+    private volatile int particleCount;
+    private volatile double kineticEnergy;
+    private volatile boolean energyDiagnostics;
+    private volatile double potentialEnergy;
+    private volatile double momentum;
+    private volatile long forceNanos;
+    private volatile int workerCount;
+
+    // Scrape-side state for the steps/sec gauge
+    private long lastScrapeSteps;
+    private long lastScrapeTime = System.nanoTime();
+    private double stepsPerSecond;
+
+    public SimulationMetrics() {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            bucketNanos[i] = (long) (LATENCY_BUCKETS[i] * 1e9);
+        }
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        long stepNanos = simulation.getLastStepNanos();
+        int bucket = 0;
+        while (bucket < bucketNanos.length && stepNanos > bucketNanos[bucket]) {
+            bucket++;
+        }
+        bucketCounts.incrementAndGet(bucket);
+        stepNanosTotal += stepNanos;
+
+        // Both come without a pass over the particles: species counts are kept by ParticleArrays
+        // as particles come and go, and the energies by the force pass when diagnostics are on
+        ParticleArrays state = simulation.getState();
+        int[] counts = speciesScratch;
+        state.countTypes(counts);
+        for (int i = 0; i < counts.length; i++) {
+            speciesCounts.lazySet(i, counts[i]);
+        }
+        particleCount = state.size();
+        if (simulation.isDiagnosticsEnabled()) {
+            EnergyDiagnostics diagnostics = simulation.getDiagnostics();
+            kineticEnergy = diagnostics.getKineticEnergy();
+            potentialEnergy = diagnostics.getPotentialEnergy();
+            momentum = diagnostics.getMomentumMagnitude();
+            energyDiagnostics = true;
+        } else {
+            energyDiagnostics = false;
+        }
+
+        ComputeBackend backend = simulation.getBackend();
+        int workers = Math.min(backend.getWorkerCount(), MAX_WORKERS);
+        long force = simulation.getLastForceNanos();
+        for (int w = 0; w < workers; w++) {
+            long busy = backend.getWorkerBusyNanos(w);
+            workerBusy.lazySet(w, busy < 0 ? force : busy);
+        }
+        workerCount = workers;
+        forceNanos = force;
+        steps++;
+    }
+
+    // Prometheus text exposition format, version 0.0.4
+    public synchronized void writePrometheus(StringBuilder out) {
+        long stepsNow = steps;
+        long now = System.nanoTime();
+        if (now - lastScrapeTime > 0 && stepsNow >= lastScrapeSteps) {
+            stepsPerSecond = (stepsNow - lastScrapeSteps) * 1e9 / (now - lastScrapeTime);
+        }
+        lastScrapeSteps = stepsNow;
+        lastScrapeTime = now;
+
+        header(out, "particlesim_steps_total", "counter", "Simulation steps completed");
+        sample(out, "particlesim_steps_total", "", stepsNow);
+        header(out, "particlesim_steps_per_second", "gauge", "Steps per second since the previous scrape");
+        sample(out, "particlesim_steps_per_second", "", stepsPerSecond);
+
+        header(out, "particlesim_step_duration_seconds", "histogram", "Wall time of one step");
+        long cumulative = 0;
+        for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+            cumulative += bucketCounts.get(i);
+            String le = i < LATENCY_BUCKETS.length ? BigDecimal.valueOf(LATENCY_BUCKETS[i]).stripTrailingZeros().toPlainString() : "+Inf";
+            sample(out, "particlesim_step_duration_seconds_bucket", "le=\"" + le + "\"", cumulative);
+        }
+        sample(out, "particlesim_step_duration_seconds_sum", "", stepNanosTotal / 1e9);
+        sample(out, "particlesim_step_duration_seconds_count", "", cumulative);
+
+        header(out, "particlesim_particles", "gauge", "Particles by species");
+        for (Species species : Species.values()) {
+            sample(out, "particlesim_particles", "species=\"" + species.getTypeName() + "\"",
+                    speciesCounts.get(species.getTypeCode()));
+        }
+        sample(out, "particlesim_particles", "species=\"other\"", speciesCounts.get(speciesCounts.length() - 1));
+        header(out, "particlesim_particles_total", "gauge", "Particles in the simulation");
+        sample(out, "particlesim_particles_total", "", particleCount);
+
+        if (energyDiagnostics) {
+            double kinetic = kineticEnergy;
+            double potential = potentialEnergy;
+            header(out, "particlesim_energy", "gauge", "Energy of the system by kind");
+            sample(out, "particlesim_energy", "kind=\"kinetic\"", kinetic);
+            sample(out, "particlesim_energy", "kind=\"potential\"", potential);
+            sample(out, "particlesim_energy", "kind=\"total\"", kinetic + potential);
+            header(out, "particlesim_momentum", "gauge", "Magnitude of the total momentum");
+            sample(out, "particlesim_momentum", "", momentum);
+        }
+
+        header(out, "particlesim_worker_utilization", "gauge", "Busy fraction of each worker in the last force pass");
+        int workers = workerCount;
+        long force = forceNanos;
+        for (int w = 0; w < workers; w++) {
+            double utilization = force > 0 ? Math.min(1.0, workerBusy.get(w) / (double) force) : 0;
+            sample(out, "particlesim_worker_utilization", "worker=\"" + w + "\"", utilization);
+        }
+
+        header(out, "particlesim_gc_collections_total", "counter", "Garbage collections by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "particlesim_gc_collections_total", "gc=\"" + gc.getName() + "\"",
+                    Math.max(0, gc.getCollectionCount()));
+        }
+        header(out, "particlesim_gc_pause_seconds_total", "counter", "Time spent in garbage collection by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "particlesim_gc_pause_seconds_total", "gc=\"" + gc.getName() + "\"",
+                    Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
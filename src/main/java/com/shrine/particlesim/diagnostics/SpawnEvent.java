@@ -0,0 +1,14 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shrine.particlesim.Spawn")
+@Label("Spawn Particles")
+public class SpawnEvent extends SimulationEvent {
+    @Label("Particle Type")
+    public String particleType;
+
+    @Label("Spawned")
+    public int spawned;
+}
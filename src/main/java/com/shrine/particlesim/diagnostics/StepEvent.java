@@ -0,0 +1,19 @@
+package com.shrine.particlesim.diagnostics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shrine.particlesim.Step")
+@Label("Simulation Step")
+@Description("One full step: reset, force, collision and integrate")
+public class StepEvent extends SimulationEvent {
+    @Label("Step Number")
+    public long stepNumber;
+
+    @Label("Time Step")
+    public double timeStep;
+
+    @Label("Backend")
+    public String backend;
+}
@@ -0,0 +1,8 @@
+package com.shrine.particlesim.diagnostics;
+
+import com.shrine.particlesim.Simulation;
+
+// Called on the stepping thread after every step; implementations must be quick and should not allocate
+public interface StepListener {
+    void stepCompleted(Simulation simulation);
+}
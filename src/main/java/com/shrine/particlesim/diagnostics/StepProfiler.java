@@ -0,0 +1,194 @@
+package com.shrine.particlesim.diagnostics;
+
+import java.util.Arrays;
+
+import com.shrine.particlesim.compute.ComputeBackend;
+
+/**
+ * Per-phase step timings kept over a rolling window of frames, plus per-worker busy/idle time,
+ * pair-interaction count and particle count for the latest frame.
+ *
+ * <p>Only the thread that steps the simulation writes; it never allocates. The read methods
+ * share a scratch buffer and are meant for a single reader (the UI thread). A reader on
+ * another thread may see a frame that is still being filled in, which is fine for display.
+ */
+public final class StepProfiler {
+    public enum Phase {
+        RESET("reset"),
+        FORCE("force"),
+        COLLISION("collision"),
+        INTEGRATE("integrate"),
+        SYNC("sync"),
+        RENDER("render");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final int window;
+    private final long[][] phaseNanos;
+    private final long[] frameStart;
+    private final double[] imbalance;
+    private final long[] scratch;
+    private long[] workerBusy = new long[0];
+    private long[] workerIdle = new long[0];
+    private int workerCount;
+    private int slot = -1;
+    private long frames;
+    private int particleCount;
+    private long pairCount;
+
+    public StepProfiler() {
+        this(240);
+    }
+
+    public StepProfiler(int window) {
+        this.window = window;
+        this.phaseNanos = new long[PHASES.length][window];
+        this.frameStart = new long[window];
+        this.imbalance = new double[window];
+        this.scratch = new long[window];
+    }
+
+    // Start a new frame, overwriting the oldest one in the window
+    public void beginFrame() {
+        slot = (int) (frames % window);
+        frames++;
+        for (long[] samples : phaseNanos) {
+            samples[slot] = 0;
+        }
+        imbalance[slot] = 1.0;
+        frameStart[slot] = System.nanoTime();
+    }
+
+    // Add time to a phase of the current frame
+    public void record(Phase phase, long nanos) {
+        if (slot >= 0) {
+            phaseNanos[phase.ordinal()][slot] += nanos;
+        }
+    }
+
+    // Busy time of each worker in the force phase; idle is what is left of the phase's wall time
+    public void recordWorkers(ComputeBackend backend, long forceNanos) {
+        int workers = backend.getWorkerCount();
+        if (workerBusy.length < workers) {
+            workerBusy = new long[workers];
+            workerIdle = new long[workers];
+        }
+        long max = 0;
+        long total = 0;
+        for (int w = 0; w < workers; w++) {
+            long busy = backend.getWorkerBusyNanos(w);
+            if (busy < 0) {
+                busy = forceNanos; // Untracked: the backend computes on the stepping thread
+            }
+            workerBusy[w] = busy;
+            workerIdle[w] = Math.max(0, forceNanos - busy);
+            max = Math.max(max, busy);
+            total += busy;
+        }
+        workerCount = workers;
+        if (slot >= 0 && total > 0) {
+            imbalance[slot] = max / (total / (double) workers);
+        }
+    }
+
+    public void recordCounts(int particles, long pairs) {
+        particleCount = particles;
+        pairCount = pairs;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    public long getPairCount() {
+        return pairCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public long getWorkerBusyNanos(int worker) {
+        return workerBusy[worker];
+    }
+
+    public long getWorkerIdleNanos(int worker) {
+        return workerIdle[worker];
+    }
+
+    // Frames per second over the window
+    public double getFps() {
+        int samples = sampleCount();
+        if (samples < 2) {
+            return 0;
+        }
+        int newest = slot;
+        int oldest = (int) ((frames - samples) % window);
+        long elapsed = frameStart[newest] - frameStart[oldest];
+        return elapsed > 0 ? (samples - 1) * 1e9 / elapsed : 0;
+    }
+
+    // Phase time at the given quantile (0..1) over the window, in nanoseconds
+    public long percentile(Phase phase, double quantile) {
+        int samples = sampleCount();
+        if (samples == 0) {
+            return 0;
+        }
+        System.arraycopy(phaseNanos[phase.ordinal()], 0, scratch, 0, samples);
+        Arrays.sort(scratch, 0, samples);
+        return percentile(scratch, samples, quantile);
+    }
+
+    // Nearest-rank quantile (0..1) of the first count values of a sorted array; 0 when count is 0
+    public static long percentile(long[] sorted, int count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public double mean(Phase phase) {
+        int samples = sampleCount();
+        if (samples == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < samples; i++) {
+            total += phaseNanos[phase.ordinal()][i];
+        }
+        return total / (double) samples;
+    }
+
+    // Slowest worker's busy time over the mean busy time, averaged over the window (1.0 = balanced)
+    public double getImbalance() {
+        int samples = sampleCount();
+        if (samples == 0) {
+            return 1.0;
+        }
+        double total = 0;
+        for (int i = 0; i < samples; i++) {
+            total += imbalance[i];
+        }
+        return total / samples;
+    }
+
+    private int sampleCount() {
+        return (int) Math.min(frames, window);
+    }
+}
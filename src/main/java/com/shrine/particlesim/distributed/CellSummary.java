@@ -0,0 +1,176 @@
+package com.shrine.particlesim.distributed;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Monopole summary of one rank's particles per {@link SlabDecomposition} cell: total mass at the
+ * center of mass for gravity, and positive and negative charge each at their own center for
+ * Coulomb. Keeping the two signs apart keeps the summary meaningful for a neutral cell, whose
+ * net charge is zero but whose charges still pull on a nearby particle.
+ *
+ * <p>Only non-empty cells are sent. The far field skips the halo layer, whose particles the
+ * receiver already has individually.
+ */
+final class CellSummary {
+    static final int CELL_BYTES = Integer.BYTES + 12 * Double.BYTES;
+
+    private final SlabDecomposition decomposition;
+    private final double[] mass, massX, massY, massZ;
+    private final double[] positive, positiveX, positiveY, positiveZ;
+    private final double[] negative, negativeX, negativeY, negativeZ;
+    private final int[] layer;
+    private int count;
+
+    CellSummary(SlabDecomposition decomposition) {
+        this.decomposition = decomposition;
+        int cells = decomposition.getCellCount();
+        mass = new double[cells];
+        massX = new double[cells];
+        massY = new double[cells];
+        massZ = new double[cells];
+        positive = new double[cells];
+        positiveX = new double[cells];
+        positiveY = new double[cells];
+        positiveZ = new double[cells];
+        negative = new double[cells];
+        negativeX = new double[cells];
+        negativeY = new double[cells];
+        negativeZ = new double[cells];
+        layer = new int[cells];
+    }
+
+    int getCellCount() {
+        return count;
+    }
+
+    // Accumulate the first n particles of state into the full cell grid, then pack the non-empty cells
+    void compute(ParticleArrays state, int n, int rank) {
+        clear(mass, massX, massY, massZ, positive, positiveX, positiveY, positiveZ, negative, negativeX, negativeY, negativeZ);
+        double[] x = state.getX(), y = state.getY(), z = state.getZ();
+        double[] m = state.getMass(), q = state.getCharge();
+        for (int i = 0; i < n; i++) {
+            int c = decomposition.cellOf(rank, x[i], y[i], z[i]);
+            mass[c] += m[i];
+            massX[c] += m[i] * x[i];
+            massY[c] += m[i] * y[i];
+            massZ[c] += m[i] * z[i];
+            if (q[i] > 0) {
+                positive[c] += q[i];
+                positiveX[c] += q[i] * x[i];
+                positiveY[c] += q[i] * y[i];
+                positiveZ[c] += q[i] * z[i];
+            } else if (q[i] < 0) {
+                negative[c] += q[i];
+                negativeX[c] += q[i] * x[i];
+                negativeY[c] += q[i] * y[i];
+                negativeZ[c] += q[i] * z[i];
+            }
+        }
+
+        count = 0;
+        for (int c = 0; c < mass.length; c++) {
+            if (mass[c] == 0 && positive[c] == 0 && negative[c] == 0) {
+                continue;
+            }
+            int k = count++;
+            layer[k] = decomposition.layerOfCell(c);
+            pack(k, c, mass, massX, massY, massZ);
+            pack(k, c, positive, positiveX, positiveY, positiveZ);
+            pack(k, c, negative, negativeX, negativeY, negativeZ);
+        }
+    }
+
+    // Move cell c's weight to slot k with the weighted sums turned into a center
+    private static void pack(int k, int c, double[] weight, double[] wx, double[] wy, double[] wz) {
+        double w = weight[c];
+        weight[k] = w;
+        wx[k] = w != 0 ? wx[c] / w : 0;
+        wy[k] = w != 0 ? wy[c] / w : 0;
+        wz[k] = w != 0 ? wz[c] / w : 0;
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(count);
+        for (int k = 0; k < count; k++) {
+            out.putInt(layer[k]);
+            out.putDouble(mass[k]).putDouble(massX[k]).putDouble(massY[k]).putDouble(massZ[k]);
+            out.putDouble(positive[k]).putDouble(positiveX[k]).putDouble(positiveY[k]).putDouble(positiveZ[k]);
+            out.putDouble(negative[k]).putDouble(negativeX[k]).putDouble(negativeY[k]).putDouble(negativeZ[k]);
+        }
+    }
+
+    void read(ByteBuffer in) {
+        count = in.getInt();
+        for (int k = 0; k < count; k++) {
+            layer[k] = in.getInt();
+            mass[k] = in.getDouble();
+            massX[k] = in.getDouble();
+            massY[k] = in.getDouble();
+            massZ[k] = in.getDouble();
+            positive[k] = in.getDouble();
+            positiveX[k] = in.getDouble();
+            positiveY[k] = in.getDouble();
+            positiveZ[k] = in.getDouble();
+            negative[k] = in.getDouble();
+            negativeX[k] = in.getDouble();
+            negativeY[k] = in.getDouble();
+            negativeZ[k] = in.getDouble();
+        }
+    }
+
+    // Add gravity and Coulomb from every cell except skipLayer to the forces of the first n particles
+    void addFarField(ParticleArrays state, int n, PhysicsConstants constants, int skipLayer) {
+        double gravity = constants.getGravityConstant();
+        double coulomb = constants.getCoulombConstant();
+        double[] x = state.getX(), y = state.getY(), z = state.getZ();
+        double[] m = state.getMass(), q = state.getCharge();
+        double[] fx = state.getFx(), fy = state.getFy(), fz = state.getFz();
+        for (int i = 0; i < n; i++) {
+            double px = x[i], py = y[i], pz = z[i];
+            double gm = gravity * m[i];
+            double kq = coulomb * q[i];
+            double sumX = 0, sumY = 0, sumZ = 0;
+            for (int k = 0; k < count; k++) {
+                if (layer[k] == skipLayer) {
+                    continue;
+                }
+                // Same signs as the pair kernel: gravity pulls toward the cell, like charges push away
+                double s = gm * mass[k] * inverseCube(massX[k] - px, massY[k] - py, massZ[k] - pz);
+                sumX += s * (massX[k] - px);
+                sumY += s * (massY[k] - py);
+                sumZ += s * (massZ[k] - pz);
+                if (kq != 0) {
+                    s = -kq * positive[k] * inverseCube(positiveX[k] - px, positiveY[k] - py, positiveZ[k] - pz);
+                    sumX += s * (positiveX[k] - px);
+                    sumY += s * (positiveY[k] - py);
+                    sumZ += s * (positiveZ[k] - pz);
+                    s = -kq * negative[k] * inverseCube(negativeX[k] - px, negativeY[k] - py, negativeZ[k] - pz);
+                    sumX += s * (negativeX[k] - px);
+                    sumY += s * (negativeY[k] - py);
+                    sumZ += s * (negativeZ[k] - pz);
+                }
+            }
+            fx[i] += sumX;
+            fy[i] += sumY;
+            fz[i] += sumZ;
+        }
+    }
+
+    private static double inverseCube(double dx, double dy, double dz) {
+        double distSq = dx * dx + dy * dy + dz * dz;
+        if (distSq < 1e-16) {
+            return 0;
+        }
+        return 1.0 / (distSq * Math.sqrt(distSq));
+    }
+
+    private static void clear(double[]... arrays) {
+        for (double[] array : arrays) {
+            Arrays.fill(array, 0);
+        }
+    }
+}
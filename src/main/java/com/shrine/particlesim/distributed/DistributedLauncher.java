@@ -0,0 +1,83 @@
+package com.shrine.particlesim.distributed;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a domain-decomposed simulation as separate {@link DomainNode} processes on this machine,
+ * talking over localhost. Each child gets this JVM's flags and classpath; every option except
+ * {@code --ranks} is passed through to the nodes unchanged.
+ *
+ * <pre>
+ * java -cp ... com.shrine.particlesim.distributed.DistributedLauncher --ranks 4 [node options]
+ * </pre>
+ *
+ * Exits with status 1 when any rank fails.
+ */
+public final class DistributedLauncher {
+    private DistributedLauncher() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int ranks = 2;
+        List<String> nodeArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--ranks")) {
+                ranks = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--rank")) {
+                System.err.println("--rank is assigned by the launcher");
+                System.exit(2);
+            } else {
+                nodeArgs.add(args[i]);
+            }
+        }
+        System.exit(launch(ranks, nodeArgs));
+    }
+
+    // Start one JVM per rank and wait for all of them; returns 0 when every rank succeeded
+    public static int launch(int ranks, List<String> nodeArgs) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> jvmArgs = new ArrayList<>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // A debugger agent would try to bind the same port in every child
+            if (!arg.startsWith("-agentlib:jdwp")) {
+                jvmArgs.add(arg);
+            }
+        }
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int rank = 0; rank < ranks; rank++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmArgs);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(DomainNode.class.getName());
+                command.add("--rank");
+                command.add(Integer.toString(rank));
+                command.add("--ranks");
+                command.add(Integer.toString(ranks));
+                command.addAll(nodeArgs);
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+
+            int failed = 0;
+            for (int rank = 0; rank < processes.size(); rank++) {
+                int status = processes.get(rank).waitFor();
+                if (status != 0) {
+                    System.err.println("Rank " + rank + " exited with status " + status);
+                    failed++;
+                }
+            }
+            return failed == 0 ? 0 : 1;
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.shrine.particlesim.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.io.SimDataWriter;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * One rank of a domain-decomposed run: owns the particles in its {@link SlabDecomposition} slab
+ * and talks to every other rank over a socket. Each step has two exchange rounds:
+ * <ol>
+ * <li>migrants: particles that left a slab in the last step go to their new owner;</li>
+ * <li>cell summaries to every rank, plus the halo layer to the two neighbors.</li>
+ * </ol>
+ * The backend then runs on owned plus halo particles, so short-range forces, collisions and
+ * near-field Coulomb and gravity are exact. Every other cell adds its monopole far field, and the
+ * halo copies are dropped after integrating.
+ *
+ * <p>Start one JVM per rank, or use {@link DistributedLauncher}:
+ * <pre>
+ * java -cp ... com.shrine.particlesim.distributed.DomainNode --rank R --ranks N
+ *     [--base-port 47100] [--host 127.0.0.1] [--scenario startup | --particles N] [--seed 42]
+ *     [--steps 100] [--boundary 500] [--halo width] [--cells 8] [--backend name[:params]]
+ *     [--out final.json]
+ * </pre>
+ * Every rank builds the same initial scene from the seed and keeps its own slab. At the end the
+ * particles are gathered on rank 0, which prints a summary and optionally writes them as
+ * {@code sim_data.json}. With one rank this is the plain single-process step.
+ */
+public final class DomainNode implements AutoCloseable {
+    public static final int DEFAULT_BASE_PORT = 47100;
+
+    private static final double BASE_TIMESTEP = 0.166666666667;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final int PARTICLE_BYTES = Integer.BYTES + 1 + 9 * Double.BYTES;
+
+    private final int rank;
+    private final SlabDecomposition decomposition;
+    private final PhysicsConstants constants;
+    private final ComputeBackend backend;
+    private final PeerLink[] links;
+    private final ParticleArrays state = new ParticleArrays();
+    private final ParticleArrays[] migrants;
+    private final CellSummary local;
+    private final CellSummary[] remote;
+    private ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+    private long stepCount;
+    private long migrated;
+    private long haloParticles;
+
+    private DomainNode(int rank, SlabDecomposition decomposition, PhysicsConstants constants, ComputeBackend backend,
+                       PeerLink[] links) {
+        this.rank = rank;
+        this.decomposition = decomposition;
+        this.constants = constants;
+        this.backend = backend;
+        this.links = links;
+        int ranks = decomposition.getRanks();
+        migrants = new ParticleArrays[ranks];
+        remote = new CellSummary[ranks];
+        for (int r = 0; r < ranks; r++) {
+            migrants[r] = new ParticleArrays();
+            remote[r] = new CellSummary(decomposition);
+        }
+        local = new CellSummary(decomposition);
+    }
+
+    // Open the full mesh: listen on basePort + rank, dial every lower rank and accept every higher one
+    public static DomainNode connect(int rank, SlabDecomposition decomposition, InetAddress host, int basePort,
+                                     PhysicsConstants constants, ComputeBackend backend) throws IOException {
+        int ranks = decomposition.getRanks();
+        PeerLink[] links = new PeerLink[ranks];
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            server.bind(new InetSocketAddress(host, basePort + rank), ranks);
+            for (int peer = 0; peer < rank; peer++) {
+                Socket socket = dial(new InetSocketAddress(host, basePort + peer));
+                new DataOutputStream(socket.getOutputStream()).writeInt(rank);
+                links[peer] = new PeerLink(peer, socket);
+            }
+            for (int i = rank + 1; i < ranks; i++) {
+                Socket socket = server.accept();
+                int peer = new DataInputStream(socket.getInputStream()).readInt();
+                if (peer <= rank || peer >= ranks || links[peer] != null) {
+                    socket.close();
+                    throw new IOException("Unexpected hello from rank " + peer);
+                }
+                links[peer] = new PeerLink(peer, socket);
+            }
+        } catch (SocketTimeoutException e) {
+            closeAll(links);
+            throw new IOException("Rank " + rank + " timed out waiting for its peers", e);
+        } catch (IOException e) {
+            closeAll(links);
+            throw e;
+        }
+        return new DomainNode(rank, decomposition, constants, backend, links);
+    }
+
+    private static Socket dial(InetSocketAddress address) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, 1000);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("No rank listening on " + address, e);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to " + address, interrupted);
+                }
+            }
+        }
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public ParticleArrays getState() {
+        return state;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    // Keep the particles of the global scene that fall in this rank's slab, with their ids
+    public void populate(ParticleArrays global) {
+        double[] x = global.getX();
+        for (int i = 0; i < global.size(); i++) {
+            if (decomposition.ownerOf(x[i]) == rank) {
+                copy(global, i, state);
+            }
+        }
+    }
+
+    public void step(double timeStep) throws IOException {
+        exchangeMigrants();
+        int owned = state.size();
+        exchangeSummaries(owned);
+
+        backend.resetForces(state);
+        backend.computeForces(state, constants);
+        for (PeerLink link : links) {
+            if (link != null) {
+                int peer = link.getRank();
+                remote[peer].addFarField(state, owned, constants, decomposition.haloLayer(peer, rank));
+            }
+        }
+        backend.resolveCollisions(state);
+        backend.integrate(state, constants, timeStep, decomposition.getBoundary());
+        state.setSize(owned);
+
+        collectMigrants();
+        stepCount++;
+    }
+
+    private void exchangeMigrants() throws IOException {
+        for (PeerLink link : links) {
+            if (link != null) {
+                ParticleArrays box = migrants[link.getRank()];
+                ByteBuffer message = begin(Integer.BYTES + box.size() * PARTICLE_BYTES);
+                writeParticles(message, box, 0, box.size());
+                link.send(message.flip());
+                box.clear();
+            }
+        }
+        for (PeerLink link : links) {
+            if (link != null) {
+                readParticles(link.receive(), state);
+            }
+        }
+    }
+
+    private void exchangeSummaries(int owned) throws IOException {
+        local.compute(state, owned, rank);
+        for (PeerLink link : links) {
+            if (link == null) {
+                continue;
+            }
+            int haloLayer = decomposition.haloLayer(rank, link.getRank());
+            ByteBuffer message = begin(Integer.BYTES + local.getCellCount() * CellSummary.CELL_BYTES
+                    + Integer.BYTES + (haloLayer >= 0 ? owned * PARTICLE_BYTES : 0));
+            local.write(message);
+            int countAt = message.position();
+            message.putInt(0);
+            if (haloLayer >= 0) {
+                double[] x = state.getX();
+                int count = 0;
+                for (int i = 0; i < owned; i++) {
+                    if (decomposition.layerOf(rank, x[i]) == haloLayer) {
+                        writeParticle(message, state, i);
+                        count++;
+                    }
+                }
+                message.putInt(countAt, count);
+            }
+            link.send(message.flip());
+        }
+        for (PeerLink link : links) {
+            if (link != null) {
+                ByteBuffer message = link.receive();
+                remote[link.getRank()].read(message);
+                haloParticles += readParticles(message, state);
+            }
+        }
+    }
+
+    // Move owned particles that left the slab into the outbox of their new owner
+    private void collectMigrants() {
+        double[] x = state.getX();
+        int kept = 0;
+        int n = state.size();
+        for (int i = 0; i < n; i++) {
+            int owner = decomposition.ownerOf(x[i]);
+            if (owner != rank) {
+                copy(state, i, migrants[owner]);
+                migrated++;
+            } else {
+                if (kept != i) {
+                    move(state, i, kept);
+                }
+                kept++;
+            }
+        }
+        state.setSize(kept);
+    }
+
+    // Collect every rank's particles on rank 0, sorted by id; other ranks return null
+    public ParticleArrays gather(long[] totals) throws IOException {
+        exchangeMigrants(); // Particles that left a slab in the last step are still in the outboxes
+        if (rank != 0) {
+            ByteBuffer message = begin(Integer.BYTES + state.size() * PARTICLE_BYTES + 2 * Long.BYTES);
+            writeParticles(message, state, 0, state.size());
+            message.putLong(migrated).putLong(haloParticles);
+            links[0].send(message.flip());
+            return null;
+        }
+        ParticleArrays all = new ParticleArrays();
+        all.copyFrom(state);
+        totals[0] = migrated;
+        totals[1] = haloParticles;
+        for (PeerLink link : links) {
+            if (link != null) {
+                ByteBuffer message = link.receive();
+                readParticles(message, all);
+                totals[0] += message.getLong();
+                totals[1] += message.getLong();
+            }
+        }
+        return sortById(all);
+    }
+
+    private ByteBuffer begin(int bytes) {
+        if (scratch.capacity() < bytes) {
+            scratch = ByteBuffer.allocate(Math.max(bytes, scratch.capacity() * 2));
+        }
+        return scratch.clear();
+    }
+
+    private static void writeParticles(ByteBuffer out, ParticleArrays s, int from, int to) {
+        out.putInt(to - from);
+        for (int i = from; i < to; i++) {
+            writeParticle(out, s, i);
+        }
+    }
+
+    private static void writeParticle(ByteBuffer out, ParticleArrays s, int i) {
+        out.putInt(s.getId()[i]).put(s.getType()[i]);
+        out.putDouble(s.getX()[i]).putDouble(s.getY()[i]).putDouble(s.getZ()[i]);
+        out.putDouble(s.getVx()[i]).putDouble(s.getVy()[i]).putDouble(s.getVz()[i]);
+        out.putDouble(s.getMass()[i]).putDouble(s.getCharge()[i]).putDouble(s.getRadius()[i]);
+    }
+
+    // Append the particles of a message to s; returns how many
+    private static int readParticles(ByteBuffer in, ParticleArrays s) {
+        int count = in.getInt();
+        s.ensureCapacity(s.size() + count);
+        for (int k = 0; k < count; k++) {
+            int id = in.getInt();
+            byte type = in.get();
+            double x = in.getDouble(), y = in.getDouble(), z = in.getDouble();
+            double vx = in.getDouble(), vy = in.getDouble(), vz = in.getDouble();
+            double mass = in.getDouble(), charge = in.getDouble(), radius = in.getDouble();
+            int i = s.add(x, y, z, vx, vy, vz, charge, mass, radius, type);
+            s.getId()[i] = id;
+        }
+        return count;
+    }
+
+    private static void copy(ParticleArrays from, int i, ParticleArrays to) {
+        int k = to.add(from.getX()[i], from.getY()[i], from.getZ()[i], from.getVx()[i], from.getVy()[i],
+                from.getVz()[i], from.getCharge()[i], from.getMass()[i], from.getRadius()[i], from.getType()[i]);
+        to.getId()[k] = from.getId()[i];
+    }
+
+    private static void move(ParticleArrays s, int from, int to) {
+        s.getX()[to] = s.getX()[from];
+        s.getY()[to] = s.getY()[from];
+        s.getZ()[to] = s.getZ()[from];
+        s.getVx()[to] = s.getVx()[from];
+        s.getVy()[to] = s.getVy()[from];
+        s.getVz()[to] = s.getVz()[from];
+        s.getFx()[to] = s.getFx()[from];
+        s.getFy()[to] = s.getFy()[from];
+        s.getFz()[to] = s.getFz()[from];
+        s.getMass()[to] = s.getMass()[from];
+        s.getCharge()[to] = s.getCharge()[from];
+        s.getRadius()[to] = s.getRadius()[from];
+        s.getType()[to] = s.getType()[from];
+        s.getId()[to] = s.getId()[from];
+    }
+
+    private static ParticleArrays sortById(ParticleArrays s) {
+        long[] keys = new long[s.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) s.getId()[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        ParticleArrays sorted = new ParticleArrays();
+        sorted.ensureCapacity(keys.length);
+        for (long key : keys) {
+            copy(s, (int) key, sorted);
+        }
+        return sorted;
+    }
+
+    // Widest range of the short-range terms: strong force, the swirl band and contact
+    public static double defaultHaloWidth(PhysicsConstants constants) {
+        double maxRadius = 0;
+        for (Species species : Species.values()) {
+            maxRadius = Math.max(maxRadius, species.getRadius());
+        }
+        return Math.max(constants.getStrongForceOuterRadius(), 2 * maxRadius + 20);
+    }
+
+    private static void closeAll(PeerLink[] links) {
+        for (PeerLink link : links) {
+            if (link != null) {
+                try {
+                    link.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing link to rank " + link.getRank() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeAll(links);
+    }
+
+    public static void main(String[] args) {
+        int rank = 0;
+        int ranks = 1;
+        int basePort = DEFAULT_BASE_PORT;
+        String host = "127.0.0.1";
+        String scenario = BuiltInScenarios.STARTUP;
+        int particles = 0;
+        long seed = 42;
+        int steps = 100;
+        double boundary = 500;
+        double halo = defaultHaloWidth(PhysicsConstants.DEFAULT);
+        int cells = 8;
+        String backendSpec = null;
+        Path out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rank" -> rank = Integer.parseInt(args[++i]);
+                case "--ranks" -> ranks = Integer.parseInt(args[++i]);
+                case "--base-port" -> basePort = Integer.parseInt(args[++i]);
+                case "--host" -> host = args[++i];
+                case "--scenario" -> scenario = args[++i];
+                case "--particles" -> particles = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--steps" -> steps = Integer.parseInt(args[++i]);
+                case "--boundary" -> boundary = Double.parseDouble(args[++i]);
+                case "--halo" -> halo = Double.parseDouble(args[++i]);
+                case "--cells" -> cells = Integer.parseInt(args[++i]);
+                case "--backend" -> backendSpec = args[++i];
+                case "--out" -> out = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        ParticleArrays global = new ParticleArrays();
+        if (particles > 0) {
+            BuiltInScenarios.uniform(global, new Random(seed), boundary, particles);
+        } else {
+            BuiltInScenarios.populate(scenario, global, new Random(seed), boundary);
+        }
+        PhysicsConstants constants = PhysicsConstants.DEFAULT;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / ranks);
+        ComputeBackend backend = backendSpec != null
+                ? BackendAutotuner.create(backendSpec)
+                : BackendAutotuner.select(global.size() / ranks, threads, constants);
+
+        try (DomainNode node = connect(rank, new SlabDecomposition(ranks, boundary, halo, cells),
+                InetAddress.getByName(host), basePort, constants, backend)) {
+            node.populate(global);
+            long start = System.nanoTime();
+            for (int s = 0; s < steps; s++) {
+                node.step(BASE_TIMESTEP);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] totals = new long[2];
+            ParticleArrays all = node.gather(totals);
+            if (all != null) {
+                report(all, ranks, steps, elapsed, totals, backend);
+                if (out != null) {
+                    try (SimDataWriter writer = new SimDataWriter(out)) {
+                        writer.writeFrame(steps * BASE_TIMESTEP, all);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Rank " + rank + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void report(ParticleArrays all, int ranks, int steps, long elapsedNanos, long[] totals,
+                               ComputeBackend backend) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d ranks (%s), %d particles, %d steps in %.2f s (%.1f steps/sec)%n", ranks,
+                BackendAutotuner.describe(backend), all.size(), steps, seconds, steps / seconds);
+        System.out.printf("halo %.1f particles/rank/step, %d migrations, kinetic energy %.6g%n",
+                steps > 0 ? totals[1] / (double) (steps * ranks) : 0, totals[0], all.kineticEnergy());
+    }
+}
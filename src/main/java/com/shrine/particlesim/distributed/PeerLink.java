@@ -0,0 +1,94 @@
+package com.shrine.particlesim.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Connection to one other rank. Messages are length-prefixed byte blocks. Sends are queued to a
+ * writer thread so that every rank can send to all peers before reading from any of them without
+ * the peers' socket buffers filling up and deadlocking the exchange.
+ */
+final class PeerLink implements AutoCloseable {
+    private static final byte[] CLOSE = new byte[0];
+
+    private final int rank;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile IOException writeError;
+    private ByteBuffer received = ByteBuffer.allocate(0);
+
+    PeerLink(int rank, Socket socket) throws IOException {
+        this.rank = rank;
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        writer = Thread.ofVirtual().name("domain-link-" + rank).start(this::writeLoop);
+    }
+
+    int getRank() {
+        return rank;
+    }
+
+    void send(ByteBuffer message) throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+        byte[] data = new byte[message.remaining()];
+        message.get(data);
+        outbox.add(data);
+    }
+
+    // The next message; the buffer is reused by the following call
+    ByteBuffer receive() throws IOException {
+        int length = in.readInt();
+        if (received.capacity() < length) {
+            received = ByteBuffer.allocate(Math.max(length, received.capacity() * 2));
+        }
+        received.clear().limit(length);
+        in.readFully(received.array(), 0, length);
+        return received;
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                byte[] data = outbox.take();
+                if (data == CLOSE) {
+                    break;
+                }
+                out.writeInt(data.length);
+                out.write(data);
+                if (outbox.isEmpty()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            writeError = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outbox.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        socket.close();
+    }
+}
@@ -0,0 +1,95 @@
+package com.shrine.particlesim.distributed;
+
+/**
+ * Splits the cube {@code [-boundary, boundary]^3} into equal slabs along x, one per rank, and
+ * each slab into a grid of summary cells. Cells are at least {@code haloWidth} thick along x, so
+ * the one layer of cells facing a neighbor holds every particle within the short-range cutoff of
+ * that neighbor's slab; that layer is what gets sent as the halo.
+ */
+public final class SlabDecomposition {
+    private static final int MAX_LAYERS = 4;
+
+    private final int ranks;
+    private final double boundary;
+    private final double slabWidth;
+    private final int layers;
+    private final double layerWidth;
+    private final int cellsYZ;
+    private final double cellWidthYZ;
+
+    public SlabDecomposition(int ranks, double boundary, double haloWidth, int cellsYZ) {
+        if (ranks < 1 || cellsYZ < 1) {
+            throw new IllegalArgumentException("ranks and cells must be positive");
+        }
+        this.ranks = ranks;
+        this.boundary = boundary;
+        this.slabWidth = 2 * boundary / ranks;
+        if (ranks > 1 && slabWidth < haloWidth) {
+            throw new IllegalArgumentException(String.format(
+                    "%d ranks make %.1f wide slabs, narrower than the %.1f halo", ranks, slabWidth, haloWidth));
+        }
+        this.layers = Math.max(1, Math.min(MAX_LAYERS, (int) (slabWidth / haloWidth)));
+        this.layerWidth = slabWidth / layers;
+        this.cellsYZ = cellsYZ;
+        this.cellWidthYZ = 2 * boundary / cellsYZ;
+    }
+
+    public int getRanks() {
+        return ranks;
+    }
+
+    public double getBoundary() {
+        return boundary;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    public int getCellCount() {
+        return layers * cellsYZ * cellsYZ;
+    }
+
+    public double lower(int rank) {
+        return -boundary + rank * slabWidth;
+    }
+
+    public double upper(int rank) {
+        return rank == ranks - 1 ? boundary : lower(rank + 1);
+    }
+
+    public int ownerOf(double x) {
+        int rank = (int) Math.floor((x + boundary) / slabWidth);
+        return Math.max(0, Math.min(ranks - 1, rank));
+    }
+
+    // Layer of x inside the given rank's slab, 0 at the low face
+    public int layerOf(int rank, double x) {
+        int layer = (int) Math.floor((x - lower(rank)) / layerWidth);
+        return Math.max(0, Math.min(layers - 1, layer));
+    }
+
+    public int cellOf(int rank, double x, double y, double z) {
+        return (layerOf(rank, x) * cellsYZ + axisCell(y)) * cellsYZ + axisCell(z);
+    }
+
+    public int layerOfCell(int cell) {
+        return cell / (cellsYZ * cellsYZ);
+    }
+
+    // Layer of {@code owner}'s slab that {@code viewer} receives as halo, or -1 if they are not neighbors
+    public int haloLayer(int owner, int viewer) {
+        if (viewer == owner + 1) {
+            return layers - 1;
+        }
+        if (viewer == owner - 1) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private int axisCell(double v) {
+        int cell = (int) Math.floor((v + boundary) / cellWidthYZ);
+        return Math.max(0, Math.min(cellsYZ - 1, cell));
+    }
+}
@@ -0,0 +1,92 @@
+package com.shrine.particlesim.ensemble;
+
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * One member of an ensemble: the constants, seed and scene of an independent simulation.
+ */
+public final class EnsembleRun {
+    private final int index;
+    private final int replica;
+    private final long seed;
+    private final PhysicsConstants constants;
+    private final JSONObject parameters;
+    private final String scenario;
+    private final int particles;
+    private final long steps;
+    private final double timeStep;
+    private final double boundarySize;
+
+    /**
+     * @param parameters the swept values, echoed into the results
+     * @param scenario   built-in scenario name, used when particles is 0
+     * @param particles  size of a uniform scene, or 0 for the scenario
+     */
+    public EnsembleRun(int index, int replica, long seed, PhysicsConstants constants, JSONObject parameters,
+                       String scenario, int particles, long steps, double timeStep, double boundarySize) {
+        this.index = index;
+        this.replica = replica;
+        this.seed = seed;
+        this.constants = constants;
+        this.parameters = parameters;
+        this.scenario = scenario;
+        this.particles = particles;
+        this.steps = steps;
+        this.timeStep = timeStep;
+        this.boundarySize = boundarySize;
+    }
+
+    public void populate(ParticleArrays state) {
+        if (particles > 0) {
+            BuiltInScenarios.uniform(state, new Random(seed), boundarySize, particles);
+        } else {
+            BuiltInScenarios.populate(scenario, state, new Random(seed), boundarySize);
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getReplica() {
+        return replica;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public PhysicsConstants getConstants() {
+        return constants;
+    }
+
+    public JSONObject getParameters() {
+        return parameters;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public int getParticles() {
+        return particles;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    public double getBoundarySize() {
+        return boundarySize;
+    }
+}
@@ -0,0 +1,367 @@
+package com.shrine.particlesim.ensemble;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.MultithreadedBackend;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.compute.ScalarBackend;
+
+/**
+ * Runs many independent simulations in one JVM on a shared pool with one thread per core.
+ * <ul>
+ * <li>Small runs are packed, one per pool thread, each on a {@link ScalarBackend}. A run steps
+ * for a short slice and then requeues itself.</li>
+ * <li>Large runs (at least {@code largeThreshold} particles) get a driver thread. Its
+ * {@link MultithreadedBackend} splits every step over the same pool.</li>
+ * </ul>
+ * The pool's queue runs a large run's force chunks before any waiting slice of a small run. A
+ * large step therefore waits at most one slice for a thread, and small runs fill every gap.
+ *
+ * <p>Large runs start first, then small runs in order of decreasing cost. At most a couple
+ * of pool-widths of small runs are in flight. Each finished run appends one JSON line to the
+ * results file at once, so partial sweeps are usable.
+ *
+ * <pre>
+ * java -cp ... com.shrine.particlesim.ensemble.EnsembleScheduler sweep.json results.jsonl
+ *     [--threads N] [--large-threshold 2000] [--energy]
+ * </pre>
+ * See {@link SweepSpec} for the sweep file.
+ */
+public final class EnsembleScheduler implements AutoCloseable {
+    public static final int DEFAULT_LARGE_THRESHOLD = 2000;
+
+    private static final long SLICE_NANOS = 10_000_000L;
+    private static final int CHUNK = 0; // Rank of a large run's worker chunk; runs before any slice
+    private static final int SLICE = 1;
+
+    private final int parallelism;
+    private final int largeThreshold;
+    private final boolean energy;
+    private final PriorityPool pool;
+    private final Semaphore largeSlots;
+    private final Writer results;
+    private final Queue<EnsembleRun> pendingSmall = new ConcurrentLinkedQueue<>();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private CountDownLatch remaining;
+
+    /**
+     * @param energy  also record the potential energy (the backends then sum it in the pair loop)
+     * @param results receives one JSON object per line as runs finish
+     */
+    public EnsembleScheduler(int parallelism, int largeThreshold, boolean energy, Writer results) {
+        this.parallelism = Math.max(1, parallelism);
+        this.largeThreshold = largeThreshold;
+        this.energy = energy;
+        this.results = results;
+        pool = new PriorityPool(this.parallelism);
+        largeSlots = new Semaphore(Math.max(1, this.parallelism / 4));
+    }
+
+    // Run every member and wait for all of them
+    public void runAll(List<EnsembleRun> runs) throws InterruptedException {
+        remaining = new CountDownLatch(runs.size());
+        List<EnsembleRun> small = new ArrayList<>();
+        Map<String, Integer> scenarioSizes = new HashMap<>();
+        for (EnsembleRun run : runs) {
+            int n = particleCount(run, scenarioSizes);
+            if (n >= largeThreshold && parallelism > 1) {
+                Thread.ofPlatform().name("ensemble-large-" + run.getIndex()).daemon(true).start(() -> runLarge(run));
+            } else {
+                small.add(run);
+            }
+        }
+        // Longest first, so the last runs to finish are short ones
+        small.sort(Comparator.comparingDouble((EnsembleRun run) -> cost(run, scenarioSizes)).reversed());
+        pendingSmall.addAll(small);
+        for (int i = 0; i < 2 * parallelism; i++) {
+            startNextSmall();
+        }
+        remaining.await();
+    }
+
+    private void startNextSmall() {
+        EnsembleRun run = pendingSmall.poll();
+        if (run != null) {
+            pool.execute(new PackedRun(run));
+        }
+    }
+
+    // One small run on one pool thread at a time; requeues itself after each slice
+    private final class PackedRun implements Runnable {
+        private final EnsembleRun run;
+        private Simulation simulation;
+        private long stepsDone;
+        private long busyNanos;
+
+        PackedRun(EnsembleRun run) {
+            this.run = run;
+        }
+
+        @Override
+        public void run() {
+            long sliceStart = System.nanoTime();
+            try {
+                if (simulation == null) {
+                    simulation = create(run, new ScalarBackend());
+                }
+                long sliceEnd = sliceStart + SLICE_NANOS;
+                do {
+                    simulation.step(run.getTimeStep());
+                    stepsDone++;
+                } while (stepsDone < run.getSteps() && System.nanoTime() < sliceEnd);
+                busyNanos += System.nanoTime() - sliceStart;
+                if (stepsDone < run.getSteps()) {
+                    pool.execute(this);
+                    return;
+                }
+                finish(run, simulation, "packed", 1, busyNanos);
+            } catch (RuntimeException | Error e) {
+                fail(run, e); // Also for errors: the slice runs inside a future nobody reads
+            }
+            if (simulation != null) {
+                simulation.close();
+            }
+            startNextSmall();
+        }
+    }
+
+    private void runLarge(EnsembleRun run) {
+        try {
+            largeSlots.acquire();
+        } catch (InterruptedException e) {
+            fail(run, e);
+            return;
+        }
+        try (Simulation simulation = create(run, new MultithreadedBackend(parallelism, pool))) {
+            long start = System.nanoTime();
+            for (long s = 0; s < run.getSteps(); s++) {
+                simulation.step(run.getTimeStep());
+            }
+            finish(run, simulation, "parallel", parallelism, System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            fail(run, e);
+        } finally {
+            largeSlots.release();
+        }
+    }
+
+    private Simulation create(EnsembleRun run, ComputeBackend backend) {
+        Simulation simulation = new Simulation(run.getConstants(), run.getBoundarySize(), backend);
+        run.populate(simulation.getState());
+        simulation.setDiagnosticsEnabled(energy);
+        return simulation;
+    }
+
+    private void finish(EnsembleRun run, Simulation simulation, String mode, int workers, long nanos) {
+        JSONObject line = describe(run);
+        ParticleArrays state = simulation.getState();
+        line.put("particles", state.size());
+        line.put("steps", simulation.getStepCount());
+        line.put("mode", mode);
+        line.put("workers", workers);
+        line.put("seconds", nanos / 1e9);
+        line.put("stepsPerSec", nanos > 0 ? simulation.getStepCount() / (nanos / 1e9) : 0);
+        line.put("kineticEnergy", state.kineticEnergy());
+        if (energy && simulation.getBackend().collectDiagnostics(simulation.getDiagnostics())) {
+            line.put("potentialEnergy", simulation.getDiagnostics().getPotentialEnergy());
+        }
+        record(line);
+        completed.incrementAndGet();
+        remaining.countDown();
+    }
+
+    private void fail(EnsembleRun run, Throwable e) {
+        System.err.println("Run " + run.getIndex() + " failed: " + e);
+        record(describe(run).put("error", String.valueOf(e.getMessage())));
+        failed.incrementAndGet();
+        remaining.countDown();
+    }
+
+    private static JSONObject describe(EnsembleRun run) {
+        JSONObject line = new JSONObject();
+        line.put("run", run.getIndex());
+        line.put("replica", run.getReplica());
+        line.put("seed", run.getSeed());
+        line.put("parameters", run.getParameters());
+        return line;
+    }
+
+    private synchronized void record(JSONObject line) {
+        try {
+            results.write(line.toString());
+            results.write('\n');
+            results.flush();
+        } catch (IOException e) {
+            System.err.println("Could not write result of run " + line.opt("run") + ": " + e.getMessage());
+        }
+    }
+
+    private static int particleCount(EnsembleRun run, Map<String, Integer> scenarioSizes) {
+        if (run.getParticles() > 0) {
+            return run.getParticles();
+        }
+        // Scenario sizes do not depend on the seed
+        return scenarioSizes.computeIfAbsent(run.getScenario(), name -> {
+            ParticleArrays scratch = new ParticleArrays();
+            run.populate(scratch);
+            return scratch.size();
+        });
+    }
+
+    // Pair work of the whole run
+    private static double cost(EnsembleRun run, Map<String, Integer> scenarioSizes) {
+        double n = particleCount(run, scenarioSizes);
+        return n * n * run.getSteps();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // Busy fraction of the pool threads since it started
+    public double getUtilization() {
+        return pool.getUtilization();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Fixed pool whose queue orders large-run chunks before small-run slices, FIFO within a rank
+    private static final class PriorityPool extends ThreadPoolExecutor {
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final ThreadLocal<long[]> taskStart = ThreadLocal.withInitial(() -> new long[1]);
+        private final long created = System.nanoTime();
+
+        PriorityPool(int threads) {
+            super(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(64,
+                    Comparator.comparingInt((Runnable r) -> ((Ranked<?>) r).rank)
+                            .thenComparingLong(r -> ((Ranked<?>) r).sequence)), r -> {
+                Thread t = new Thread(r, "ensemble-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        // Backends submit their worker chunks as callables
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new Ranked<>(callable, CHUNK, sequence.getAndIncrement());
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new Ranked<>(Executors.callable(runnable, value), CHUNK,
+                    sequence.getAndIncrement());
+        }
+
+        // Small-run slices come in here
+        @Override
+        public void execute(Runnable command) {
+            super.execute(command instanceof Ranked<?> ? command
+                    : new Ranked<>(Executors.callable(command, null), SLICE,
+                    sequence.getAndIncrement()));
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            taskStart.get()[0] = System.nanoTime();
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            busyNanos.addAndGet(System.nanoTime() - taskStart.get()[0]);
+        }
+
+        double getUtilization() {
+            long elapsed = System.nanoTime() - created;
+            return elapsed > 0 ? busyNanos.get() / (double) (elapsed * getCorePoolSize()) : 0;
+        }
+    }
+
+    private static final class Ranked<T> extends FutureTask<T> {
+        final int rank;
+        final long sequence;
+
+        Ranked(Callable<T> callable, int rank, long sequence) {
+            super(callable);
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: EnsembleScheduler <sweep.json> <results.jsonl> [--threads N]"
+                    + " [--large-threshold N] [--energy]");
+            System.exit(2);
+        }
+        List<EnsembleRun> runs = SweepSpec.read(Path.of(args[0]));
+        Path out = Path.of(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int largeThreshold = DEFAULT_LARGE_THRESHOLD;
+        boolean energy = false;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--large-threshold" -> largeThreshold = Integer.parseInt(args[++i]);
+                case "--energy" -> energy = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        System.err.println("Running " + runs.size() + " simulations on " + threads + " threads");
+        long start = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(out);
+             EnsembleScheduler scheduler = new EnsembleScheduler(threads, largeThreshold, energy, writer)) {
+            scheduler.runAll(runs);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d runs (%d failed) in %.2f s, %.2f runs/sec, pool utilization %.0f%%%n",
+                    scheduler.getCompleted() + scheduler.getFailed(), scheduler.getFailed(), seconds,
+                    runs.size() / seconds, 100 * scheduler.getUtilization());
+            if (scheduler.getFailed() > 0) {
+                System.exit(1);
+            }
+        }
+    }
+}
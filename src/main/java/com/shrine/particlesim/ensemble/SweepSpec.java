@@ -0,0 +1,134 @@
+package com.shrine.particlesim.ensemble;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * Expands a JSON sweep description into {@link EnsembleRun}s: the cartesian product of the
+ * swept constants, times the number of replicas. Unswept constants keep their default value,
+ * and replica r of every grid point uses seed {@code seed + r}, so grid points are compared on
+ * the same initial scenes.
+ *
+ * <pre>
+ * {
+ *   "scenario": "startup",        (or "particles": 500 for a uniform scene)
+ *   "steps": 500, "timeStep": 0.166666666667, "boundary": 500,
+ *   "replicas": 3, "seed": 1,
+ *   "sweep": {
+ *     "coulomb": [2e5, 4e5, 8e5],
+ *     "strong": {"from": 3e5, "to": 1.2e6, "count": 4, "log": true},
+ *     "gravity": 10, "strongInner": [7, 9], "strongOuter": [27], "maxSpeed": 1e4
+ *   }
+ * }
+ * </pre>
+ */
+public final class SweepSpec {
+    static final List<String> PARAMETERS = List.of("coulomb", "strong", "gravity", "strongInner", "strongOuter",
+            "maxSpeed");
+
+    private SweepSpec() {
+    }
+
+    public static List<EnsembleRun> read(Path file) throws IOException {
+        return expand(new JSONObject(Files.readString(file)));
+    }
+
+    public static List<EnsembleRun> expand(JSONObject spec) {
+        String scenario = spec.optString("scenario", BuiltInScenarios.STARTUP);
+        int particles = spec.optInt("particles", 0);
+        long steps = spec.optLong("steps", 500);
+        double timeStep = spec.optDouble("timeStep", 0.166666666667);
+        double boundary = spec.optDouble("boundary", 500);
+        int replicas = Math.max(1, spec.optInt("replicas", 1));
+        long seed = spec.optLong("seed", 1);
+        if (particles <= 0 && !BuiltInScenarios.NAMES.contains(scenario)) {
+            throw new IllegalArgumentException("Unknown scenario: " + scenario + " (known: " + BuiltInScenarios.NAMES + ")");
+        }
+
+        JSONObject sweep = spec.has("sweep") ? spec.getJSONObject("sweep") : new JSONObject();
+        for (String key : sweep.keySet()) {
+            if (!PARAMETERS.contains(key)) {
+                throw new IllegalArgumentException("Unknown sweep parameter: " + key + " (known: " + PARAMETERS + ")");
+            }
+        }
+        Map<String, double[]> axes = new LinkedHashMap<>();
+        PhysicsConstants d = PhysicsConstants.DEFAULT;
+        axes.put("coulomb", values(sweep, "coulomb", d.getCoulombConstant()));
+        axes.put("strong", values(sweep, "strong", d.getStrongForceConstant()));
+        axes.put("gravity", values(sweep, "gravity", d.getGravityConstant()));
+        axes.put("strongInner", values(sweep, "strongInner", d.getStrongForceInnerRadius()));
+        axes.put("strongOuter", values(sweep, "strongOuter", d.getStrongForceOuterRadius()));
+        axes.put("maxSpeed", values(sweep, "maxSpeed", d.getMaxSpeed()));
+
+        List<double[]> points = new ArrayList<>();
+        product(new ArrayList<>(axes.values()), 0, new double[axes.size()], points);
+        List<EnsembleRun> runs = new ArrayList<>(points.size() * replicas);
+        for (int replica = 0; replica < replicas; replica++) {
+            for (double[] p : points) {
+                JSONObject parameters = new JSONObject();
+                for (int a = 0; a < PARAMETERS.size(); a++) {
+                    if (sweep.has(PARAMETERS.get(a))) {
+                        parameters.put(PARAMETERS.get(a), p[a]);
+                    }
+                }
+                PhysicsConstants constants = new PhysicsConstants(p[1], p[2], p[0], p[3], p[4], p[5]);
+                runs.add(new EnsembleRun(runs.size(), replica, seed + replica, constants, parameters, scenario,
+                        particles, steps, timeStep, boundary));
+            }
+        }
+        return runs;
+    }
+
+    // A single number, an array, or {"from", "to", "count", "log"}
+    static double[] values(JSONObject sweep, String key, double defaultValue) {
+        if (!sweep.has(key)) {
+            return new double[] {defaultValue};
+        }
+        Object value = sweep.get(key);
+        if (value instanceof JSONArray array) {
+            double[] values = new double[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = array.getDouble(i);
+            }
+            return values;
+        }
+        if (value instanceof JSONObject range) {
+            double from = range.getDouble("from");
+            double to = range.getDouble("to");
+            int count = range.getInt("count");
+            boolean log = range.optBoolean("log", false);
+            if (count < 1 || (log && (from <= 0 || to <= 0))) {
+                throw new IllegalArgumentException("Bad range for " + key + ": " + range);
+            }
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                double t = count == 1 ? 0 : i / (double) (count - 1);
+                values[i] = log ? from * Math.pow(to / from, t) : from + (to - from) * t;
+            }
+            return values;
+        }
+        return new double[] {sweep.getDouble(key)};
+    }
+
+    private static void product(List<double[]> axes, int axis, double[] current, List<double[]> out) {
+        if (axis == axes.size()) {
+            out.add(current.clone());
+            return;
+        }
+        for (double v : axes.get(axis)) {
+            current[axis] = v;
+            product(axes, axis + 1, current, out);
+        }
+    }
+}
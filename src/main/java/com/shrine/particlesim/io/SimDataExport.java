@@ -0,0 +1,54 @@
+package com.shrine.particlesim.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.shrine.particlesim.recording.TrajectoryFrame;
+import com.shrine.particlesim.recording.TrajectoryReader;
+
+/**
+ * Converts a trajectory recording to a {@code sim_data.json} file for the Python tools,
+ * streaming one frame at a time. The recorded step is written as the frame's time.
+ *
+ * <pre>
+ * java -cp ... com.shrine.particlesim.io.SimDataExport recording.traj sim_data.json [--every 1]
+ * </pre>
+ */
+public final class SimDataExport {
+    private SimDataExport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SimDataExport <recording> <out.json> [--every N]");
+            System.exit(2);
+        }
+        Path recording = Path.of(args[0]);
+        Path out = Path.of(args[1]);
+        int every = 1;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--every" -> every = Math.max(1, Integer.parseInt(args[++i]));
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        long frames = export(recording, out, every);
+        System.out.println("Wrote " + frames + " frames to " + out);
+    }
+
+    // Write every {@code every}-th frame of a recording; returns the number of frames written
+    public static long export(Path recording, Path out, int every) throws IOException {
+        TrajectoryFrame frame = new TrajectoryFrame();
+        try (TrajectoryReader reader = new TrajectoryReader(recording);
+             SimDataWriter writer = new SimDataWriter(out)) {
+            for (int f = 0; f < reader.getFrameCount(); f += every) {
+                reader.read(f, frame);
+                writer.writeFrame(frame.getStep(), frame);
+            }
+            return writer.getFramesWritten();
+        }
+    }
+}
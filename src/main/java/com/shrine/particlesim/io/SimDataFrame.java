@@ -0,0 +1,59 @@
+package com.shrine.particlesim.io;
+
+import java.util.Arrays;
+
+/**
+ * One frame of a {@code sim_data.json} file in primitive arrays. Ids are dense numbers the
+ * {@link SimDataReader} assigns to the file's id strings; {@link SimDataReader#getIdName}
+ * gives the original text back. Frames are reused, so their arrays may be longer than
+ * {@link #size()}. Positions without a {@code z} are in the z = 0 plane.
+ */
+public final class SimDataFrame {
+    double time;
+    int size;
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] z = new double[0];
+    int[] id = new int[0];
+    byte[] type = new byte[0];
+
+    void ensureCapacity(int n) {
+        if (x.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        id = Arrays.copyOf(id, capacity);
+        type = Arrays.copyOf(type, capacity);
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public int[] getId() {
+        return id;
+    }
+
+    public byte[] getType() {
+        return type;
+    }
+}
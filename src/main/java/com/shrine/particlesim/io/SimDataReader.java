@@ -0,0 +1,469 @@
+package com.shrine.particlesim.io;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Streaming reader for the {@code sim_data.json} files our Python tools write: a top-level
+ * array of {@code {"time": t, "particles": [{"id", "x", "y", "type"}, ...]}} frames (an
+ * optional {@code "z"} is read too, other keys are skipped). Frames are decoded one at a time
+ * into a reused {@link SimDataFrame}, so memory depends on the largest frame and the number
+ * of distinct ids, not on the size of the file.
+ *
+ * <p>Number parsing takes an exact fast path for the usual short decimals and falls back to
+ * {@link Double#parseDouble} otherwise. An id that matches the id in the same slot of the
+ * previous frame is resolved without a lookup.
+ */
+public class SimDataReader implements AutoCloseable {
+    private static final int BUFFER_CHARS = 1 << 16;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final Species[] SPECIES = Species.values();
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> idNames = new ArrayList<>();
+    private final HashMap<String, Integer> idLookup = new HashMap<>();
+    private int[] lastIds = new int[0];
+    private int position;
+    private int limit;
+    private long consumed; // Characters before the buffer, for error messages
+    private boolean started;
+    private boolean finished;
+    private long frames;
+
+    public SimDataReader(Path file) throws IOException {
+        this(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    public SimDataReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the first frame of a file and add its particles to the state, at rest, with the
+     * charge, mass and radius of their species. Returns the number of particles added.
+     */
+    public static int importFirstFrame(Path file, ParticleArrays state) throws IOException {
+        try (SimDataReader reader = new SimDataReader(file)) {
+            SimDataFrame frame = new SimDataFrame();
+            if (!reader.next(frame)) {
+                return 0;
+            }
+            state.ensureCapacity(state.size() + frame.size);
+            for (int i = 0; i < frame.size; i++) {
+                state.add(frame.x[i], frame.y[i], frame.z[i], 0, 0, 0, Species.fromTypeCode(frame.type[i]));
+            }
+            return frame.size;
+        }
+    }
+
+    // Decode the next frame into {@code frame}; false once the array has ended
+    public boolean next(SimDataFrame frame) throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            expect('[');
+            started = true;
+            if (peek() == ']') {
+                position++;
+                finished = true;
+                return false;
+            }
+        } else {
+            int c = read();
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+            if (c != ',') {
+                throw error("expected ',' or ']' after a frame");
+            }
+        }
+        readFrame(frame);
+        frames++;
+        return true;
+    }
+
+    private void readFrame(SimDataFrame frame) throws IOException {
+        frame.time = 0;
+        frame.size = 0;
+        expect('{');
+        if (peek() == '}') {
+            position++;
+            return;
+        }
+        do {
+            readString();
+            expect(':');
+            if (textEquals("time")) {
+                frame.time = readNumber();
+            } else if (textEquals("particles")) {
+                readParticles(frame);
+            } else {
+                skipValue();
+            }
+        } while (separator('}'));
+    }
+
+    private void readParticles(SimDataFrame frame) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            position++;
+            return;
+        }
+        int n = 0;
+        do {
+            frame.ensureCapacity(n + 1);
+            readParticle(frame, n);
+            n++;
+        } while (separator(']'));
+        frame.size = n;
+    }
+
+    private void readParticle(SimDataFrame frame, int i) throws IOException {
+        double x = 0, y = 0, z = 0;
+        int id = -1;
+        int type = -1;
+        expect('{');
+        if (peek() != '}') {
+            do {
+                readString();
+                expect(':');
+                if (textEquals("x")) {
+                    x = readNumber();
+                } else if (textEquals("y")) {
+                    y = readNumber();
+                } else if (textEquals("z")) {
+                    z = readNumber();
+                } else if (textEquals("id")) {
+                    if (peek() == '"') {
+                        readString();
+                    } else {
+                        readNumber(); // Numeric ids keep their text in the scratch buffer
+                    }
+                    id = resolveId(i);
+                } else if (textEquals("type")) {
+                    readString();
+                    type = resolveType();
+                } else {
+                    skipValue();
+                }
+            } while (separator('}'));
+        } else {
+            position++;
+        }
+        if (id < 0 || type < 0) {
+            throw error("particle " + i + " of frame " + frames + " needs an id and a type");
+        }
+        frame.x[i] = x;
+        frame.y[i] = y;
+        frame.z[i] = z;
+        frame.id[i] = id;
+        frame.type[i] = (byte) type;
+    }
+
+    // Dense id for the text in the scratch buffer
+    private int resolveId(int slot) {
+        if (slot < lastIds.length && !idNames.isEmpty() && textEquals(idNames.get(lastIds[slot]))) {
+            return lastIds[slot];
+        }
+        String name = text.toString();
+        Integer id = idLookup.get(name);
+        if (id == null) {
+            id = idNames.size();
+            idNames.add(name);
+            idLookup.put(name, id);
+        }
+        if (slot >= lastIds.length) {
+            lastIds = Arrays.copyOf(lastIds, Math.max(slot + 1, lastIds.length * 2));
+        }
+        lastIds[slot] = id;
+        return id;
+    }
+
+    private int resolveType() throws IOException {
+        for (Species species : SPECIES) {
+            if (textEquals(species.getTypeName())) {
+                return species.getTypeCode();
+            }
+        }
+        throw error("unknown particle type \"" + text + "\"");
+    }
+
+    // The original text of an id
+    public String getIdName(int id) {
+        return idNames.get(id);
+    }
+
+    public int getIdCount() {
+        return idNames.size();
+    }
+
+    public long getFramesRead() {
+        return frames;
+    }
+
+    // Tokens
+
+    private boolean textEquals(String value) {
+        int length = value.length();
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // After a member: true if a ',' follows, false at the closing character
+    private boolean separator(char close) throws IOException {
+        int c = read();
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw error("expected ',' or '" + close + "'");
+    }
+
+    private void expect(char expected) throws IOException {
+        if (read() != expected) {
+            throw error("expected '" + expected + "'");
+        }
+    }
+
+    // Next non-whitespace character, consumed
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+        }
+        return c;
+    }
+
+    // Next non-whitespace character, not consumed; -1 at the end of the input
+    private int peek() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private int readRaw() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peekRaw() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    // Read a string into the scratch buffer
+    private void readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            int c = readRaw();
+            if (c < 0) {
+                throw error("unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                int escaped = readRaw();
+                switch (escaped) {
+                    case '"', '\\', '/' -> text.append((char) escaped);
+                    case 'b' -> text.append('\b');
+                    case 'f' -> text.append('\f');
+                    case 'n' -> text.append('\n');
+                    case 'r' -> text.append('\r');
+                    case 't' -> text.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int k = 0; k < 4; k++) {
+                            int digit = Character.digit(readRaw(), 16);
+                            if (digit < 0) {
+                                throw error("bad \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                    }
+                    default -> throw error("bad escape");
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    // Read a number; its text is left in the scratch buffer
+    private double readNumber() throws IOException {
+        peek();
+        text.setLength(0);
+        boolean negative = false;
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean afterPoint = false;
+        boolean anyDigit = false;
+        int c = peekRaw();
+        if (c == '-') {
+            negative = true;
+            text.append('-');
+            position++;
+            c = peekRaw();
+        }
+        while (true) {
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                anyDigit = true;
+                if (mantissa == 0 && digit == 0) {
+                    if (afterPoint) {
+                        exponent--;
+                    }
+                } else if (significant < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    significant++;
+                    if (afterPoint) {
+                        exponent--;
+                    }
+                } else {
+                    exact = false;
+                    if (!afterPoint) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !afterPoint) {
+                afterPoint = true;
+            } else {
+                break;
+            }
+            text.append((char) c);
+            position++;
+            c = peekRaw();
+        }
+        if (c == 'e' || c == 'E') {
+            text.append((char) c);
+            position++;
+            c = peekRaw();
+            int sign = 1;
+            if (c == '+' || c == '-') {
+                sign = c == '-' ? -1 : 1;
+                text.append((char) c);
+                position++;
+                c = peekRaw();
+            }
+            int value = 0;
+            while (c >= '0' && c <= '9') {
+                value = Math.min(100_000, value * 10 + (c - '0'));
+                text.append((char) c);
+                position++;
+                c = peekRaw();
+            }
+            exponent += sign * value;
+        }
+        if (!anyDigit) {
+            throw error("expected a number");
+        }
+        double result;
+        if (exact && significant <= 15 && Math.abs(exponent) <= 22) {
+            // Both operands are exact doubles, so one multiply or divide rounds correctly
+            result = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -result : result;
+        }
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw error("bad number \"" + text + "\"");
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = peek();
+        switch (c) {
+            case '"' -> readString();
+            case '{', '[' -> {
+                position++;
+                char close = c == '{' ? '}' : ']';
+                if (peek() == close) {
+                    position++;
+                    return;
+                }
+                do {
+                    if (c == '{') {
+                        readString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (separator(close));
+            }
+            case 't' -> literal("true");
+            case 'f' -> literal("false");
+            case 'n' -> literal("null");
+            default -> readNumber();
+        }
+    }
+
+    private void literal(String word) throws IOException {
+        for (int k = 0; k < word.length(); k++) {
+            if (readRaw() != word.charAt(k)) {
+                throw error("expected " + word);
+            }
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("Malformed sim data at character " + (consumed + position) + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.shrine.particlesim.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.recording.TrajectoryFrame;
+
+/**
+ * Streaming writer for {@code sim_data.json} files, in the layout Python's {@code json.dump}
+ * produces. Each frame is written as soon as it is given, so exporting a long run needs no
+ * more memory than one frame. Ids are written as strings, positions include {@code z}.
+ * Closing the writer ends the top-level array.
+ */
+public class SimDataWriter implements AutoCloseable {
+    private static final String[] TYPE_NAMES = new String[ParticleArrays.NEUTRON + 1];
+
+    static {
+        for (Species species : Species.values()) {
+            TYPE_NAMES[species.getTypeCode()] = species.getTypeName();
+        }
+    }
+
+    private final Writer out;
+    private long frames;
+    private boolean closed;
+
+    public SimDataWriter(Path file) throws IOException {
+        this(new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    public SimDataWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void writeFrame(double time, ParticleArrays state) throws IOException {
+        beginFrame(time);
+        double[] x = state.getX(), y = state.getY(), z = state.getZ();
+        int[] id = state.getId();
+        byte[] type = state.getType();
+        for (int i = 0; i < state.size(); i++) {
+            writeParticle(i, id[i], Double.toString(x[i]), Double.toString(y[i]), Double.toString(z[i]), type[i]);
+        }
+        out.write("]}");
+    }
+
+    public void writeFrame(double time, TrajectoryFrame frame) throws IOException {
+        beginFrame(time);
+        float[] x = frame.getX(), y = frame.getY(), z = frame.getZ();
+        int[] id = frame.getId();
+        byte[] type = frame.getType();
+        for (int i = 0; i < frame.size(); i++) {
+            writeParticle(i, id[i], Float.toString(x[i]), Float.toString(y[i]), Float.toString(z[i]), type[i]);
+        }
+        out.write("]}");
+    }
+
+    private void beginFrame(double time) throws IOException {
+        out.write(frames == 0 ? "[" : ", ");
+        out.write("{\"time\": ");
+        out.write(time == Math.rint(time) && Math.abs(time) < 1e15 ? Long.toString((long) time) : Double.toString(time));
+        out.write(", \"particles\": [");
+        frames++;
+    }
+
+    private void writeParticle(int i, int id, String x, String y, String z, byte type) throws IOException {
+        if (i > 0) {
+            out.write(", ");
+        }
+        out.write("{\"id\": \"");
+        out.write(Integer.toString(id));
+        out.write("\", \"x\": ");
+        out.write(x);
+        out.write(", \"y\": ");
+        out.write(y);
+        out.write(", \"z\": ");
+        out.write(z);
+        out.write(", \"type\": \"");
+        out.write(type >= 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : Species.NEUTRON.getTypeName());
+        out.write("\"}");
+    }
+
+    public long getFramesWritten() {
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.write(frames == 0 ? "[]" : "]");
+        out.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.shrine.particlesim.recording;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Small gang of daemon threads that run a block task over {@code [0, blocks)}. The calling
+ * thread takes blocks too. Blocks are handed out through a shared counter, so uneven blocks
+ * balance themselves. Every worker checks in before a run returns, so no worker can
+ * still be holding the previous task when the next run starts. A run allocates nothing,
+ * which lets the codec stay allocation-free per frame. Runs must not overlap; each codec
+ * owns its own gang.
+ */
+final class BlockWorkers implements AutoCloseable {
+    interface BlockTask {
+        void run(int block);
+    }
+
+    private final Thread[] threads;
+    private final AtomicInteger nextBlock = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger checkedIn = new AtomicInteger();
+    private volatile BlockTask task;
+    private volatile int blockCount;
+    private volatile int generation;
+    private volatile boolean running = true;
+    private volatile Thread caller;
+    private volatile Throwable failure;
+
+    BlockWorkers(int threadCount, String name) {
+        threads = new Thread[Math.max(0, threadCount - 1)];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(this::work, name + "-" + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+    }
+
+    void run(BlockTask body, int blocks) {
+        if (threads.length == 0 || blocks <= 1) {
+            for (int b = 0; b < blocks; b++) {
+                body.run(b);
+            }
+            return;
+        }
+        caller = Thread.currentThread();
+        failure = null;
+        task = body;
+        blockCount = blocks;
+        completed.set(0);
+        checkedIn.set(0);
+        nextBlock.set(0);
+        generation++;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        takeBlocks(body, blocks);
+        while (completed.get() < blocks || checkedIn.get() < threads.length) {
+            LockSupport.parkNanos(this, 50_000);
+        }
+        task = null;
+        Throwable error = failure;
+        if (error != null) {
+            throw new IllegalStateException("Error in codec worker", error);
+        }
+    }
+
+    private void takeBlocks(BlockTask body, int blocks) {
+        int block;
+        while ((block = nextBlock.getAndIncrement()) < blocks) {
+            try {
+                body.run(block);
+            } catch (Throwable e) {
+                failure = e;
+            }
+            completed.incrementAndGet();
+        }
+    }
+
+    private void work() {
+        int seen = 0;
+        while (running) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            takeBlocks(task, blockCount);
+            checkedIn.incrementAndGet();
+            LockSupport.unpark(caller);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
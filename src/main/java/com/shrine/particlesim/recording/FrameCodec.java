@@ -0,0 +1,111 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout and shared helpers of the compressed frame format used by {@link FrameEncoder} and
+ * {@link FrameDecoder}. Positions are quantized to fixed point over the box
+ * {@code [-boundary, boundary]} with a configurable number of bits per axis. A keyframe stores
+ * the quantized positions, ids and type codes; the frames after it store only the difference
+ * of each quantized position from the keyframe, so any frame decodes from its keyframe alone.
+ * Particles are encoded in independent blocks of varints, which is what lets both sides work
+ * on blocks in parallel.
+ *
+ * <pre>
+ * int MAGIC, byte kind, byte bits per axis, short reserved, int particle count,
+ * long step, double boundary size, long keyframe step, int block count,
+ * int[block count] block lengths, then the blocks back to back
+ * key block    per particle: varint qx, qy, qz, zigzag varint id - previous id (0 for the
+ *              first particle of a block), byte type
+ * delta block  per particle: zigzag varint qx - key qx, qy - key qy, qz - key qz
+ * </pre>
+ *
+ * Blocks hold {@link #BLOCK_SIZE} particles, the last one possibly fewer. All multi-byte
+ * header fields are little-endian.
+ */
+public final class FrameCodec {
+    static final int MAGIC = 0x4D524651; // "QFRM" read as little-endian bytes
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+    static final int HEADER_BYTES = 40;
+    static final int BLOCK_SIZE = 8192;
+    static final int MIN_BITS = 8;
+    static final int MAX_BITS = 30;
+
+    // Worst case bytes one particle takes in a key block
+    private static final int MAX_PARTICLE_BYTES = 3 * 5 + 5 + 1;
+
+    private FrameCodec() {
+    }
+
+    // Upper bound of an encoded frame of n particles, for sizing output buffers
+    public static int maxEncodedBytes(int n) {
+        return HEADER_BYTES + 4 * blockCount(n) + n * MAX_PARTICLE_BYTES;
+    }
+
+    static int maxBlockBytes() {
+        return BLOCK_SIZE * MAX_PARTICLE_BYTES;
+    }
+
+    static int blockCount(int n) {
+        return (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    public static boolean isKeyframe(ByteBuffer frame) {
+        return frame.get(frame.position() + 4) == KEYFRAME;
+    }
+
+    public static long getStep(ByteBuffer frame) {
+        return frame.getLong(frame.position() + 12);
+    }
+
+    // Largest distance between an encoded position and its decoded value (half a quantum)
+    public static double quantizationError(int bitsPerAxis, double boundary) {
+        return 0.5 * (2 * boundary) / levels(bitsPerAxis);
+    }
+
+    static int levels(int bits) {
+        return (1 << bits) - 1;
+    }
+
+    static void checkBits(int bitsPerAxis) {
+        if (bitsPerAxis < MIN_BITS || bitsPerAxis > MAX_BITS) {
+            throw new IllegalArgumentException("Bits per axis must be between " + MIN_BITS + " and " + MAX_BITS);
+        }
+    }
+
+    static int quantize(double value, double boundary, double scale, int levels) {
+        double scaled = (value + boundary) * scale + 0.5; // Truncating after +0.5 rounds; clamped below
+        return (int) Math.max(0, Math.min(levels, (long) scaled));
+    }
+
+    static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    // Value in the low 32 bits, position after it in the high 32 bits
+    static long readVarint(byte[] in, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes frames written by {@link FrameEncoder} into {@link TrajectoryFrame}s. Only
+ * positions, ids and type codes are carried; velocities in the output are left as they
+ * were. A delta frame can only be decoded after its keyframe. Blocks are decoded on a small
+ * worker gang, and once the buffers have grown to the largest frame seen, decoding
+ * allocates nothing.
+ */
+public class FrameDecoder implements AutoCloseable {
+    private final BlockWorkers workers;
+    private final BlockWorkers.BlockTask decodeBlock = this::decodeBlock;
+
+    // Current keyframe
+    private int[] keyQ = new int[0];
+    private int[] keyId = new int[0];
+    private byte[] keyType = new byte[0];
+    private int keyCount = -1;
+    private long keyStep = Long.MIN_VALUE;
+
+    private byte[][] blockBytes = new byte[0][];
+    private int[] blockOffset = new int[0];
+    private int[] blockLength = new int[0];
+
+    // Inputs of the frame being decoded, read by the block tasks
+    private ByteBuffer input;
+    private TrajectoryFrame output;
+    private boolean decodingKeyframe;
+    private int frameSize;
+    private double boundary;
+    private double quantum;
+
+    public FrameDecoder(int threads) {
+        workers = new BlockWorkers(threads, "frame-decoder");
+    }
+
+    // True if a delta frame at the buffer's position can be decoded with the current keyframe
+    public boolean canDecode(ByteBuffer frame) {
+        if (FrameCodec.isKeyframe(frame)) {
+            return true;
+        }
+        return frame.order(ByteOrder.LITTLE_ENDIAN).getLong(frame.position() + 28) == keyStep;
+    }
+
+    /**
+     * Decode the frame at {@code in}'s position into {@code out} and advance past it.
+     * Throws {@link IllegalStateException} for a delta frame whose keyframe was not the last
+     * keyframe decoded.
+     */
+    public void decode(ByteBuffer in, TrajectoryFrame out) {
+        int start = in.position();
+        ByteOrder order = in.order();
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt(start) != FrameCodec.MAGIC) {
+                throw new IllegalArgumentException("Not an encoded frame");
+            }
+            decodingKeyframe = in.get(start + 4) == FrameCodec.KEYFRAME;
+            int bits = in.get(start + 5);
+            FrameCodec.checkBits(bits);
+            int n = in.getInt(start + 8);
+            long step = in.getLong(start + 12);
+            boundary = in.getDouble(start + 20);
+            long frameKeyStep = in.getLong(start + 28);
+            int blocks = in.getInt(start + 36);
+            if (blocks != FrameCodec.blockCount(n)) {
+                throw new IllegalArgumentException("Corrupt frame: " + blocks + " blocks for " + n + " particles");
+            }
+            if (decodingKeyframe) {
+                ensureKeyCapacity(n);
+            } else if (frameKeyStep != keyStep || n != keyCount) {
+                throw new IllegalStateException("Frame at step " + step + " needs the keyframe at step " + frameKeyStep);
+            }
+            quantum = 2 * boundary / FrameCodec.levels(bits);
+
+            ensureBlocks(blocks);
+            int offset = start + FrameCodec.HEADER_BYTES + 4 * blocks;
+            for (int b = 0; b < blocks; b++) {
+                blockLength[b] = in.getInt(start + FrameCodec.HEADER_BYTES + 4 * b);
+                blockOffset[b] = offset;
+                offset += blockLength[b];
+            }
+
+            out.ensureCapacity(n);
+            frameSize = n;
+            input = in;
+            output = out;
+            workers.run(decodeBlock, blocks);
+            input = null;
+            output = null;
+            out.size = n;
+            out.step = step;
+            out.boundarySize = boundary;
+            if (decodingKeyframe) {
+                keyCount = n;
+                keyStep = step;
+            }
+            in.position(offset);
+        } finally {
+            in.order(order);
+        }
+    }
+
+    private void decodeBlock(int block) {
+        int length = blockLength[block];
+        byte[] bytes = blockBytes[block];
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, FrameCodec.maxBlockBytes())];
+            blockBytes[block] = bytes;
+        }
+        input.get(blockOffset[block], bytes, 0, length);
+
+        int from = block * FrameCodec.BLOCK_SIZE;
+        int to = Math.min(frameSize, from + FrameCodec.BLOCK_SIZE);
+        TrajectoryFrame out = output;
+        float[] x = out.x, y = out.y, z = out.z;
+        int pos = 0;
+        long packed;
+        if (decodingKeyframe) {
+            int previousId = 0;
+            for (int i = from; i < to; i++) {
+                packed = FrameCodec.readVarint(bytes, pos);
+                keyQ[3 * i] = (int) packed;
+                packed = FrameCodec.readVarint(bytes, (int) (packed >>> 32));
+                keyQ[3 * i + 1] = (int) packed;
+                packed = FrameCodec.readVarint(bytes, (int) (packed >>> 32));
+                keyQ[3 * i + 2] = (int) packed;
+                packed = FrameCodec.readVarint(bytes, (int) (packed >>> 32));
+                previousId += FrameCodec.unzigzag((int) packed);
+                pos = (int) (packed >>> 32);
+                keyId[i] = previousId;
+                keyType[i] = bytes[pos++];
+                x[i] = (float) (keyQ[3 * i] * quantum - boundary);
+                y[i] = (float) (keyQ[3 * i + 1] * quantum - boundary);
+                z[i] = (float) (keyQ[3 * i + 2] * quantum - boundary);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                packed = FrameCodec.readVarint(bytes, pos);
+                int qx = keyQ[3 * i] + FrameCodec.unzigzag((int) packed);
+                packed = FrameCodec.readVarint(bytes, (int) (packed >>> 32));
+                int qy = keyQ[3 * i + 1] + FrameCodec.unzigzag((int) packed);
+                packed = FrameCodec.readVarint(bytes, (int) (packed >>> 32));
+                int qz = keyQ[3 * i + 2] + FrameCodec.unzigzag((int) packed);
+                pos = (int) (packed >>> 32);
+                x[i] = (float) (qx * quantum - boundary);
+                y[i] = (float) (qy * quantum - boundary);
+                z[i] = (float) (qz * quantum - boundary);
+            }
+        }
+        System.arraycopy(keyId, from, out.id, from, to - from);
+        System.arraycopy(keyType, from, out.type, from, to - from);
+        if (pos != length) {
+            throw new IllegalArgumentException("Corrupt frame: block " + block + " has " + length + " bytes, decoded " + pos);
+        }
+    }
+
+    private void ensureBlocks(int blocks) {
+        if (blockBytes.length >= blocks) {
+            return;
+        }
+        byte[][] grown = new byte[blocks][];
+        System.arraycopy(blockBytes, 0, grown, 0, blockBytes.length);
+        for (int b = blockBytes.length; b < blocks; b++) {
+            grown[b] = new byte[0];
+        }
+        blockBytes = grown;
+        blockOffset = new int[blocks];
+        blockLength = new int[blocks];
+    }
+
+    private void ensureKeyCapacity(int n) {
+        if (keyId.length < n) {
+            keyQ = new int[3 * n];
+            keyId = new int[n];
+            keyType = new byte[n];
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+}
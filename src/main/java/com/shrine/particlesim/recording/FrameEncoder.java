@@ -0,0 +1,236 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Encodes {@link TrajectoryFrame}s into the {@link FrameCodec} format. A keyframe is written
+ * every {@code keyframeInterval} frames, and whenever the particle count, ids or boundary
+ * size no longer match the current keyframe. Blocks are encoded on a small worker gang.
+ * Once the buffers have grown to the largest frame seen, encoding allocates nothing.
+ *
+ * <p>The encoder tracks its compression ratio against raw double positions (24 bytes per
+ * particle) and the largest position error it has introduced.
+ */
+public class FrameEncoder implements AutoCloseable {
+    private final int bitsPerAxis;
+    private final int levels;
+    private final int keyframeInterval;
+    private final BlockWorkers workers;
+    private final BlockWorkers.BlockTask encodeBlock = this::encodeBlock;
+    private final BlockWorkers.BlockTask copyBlock = this::copyBlock;
+
+    // Current keyframe
+    private int[] keyQ = new int[0];
+    private int[] keyId = new int[0];
+    private int keyCount = -1;
+    private double keyBoundary;
+    private long keyStep;
+    private int framesSinceKey;
+    private boolean forceKeyframe = true;
+
+    // Per-block scratch, reused between frames
+    private byte[][] blockBytes = new byte[0][];
+    private int[] blockLength = new int[0];
+    private int[] blockOffset = new int[0];
+    private double[] blockError = new double[0];
+    private boolean[] blockIdMismatch = new boolean[0];
+
+    // Inputs of the frame being encoded, read by the block tasks
+    private TrajectoryFrame frame;
+    private boolean encodingKeyframe;
+    private double scale;
+    private double quantum;
+    private ByteBuffer output;
+
+    private long rawBytes;
+    private long encodedBytes;
+    private double maxError;
+
+    public FrameEncoder(int bitsPerAxis, int keyframeInterval, int threads) {
+        FrameCodec.checkBits(bitsPerAxis);
+        this.bitsPerAxis = bitsPerAxis;
+        this.levels = FrameCodec.levels(bitsPerAxis);
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.workers = new BlockWorkers(threads, "frame-encoder");
+    }
+
+    // Make the next frame a keyframe, e.g. when a new viewer connects
+    public void forceKeyframe() {
+        forceKeyframe = true;
+    }
+
+    /**
+     * Append the encoded frame at {@code out}'s position and advance it. {@code out} needs
+     * {@link FrameCodec#maxEncodedBytes} bytes remaining. Returns the number of bytes written.
+     */
+    public int encode(TrajectoryFrame frame, ByteBuffer out) {
+        int n = frame.size;
+        ensureBlocks(n);
+        this.frame = frame;
+        this.scale = levels / (2 * frame.boundarySize);
+        this.quantum = 1 / scale;
+        int blocks = FrameCodec.blockCount(n);
+
+        encodingKeyframe = forceKeyframe || framesSinceKey >= keyframeInterval || n != keyCount
+                || frame.boundarySize != keyBoundary;
+        if (encodingKeyframe) {
+            ensureKeyCapacity(n);
+        }
+        workers.run(encodeBlock, blocks);
+        if (!encodingKeyframe && anyIdMismatch(blocks)) {
+            // Particles were replaced without the count changing; start over as a keyframe
+            encodingKeyframe = true;
+            workers.run(encodeBlock, blocks);
+        }
+        if (encodingKeyframe) {
+            keyCount = n;
+            keyBoundary = frame.boundarySize;
+            keyStep = frame.step;
+            framesSinceKey = 0;
+            forceKeyframe = false;
+        }
+        framesSinceKey++;
+
+        int start = out.position();
+        ByteOrder order = out.order();
+        ByteBuffer header = out.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(start, FrameCodec.MAGIC);
+        header.put(start + 4, encodingKeyframe ? FrameCodec.KEYFRAME : FrameCodec.DELTA);
+        header.put(start + 5, (byte) bitsPerAxis);
+        header.putShort(start + 6, (short) 0);
+        header.putInt(start + 8, n);
+        header.putLong(start + 12, frame.step);
+        header.putDouble(start + 20, frame.boundarySize);
+        header.putLong(start + 28, keyStep);
+        header.putInt(start + 36, blocks);
+        int offset = start + FrameCodec.HEADER_BYTES + 4 * blocks;
+        for (int b = 0; b < blocks; b++) {
+            header.putInt(start + FrameCodec.HEADER_BYTES + 4 * b, blockLength[b]);
+            blockOffset[b] = offset;
+            offset += blockLength[b];
+        }
+        output = out;
+        workers.run(copyBlock, blocks);
+        output = null;
+        this.frame = null;
+        out.order(order);
+        out.position(offset);
+
+        int written = offset - start;
+        rawBytes += 24L * n;
+        encodedBytes += written;
+        for (int b = 0; b < blocks; b++) {
+            maxError = Math.max(maxError, blockError[b]);
+        }
+        return written;
+    }
+
+    private void encodeBlock(int block) {
+        int from = block * FrameCodec.BLOCK_SIZE;
+        int to = Math.min(frame.size, from + FrameCodec.BLOCK_SIZE);
+        byte[] bytes = blockBytes[block];
+        float[] x = frame.x, y = frame.y, z = frame.z;
+        int[] id = frame.id;
+        double boundary = frame.boundarySize;
+        double error = 0;
+        int pos = 0;
+        if (encodingKeyframe) {
+            int previousId = 0; // Blocks decode independently, so ids restart at each block
+            for (int i = from; i < to; i++) {
+                int qx = FrameCodec.quantize(x[i], boundary, scale, levels);
+                int qy = FrameCodec.quantize(y[i], boundary, scale, levels);
+                int qz = FrameCodec.quantize(z[i], boundary, scale, levels);
+                keyQ[3 * i] = qx;
+                keyQ[3 * i + 1] = qy;
+                keyQ[3 * i + 2] = qz;
+                keyId[i] = id[i];
+                pos = FrameCodec.writeVarint(bytes, pos, qx);
+                pos = FrameCodec.writeVarint(bytes, pos, qy);
+                pos = FrameCodec.writeVarint(bytes, pos, qz);
+                pos = FrameCodec.writeVarint(bytes, pos, FrameCodec.zigzag(id[i] - previousId));
+                bytes[pos++] = frame.type[i];
+                previousId = id[i];
+                error = Math.max(error, positionError(x[i], y[i], z[i], qx, qy, qz, boundary));
+            }
+        } else {
+            boolean idMismatch = false;
+            for (int i = from; i < to; i++) {
+                int qx = FrameCodec.quantize(x[i], boundary, scale, levels);
+                int qy = FrameCodec.quantize(y[i], boundary, scale, levels);
+                int qz = FrameCodec.quantize(z[i], boundary, scale, levels);
+                pos = FrameCodec.writeVarint(bytes, pos, FrameCodec.zigzag(qx - keyQ[3 * i]));
+                pos = FrameCodec.writeVarint(bytes, pos, FrameCodec.zigzag(qy - keyQ[3 * i + 1]));
+                pos = FrameCodec.writeVarint(bytes, pos, FrameCodec.zigzag(qz - keyQ[3 * i + 2]));
+                idMismatch |= id[i] != keyId[i];
+                error = Math.max(error, positionError(x[i], y[i], z[i], qx, qy, qz, boundary));
+            }
+            blockIdMismatch[block] = idMismatch;
+        }
+        blockLength[block] = pos;
+        blockError[block] = error;
+    }
+
+    private double positionError(float x, float y, float z, int qx, int qy, int qz, double boundary) {
+        double ex = Math.abs(qx * quantum - boundary - x);
+        double ey = Math.abs(qy * quantum - boundary - y);
+        double ez = Math.abs(qz * quantum - boundary - z);
+        return Math.max(ex, Math.max(ey, ez));
+    }
+
+    private void copyBlock(int block) {
+        output.put(blockOffset[block], blockBytes[block], 0, blockLength[block]);
+    }
+
+    private boolean anyIdMismatch(int blocks) {
+        for (int b = 0; b < blocks; b++) {
+            if (blockIdMismatch[b]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureBlocks(int n) {
+        int blocks = FrameCodec.blockCount(n);
+        if (blockBytes.length >= blocks) {
+            return;
+        }
+        int old = blockBytes.length;
+        blockBytes = Arrays.copyOf(blockBytes, blocks);
+        for (int b = old; b < blocks; b++) {
+            blockBytes[b] = new byte[FrameCodec.maxBlockBytes()];
+        }
+        blockLength = new int[blocks];
+        blockOffset = new int[blocks];
+        blockError = new double[blocks];
+        blockIdMismatch = new boolean[blocks];
+    }
+
+    private void ensureKeyCapacity(int n) {
+        if (keyId.length < n) {
+            keyQ = new int[3 * n];
+            keyId = new int[n];
+        }
+    }
+
+    public int getBitsPerAxis() {
+        return bitsPerAxis;
+    }
+
+    // Raw double positions over encoded bytes, for every frame encoded so far
+    public double getCompressionRatio() {
+        return encodedBytes > 0 ? rawBytes / (double) encodedBytes : 0;
+    }
+
+    // Largest absolute per-axis position error introduced so far
+    public double getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+}
@@ -0,0 +1,79 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Per-subscriber clip planes for {@link FrameStreamServer}: decodes shared encoded frames and
+ * packs the particles on the inner side of every plane into a FILTERED payload.
+ */
+final class FrameFilter implements AutoCloseable {
+    private final float[] planes; // a, b, c, d per plane
+    private final FrameDecoder decoder = new FrameDecoder(1);
+    private final TrajectoryFrame frame = new TrajectoryFrame();
+    private byte[] decodedKeyframe;
+    private int[] inside = new int[0];
+
+    FrameFilter(float[] planes) {
+        this.planes = planes.clone();
+    }
+
+    /**
+     * @param keyframe the keyframe a delta frame refers to, or null if {@code data} is a keyframe
+     * @param data     the encoded frame
+     */
+    byte[] apply(byte[] keyframe, byte[] data) {
+        if (keyframe != null && keyframe != decodedKeyframe) {
+            decoder.decode(ByteBuffer.wrap(keyframe), frame);
+            decodedKeyframe = keyframe;
+        }
+        decoder.decode(ByteBuffer.wrap(data), frame);
+        if (keyframe == null) {
+            decodedKeyframe = data;
+        }
+
+        int n = frame.size;
+        if (inside.length < n) {
+            inside = new int[n];
+        }
+        int count = 0;
+        float[] x = frame.x, y = frame.y, z = frame.z;
+        for (int i = 0; i < n; i++) {
+            if (contains(x[i], y[i], z[i])) {
+                inside[count++] = i;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(20 + 17 * count).order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(frame.step).putDouble(frame.boundarySize).putInt(count);
+        for (int k = 0; k < count; k++) {
+            out.putInt(frame.id[inside[k]]);
+        }
+        for (int k = 0; k < count; k++) {
+            out.putFloat(x[inside[k]]);
+        }
+        for (int k = 0; k < count; k++) {
+            out.putFloat(y[inside[k]]);
+        }
+        for (int k = 0; k < count; k++) {
+            out.putFloat(z[inside[k]]);
+        }
+        for (int k = 0; k < count; k++) {
+            out.put(frame.type[inside[k]]);
+        }
+        return out.array();
+    }
+
+    private boolean contains(float px, float py, float pz) {
+        for (int p = 0; p < planes.length; p += 4) {
+            if (planes[p] * px + planes[p + 1] * py + planes[p + 2] * pz + planes[p + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        decoder.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.shrine.particlesim.recording;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Viewer side of a {@link FrameStreamServer}: connects, subscribes with optional clip planes
+ * and decodes the frames it is sent. Filtered frames carry positions, ids and types of the
+ * particles inside the planes only.
+ */
+public class FrameStreamClient implements AutoCloseable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final FrameDecoder decoder = new FrameDecoder(1);
+    private final int bitsPerAxis;
+    private ByteBuffer payload = ByteBuffer.allocate(0);
+    private long framesReceived;
+    private long framesSkipped;
+
+    /**
+     * @param planes clip planes as a, b, c, d per plane (keep a*x+b*y+c*z+d >= 0), or null
+     *               for every particle
+     */
+    public FrameStreamClient(String host, int port, float[] planes) throws IOException {
+        int planeCount = planes == null ? 0 : planes.length / 4;
+        if (planeCount > FrameStreamServer.MAX_PLANES || (planes != null && planes.length % 4 != 0)) {
+            throw new IllegalArgumentException("Up to " + FrameStreamServer.MAX_PLANES + " planes of 4 values");
+        }
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        ByteBuffer hello = readBytes(16);
+        if (hello.getLong(0) != FrameStreamServer.MAGIC || hello.getInt(8) != FrameStreamServer.VERSION) {
+            socket.close();
+            throw new IOException("Not a frame stream server");
+        }
+        bitsPerAxis = hello.getInt(12);
+        ByteBuffer subscription = ByteBuffer.allocate(4 + 16 * planeCount).order(ByteOrder.LITTLE_ENDIAN);
+        subscription.putInt(planeCount);
+        for (int k = 0; k < 4 * planeCount; k++) {
+            subscription.putFloat(planes[k]);
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(subscription.array());
+        out.flush();
+    }
+
+    // Six planes keeping the inside of an axis-aligned box
+    public static float[] box(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return new float[] {
+                1, 0, 0, -minX, -1, 0, 0, maxX,
+                0, 1, 0, -minY, 0, -1, 0, maxY,
+                0, 0, 1, -minZ, 0, 0, -1, maxZ
+        };
+    }
+
+    // Block for the next frame; false when the server closed the stream
+    public boolean next(TrajectoryFrame out) throws IOException {
+        while (true) {
+            ByteBuffer header;
+            try {
+                header = readBytes(12);
+            } catch (EOFException e) {
+                return false;
+            }
+            int kind = header.getInt(0);
+            int skipped = header.getInt(4);
+            ByteBuffer data = readPayload(header.getInt(8));
+            switch (kind) {
+                case FrameStreamServer.KEYFRAME -> decoder.decode(data, out);
+                case FrameStreamServer.FRAME -> {
+                    decoder.decode(data, out);
+                    count(skipped);
+                    return true;
+                }
+                case FrameStreamServer.FILTERED -> {
+                    readFiltered(data, out);
+                    count(skipped);
+                    return true;
+                }
+                default -> throw new IOException("Unknown frame stream message " + kind);
+            }
+        }
+    }
+
+    private void count(int skipped) {
+        framesReceived++;
+        framesSkipped += skipped;
+    }
+
+    private static void readFiltered(ByteBuffer data, TrajectoryFrame out) {
+        long step = data.getLong();
+        double boundary = data.getDouble();
+        int n = data.getInt();
+        out.ensureCapacity(n);
+        data.asIntBuffer().get(out.id, 0, n);
+        data.position(data.position() + 4 * n);
+        data.asFloatBuffer().get(out.x, 0, n);
+        data.position(data.position() + 4 * n);
+        data.asFloatBuffer().get(out.y, 0, n);
+        data.position(data.position() + 4 * n);
+        data.asFloatBuffer().get(out.z, 0, n);
+        data.position(data.position() + 4 * n);
+        data.get(out.type, 0, n);
+        out.size = n;
+        out.step = step;
+        out.boundarySize = boundary;
+    }
+
+    private ByteBuffer readPayload(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Bad frame stream message length " + length);
+        }
+        if (payload.capacity() < length) {
+            payload = ByteBuffer.allocate(Math.max(length, payload.capacity() + (payload.capacity() >> 1)));
+        }
+        in.readFully(payload.array(), 0, length);
+        return payload.clear().limit(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ByteBuffer readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getBitsPerAxis() {
+        return bitsPerAxis;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    // Frames the server skipped for this client because it fell behind
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+        socket.close();
+    }
+}
@@ -0,0 +1,326 @@
+package com.shrine.particlesim.recording;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.diagnostics.StepListener;
+
+/**
+ * Broadcasts frames to any number of viewer clients over TCP. The stepping thread only copies
+ * the state into a pooled frame (and drops the frame if none is free); a broadcaster thread
+ * encodes it once with a {@link FrameEncoder}, and every client has its own virtual thread
+ * that always sends the newest encoded frame. A client that falls behind therefore skips
+ * frames instead of queueing them, and a slow client never holds up the others or the
+ * simulation. A client that missed the keyframe of the frame it is sent gets that keyframe
+ * first.
+ *
+ * <p>Clients can subscribe with up to six clip planes (a frustum, or a box from
+ * {@link FrameStreamClient#box}); such a client decodes each frame on its own thread and is
+ * sent only the particles inside the planes.
+ *
+ * <pre>
+ * server hello   long MAGIC "PSIMSTRM", int version, int bits per axis
+ * subscription   int plane count (0-6), then per plane float a, b, c, d: keep a*x+b*y+c*z+d >= 0
+ * message        int kind, int frames skipped since the previous message, int payload bytes
+ *   FRAME        one {@link FrameCodec} frame
+ *   KEYFRAME     the keyframe the next FRAME is a delta against
+ *   FILTERED     long step, double boundary, int n, then n ids, n x, n y, n z floats and n type bytes
+ * </pre>
+ * Everything is little-endian.
+ */
+public class FrameStreamServer implements StepListener, AutoCloseable {
+    public static final String PORT_PROPERTY = "particlesim.stream.port";
+    public static final String BIND_PROPERTY = "particlesim.stream.bind";
+
+    static final long MAGIC = 0x4D5254534D495350L; // "PSIMSTRM" read as a little-endian long
+    static final int VERSION = 1;
+    static final int FRAME = 1;
+    static final int KEYFRAME = 2;
+    static final int FILTERED = 3;
+    static final int MAX_PLANES = 6;
+
+    private static final int POOL_SIZE = 2;
+    private static final int BITS_PER_AXIS = 20;
+    private static final int KEYFRAME_INTERVAL = 30;
+
+    private final ServerSocket serverSocket;
+    private final int interval;
+    private final FrameEncoder encoder;
+    private final BlockingQueue<TrajectoryFrame> free = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<TrajectoryFrame> ready = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicLong skipped = new AtomicLong();
+    private final Thread broadcaster;
+    private final Thread acceptor;
+    private ByteBuffer encodeBuffer = ByteBuffer.allocateDirect(0);
+    private volatile Encoded latest;
+    private volatile long dropped;
+    private volatile boolean running = true;
+
+    // One published frame; immutable, shared by every client thread
+    private record Encoded(long sequence, byte[] data, boolean keyframe, Encoded keyframeRef) {
+    }
+
+    public FrameStreamServer(InetAddress bind, int port, int interval) throws IOException {
+        this.interval = Math.max(1, interval);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(bind, port));
+        encoder = new FrameEncoder(BITS_PER_AXIS, KEYFRAME_INTERVAL, 1);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            free.add(new TrajectoryFrame());
+        }
+        broadcaster = new Thread(this::broadcast, "frame-stream-encoder");
+        broadcaster.setDaemon(true);
+        broadcaster.start();
+        acceptor = Thread.ofVirtual().name("frame-stream-accept").start(this::accept);
+    }
+
+    // Starts a server if the port property is set, otherwise returns null
+    public static FrameStreamServer startFromProperty(Simulation simulation) {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        try {
+            String bind = System.getProperty(BIND_PROPERTY);
+            InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+            FrameStreamServer server = new FrameStreamServer(address, Integer.parseInt(port.trim()), 1);
+            simulation.addStepListener(server);
+            System.out.println("Frame stream: " + address.getHostAddress() + ":" + server.getPort());
+            return server;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start frame stream on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        if (simulation.getStepCount() % interval != 0 || clients.isEmpty()) {
+            return;
+        }
+        TrajectoryFrame frame = free.poll();
+        if (frame == null) {
+            dropped++; // Only the simulation thread writes this
+            return;
+        }
+        frame.copyFrom(simulation);
+        ready.offer(frame);
+    }
+
+    private void broadcast() {
+        long sequence = 0;
+        Encoded keyframe = null;
+        while (running) {
+            TrajectoryFrame frame;
+            try {
+                frame = ready.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (clients.isEmpty()) {
+                // Nobody to send to; the next client starts from a fresh keyframe
+                keyframe = null;
+                latest = null;
+            }
+            if (frame == null) {
+                continue;
+            }
+            try {
+                if (keyframe == null) {
+                    encoder.forceKeyframe(); // Clients connected after a quiet spell need a fresh keyframe
+                }
+                int maxBytes = FrameCodec.maxEncodedBytes(frame.size);
+                if (encodeBuffer.capacity() < maxBytes) {
+                    encodeBuffer = ByteBuffer.allocateDirect(maxBytes);
+                }
+                encodeBuffer.clear();
+                int length = encoder.encode(frame, encodeBuffer);
+                byte[] data = new byte[length];
+                encodeBuffer.get(0, data);
+                boolean isKey = FrameCodec.isKeyframe(encodeBuffer.position(0));
+                Encoded encoded = new Encoded(++sequence, data, isKey, isKey ? null : keyframe);
+                if (isKey) {
+                    keyframe = encoded;
+                }
+                lock.lock();
+                try {
+                    latest = encoded;
+                    published.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Frame stream encoding failed: " + e.getMessage());
+            } finally {
+                free.offer(frame);
+            }
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                clients.add(socket);
+                Thread.ofVirtual().name("frame-stream-client").start(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Frame stream accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        FrameFilter filter = null;
+        try (socket) {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            ByteBuffer hello = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            hello.putLong(MAGIC).putInt(VERSION).putInt(BITS_PER_AXIS);
+            out.write(hello.array());
+            out.flush();
+            float[] planes = readSubscription(socket);
+            filter = planes.length > 0 ? new FrameFilter(planes) : null;
+
+            long lastSequence = 0;
+            Encoded keySent = null;
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            while (running) {
+                Encoded frame = awaitNewer(lastSequence);
+                if (frame == null) {
+                    break;
+                }
+                int missed = lastSequence == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, frame.sequence - lastSequence - 1);
+                skipped.addAndGet(missed);
+                lastSequence = frame.sequence;
+                if (filter != null) {
+                    byte[] payload = filter.apply(frame.keyframeRef != null ? frame.keyframeRef.data : null, frame.data);
+                    writeMessage(out, header, FILTERED, missed, payload, payload.length);
+                } else {
+                    Encoded key = frame.keyframe ? frame : frame.keyframeRef;
+                    if (!frame.keyframe && key != keySent) {
+                        writeMessage(out, header, KEYFRAME, 0, key.data, key.data.length);
+                    }
+                    keySent = key;
+                    writeMessage(out, header, FRAME, missed, frame.data, frame.data.length);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            clients.remove(socket);
+            if (filter != null) {
+                filter.close();
+            }
+        }
+    }
+
+    private static float[] readSubscription(Socket socket) throws IOException {
+        socket.setSoTimeout(10_000);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] count = new byte[4];
+        in.readFully(count);
+        int planes = ByteBuffer.wrap(count).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (planes < 0 || planes > MAX_PLANES) {
+            throw new IOException("Bad subscription: " + planes + " planes");
+        }
+        byte[] values = new byte[16 * planes];
+        in.readFully(values);
+        socket.setSoTimeout(0);
+        float[] result = new float[4 * planes];
+        ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(result);
+        return result;
+    }
+
+    // Newest frame after the given sequence, or null once the server is closed
+    private Encoded awaitNewer(long sequence) {
+        lock.lock();
+        try {
+            while (running) {
+                Encoded frame = latest;
+                if (frame != null && frame.sequence > sequence) {
+                    return frame;
+                }
+                published.await(100, TimeUnit.MILLISECONDS);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeMessage(OutputStream out, ByteBuffer header, int kind, int skipped, byte[] payload,
+                                     int length) throws IOException {
+        header.clear();
+        header.putInt(kind).putInt(skipped).putInt(length);
+        out.write(header.array(), 0, 12);
+        out.write(payload, 0, length);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    // Frames the stepping thread dropped because the encoder was still busy
+    public long getDroppedFrames() {
+        return dropped;
+    }
+
+    // Frames clients skipped because they fell behind, over all clients
+    public long getSkippedFrames() {
+        return skipped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (Socket socket : clients) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        broadcaster.interrupt();
+        acceptor.interrupt();
+        try {
+            broadcaster.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        encoder.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.shrine.particlesim.recording;
+
+import java.util.Arrays;
+
+/**
+ * Where one particle was over time: its position in every recorded frame that contains it,
+ * in step order.
+ */
+public final class ParticleTrack {
+    private final int id;
+    private long[] steps = new long[16];
+    private float[] x = new float[16];
+    private float[] y = new float[16];
+    private float[] z = new float[16];
+    private int size;
+
+    ParticleTrack(int id) {
+        this.id = id;
+    }
+
+    void add(long step, float px, float py, float pz) {
+        if (size == steps.length) {
+            steps = Arrays.copyOf(steps, size * 2);
+            x = Arrays.copyOf(x, size * 2);
+            y = Arrays.copyOf(y, size * 2);
+            z = Arrays.copyOf(z, size * 2);
+        }
+        steps[size] = step;
+        x[size] = px;
+        y[size] = py;
+        z[size] = pz;
+        size++;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getStep(int i) {
+        return steps[i];
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public float getZ(int i) {
+        return z[i];
+    }
+}
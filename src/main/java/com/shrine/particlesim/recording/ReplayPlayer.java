@@ -0,0 +1,281 @@
+package com.shrine.particlesim.recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Plays back a trajectory file at a variable speed, with pause and seek. Frames come from a
+ * fixed number of cache slots, so memory stays constant however long the recording is. A
+ * read-ahead thread decodes the frames just ahead of the playback position in the direction
+ * of play, through its own reader so a seek never waits behind it. It only runs while
+ * playing, so scrubbing a paused replay does not compete with it. Seeking costs one read
+ * and decode, or two for a quantized frame that is not a keyframe.
+ *
+ * <p>All methods except {@link #frame} are meant for one thread (the UI thread).
+ */
+public class ReplayPlayer implements AutoCloseable {
+    private static final int CACHE_SLOTS = 8;
+    private static final int READ_AHEAD = 4;
+    private static final double BASE_FRAMES_PER_SECOND = 60;
+
+    private static final class Slot {
+        final TrajectoryFrame frame = new TrajectoryFrame();
+        int index = -1;
+        boolean loading;
+        long lastUsed;
+    }
+
+    private final TrajectoryReader reader;
+    private final TrajectoryReader readAheadReader;
+    private final Slot[] slots = new Slot[CACHE_SLOTS];
+    private final Thread readAhead;
+    private long useCounter;
+    private double position;
+    private double speed = 1;
+    private volatile boolean playing;
+    private volatile int cursor;
+    private volatile int direction = 1;
+    private volatile boolean running = true;
+
+    private ReplayPlayer(TrajectoryReader reader, TrajectoryReader readAheadReader) {
+        this.reader = reader;
+        this.readAheadReader = readAheadReader;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        readAhead = new Thread(this::readAhead, "replay-read-ahead");
+        readAhead.setDaemon(true);
+    }
+
+    // Open a recording and start its read-ahead thread once the player is fully built
+    public static ReplayPlayer open(Path file) throws IOException {
+        TrajectoryReader reader = new TrajectoryReader(file);
+        TrajectoryReader readAheadReader;
+        try {
+            if (reader.getFrameCount() == 0) {
+                throw new IOException(file + " has no frames");
+            }
+            readAheadReader = new TrajectoryReader(file);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        ReplayPlayer player = new ReplayPlayer(reader, readAheadReader);
+        player.readAhead.start();
+        return player;
+    }
+
+    public int getFrameCount() {
+        return reader.getFrameCount();
+    }
+
+    public int getFrameIndex() {
+        return (int) position;
+    }
+
+    public long getStep() {
+        return reader.getStep(getFrameIndex());
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void play() {
+        if (getFrameIndex() >= getFrameCount() - 1 && speed > 0) {
+            position = 0; // Start over from the beginning
+        }
+        playing = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public void pause() {
+        playing = false;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    // Frames per second relative to 60; negative plays backwards
+    public void setSpeed(double speed) {
+        this.speed = speed;
+        direction = speed < 0 ? -1 : 1;
+    }
+
+    public void seek(int frame) {
+        position = Math.max(0, Math.min(getFrameCount() - 1, frame));
+        moveCursor();
+    }
+
+    // Advance the playback position by wall-clock time; stops at either end
+    public void advance(long elapsedNanos) {
+        if (!playing) {
+            return;
+        }
+        position += speed * BASE_FRAMES_PER_SECOND * elapsedNanos / 1e9;
+        if (position >= getFrameCount() - 1) {
+            position = getFrameCount() - 1;
+            playing = false;
+        } else if (position < 0) {
+            position = 0;
+            playing = false;
+        }
+        moveCursor();
+    }
+
+    private void moveCursor() {
+        int index = getFrameIndex();
+        if (index != cursor) {
+            cursor = index;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Copy the frame at the playback position into {@code out}
+    public TrajectoryFrame current(TrajectoryFrame out) throws IOException {
+        return frame(getFrameIndex(), out);
+    }
+
+    // Copy a frame into {@code out}, reading and decoding it first if it is not cached
+    public TrajectoryFrame frame(int index, TrajectoryFrame out) throws IOException {
+        Slot slot = load(index, reader);
+        synchronized (this) {
+            // The slot cannot be evicted while we hold the lock
+            if (slot.index == index && !slot.loading) {
+                copy(slot.frame, out);
+                return out;
+            }
+        }
+        return frame(index, out); // Evicted between load and copy; rare
+    }
+
+    private Slot load(int index, TrajectoryReader source) throws IOException {
+        Slot slot;
+        synchronized (this) {
+            while (true) {
+                slot = find(index);
+                if (slot == null) {
+                    break;
+                }
+                if (!slot.loading) {
+                    slot.lastUsed = ++useCounter;
+                    return slot;
+                }
+                try {
+                    wait(); // Another thread is reading this frame
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading frame " + index);
+                }
+            }
+            slot = victim();
+            slot.index = index;
+            slot.loading = true;
+            slot.lastUsed = ++useCounter;
+        }
+        try {
+            source.read(index, slot.frame);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                slot.index = -1;
+                slot.loading = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            slot.loading = false;
+            notifyAll();
+        }
+        return slot;
+    }
+
+    private Slot find(int index) {
+        for (Slot slot : slots) {
+            if (slot.index == index) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    // Least recently used slot that is not being loaded
+    private Slot victim() {
+        Slot oldest = null;
+        for (Slot slot : slots) {
+            if (!slot.loading && (oldest == null || slot.lastUsed < oldest.lastUsed)) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private void readAhead() {
+        while (running) {
+            int start = cursor;
+            for (int k = 1; k <= READ_AHEAD && running && playing && cursor == start; k++) {
+                int index = start + k * direction;
+                if (index < 0 || index >= getFrameCount()) {
+                    break;
+                }
+                boolean cached;
+                synchronized (this) {
+                    cached = find(index) != null;
+                }
+                if (!cached) {
+                    try {
+                        load(index, readAheadReader);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Replay read-ahead failed at frame " + index + ": " + e.getMessage());
+                        break;
+                    }
+                }
+            }
+            synchronized (this) {
+                if (running && (cursor == start || !playing)) {
+                    try {
+                        wait(200);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copy(TrajectoryFrame from, TrajectoryFrame to) {
+        int n = from.size;
+        to.ensureCapacity(n);
+        System.arraycopy(from.x, 0, to.x, 0, n);
+        System.arraycopy(from.y, 0, to.y, 0, n);
+        System.arraycopy(from.z, 0, to.z, 0, n);
+        System.arraycopy(from.vx, 0, to.vx, 0, n);
+        System.arraycopy(from.vy, 0, to.vy, 0, n);
+        System.arraycopy(from.vz, 0, to.vz, 0, n);
+        System.arraycopy(from.id, 0, to.id, 0, n);
+        System.arraycopy(from.type, 0, to.type, 0, n);
+        to.size = n;
+        to.step = from.step;
+        to.boundarySize = from.boundarySize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            readAhead.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reader.close();
+        readAheadReader.close();
+    }
+}
@@ -0,0 +1,139 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.diagnostics.StepListener;
+
+/**
+ * Ring buffer of recent frames in a fixed amount of memory, for stepping back through what
+ * just happened. Every step is encoded with a {@link FrameEncoder} (quantized positions, ids
+ * and types) into one direct buffer; when it is full the oldest frames are dropped, always
+ * back to a keyframe so every frame that is kept can be decoded. After the buffers have
+ * grown to the particle count, capturing allocates nothing.
+ *
+ * <p>Not thread-safe: capture and read from the thread that steps the simulation.
+ */
+public class RewindBuffer implements StepListener, AutoCloseable {
+    private static final int BITS_PER_AXIS = 21;
+    private static final int KEYFRAME_INTERVAL = 30;
+    private static final int MAX_FRAMES = 4096;
+
+    private final ByteBuffer storage;
+    private final FrameEncoder encoder = new FrameEncoder(BITS_PER_AXIS, KEYFRAME_INTERVAL, 1);
+    private final FrameDecoder decoder = new FrameDecoder(1);
+    private final TrajectoryFrame scratch = new TrajectoryFrame();
+
+    // Circular index of frames, oldest at head
+    private final int[] offsets = new int[MAX_FRAMES];
+    private final int[] lengths = new int[MAX_FRAMES];
+    private final boolean[] keyframes = new boolean[MAX_FRAMES];
+    private int head;
+    private int count;
+    private int writePosition;
+    private long decodedKeyframe = -1; // Absolute sequence number of the keyframe in the decoder
+    private long sequence; // Frames captured so far; frame k of the buffer has sequence (sequence - count + k)
+
+    public RewindBuffer(int megabytes) {
+        storage = ByteBuffer.allocateDirect(Math.max(1, megabytes) << 20);
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        scratch.copyFrom(simulation);
+        int maxBytes = FrameCodec.maxEncodedBytes(scratch.size);
+        if (maxBytes > storage.capacity()) {
+            clear(); // A single frame would not fit; keep nothing rather than a partial history
+            return;
+        }
+        if (writePosition + maxBytes > storage.capacity()) {
+            // Wrap; anything between here and the end is dropped with the frames behind it
+            evictOverlapping(writePosition, storage.capacity());
+            writePosition = 0;
+        }
+        evictOverlapping(writePosition, writePosition + maxBytes);
+        if (count == MAX_FRAMES) {
+            evictOldest();
+        }
+        if (count == 0) {
+            encoder.forceKeyframe(); // The history must start with a keyframe
+        }
+        storage.position(writePosition);
+        int length = encoder.encode(scratch, storage);
+        int slot = (head + count) % MAX_FRAMES;
+        offsets[slot] = writePosition;
+        lengths[slot] = length;
+        keyframes[slot] = FrameCodec.isKeyframe(storage.position(writePosition));
+        count++;
+        sequence++;
+        writePosition += length;
+    }
+
+    // Drop frames stored in [from, to), and any deltas left without their keyframe
+    private void evictOverlapping(int from, int to) {
+        while (count > 0) {
+            int slot = head;
+            int start = offsets[slot];
+            int end = start + lengths[slot];
+            if (end <= from || start >= to) {
+                break; // Oldest frame lies outside the range; everything newer was written after it
+            }
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        head = (head + 1) % MAX_FRAMES;
+        count--;
+        while (count > 0 && !keyframes[head]) {
+            head = (head + 1) % MAX_FRAMES;
+            count--;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+        writePosition = 0;
+        decodedKeyframe = -1;
+    }
+
+    // Frames available; frame 0 is the oldest and getFrameCount() - 1 the newest
+    public int getFrameCount() {
+        return count;
+    }
+
+    public int getCapacityBytes() {
+        return storage.capacity();
+    }
+
+    // Decode a buffered frame into {@code out}
+    public void read(int frame, TrajectoryFrame out) {
+        if (frame < 0 || frame >= count) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + count);
+        }
+        int key = frame;
+        while (!keyframes[(head + key) % MAX_FRAMES]) {
+            key--;
+        }
+        long keySequence = sequence - count + key;
+        if (decodedKeyframe != keySequence || key == frame) {
+            decoder.decode(view(key), out);
+            decodedKeyframe = keySequence;
+        }
+        if (key != frame) {
+            decoder.decode(view(frame), out);
+        }
+    }
+
+    private ByteBuffer view(int frame) {
+        int slot = (head + frame) % MAX_FRAMES;
+        return storage.duplicate().position(offsets[slot]).limit(offsets[slot] + lengths[slot]);
+    }
+
+    @Override
+    public void close() {
+        encoder.close();
+        decoder.close();
+    }
+}
@@ -0,0 +1,231 @@
+package com.shrine.particlesim.recording;
+
+import static com.shrine.particlesim.recording.SharedFrameRing.*;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.diagnostics.StepListener;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * Writer side of the {@link SharedFrameRing}: publishes every {@code interval}-th step into a
+ * memory-mapped file that viewers in other processes map read-only. Publishing is a plain copy
+ * of positions, ids and types into the mapping on the stepping thread; it never allocates and
+ * never waits for a reader, and readers can come and go while the run continues.
+ *
+ * <p>The main method runs a simulation headless and publishes it, for a viewer started with
+ * {@code -Dparticlesim.attach=<ring file>}:
+ * <pre>
+ * java -cp ... com.shrine.particlesim.recording.SharedFramePublisher frames.ring
+ *     [--scenario startup] [--seed 42] [--steps 0] [--interval 1] [--boundary 500] [--backend name[:params]]
+ * </pre>
+ * {@code --steps 0} runs until the process is stopped.
+ */
+public class SharedFramePublisher implements StepListener, AutoCloseable {
+    public static final int DEFAULT_SLOTS = 4;
+
+    private static final double BASE_TIMESTEP = 0.166666666667;
+
+    private final Path path;
+    private final int slots;
+    private final int interval;
+    private final long session = ThreadLocalRandom.current().nextLong();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private IntBuffer ints;
+    private FloatBuffer floats;
+    private int capacity;
+    private long slotBytes;
+    private long frames;
+
+    public SharedFramePublisher(Path path, int capacity, int slots, int interval) throws IOException {
+        this.path = path;
+        this.slots = Math.max(2, slots);
+        this.interval = Math.max(1, interval);
+        map(Math.max(1, capacity));
+    }
+
+    // Create the ring next to the target and move it into place, so readers never see a half-made header
+    private void map(int newCapacity) throws IOException {
+        long newSlotBytes = slotBytes(newCapacity);
+        long size = HEADER_BYTES + slots * newSlotBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Frame ring for " + newCapacity + " particles would exceed 2 GB");
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel newChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer newBuffer;
+        try {
+            newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            newBuffer.order(ORDER);
+            newBuffer.putLong(MAGIC_OFFSET, MAGIC);
+            newBuffer.putInt(VERSION_OFFSET, VERSION);
+            newBuffer.putInt(SLOTS_OFFSET, slots);
+            newBuffer.putInt(CAPACITY_OFFSET, newCapacity);
+            newBuffer.putInt(STATE_OFFSET, STATE_LIVE);
+            newBuffer.putLong(SESSION_OFFSET, session);
+            newBuffer.putLong(LATEST_OFFSET, 0);
+            newBuffer.putLong(HEARTBEAT_OFFSET, System.currentTimeMillis());
+            newBuffer.putLong(SLOT_BYTES_OFFSET, newSlotBytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            newChannel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (buffer != null) {
+            INTS.setRelease(buffer, STATE_OFFSET, STATE_SUPERSEDED);
+            channel.close();
+        }
+        channel = newChannel;
+        buffer = newBuffer;
+        ints = buffer.duplicate().order(ORDER).asIntBuffer();
+        floats = buffer.duplicate().order(ORDER).asFloatBuffer();
+        capacity = newCapacity;
+        slotBytes = newSlotBytes;
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        if (simulation.getStepCount() % interval != 0) {
+            return;
+        }
+        try {
+            publish(simulation.getState(), simulation.getStepCount(), simulation.getBoundarySize());
+        } catch (IOException e) {
+            System.err.println("Could not grow the frame ring: " + e.getMessage());
+            simulation.removeStepListener(this);
+        }
+    }
+
+    public void publish(ParticleArrays state, long step, double boundarySize) throws IOException {
+        int n = state.size();
+        if (n > capacity) {
+            map(Math.max(n, capacity + (capacity >> 1)));
+        }
+        long frame = ++frames;
+        int base = (int) slotOffset(slotBytes, (int) (frame % slots));
+
+        // Odd sequence first; the release fence keeps the data writes after it
+        LONGS.setOpaque(buffer, base + SEQUENCE, 2 * frame - 1);
+        VarHandle.releaseFence();
+        buffer.putLong(base + STEP, step);
+        buffer.putDouble(base + BOUNDARY, boundarySize);
+        buffer.putInt(base + COUNT, n);
+        ints.put((base + idsOffset()) / Integer.BYTES, state.getId(), 0, n);
+        putFloats(base + xOffset(capacity), state.getX(), n);
+        putFloats(base + yOffset(capacity), state.getY(), n);
+        putFloats(base + zOffset(capacity), state.getZ(), n);
+        buffer.put(base + typesOffset(capacity), state.getType(), 0, n);
+        LONGS.setRelease(buffer, base + SEQUENCE, 2 * frame);
+
+        LONGS.setRelease(buffer, LATEST_OFFSET, frame);
+        LONGS.setOpaque(buffer, HEARTBEAT_OFFSET, System.currentTimeMillis());
+    }
+
+    private void putFloats(int offset, double[] values, int n) {
+        int index = offset / Float.BYTES;
+        for (int i = 0; i < n; i++) {
+            floats.put(index + i, (float) values[i]);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFramesPublished() {
+        return frames;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Readers keep the last frame and see that the writer stopped
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            INTS.setRelease(buffer, STATE_OFFSET, STATE_CLOSED);
+            buffer.force();
+            channel.close();
+            buffer = null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SharedFramePublisher <ring file> [--scenario name] [--seed N] [--steps N]"
+                    + " [--interval N] [--boundary size] [--backend name[:params]]");
+            System.exit(2);
+        }
+        Path ring = Path.of(args[0]);
+        String scenario = BuiltInScenarios.STARTUP;
+        long seed = 42;
+        long steps = 0;
+        int interval = 1;
+        double boundary = 500;
+        String backendSpec = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scenario" -> scenario = args[++i];
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--steps" -> steps = Long.parseLong(args[++i]);
+                case "--interval" -> interval = Integer.parseInt(args[++i]);
+                case "--boundary" -> boundary = Double.parseDouble(args[++i]);
+                case "--backend" -> backendSpec = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        try (Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, boundary, null)) {
+            BuiltInScenarios.populate(scenario, simulation.getState(), new Random(seed), boundary);
+            int n = simulation.getParticleCount();
+            simulation.setBackend(backendSpec != null ? BackendAutotuner.create(backendSpec)
+                    : BackendAutotuner.select(n, Runtime.getRuntime().availableProcessors(), PhysicsConstants.DEFAULT));
+            try (SharedFramePublisher publisher = new SharedFramePublisher(ring, Math.max(1024, 2 * n),
+                    DEFAULT_SLOTS, interval)) {
+                simulation.addStepListener(publisher);
+                System.out.println("Publishing " + n + " particles to " + ring + " ("
+                        + BackendAutotuner.describe(simulation.getBackend()) + ")");
+                // On Ctrl-C, finish the current step and mark the ring closed before the JVM exits
+                AtomicBoolean running = new AtomicBoolean(true);
+                Thread stepping = Thread.currentThread();
+                Thread hook = new Thread(() -> {
+                    running.set(false);
+                    try {
+                        stepping.join(5000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                Runtime.getRuntime().addShutdownHook(hook);
+                for (long s = 0; running.get() && (steps == 0 || s < steps); s++) {
+                    simulation.step(BASE_TIMESTEP);
+                }
+                System.out.println("Published " + publisher.getFramesPublished() + " frames");
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.shrine.particlesim.recording;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the memory-mapped frame ring shared by {@link SharedFramePublisher} and
+ * {@link SharedFrameSubscriber}. All values are little-endian.
+ *
+ * <pre>
+ * header (64 bytes)
+ *   0  magic "PSIMRING"       8  version      12 slot count    16 capacity (particles per slot)
+ *   20 state (live/closed/superseded)        24 session id    32 latest frame number
+ *   40 heartbeat (epoch millis of the latest publish)          48 slot size in bytes
+ * slot i at 64 + i * slotBytes
+ *   0  sequence (odd while being written, 2 * frame number when complete)
+ *   8  step   16 boundary size   24 particle count
+ *   32 ids int[capacity], x float[capacity], y float[capacity], z float[capacity], types byte[capacity]
+ * </pre>
+ *
+ * Frame f goes to slot {@code f % slotCount}. The writer makes the slot sequence odd, writes the
+ * data and then publishes {@code 2f} with release semantics; a reader copies the slot and keeps the
+ * copy only if the sequence was {@code 2f} both before and after (a seqlock). The writer never
+ * waits for readers. Outgrowing the capacity replaces the file with a bigger one and marks the
+ * old mapping as superseded, so attached readers reopen the path.
+ */
+final class SharedFrameRing {
+    static final long MAGIC = 0x474E49524D495350L; // "PSIMRING" little-endian
+    static final int VERSION = 1;
+    static final int STATE_LIVE = 0;
+    static final int STATE_CLOSED = 1;
+    static final int STATE_SUPERSEDED = 2;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 8;
+    static final int SLOTS_OFFSET = 12;
+    static final int CAPACITY_OFFSET = 16;
+    static final int STATE_OFFSET = 20;
+    static final int SESSION_OFFSET = 24;
+    static final int LATEST_OFFSET = 32;
+    static final int HEARTBEAT_OFFSET = 40;
+    static final int SLOT_BYTES_OFFSET = 48;
+    static final int HEADER_BYTES = 64;
+
+    static final int SEQUENCE = 0;
+    static final int STEP = 8;
+    static final int BOUNDARY = 16;
+    static final int COUNT = 24;
+    static final int DATA = 32;
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+
+    private SharedFrameRing() {
+    }
+
+    // Slot size for a capacity, rounded up to a cache line so sequences never share one
+    static long slotBytes(int capacity) {
+        long bytes = DATA + (long) capacity * (Integer.BYTES + 3 * Float.BYTES + 1);
+        return (bytes + 63) & ~63L;
+    }
+
+    static long slotOffset(long slotBytes, int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    static int idsOffset() {
+        return DATA;
+    }
+
+    static int xOffset(int capacity) {
+        return DATA + capacity * Integer.BYTES;
+    }
+
+    static int yOffset(int capacity) {
+        return xOffset(capacity) + capacity * Float.BYTES;
+    }
+
+    static int zOffset(int capacity) {
+        return yOffset(capacity) + capacity * Float.BYTES;
+    }
+
+    static int typesOffset(int capacity) {
+        return zOffset(capacity) + capacity * Float.BYTES;
+    }
+}
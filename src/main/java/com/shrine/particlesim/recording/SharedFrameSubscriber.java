@@ -0,0 +1,168 @@
+package com.shrine.particlesim.recording;
+
+import static com.shrine.particlesim.recording.SharedFrameRing.*;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only side of the {@link SharedFrameRing}, for a viewer attached to a headless
+ * {@link SharedFramePublisher} in another process. {@link #poll} copies the newest complete frame
+ * straight out of the mapping; it never blocks the writer and never waits for it.
+ *
+ * <p>The subscriber may be created before the writer starts and survives writer restarts: while
+ * no new frames arrive it periodically reopens the path and switches to a newer ring.
+ */
+public class SharedFrameSubscriber implements AutoCloseable {
+    private static final long REOPEN_INTERVAL = 500; // millis between looks for a new ring
+    private static final long STALE_MILLIS = 2000;   // a live ring without publishes for this long is checked too
+    private static final int MAX_ATTEMPTS = 8;
+
+    private final Path path;
+    private MappedByteBuffer buffer;
+    private IntBuffer ints;
+    private FloatBuffer floats;
+    private int slots;
+    private int capacity;
+    private long slotBytes;
+    private long session;
+    private long lastFrame;
+    private long lastOpenAttempt;
+    private long tornReads;
+
+    public SharedFrameSubscriber(Path path) {
+        this.path = path;
+        tryOpen();
+    }
+
+    // Copy the newest frame into out if there is one this subscriber has not returned yet
+    public boolean poll(TrajectoryFrame out) {
+        if (buffer == null || isReplaced()) {
+            long now = System.currentTimeMillis();
+            if (now - lastOpenAttempt >= REOPEN_INTERVAL) {
+                tryOpen();
+            }
+            if (buffer == null) {
+                return false;
+            }
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long frame = (long) LONGS.getAcquire(buffer, LATEST_OFFSET);
+            if (frame == 0 || frame == lastFrame) {
+                return false;
+            }
+            if (read(frame, out)) {
+                lastFrame = frame;
+                return true;
+            }
+            tornReads++; // The writer lapped us mid-copy; the next latest frame is in a different slot
+        }
+        return false;
+    }
+
+    private boolean read(long frame, TrajectoryFrame out) {
+        int base = (int) slotOffset(slotBytes, (int) (frame % slots));
+        long before = (long) LONGS.getAcquire(buffer, base + SEQUENCE);
+        if (before != 2 * frame) {
+            return false;
+        }
+        int n = buffer.getInt(base + COUNT);
+        if (n < 0 || n > capacity) {
+            return false;
+        }
+        out.ensureCapacity(n);
+        out.step = buffer.getLong(base + STEP);
+        out.boundarySize = buffer.getDouble(base + BOUNDARY);
+        ints.get((base + idsOffset()) / Integer.BYTES, out.id, 0, n);
+        floats.get((base + xOffset(capacity)) / Float.BYTES, out.x, 0, n);
+        floats.get((base + yOffset(capacity)) / Float.BYTES, out.y, 0, n);
+        floats.get((base + zOffset(capacity)) / Float.BYTES, out.z, 0, n);
+        buffer.get(base + typesOffset(capacity), out.type, 0, n);
+        // Only keep the copy if the writer did not touch the slot while we read it
+        VarHandle.acquireFence();
+        long after = (long) LONGS.getOpaque(buffer, base + SEQUENCE);
+        if (after != before) {
+            return false;
+        }
+        out.size = n;
+        return true;
+    }
+
+    // The writer moved to a bigger ring, stopped, or went quiet (possibly crashed and restarted)
+    private boolean isReplaced() {
+        int state = (int) INTS.getAcquire(buffer, STATE_OFFSET);
+        if (state != STATE_LIVE) {
+            return true;
+        }
+        long heartbeat = (long) LONGS.getOpaque(buffer, HEARTBEAT_OFFSET);
+        return System.currentTimeMillis() - heartbeat > STALE_MILLIS;
+    }
+
+    private void tryOpen() {
+        lastOpenAttempt = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ORDER);
+            if (mapped.getLong(MAGIC_OFFSET) != MAGIC || mapped.getInt(VERSION_OFFSET) != VERSION) {
+                System.err.println(path + " is not a frame ring");
+                return;
+            }
+            long newSession = mapped.getLong(SESSION_OFFSET);
+            int newCapacity = mapped.getInt(CAPACITY_OFFSET);
+            if (buffer != null && newSession == session && newCapacity == capacity) {
+                return; // Same ring as before
+            }
+            buffer = mapped;
+            ints = mapped.duplicate().order(ORDER).asIntBuffer();
+            floats = mapped.duplicate().order(ORDER).asFloatBuffer();
+            slots = mapped.getInt(SLOTS_OFFSET);
+            capacity = newCapacity;
+            slotBytes = mapped.getLong(SLOT_BYTES_OFFSET);
+            // Frame numbers restart with a new writer; a bigger ring from the same writer continues them
+            if (newSession != session) {
+                lastFrame = 0;
+            }
+            session = newSession;
+        } catch (NoSuchFileException e) {
+            // The writer has not started yet
+        } catch (IOException e) {
+            System.err.println("Could not open frame ring " + path + ": " + e.getMessage());
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isAttached() {
+        return buffer != null;
+    }
+
+    // True while the attached writer is publishing
+    public boolean isWriterLive() {
+        return buffer != null && !isReplaced();
+    }
+
+    public long getLastFrame() {
+        return lastFrame;
+    }
+
+    public long getTornReads() {
+        return tornReads;
+    }
+
+    @Override
+    public void close() {
+        buffer = null; // The mapping is released when it is collected
+    }
+}
@@ -0,0 +1,122 @@
+package com.shrine.particlesim.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a binary trajectory file. Everything is little-endian.
+ *
+ * <pre>
+ * header   magic "PSIMTRAJ", int version, int header size, long frame count, long data end,
+ *          int field count, then per field a 12-byte ASCII name, short element size and
+ *          byte kind ('f' float, 'i' int, 'b' byte); at ENCODING_OFFSET int encoding,
+ *          int bits per axis and long index offset; padded to HEADER_BYTES
+ * frame    int FRAME_MAGIC, int particle count, long step, double boundary size,
+ *          long frame size in bytes, then either one column per field in header order,
+ *          each padded to a multiple of 8 bytes (RAW), or one {@link FrameCodec} frame
+ *          padded to a multiple of 8 bytes (QUANTIZED, positions, ids and types only)
+ * index    int INDEX_MAGIC, int frame count, then per frame long offset and long step,
+ *          then one byte per frame that is 1 for keyframes
+ * </pre>
+ *
+ * Frame count and data end are updated after every frame, so a file that is still being
+ * written (or whose writer died) can be read up to its last complete frame. The index is
+ * written when the recording is closed; without it readers scan the frame headers.
+ */
+public final class TrajectoryFormat {
+    static final byte[] MAGIC = "PSIMTRAJ".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 256;
+    static final int FRAME_COUNT_OFFSET = 16;
+    static final int DATA_END_OFFSET = 24;
+    static final int FIELD_COUNT_OFFSET = 32;
+    static final int FIELDS_OFFSET = 36;
+    static final int FIELD_BYTES = 16;
+    static final int FIELD_NAME_BYTES = 12;
+
+    static final int ENCODING_OFFSET = 168;
+    static final int BITS_OFFSET = 172;
+    static final int INDEX_OFFSET = 176;
+    public static final int RAW = 0;
+    public static final int QUANTIZED = 1;
+
+    static final int FRAME_MAGIC = 0x454D5246; // "FRME" read as little-endian bytes
+    static final int INDEX_MAGIC = 0x58444E49; // "INDX" read as little-endian bytes
+    static final int FRAME_HEADER_BYTES = 32;
+
+    // Column order inside a frame
+    static final String[] FIELD_NAMES = {"x", "y", "z", "vx", "vy", "vz", "id", "type"};
+    static final char[] FIELD_KINDS = {'f', 'f', 'f', 'f', 'f', 'f', 'i', 'b'};
+    static final int[] FIELD_SIZES = {4, 4, 4, 4, 4, 4, 4, 1};
+
+    private TrajectoryFormat() {
+    }
+
+    // Bytes one frame of n particles takes, including its header
+    public static long frameBytes(int n) {
+        long bytes = FRAME_HEADER_BYTES;
+        for (int size : FIELD_SIZES) {
+            bytes += columnBytes(n, size);
+        }
+        return bytes;
+    }
+
+    static long columnBytes(int n, int elementSize) {
+        return ((long) n * elementSize + 7) & ~7L;
+    }
+
+    static long padded(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static void writeHeader(ByteBuffer header, int encoding, int bitsPerAxis) {
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.put(0, MAGIC);
+        header.putInt(8, VERSION);
+        header.putInt(12, HEADER_BYTES);
+        header.putLong(FRAME_COUNT_OFFSET, 0);
+        header.putLong(DATA_END_OFFSET, HEADER_BYTES);
+        header.putInt(FIELD_COUNT_OFFSET, FIELD_NAMES.length);
+        for (int f = 0; f < FIELD_NAMES.length; f++) {
+            int base = FIELDS_OFFSET + f * FIELD_BYTES;
+            byte[] name = FIELD_NAMES[f].getBytes(StandardCharsets.US_ASCII);
+            for (int b = 0; b < FIELD_NAME_BYTES; b++) {
+                header.put(base + b, b < name.length ? name[b] : 0);
+            }
+            header.putShort(base + FIELD_NAME_BYTES, (short) FIELD_SIZES[f]);
+            header.put(base + FIELD_NAME_BYTES + 2, (byte) FIELD_KINDS[f]);
+        }
+        header.putInt(ENCODING_OFFSET, encoding);
+        header.putInt(BITS_OFFSET, bitsPerAxis);
+        header.putLong(INDEX_OFFSET, 0);
+    }
+
+    // Throws if the header is not one this version can read
+    static void checkHeader(ByteBuffer header) {
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        for (int b = 0; b < MAGIC.length; b++) {
+            if (header.get(b) != MAGIC[b]) {
+                throw new IllegalArgumentException("Not a trajectory file");
+            }
+        }
+        int version = header.getInt(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported trajectory version " + version);
+        }
+        if (header.getInt(FIELD_COUNT_OFFSET) != FIELD_NAMES.length) {
+            throw new IllegalArgumentException("Unexpected trajectory schema");
+        }
+        for (int f = 0; f < FIELD_NAMES.length; f++) {
+            int base = FIELDS_OFFSET + f * FIELD_BYTES;
+            if (header.getShort(base + FIELD_NAME_BYTES) != FIELD_SIZES[f]
+                    || header.get(base + FIELD_NAME_BYTES + 2) != FIELD_KINDS[f]) {
+                throw new IllegalArgumentException("Unexpected layout for field " + FIELD_NAMES[f]);
+            }
+        }
+        int encoding = header.getInt(ENCODING_OFFSET);
+        if (encoding != RAW && encoding != QUANTIZED) {
+            throw new IllegalArgumentException("Unknown trajectory encoding " + encoding);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.shrine.particlesim.recording;
+
+import java.util.Arrays;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * One recorded frame: single-precision positions and velocities, ids and type codes.
+ * Frames are reused, so their arrays may be longer than {@link #size()}.
+ */
+public final class TrajectoryFrame {
+    long step;
+    double boundarySize;
+    int size;
+    float[] x = new float[0];
+    float[] y = new float[0];
+    float[] z = new float[0];
+    float[] vx = new float[0];
+    float[] vy = new float[0];
+    float[] vz = new float[0];
+    int[] id = new int[0];
+    byte[] type = new byte[0];
+
+    void ensureCapacity(int n) {
+        if (x.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+        id = Arrays.copyOf(id, capacity);
+        type = Arrays.copyOf(type, capacity);
+    }
+
+    void copyFrom(Simulation simulation) {
+        ParticleArrays state = simulation.getState();
+        int n = state.size();
+        ensureCapacity(n);
+        double[] sx = state.getX(), sy = state.getY(), sz = state.getZ();
+        double[] svx = state.getVx(), svy = state.getVy(), svz = state.getVz();
+        for (int i = 0; i < n; i++) {
+            x[i] = (float) sx[i];
+            y[i] = (float) sy[i];
+            z[i] = (float) sz[i];
+            vx[i] = (float) svx[i];
+            vy[i] = (float) svy[i];
+            vz[i] = (float) svz[i];
+        }
+        System.arraycopy(state.getId(), 0, id, 0, n);
+        System.arraycopy(state.getType(), 0, type, 0, n);
+        size = n;
+        step = simulation.getStepCount();
+        boundarySize = simulation.getBoundarySize();
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public double getBoundarySize() {
+        return boundarySize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public float[] getZ() {
+        return z;
+    }
+
+    public float[] getVx() {
+        return vx;
+    }
+
+    public float[] getVy() {
+        return vy;
+    }
+
+    public float[] getVz() {
+        return vz;
+    }
+
+    public int[] getId() {
+        return id;
+    }
+
+    public byte[] getType() {
+        return type;
+    }
+}
@@ -0,0 +1,295 @@
+package com.shrine.particlesim.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Region and particle queries over a recording, answered from a sidecar file
+ * ({@code <recording>.idx}) so only the frames that can match are read.
+ *
+ * <p>Frames are grouped into chunks of up to {@link #CHUNK_FRAMES} consecutive frames with the
+ * same particles and boundary. For each chunk the sidecar keeps its frame and step range, the
+ * bounding box of every position in it, a {@code GRID}³ occupancy bitmap over the boundary
+ * cube, and a table of ids sorted with the slot each id has in the chunk's frames. A region
+ * query skips chunks outside the time window, box or bitmap; a track query skips chunks that
+ * do not contain the id and reads one particle per frame from the others.
+ *
+ * <pre>
+ * header     long MAGIC "PSIMTIDX", int version, int grid, int chunk count,
+ *            int frame count, long directory offset; padded to HEADER_BYTES
+ * tables     per chunk: n sorted ids, then the n matching slots (ints)
+ * directory  per chunk: int first frame, int frame count, long first step, long last step,
+ *            double boundary, int particle count, int min id, int max id,
+ *            float min x/y/z, float max x/y/z, long table offset, bitmap longs
+ * </pre>
+ *
+ * {@link TrajectoryRecorder} writes the sidecar as it records; {@link #open} builds it for
+ * recordings that do not have one. Queries are serialized.
+ */
+public class TrajectoryIndex implements AutoCloseable {
+    static final long MAGIC = 0x584449544D495350L; // "PSIMTIDX" read as a little-endian long
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int CHUNK_FRAMES = 64;
+    static final int GRID = 16;
+    static final int BITMAP_LONGS = GRID * GRID * GRID / 64;
+    static final int CHUNK_RECORD_BYTES = 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + 24 + 8 + 8 * BITMAP_LONGS;
+
+    private final TrajectoryReader reader;
+    private final FileChannel channel;
+    private final int chunkCount;
+    private final int[] firstFrame;
+    private final int[] frameCount;
+    private final long[] firstStep;
+    private final long[] lastStep;
+    private final double[] boundary;
+    private final int[] size;
+    private final int[] minId;
+    private final int[] maxId;
+    private final float[] bounds; // 6 per chunk: min x/y/z, max x/y/z
+    private final long[] tableOffset;
+    private final long[] bitmaps;
+    private final TrajectoryFrame frame = new TrajectoryFrame();
+    private final float[] position = new float[3];
+    private int chunksRead;
+
+    private TrajectoryIndex(TrajectoryReader reader, Path indexFile) throws IOException {
+        this.reader = reader;
+        channel = FileChannel.open(indexFile, StandardOpenOption.READ);
+        ByteBuffer header = read(0, HEADER_BYTES);
+        chunkCount = header.getInt(16);
+        ByteBuffer directory = read(header.getLong(24), (long) chunkCount * CHUNK_RECORD_BYTES);
+        firstFrame = new int[chunkCount];
+        frameCount = new int[chunkCount];
+        firstStep = new long[chunkCount];
+        lastStep = new long[chunkCount];
+        boundary = new double[chunkCount];
+        size = new int[chunkCount];
+        minId = new int[chunkCount];
+        maxId = new int[chunkCount];
+        bounds = new float[6 * chunkCount];
+        tableOffset = new long[chunkCount];
+        bitmaps = new long[BITMAP_LONGS * chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            firstFrame[c] = directory.getInt();
+            frameCount[c] = directory.getInt();
+            firstStep[c] = directory.getLong();
+            lastStep[c] = directory.getLong();
+            boundary[c] = directory.getDouble();
+            size[c] = directory.getInt();
+            minId[c] = directory.getInt();
+            maxId[c] = directory.getInt();
+            for (int k = 0; k < 6; k++) {
+                bounds[6 * c + k] = directory.getFloat();
+            }
+            tableOffset[c] = directory.getLong();
+            for (int k = 0; k < BITMAP_LONGS; k++) {
+                bitmaps[BITMAP_LONGS * c + k] = directory.getLong();
+            }
+        }
+    }
+
+    /**
+     * Open the index of a recording, building the sidecar first if it is missing, incomplete
+     * or older than the recording.
+     */
+    public static TrajectoryIndex open(Path recording) throws IOException {
+        TrajectoryReader reader = new TrajectoryReader(recording);
+        try {
+            Path indexFile = pathFor(recording);
+            if (!isValid(indexFile, recording, reader.getFrameCount())) {
+                build(reader, indexFile);
+            }
+            return new TrajectoryIndex(reader, indexFile);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    public static Path pathFor(Path recording) {
+        return recording.resolveSibling(recording.getFileName() + ".idx");
+    }
+
+    private static boolean isValid(Path indexFile, Path recording, int frames) throws IOException {
+        if (!Files.exists(indexFile)
+                || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(recording)) < 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            }
+            return !header.hasRemaining() && header.getLong(0) == MAGIC && header.getInt(8) == VERSION
+                    && header.getInt(12) == GRID && header.getInt(20) == frames;
+        }
+    }
+
+    private static void build(TrajectoryReader reader, Path indexFile) throws IOException {
+        TrajectoryFrame frame = new TrajectoryFrame();
+        try (TrajectoryIndexWriter writer = new TrajectoryIndexWriter(indexFile)) {
+            for (int f = 0; f < reader.getFrameCount(); f++) {
+                reader.read(f, frame);
+                writer.add(frame, f);
+            }
+            writer.finish(reader.getFrameCount());
+        }
+    }
+
+    /**
+     * Ids of the particles that were inside the box in at least one frame recorded between
+     * the two steps (inclusive), in increasing order.
+     */
+    public synchronized int[] particlesInRegion(double minX, double minY, double minZ, double maxX, double maxY,
+                                                double maxZ, long fromStep, long toStep) throws IOException {
+        chunksRead = 0;
+        BitSet found = new BitSet();
+        for (int c = 0; c < chunkCount; c++) {
+            if (lastStep[c] < fromStep || firstStep[c] > toStep
+                    || !boxOverlaps(c, minX, minY, minZ, maxX, maxY, maxZ)
+                    || !cellsOverlap(c, minX, minY, minZ, maxX, maxY, maxZ)) {
+                continue;
+            }
+            chunksRead++;
+            for (int f = firstFrame[c]; f < firstFrame[c] + frameCount[c]; f++) {
+                long step = reader.getStep(f);
+                if (step < fromStep || step > toStep) {
+                    continue;
+                }
+                reader.read(f, frame);
+                float[] x = frame.x, y = frame.y, z = frame.z;
+                int[] id = frame.id;
+                for (int i = 0; i < frame.size; i++) {
+                    if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY && z[i] >= minZ && z[i] <= maxZ) {
+                        found.set(id[i]);
+                    }
+                }
+            }
+        }
+        return found.stream().toArray();
+    }
+
+    public ParticleTrack track(int id) throws IOException {
+        return track(id, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Positions of one particle in every frame recorded between the two steps (inclusive)
+    public synchronized ParticleTrack track(int id, long fromStep, long toStep) throws IOException {
+        chunksRead = 0;
+        ParticleTrack track = new ParticleTrack(id);
+        for (int c = 0; c < chunkCount; c++) {
+            if (lastStep[c] < fromStep || firstStep[c] > toStep || id < minId[c] || id > maxId[c]) {
+                continue;
+            }
+            int slot = findSlot(c, id);
+            if (slot < 0) {
+                continue;
+            }
+            chunksRead++;
+            for (int f = firstFrame[c]; f < firstFrame[c] + frameCount[c]; f++) {
+                long step = reader.getStep(f);
+                if (step >= fromStep && step <= toStep) {
+                    reader.readPosition(f, slot, position);
+                    track.add(step, position[0], position[1], position[2]);
+                }
+            }
+        }
+        return track;
+    }
+
+    // Binary search of the chunk's id table, mapped only for the search
+    private int findSlot(int chunk, int id) throws IOException {
+        int n = size[chunk];
+        IntBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset[chunk], 8L * n)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = table.get(mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return table.get(n + mid);
+            }
+        }
+        return -1;
+    }
+
+    private boolean boxOverlaps(int c, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int b = 6 * c;
+        return bounds[b] <= maxX && bounds[b + 3] >= minX && bounds[b + 1] <= maxY && bounds[b + 4] >= minY
+                && bounds[b + 2] <= maxZ && bounds[b + 5] >= minZ;
+    }
+
+    private boolean cellsOverlap(int c, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double b = boundary[c];
+        double scale = GRID / (2 * b);
+        int x0 = cell(minX, b, scale), x1 = cell(maxX, b, scale);
+        int y0 = cell(minY, b, scale), y1 = cell(maxY, b, scale);
+        int z0 = cell(minZ, b, scale), z1 = cell(maxZ, b, scale);
+        int base = BITMAP_LONGS * c;
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cz = z0; cz <= z1; cz++) {
+                    int cell = cellIndex(cx, cy, cz);
+                    if ((bitmaps[base + (cell >>> 6)] & (1L << cell)) != 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Grid cell along one axis; positions outside the boundary fall into the edge cells
+    static int cell(double value, double boundary, double scale) {
+        int cell = (int) Math.floor((value + boundary) * scale);
+        return Math.max(0, Math.min(GRID - 1, cell));
+    }
+
+    static int cellIndex(int cx, int cy, int cz) {
+        return (cx * GRID + cy) * GRID + cz;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    // Chunks whose frames the last query had to read
+    public synchronized int getChunksRead() {
+        return chunksRead;
+    }
+
+    public TrajectoryReader getReader() {
+        return reader;
+    }
+
+    private ByteBuffer read(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE || offset + length > channel.size()) {
+            throw new IOException("Trajectory index is truncated");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Trajectory index is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        reader.close();
+    }
+}
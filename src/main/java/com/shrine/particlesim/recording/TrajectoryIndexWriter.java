@@ -0,0 +1,180 @@
+package com.shrine.particlesim.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds the {@link TrajectoryIndex} sidecar of a recording one frame at a time. Frames are
+ * grouped into chunks of consecutive frames with the same particles in the same order and the
+ * same boundary; each chunk's id table is written when the chunk starts, and its bounding box
+ * and occupancy bitmap go into the directory written by {@link #finish()}.
+ */
+final class TrajectoryIndexWriter implements AutoCloseable {
+    private final Path file;
+    private final FileChannel channel;
+    private ByteBuffer directory = ByteBuffer.allocate(64 * TrajectoryIndex.CHUNK_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final long[] bitmap = new long[TrajectoryIndex.BITMAP_LONGS];
+    private ByteBuffer table = ByteBuffer.allocate(0);
+    private long[] sortKeys = new long[0];
+    private int[] chunkIds = new int[0];
+    private long position = TrajectoryIndex.HEADER_BYTES;
+    private int chunkCount;
+
+    // Current chunk
+    private boolean open;
+    private int firstFrame;
+    private int frameCount;
+    private long firstStep;
+    private long lastStep;
+    private int size;
+    private double boundary;
+    private int minId;
+    private int maxId;
+    private long tableOffset;
+    private float minX, minY, minZ, maxX, maxY, maxZ;
+
+    TrajectoryIndexWriter(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    // Add the next frame of the recording
+    void add(TrajectoryFrame frame, int frameIndex) throws IOException {
+        int n = frame.size;
+        if (open && (frameCount == TrajectoryIndex.CHUNK_FRAMES || n != size || frame.boundarySize != boundary
+                || !Arrays.equals(frame.id, 0, n, chunkIds, 0, n))) {
+            closeChunk();
+        }
+        if (!open) {
+            openChunk(frame, frameIndex);
+        }
+        float[] x = frame.x, y = frame.y, z = frame.z;
+        double scale = TrajectoryIndex.GRID / (2 * boundary);
+        for (int i = 0; i < n; i++) {
+            float px = x[i], py = y[i], pz = z[i];
+            minX = Math.min(minX, px);
+            minY = Math.min(minY, py);
+            minZ = Math.min(minZ, pz);
+            maxX = Math.max(maxX, px);
+            maxY = Math.max(maxY, py);
+            maxZ = Math.max(maxZ, pz);
+            int cell = TrajectoryIndex.cellIndex(TrajectoryIndex.cell(px, boundary, scale),
+                    TrajectoryIndex.cell(py, boundary, scale), TrajectoryIndex.cell(pz, boundary, scale));
+            bitmap[cell >>> 6] |= 1L << cell;
+        }
+        frameCount++;
+        lastStep = frame.step;
+    }
+
+    private void openChunk(TrajectoryFrame frame, int frameIndex) throws IOException {
+        int n = frame.size;
+        open = true;
+        firstFrame = frameIndex;
+        frameCount = 0;
+        firstStep = frame.step;
+        size = n;
+        boundary = frame.boundarySize;
+        Arrays.fill(bitmap, 0);
+        minX = minY = minZ = Float.POSITIVE_INFINITY;
+        maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+        if (chunkIds.length < n) {
+            chunkIds = new int[n];
+            sortKeys = new long[n];
+        }
+        System.arraycopy(frame.id, 0, chunkIds, 0, n);
+
+        // Ids sorted with the slot they occupy, for binary search by id
+        for (int i = 0; i < n; i++) {
+            sortKeys[i] = ((long) frame.id[i] << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, n);
+        minId = n > 0 ? (int) (sortKeys[0] >> 32) : 0;
+        maxId = n > 0 ? (int) (sortKeys[n - 1] >> 32) : -1;
+        if (table.capacity() < 8 * n) {
+            table = ByteBuffer.allocate(8 * n).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        table.clear();
+        for (int i = 0; i < n; i++) {
+            table.putInt(4 * i, (int) (sortKeys[i] >> 32));
+            table.putInt(4 * (n + i), (int) sortKeys[i]);
+        }
+        table.limit(8 * n);
+        tableOffset = position;
+        while (table.hasRemaining()) {
+            position += channel.write(table, position);
+        }
+    }
+
+    private void closeChunk() {
+        open = false;
+        if (directory.remaining() < TrajectoryIndex.CHUNK_RECORD_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocate(directory.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            grown.put(directory.flip());
+            directory = grown;
+        }
+        directory.putInt(firstFrame);
+        directory.putInt(frameCount);
+        directory.putLong(firstStep);
+        directory.putLong(lastStep);
+        directory.putDouble(boundary);
+        directory.putInt(size);
+        directory.putInt(minId);
+        directory.putInt(maxId);
+        directory.putFloat(minX).putFloat(minY).putFloat(minZ);
+        directory.putFloat(maxX).putFloat(maxY).putFloat(maxZ);
+        directory.putLong(tableOffset);
+        for (long word : bitmap) {
+            directory.putLong(word);
+        }
+        chunkCount++;
+    }
+
+    // Write the directory and header; the sidecar is only valid once this returns
+    void finish(int recordedFrames) throws IOException {
+        if (open) {
+            closeChunk();
+        }
+        long directoryOffset = position;
+        directory.flip();
+        while (directory.hasRemaining()) {
+            position += channel.write(directory, position);
+        }
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryIndex.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, TrajectoryIndex.MAGIC);
+        header.putInt(8, TrajectoryIndex.VERSION);
+        header.putInt(12, TrajectoryIndex.GRID);
+        header.putInt(16, chunkCount);
+        header.putInt(20, recordedFrames);
+        header.putLong(24, directoryOffset);
+        long written = 0;
+        while (header.hasRemaining()) {
+            written += channel.write(header, written);
+        }
+        channel.force(false);
+        channel.close();
+    }
+
+    // Give up on the sidecar, e.g. when the recording itself failed
+    void abandon() {
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not remove trajectory index " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel.isOpen()) {
+            abandon();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.shrine.particlesim.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to the frames of a trajectory file written by {@link TrajectoryRecorder}.
+ * Frame offsets, steps and keyframe flags come from the index at the end of the file, or from
+ * one scan of the frame headers when the recording was not closed cleanly. Frames are read
+ * into one reusable buffer, so memory does not grow with the file or with the number of reads.
+ * Quantized frames are decoded starting from their keyframe, which is skipped when it is the
+ * keyframe decoded last. Reads are serialized; the reader can be shared between threads.
+ */
+public class TrajectoryReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final int encoding;
+    private final int bitsPerAxis;
+    private final FrameDecoder decoder;
+    private long[] frameOffsets = new long[16];
+    private long[] frameSteps = new long[16];
+    private boolean[] keyframes = new boolean[16];
+    private int frameCount;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+    private int decodedKeyframe = -1;
+    private final ByteBuffer small = ByteBuffer.allocate(TrajectoryFormat.FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private TrajectoryFrame scratch;
+
+    public TrajectoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES);
+        readFully(header, 0);
+        TrajectoryFormat.checkHeader(header);
+        encoding = header.getInt(TrajectoryFormat.ENCODING_OFFSET);
+        bitsPerAxis = header.getInt(TrajectoryFormat.BITS_OFFSET);
+        decoder = encoding == TrajectoryFormat.QUANTIZED
+                ? new FrameDecoder(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                : null;
+        long dataEnd = Math.min(header.getLong(TrajectoryFormat.DATA_END_OFFSET), channel.size());
+        long indexOffset = header.getLong(TrajectoryFormat.INDEX_OFFSET);
+        if (indexOffset < TrajectoryFormat.HEADER_BYTES || !readIndex(indexOffset)) {
+            scan(file, dataEnd);
+        }
+    }
+
+    private boolean readIndex(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        if (offset + 8 > channel.size()) {
+            return false;
+        }
+        readFully(head, offset);
+        int count = head.getInt(4);
+        if (head.getInt(0) != TrajectoryFormat.INDEX_MAGIC || count < 0
+                || offset + 8 + 17L * count > channel.size()) {
+            return false;
+        }
+        ByteBuffer index = ByteBuffer.allocate(17 * count).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(index, offset + 8);
+        frameOffsets = new long[Math.max(1, count)];
+        frameSteps = new long[Math.max(1, count)];
+        keyframes = new boolean[Math.max(1, count)];
+        for (int i = 0; i < count; i++) {
+            frameOffsets[i] = index.getLong(16 * i);
+            frameSteps[i] = index.getLong(16 * i + 8);
+            keyframes[i] = index.get(16 * count + i) != 0;
+        }
+        frameCount = count;
+        return true;
+    }
+
+    private void scan(Path file, long dataEnd) throws IOException {
+        ByteBuffer frameHeader = ByteBuffer.allocate(TrajectoryFormat.FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer kind = ByteBuffer.allocate(FrameCodec.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        while (offset + TrajectoryFormat.FRAME_HEADER_BYTES <= dataEnd) {
+            frameHeader.clear();
+            readFully(frameHeader, offset);
+            long frameBytes = frameHeader.getLong(24);
+            boolean sizeOk = encoding == TrajectoryFormat.RAW
+                    ? frameBytes == TrajectoryFormat.frameBytes(frameHeader.getInt(4))
+                    : frameBytes > TrajectoryFormat.FRAME_HEADER_BYTES + FrameCodec.HEADER_BYTES;
+            if (frameHeader.getInt(0) != TrajectoryFormat.FRAME_MAGIC || !sizeOk || offset + frameBytes > dataEnd) {
+                System.err.println("Trajectory " + file + " is damaged after frame " + frameCount);
+                break;
+            }
+            boolean keyframe = true;
+            if (encoding == TrajectoryFormat.QUANTIZED) {
+                kind.clear();
+                readFully(kind, offset + TrajectoryFormat.FRAME_HEADER_BYTES);
+                keyframe = FrameCodec.isKeyframe(kind.position(0));
+            }
+            if (frameCount == frameOffsets.length) {
+                frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+                frameSteps = Arrays.copyOf(frameSteps, frameCount * 2);
+                keyframes = Arrays.copyOf(keyframes, frameCount * 2);
+            }
+            frameOffsets[frameCount] = offset;
+            frameSteps[frameCount] = frameHeader.getLong(8);
+            keyframes[frameCount] = keyframe;
+            frameCount++;
+            offset += frameBytes;
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        long start = position - target.position();
+        while (target.hasRemaining()) {
+            if (channel.read(target, start + target.position()) < 0) {
+                throw new IOException("Unexpected end of trajectory file");
+            }
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getStep(int frame) {
+        return frameSteps[frame];
+    }
+
+    // RAW or QUANTIZED; quantized recordings carry no velocities
+    public int getEncoding() {
+        return encoding;
+    }
+
+    public int getBitsPerAxis() {
+        return bitsPerAxis;
+    }
+
+    public boolean isKeyframe(int frame) {
+        return keyframes[frame];
+    }
+
+    // The keyframe a frame is decoded from (the frame itself in raw recordings)
+    public int keyframeFor(int frame) {
+        int key = frame;
+        while (key > 0 && !keyframes[key]) {
+            key--;
+        }
+        return key;
+    }
+
+    // Index of the last frame recorded at or before the step, or -1 if there is none
+    public int frameAtOrBefore(long step) {
+        int index = Arrays.binarySearch(frameSteps, 0, frameCount, step);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // Fill {@code out} with a frame, growing its arrays if needed
+    public synchronized void read(int frame, TrajectoryFrame out) throws IOException {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+        if (encoding == TrajectoryFormat.RAW) {
+            readRaw(frame, out);
+            return;
+        }
+        int key = keyframeFor(frame);
+        if (key != decodedKeyframe || key == frame) {
+            decoder.decode(load(key), out);
+            decodedKeyframe = key;
+        }
+        if (key != frame) {
+            decoder.decode(load(frame), out);
+        }
+    }
+
+    /**
+     * Position of the particle in one slot of a frame, into {@code out[0..2]}. Raw frames
+     * read only those three values; quantized frames are decoded whole.
+     */
+    public synchronized void readPosition(int frame, int slot, float[] out) throws IOException {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+        if (encoding == TrajectoryFormat.QUANTIZED) {
+            if (scratch == null) {
+                scratch = new TrajectoryFrame();
+            }
+            read(frame, scratch);
+            if (slot >= scratch.size) {
+                throw new IndexOutOfBoundsException("Slot " + slot + " of " + scratch.size);
+            }
+            out[0] = scratch.x[slot];
+            out[1] = scratch.y[slot];
+            out[2] = scratch.z[slot];
+            return;
+        }
+        long start = frameOffsets[frame];
+        readFully(small.clear(), start);
+        int n = small.getInt(4);
+        if (slot < 0 || slot >= n) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + n);
+        }
+        long column = TrajectoryFormat.columnBytes(n, 4);
+        long offset = start + TrajectoryFormat.FRAME_HEADER_BYTES + 4L * slot;
+        for (int axis = 0; axis < 3; axis++) {
+            readFully(small.clear().limit(4), offset + axis * column);
+            out[axis] = small.getFloat(0);
+        }
+    }
+
+    // Read a whole frame into the shared buffer; returns it positioned after the frame header
+    private ByteBuffer load(int frame) throws IOException {
+        long start = frameOffsets[frame];
+        long end = frame + 1 < frameCount ? frameOffsets[frame + 1] : -1;
+        ByteBuffer head = buffer.capacity() >= TrajectoryFormat.FRAME_HEADER_BYTES
+                ? buffer.clear().limit(TrajectoryFormat.FRAME_HEADER_BYTES)
+                : ByteBuffer.allocate(TrajectoryFormat.FRAME_HEADER_BYTES);
+        readFully(head.order(ByteOrder.LITTLE_ENDIAN), start);
+        long frameBytes = head.getLong(24);
+        if ((end >= 0 && start + frameBytes != end) || frameBytes > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt trajectory frame " + frame);
+        }
+        if (buffer.capacity() < frameBytes) {
+            buffer = ByteBuffer.allocateDirect((int) Math.max(frameBytes, buffer.capacity() + (buffer.capacity() >> 1)));
+        }
+        buffer.clear().limit((int) frameBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, start);
+        return buffer.position(TrajectoryFormat.FRAME_HEADER_BYTES);
+    }
+
+    private void readRaw(int frame, TrajectoryFrame out) throws IOException {
+        ByteBuffer data = load(frame);
+        int n = data.getInt(4);
+        out.ensureCapacity(n);
+        out.size = n;
+        out.step = data.getLong(8);
+        out.boundarySize = data.getDouble(16);
+        int offset = TrajectoryFormat.FRAME_HEADER_BYTES;
+        offset = getColumn(data, out.x, n, offset);
+        offset = getColumn(data, out.y, n, offset);
+        offset = getColumn(data, out.z, n, offset);
+        offset = getColumn(data, out.vx, n, offset);
+        offset = getColumn(data, out.vy, n, offset);
+        offset = getColumn(data, out.vz, n, offset);
+        data.slice(offset, n * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(out.id, 0, n);
+        offset += (int) TrajectoryFormat.columnBytes(n, 4);
+        data.get(offset, out.type, 0, n);
+    }
+
+    private static int getColumn(ByteBuffer data, float[] values, int n, int offset) {
+        data.slice(offset, n * 4).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values, 0, n);
+        return offset + (int) TrajectoryFormat.columnBytes(n, 4);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (decoder != null) {
+            decoder.close();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,295 @@
+package com.shrine.particlesim.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.diagnostics.StepListener;
+
+/**
+ * Appends a {@link TrajectoryFormat} frame every few steps to a memory-mapped file. The
+ * stepping thread only copies the state into a pooled {@link TrajectoryFrame}; a writer
+ * thread copies that into the mapping with bulk puts, remapping a new window whenever the
+ * current one is full. When every pooled frame is still waiting to be written, the
+ * {@link Backpressure} policy decides whether the stepping thread waits or the frame is
+ * dropped.
+ *
+ * <p>Frames are stored raw, or quantized with a {@link FrameEncoder} when bits per axis are
+ * given (positions, ids and types only). Closing the recorder appends a frame index with
+ * keyframe flags so readers can seek without scanning the file, and finishes the
+ * {@link TrajectoryIndex} sidecar that the writer thread builds alongside the frames.
+ */
+public class TrajectoryRecorder implements StepListener, AutoCloseable {
+    public enum Backpressure {
+        DROP, // Skip the frame and count it; the simulation never waits
+        BLOCK // Wait for the writer; no frame is lost
+    }
+
+    private static final int POOL_SIZE = 3;
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final Path file;
+    private final int interval;
+    private final Backpressure backpressure;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final BlockingQueue<TrajectoryFrame> free = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<TrajectoryFrame> ready = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Thread writer;
+    private final FrameEncoder encoder;
+    private final TrajectoryIndexWriter index;
+    private long[] frameOffsets = new long[1024];
+    private long[] frameSteps = new long[1024];
+    private byte[] frameKeys = new byte[1024];
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long dataEnd = TrajectoryFormat.HEADER_BYTES;
+    private volatile long framesWritten;
+    private volatile long bytesWritten;
+    private volatile long dropped;
+    private volatile IOException failure;
+    private volatile boolean running = true;
+    private boolean closed;
+
+    public TrajectoryRecorder(Path file, int interval, Backpressure backpressure) throws IOException {
+        this(file, interval, backpressure, 0, 0);
+    }
+
+    /**
+     * @param bitsPerAxis      quantization of positions, or 0 to store frames raw
+     * @param keyframeInterval frames between keyframes when quantizing
+     */
+    public TrajectoryRecorder(Path file, int interval, Backpressure backpressure, int bitsPerAxis,
+                              int keyframeInterval) throws IOException {
+        this.file = file;
+        this.interval = Math.max(1, interval);
+        this.backpressure = backpressure;
+        encoder = bitsPerAxis > 0
+                ? new FrameEncoder(bitsPerAxis, keyframeInterval, Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                : null;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, TrajectoryFormat.HEADER_BYTES);
+        TrajectoryFormat.writeHeader(header, encoder != null ? TrajectoryFormat.QUANTIZED : TrajectoryFormat.RAW,
+                bitsPerAxis);
+        index = new TrajectoryIndexWriter(TrajectoryIndex.pathFor(file));
+        for (int i = 0; i < POOL_SIZE; i++) {
+            free.add(new TrajectoryFrame());
+        }
+        writer = new Thread(this::drain, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stepCompleted(Simulation simulation) {
+        if (simulation.getStepCount() % interval != 0 || failure != null) {
+            return;
+        }
+        TrajectoryFrame frame = free.poll();
+        if (frame == null && backpressure == Backpressure.BLOCK) {
+            try {
+                while (frame == null && running) {
+                    frame = free.poll(100, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (frame == null) {
+            dropped++; // Only the simulation thread writes this
+            return;
+        }
+        frame.copyFrom(simulation);
+        ready.offer(frame);
+    }
+
+    private void drain() {
+        while (running || !ready.isEmpty()) {
+            TrajectoryFrame frame;
+            try {
+                frame = ready.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == null) {
+                continue;
+            }
+            try {
+                write(frame);
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException io ? io : new IOException(e);
+                System.err.println("Trajectory recording to " + file + " stopped: " + e.getMessage());
+                running = false;
+                return;
+            } finally {
+                free.offer(frame);
+            }
+        }
+    }
+
+    private void write(TrajectoryFrame frame) throws IOException {
+        int n = frame.size;
+        long maxFrameBytes = encoder != null
+                ? TrajectoryFormat.FRAME_HEADER_BYTES + TrajectoryFormat.padded(FrameCodec.maxEncodedBytes(n))
+                : TrajectoryFormat.frameBytes(n);
+        if (window == null || dataEnd + maxFrameBytes > windowStart + window.capacity()) {
+            windowStart = dataEnd;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_BYTES, maxFrameBytes));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int start = (int) (dataEnd - windowStart);
+        long frameBytes;
+        boolean keyframe;
+        if (encoder != null) {
+            window.position(start + TrajectoryFormat.FRAME_HEADER_BYTES);
+            int encoded = encoder.encode(frame, window);
+            keyframe = FrameCodec.isKeyframe(window.position(start + TrajectoryFormat.FRAME_HEADER_BYTES));
+            frameBytes = TrajectoryFormat.FRAME_HEADER_BYTES + TrajectoryFormat.padded(encoded);
+        } else {
+            frameBytes = maxFrameBytes;
+            keyframe = true;
+            putColumns(frame, start + TrajectoryFormat.FRAME_HEADER_BYTES);
+        }
+        window.putInt(start, TrajectoryFormat.FRAME_MAGIC);
+        window.putInt(start + 4, n);
+        window.putLong(start + 8, frame.step);
+        window.putDouble(start + 16, frame.boundarySize);
+        window.putLong(start + 24, frameBytes);
+        addToIndex(dataEnd, frame.step, keyframe);
+        index.add(frame, (int) framesWritten);
+
+        // Publish the frame only after its bytes are in place
+        dataEnd += frameBytes;
+        header.putLong(TrajectoryFormat.DATA_END_OFFSET, dataEnd);
+        header.putLong(TrajectoryFormat.FRAME_COUNT_OFFSET, framesWritten + 1);
+        framesWritten++;
+        bytesWritten = dataEnd;
+    }
+
+    private void putColumns(TrajectoryFrame frame, int offset) {
+        int n = frame.size;
+        offset = putColumn(frame.x, n, offset);
+        offset = putColumn(frame.y, n, offset);
+        offset = putColumn(frame.z, n, offset);
+        offset = putColumn(frame.vx, n, offset);
+        offset = putColumn(frame.vy, n, offset);
+        offset = putColumn(frame.vz, n, offset);
+        window.slice(offset, n * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(frame.id, 0, n);
+        offset += (int) TrajectoryFormat.columnBytes(n, 4);
+        window.put(offset, frame.type, 0, n);
+    }
+
+    private void addToIndex(long offset, long step, boolean keyframe) {
+        int i = (int) framesWritten;
+        if (i == frameOffsets.length) {
+            frameOffsets = Arrays.copyOf(frameOffsets, i * 2);
+            frameSteps = Arrays.copyOf(frameSteps, i * 2);
+            frameKeys = Arrays.copyOf(frameKeys, i * 2);
+        }
+        frameOffsets[i] = offset;
+        frameSteps[i] = step;
+        frameKeys[i] = (byte) (keyframe ? 1 : 0);
+    }
+
+    // Appended after the last frame; the header points at it once it is complete
+    private long writeIndex() throws IOException {
+        int count = (int) framesWritten;
+        ByteBuffer index = ByteBuffer.allocate(8 + 16 * count + count).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(TrajectoryFormat.INDEX_MAGIC);
+        index.putInt(count);
+        for (int i = 0; i < count; i++) {
+            index.putLong(frameOffsets[i]);
+            index.putLong(frameSteps[i]);
+        }
+        index.put(frameKeys, 0, count);
+        index.flip();
+        long position = dataEnd;
+        while (index.hasRemaining()) {
+            position += channel.write(index, position);
+        }
+        header.putLong(TrajectoryFormat.INDEX_OFFSET, dataEnd);
+        return position;
+    }
+
+    private int putColumn(float[] values, int n, int offset) {
+        window.slice(offset, n * 4).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(values, 0, n);
+        return offset + (int) TrajectoryFormat.columnBytes(n, 4);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getDroppedFrames() {
+        return dropped;
+    }
+
+    // Frames copied but not yet written
+    public int getPendingFrames() {
+        return ready.size();
+    }
+
+    // Set when the writer stopped because of an I/O error
+    public IOException getFailure() {
+        return failure;
+    }
+
+    // Writes out the pending frames, then trims the file to its last frame
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (window != null) {
+            window.force();
+        }
+        window = null;
+        long end = dataEnd;
+        if (failure == null) {
+            end = writeIndex();
+        }
+        header.force();
+        if (encoder != null) {
+            encoder.close();
+        }
+        try {
+            channel.truncate(end);
+        } catch (IOException e) {
+            // Some platforms refuse to shrink a file that is still mapped; readers stop at the
+            // header's data end either way
+        }
+        channel.close();
+        // After the recording, so the sidecar is never older than the file it indexes
+        if (failure == null) {
+            index.finish((int) framesWritten);
+        } else {
+            index.abandon();
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.shrine.particlesim.scenario;
+
+import java.util.List;
+import java.util.Random;
+
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Named initial conditions used by the viewer and the headless benchmarks.
+ */
+public final class BuiltInScenarios {
+    public static final String STARTUP = "startup";
+    public static final String DENSE_NUCLEUS = "dense-nucleus";
+    public static final String ELECTRON_CLOUD = "electron-cloud";
+    public static final String UNIFORM_1M = "uniform-1m";
+
+    public static final List<String> NAMES = List.of(STARTUP, DENSE_NUCLEUS, ELECTRON_CLOUD, UNIFORM_1M);
+
+    private BuiltInScenarios() {
+    }
+
+    public static void populate(String name, ParticleArrays state, Random rand, double boundarySize) {
+        switch (name) {
+            case STARTUP -> startupScene(state, rand, boundarySize);
+            case DENSE_NUCLEUS -> denseNucleus(state, rand, boundarySize);
+            case ELECTRON_CLOUD -> electronCloud(state, rand, boundarySize);
+            case UNIFORM_1M -> uniform(state, rand, boundarySize, 1_000_000);
+            default -> throw new IllegalArgumentException("Unknown scenario: " + name + " (known: " + NAMES + ")");
+        }
+    }
+
+    // 300 electron/proton/neutron triples, offset by 100 on every axis (the viewer's start scene)
+    public static void startupScene(ParticleArrays state, Random rand, double boundarySize) {
+        for (int i = 0; i < 300; i++) {
+            double x = rand.nextDouble() * boundarySize * 2 - boundarySize;
+            double y = rand.nextDouble() * boundarySize * 2 - boundarySize;
+            double z = rand.nextDouble() * boundarySize * 2 - boundarySize;
+
+            state.add(x, y, z, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), Species.ELECTRON);
+            state.add(x + 100, y + 100, z + 100, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), Species.PROTON);
+            state.add(x - 100, y - 100, z - 100, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), Species.NEUTRON);
+        }
+    }
+
+    // 120 nucleons packed into a ball inside the strong force range, with an electron shell around it
+    private static void denseNucleus(ParticleArrays state, Random rand, double boundarySize) {
+        double nucleusRadius = Math.min(60, boundarySize / 4);
+        for (int i = 0; i < 120; i++) {
+            double[] p = pointInBall(rand, nucleusRadius);
+            state.add(p[0], p[1], p[2], 0, 0, 0, i % 2 == 0 ? Species.PROTON : Species.NEUTRON);
+        }
+        for (int i = 0; i < 60; i++) {
+            double[] p = pointInBall(rand, 1.0);
+            double r = nucleusRadius * (2.5 + 1.5 * rand.nextDouble());
+            double norm = Math.max(1e-9, Math.sqrt(p[0] * p[0] + p[1] * p[1] + p[2] * p[2]));
+            state.add(p[0] / norm * r, p[1] / norm * r, p[2] / norm * r,
+                    rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), Species.ELECTRON);
+        }
+    }
+
+    // 2000 electrons and 20 protons spread through a ball filling most of the boundary
+    private static void electronCloud(ParticleArrays state, Random rand, double boundarySize) {
+        double cloudRadius = boundarySize * 0.8;
+        for (int i = 0; i < 2000; i++) {
+            double[] p = pointInBall(rand, cloudRadius);
+            state.add(p[0], p[1], p[2], rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), Species.ELECTRON);
+        }
+        for (int i = 0; i < 20; i++) {
+            double[] p = pointInBall(rand, cloudRadius / 4);
+            state.add(p[0], p[1], p[2], 0, 0, 0, Species.PROTON);
+        }
+    }
+
+    // Equal species mix, uniform in the boundary cube
+    public static void uniform(ParticleArrays state, Random rand, double boundarySize, int count) {
+        state.ensureCapacity(state.size() + count);
+        Species[] species = Species.values();
+        for (int i = 0; i < count; i++) {
+            state.add(rand.nextDouble(-boundarySize, boundarySize), rand.nextDouble(-boundarySize, boundarySize),
+                    rand.nextDouble(-boundarySize, boundarySize), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5),
+                    rand.nextDouble(-5, 5), species[i % species.length]);
+        }
+    }
+
+    private static double[] pointInBall(Random rand, double radius) {
+        while (true) {
+            double x = rand.nextDouble(-1, 1);
+            double y = rand.nextDouble(-1, 1);
+            double z = rand.nextDouble(-1, 1);
+            if (x * x + y * y + z * z <= 1) {
+                return new double[] {x * radius, y * radius, z * radius};
+            }
+        }
+    }
+}
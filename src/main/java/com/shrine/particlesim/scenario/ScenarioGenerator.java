@@ -0,0 +1,207 @@
+package com.shrine.particlesim.scenario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.scenario.ScenarioSpec.Group;
+
+/**
+ * Fills particle arrays from a {@link ScenarioSpec} on several threads.
+ *
+ * <p>Each group is cut into fixed blocks of {@value #BLOCK} particles. Every block gets its own
+ * {@link SplittableRandom}, split off the seed's generator in block order before any work
+ * starts, and writes a fixed index range. Which thread fills a block therefore does not matter:
+ * a seed gives the same particles, in the same order with the same ids, for any thread count.
+ */
+public final class ScenarioGenerator {
+    static final int BLOCK = 1 << 16;
+
+    private ScenarioGenerator() {
+    }
+
+    // Append the scenario's particles to state; threads <= 1 generates on the calling thread
+    public static void generate(ScenarioSpec spec, ParticleArrays state, int threads) {
+        int start = state.size();
+        int firstId = state.getNextId();
+        state.setSize(start + spec.getParticleCount());
+
+        SplittableRandom seedRandom = new SplittableRandom(spec.getSeed());
+        List<Callable<Void>> blocks = new ArrayList<>();
+        int offset = start;
+        for (Group group : spec.getGroups()) {
+            for (int from = 0; from < group.count; from += BLOCK) {
+                int blockFrom = from;
+                int blockTo = Math.min(group.count, from + BLOCK);
+                int blockOffset = offset;
+                SplittableRandom random = seedRandom.split();
+                blocks.add(() -> {
+                    fill(group, state, blockOffset, blockFrom, blockTo, firstId - start, random);
+                    return null;
+                });
+            }
+            offset += group.count;
+        }
+        state.setNextId(firstId + spec.getParticleCount());
+
+        if (threads <= 1 || blocks.size() <= 1) {
+            for (Callable<Void> block : blocks) {
+                try {
+                    block.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Error generating scenario", e);
+                }
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, blocks.size()), r -> {
+            Thread t = new Thread(r, "scenario-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (Future<Void> future : executor.invokeAll(blocks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating scenario", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error generating scenario", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Group members [from, to) go to indices offset + from onwards
+    private static void fill(Group g, ParticleArrays state, int offset, int from, int to, int idShift,
+                             SplittableRandom random) {
+        double[] x = state.getX(), y = state.getY(), z = state.getZ();
+        double[] vx = state.getVx(), vy = state.getVy(), vz = state.getVz();
+        double[] fx = state.getFx(), fy = state.getFy(), fz = state.getFz();
+        double[] mass = state.getMass(), charge = state.getCharge(), radius = state.getRadius();
+        byte[] type = state.getType();
+        int[] id = state.getId();
+        Species species = g.species;
+        double[] p = new double[3];
+        for (int k = from; k < to; k++) {
+            int i = offset + k;
+            position(g, k, random, p);
+            double dx = p[0], dy = p[1], dz = p[2];
+            x[i] = g.center[0] + dx;
+            y[i] = g.center[1] + dy;
+            z[i] = g.center[2] + dz;
+            switch (g.velocity) {
+                case "uniform" -> {
+                    vx[i] = uniform(random, g.spread);
+                    vy[i] = uniform(random, g.spread);
+                    vz[i] = uniform(random, g.spread);
+                }
+                case "thermal" -> {
+                    vx[i] = random.nextGaussian() * g.sigma;
+                    vy[i] = random.nextGaussian() * g.sigma;
+                    vz[i] = random.nextGaussian() * g.sigma;
+                }
+                case "rotation" -> {
+                    vx[i] = -g.omega * dy;
+                    vy[i] = g.omega * dx;
+                    vz[i] = 0;
+                }
+                case "expansion" -> {
+                    vx[i] = g.rate * dx;
+                    vy[i] = g.rate * dy;
+                    vz[i] = g.rate * dz;
+                }
+                default -> {
+                    vx[i] = 0;
+                    vy[i] = 0;
+                    vz[i] = 0;
+                }
+            }
+            vx[i] += g.bulk[0];
+            vy[i] += g.bulk[1];
+            vz[i] += g.bulk[2];
+            fx[i] = 0;
+            fy[i] = 0;
+            fz[i] = 0;
+            mass[i] = species.getMass();
+            charge[i] = species.getCharge();
+            radius[i] = species.getRadius();
+            type[i] = species.getTypeCode();
+            id[i] = i + idShift;
+        }
+    }
+
+    // Offset of member k from the group center
+    private static void position(Group g, int k, SplittableRandom random, double[] out) {
+        switch (g.distribution) {
+            case "sphere" -> {
+                // Uniform in volume between the two radii, in a uniform direction
+                double inner3 = g.innerRadius * g.innerRadius * g.innerRadius;
+                double outer3 = g.radius * g.radius * g.radius;
+                direction(random, out);
+                scale(out, Math.cbrt(inner3 + random.nextDouble() * (outer3 - inner3)));
+            }
+            case "plummer" -> {
+                // Invert the enclosed-mass fraction m(r) = r^3 / (r^2 + a^2)^1.5, limited to the cutoff
+                double a2 = g.scale * g.scale;
+                double c2 = g.cutoff * g.cutoff;
+                double maxFraction = Math.pow(c2 / (c2 + a2), 1.5);
+                double m = Math.max(Double.MIN_NORMAL, random.nextDouble() * maxFraction);
+                double r = g.scale / Math.sqrt(Math.max(1e-12, Math.pow(m, -2.0 / 3.0) - 1));
+                direction(random, out);
+                scale(out, Math.min(r, g.cutoff));
+            }
+            case "disk" -> {
+                double inner2 = g.innerRadius * g.innerRadius;
+                double r = Math.sqrt(inner2 + random.nextDouble() * (g.radius * g.radius - inner2));
+                double angle = random.nextDouble() * 2 * Math.PI;
+                out[0] = r * Math.cos(angle);
+                out[1] = r * Math.sin(angle);
+                out[2] = uniform(random, g.thickness / 2);
+            }
+            case "lattice" -> {
+                int side = g.latticeSide;
+                double half = (side - 1) / 2.0;
+                double jitter = g.jitter * g.spacing / 2;
+                out[0] = (k % side - half) * g.spacing + uniform(random, jitter);
+                out[1] = ((k / side) % side - half) * g.spacing + uniform(random, jitter);
+                out[2] = (k / side / side - half) * g.spacing + uniform(random, jitter);
+            }
+            default -> {
+                out[0] = uniform(random, g.size[0]);
+                out[1] = uniform(random, g.size[1]);
+                out[2] = uniform(random, g.size[2]);
+            }
+        }
+    }
+
+    // Uniform in [-halfWidth, halfWidth); 0 without drawing when the width is 0
+    private static double uniform(SplittableRandom random, double halfWidth) {
+        return halfWidth == 0 ? 0 : (random.nextDouble() * 2 - 1) * halfWidth;
+    }
+
+    private static void direction(SplittableRandom random, double[] out) {
+        double norm;
+        do {
+            out[0] = random.nextGaussian();
+            out[1] = random.nextGaussian();
+            out[2] = random.nextGaussian();
+            norm = Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2]);
+        } while (norm < 1e-12);
+        scale(out, 1 / norm);
+    }
+
+    private static void scale(double[] v, double factor) {
+        v[0] *= factor;
+        v[1] *= factor;
+        v[2] *= factor;
+    }
+}
@@ -0,0 +1,228 @@
+package com.shrine.particlesim.scenario;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Species;
+
+/**
+ * A scenario file: groups of particles of one species, each with a spatial distribution and
+ * a velocity field, plus the seed, boundary and (optionally) force constants of the run.
+ * {@link ScenarioGenerator} turns it into particles.
+ *
+ * <pre>
+ * {
+ *   "seed": 42, "boundary": 500,
+ *   "constants": {"coulomb": 4e5, "strong": 6e5, "gravity": 10,
+ *                 "strongInner": 9, "strongOuter": 27, "maxSpeed": 1e4},
+ *   "groups": [
+ *     {"species": "proton", "count": 50000,
+ *      "distribution": {"type": "plummer", "scale": 40, "cutoff": 400},
+ *      "velocity": {"type": "thermal", "sigma": 2}},
+ *     {"species": "electron", "count": 100000,
+ *      "distribution": {"type": "disk", "radius": 300, "thickness": 20, "center": [0, 0, 50]},
+ *      "velocity": {"type": "rotation", "omega": 0.01, "bulk": [0, 0, -1]}}
+ *   ]
+ * }
+ * </pre>
+ *
+ * Distributions, all around {@code center} (default the origin):
+ * <ul>
+ * <li>{@code box}: uniform in a box of half-extent {@code size} (a number or [x, y, z];
+ * default the boundary)</li>
+ * <li>{@code sphere}: uniform in a ball of {@code radius}, or a shell from {@code innerRadius}</li>
+ * <li>{@code plummer}: a Plummer profile of {@code scale}, cut off at {@code cutoff}
+ * (default the boundary)</li>
+ * <li>{@code disk}: uniform over an annulus from {@code innerRadius} to {@code radius} in the
+ * xy plane, {@code thickness} thick</li>
+ * <li>{@code lattice}: a cubic lattice of {@code spacing} (default: fills the boundary), with
+ * optional {@code jitter} as a fraction of the spacing</li>
+ * </ul>
+ * Velocity fields: {@code uniform} (each component in ±{@code spread}, default 5; also the
+ * default field), {@code thermal} (Gaussian components of {@code sigma}), {@code rotation}
+ * (rigid rotation about the z axis through the center at {@code omega} rad per time unit),
+ * {@code expansion} ({@code rate} times the offset from the center) and {@code zero}. Any field
+ * may add a constant {@code bulk} velocity.
+ */
+public final class ScenarioSpec {
+    public static final List<String> DISTRIBUTIONS = List.of("box", "sphere", "plummer", "disk", "lattice");
+    public static final List<String> VELOCITIES = List.of("uniform", "thermal", "rotation", "expansion", "zero");
+
+    private final long seed;
+    private final double boundarySize;
+    private final PhysicsConstants constants;
+    private final List<Group> groups;
+
+    private ScenarioSpec(long seed, double boundarySize, PhysicsConstants constants, List<Group> groups) {
+        this.seed = seed;
+        this.boundarySize = boundarySize;
+        this.constants = constants;
+        this.groups = Collections.unmodifiableList(new ArrayList<>(groups));
+    }
+
+    public static ScenarioSpec read(Path file) throws IOException {
+        return parse(new JSONObject(Files.readString(file)));
+    }
+
+    public static ScenarioSpec parse(JSONObject json) {
+        double boundary = json.optDouble("boundary", 500);
+        if (!(boundary > 0)) {
+            throw new IllegalArgumentException("boundary must be positive: " + boundary);
+        }
+        PhysicsConstants constants = PhysicsConstants.DEFAULT;
+        if (json.has("constants")) {
+            JSONObject c = json.getJSONObject("constants");
+            PhysicsConstants d = PhysicsConstants.DEFAULT;
+            constants = new PhysicsConstants(c.optDouble("strong", d.getStrongForceConstant()),
+                    c.optDouble("gravity", d.getGravityConstant()), c.optDouble("coulomb", d.getCoulombConstant()),
+                    c.optDouble("strongInner", d.getStrongForceInnerRadius()),
+                    c.optDouble("strongOuter", d.getStrongForceOuterRadius()),
+                    c.optDouble("maxSpeed", d.getMaxSpeed()));
+        }
+        JSONArray groupArray = json.getJSONArray("groups");
+        List<Group> groups = new ArrayList<>(groupArray.length());
+        long total = 0;
+        for (int i = 0; i < groupArray.length(); i++) {
+            Group group = parseGroup(groupArray.getJSONObject(i), boundary);
+            total += group.count;
+            groups.add(group);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many particles: " + total);
+        }
+        return new ScenarioSpec(json.optLong("seed", 42), boundary, constants, groups);
+    }
+
+    private static Group parseGroup(JSONObject json, double boundary) {
+        Group g = new Group();
+        g.species = Species.fromTypeName(json.getString("species"));
+        g.count = json.getInt("count");
+        if (g.count < 0) {
+            throw new IllegalArgumentException("Negative count for " + g.species.getTypeName());
+        }
+
+        JSONObject distribution = json.has("distribution") ? json.getJSONObject("distribution") : new JSONObject();
+        g.distribution = distribution.optString("type", "box");
+        if (!DISTRIBUTIONS.contains(g.distribution)) {
+            throw new IllegalArgumentException("Unknown distribution: " + g.distribution + " (known: " + DISTRIBUTIONS + ")");
+        }
+        g.center = vector(distribution, "center", 0);
+        g.size = vector(distribution, "size", boundary);
+        g.radius = distribution.optDouble("radius", boundary);
+        g.innerRadius = distribution.optDouble("innerRadius", 0);
+        g.scale = distribution.optDouble("scale", boundary / 10);
+        g.cutoff = distribution.optDouble("cutoff", boundary);
+        g.thickness = distribution.optDouble("thickness", 0);
+        g.latticeSide = Math.max(1, (int) Math.ceil(Math.cbrt(g.count) - 1e-9));
+        g.spacing = distribution.optDouble("spacing", 2 * boundary / g.latticeSide);
+        g.jitter = distribution.optDouble("jitter", 0);
+        if (g.innerRadius < 0 || g.innerRadius > g.radius || g.scale <= 0 || g.cutoff <= 0) {
+            throw new IllegalArgumentException("Bad " + g.distribution + " distribution: " + distribution);
+        }
+
+        JSONObject velocity = json.has("velocity") ? json.getJSONObject("velocity") : new JSONObject();
+        g.velocity = velocity.optString("type", "uniform");
+        if (!VELOCITIES.contains(g.velocity)) {
+            throw new IllegalArgumentException("Unknown velocity field: " + g.velocity + " (known: " + VELOCITIES + ")");
+        }
+        g.spread = velocity.optDouble("spread", 5);
+        g.sigma = velocity.optDouble("sigma", 5);
+        g.omega = velocity.optDouble("omega", 0);
+        g.rate = velocity.optDouble("rate", 0);
+        g.bulk = vector(velocity, "bulk", 0);
+        return g;
+    }
+
+    // A number for all three axes or an [x, y, z] array
+    private static double[] vector(JSONObject json, String key, double defaultValue) {
+        if (!json.has(key)) {
+            return new double[] {defaultValue, defaultValue, defaultValue};
+        }
+        Object value = json.get(key);
+        if (value instanceof JSONArray array) {
+            if (array.length() != 3) {
+                throw new IllegalArgumentException(key + " needs 3 components: " + array);
+            }
+            return new double[] {array.getDouble(0), array.getDouble(1), array.getDouble(2)};
+        }
+        double v = json.getDouble(key);
+        return new double[] {v, v, v};
+    }
+
+    public int getParticleCount() {
+        int total = 0;
+        for (Group group : groups) {
+            total += group.count;
+        }
+        return total;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getBoundarySize() {
+        return boundarySize;
+    }
+
+    public PhysicsConstants getConstants() {
+        return constants;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * One species, distribution and velocity field. Only the parameters of the chosen
+     * distribution and field are used.
+     */
+    public static final class Group {
+        Species species;
+        int count;
+        String distribution;
+        double[] center;
+        double[] size;
+        double radius;
+        double innerRadius;
+        double scale;
+        double cutoff;
+        double thickness;
+        int latticeSide;
+        double spacing;
+        double jitter;
+        String velocity;
+        double spread;
+        double sigma;
+        double omega;
+        double rate;
+        double[] bulk;
+
+        private Group() {
+        }
+
+        public Species getSpecies() {
+            return species;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public String getDistribution() {
+            return distribution;
+        }
+
+        public String getVelocity() {
+            return velocity;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.shrine.particlesim.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.PairPotential;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.compute.ScalarBackend;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+class ClusterAnalyzerTest {
+    private static final PhysicsConstants CONSTANTS = PhysicsConstants.DEFAULT;
+    private static final double LINK = CONSTANTS.getStrongForceOuterRadius();
+    private static final double SPACING = 15; // Inside the link distance, outside the inner radius
+
+    @Test
+    void findsKnownGroupsAndLeavesStraysAndUnboundPairsApart() {
+        ParticleArrays state = knownGroups();
+        ClusterReport report = new ClusterDetector(LINK, true).detect(state, 500, CONSTANTS, 1);
+
+        assertEquals(2, report.getClusterCount());
+        ClusterReport.Cluster nucleus = report.getClusters().get(0);
+        assertEquals(4, nucleus.getSize());
+        assertEquals(1, nucleus.getProtons());
+        assertEquals(3, nucleus.getNeutrons());
+        assertEquals(0, nucleus.getElectrons());
+        assertEquals(-200 + SPACING / 2, nucleus.getCenterX(), 1e-9);
+        assertEquals(SPACING / 2, nucleus.getCenterY(), 1e-9);
+        ClusterReport.Cluster pair = report.getClusters().get(1);
+        assertEquals(2, pair.getSize());
+        assertEquals(2, pair.getNeutrons());
+        assertEquals(200 + SPACING / 2, pair.getCenterX(), 1e-9);
+        assertEquals(1, report.getNucleusCount());
+        // Three strays and the two halves of the unbound pair stay single
+        long[] sizes = report.getSizeDistribution();
+        assertEquals(5, sizes[0]);
+        assertEquals(1, sizes[1]);
+        assertEquals(1, sizes[2]);
+
+        // Without the binding check the fast pair is within reach and merges
+        ClusterReport unchecked = new ClusterDetector(LINK, false).detect(state, 500, CONSTANTS, 1);
+        assertEquals(3, unchecked.getClusterCount());
+        assertEquals(3, unchecked.getSizeDistribution()[0]);
+    }
+
+    /*
+     * A 4-particle nucleus (one proton, three neutrons on a square) and a neutron pair, both at
+     * rest; a stray proton, electron and neutron; and a neutron pair as close as the bound one
+     * but flying apart with twice the kinetic energy its potential could hold.
+     */
+    private static ParticleArrays knownGroups() {
+        ParticleArrays state = new ParticleArrays();
+        state.add(-200, 0, 0, 0, 0, 0, Species.NEUTRON);
+        state.add(-200 + SPACING, 0, 0, 0, 0, 0, Species.NEUTRON);
+        state.add(-200, SPACING, 0, 0, 0, 0, Species.NEUTRON);
+        state.add(-200 + SPACING, SPACING, 0, 0, 0, 0, Species.PROTON);
+        state.add(200, 0, 0, 0, 0, 0, Species.NEUTRON);
+        state.add(200 + SPACING, 0, 0, 0, 0, 0, Species.NEUTRON);
+        state.add(0, 200, 0, 0, 0, 0, Species.PROTON);
+        state.add(0, -200, 0, 0, 0, 0, Species.ELECTRON);
+        state.add(0, 0, 200, 0, 0, 0, Species.NEUTRON);
+
+        int first = state.add(0, 0, -200, 0, 0, 0, Species.NEUTRON);
+        int second = state.add(SPACING, 0, -200, 0, 0, 0, Species.NEUTRON);
+        double potential = PairPotential.between(state, first, second, CONSTANTS);
+        assertTrue(potential < 0, "the pair must be bound at rest, potential " + potential);
+        double reducedMass = Species.NEUTRON.getMass() / 2;
+        double relativeSpeed = Math.sqrt(2 * 2 * -potential / reducedMass);
+        state.getVy()[first] = -relativeSpeed / 2;
+        state.getVy()[second] = relativeSpeed / 2;
+        return state;
+    }
+
+    // The snapshot round trip must find exactly what the detector finds on the live state
+    @Test
+    void snapshotGivesTheSameClustersAsTheLiveState() {
+        try (Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, 500, new ScalarBackend())) {
+            BuiltInScenarios.populate(BuiltInScenarios.DENSE_NUCLEUS, simulation.getState(), new Random(7), 500);
+            double link = PhysicsConstants.DEFAULT.getStrongForceOuterRadius();
+            ClusterDetector direct = new ClusterDetector(link, true);
+            ClusterAnalyzer analyzer = new ClusterAnalyzer(new ClusterDetector(link, true));
+            ParticleSnapshot snapshot = new ParticleSnapshot();
+            for (int s = 0; s < 3; s++) {
+                simulation.step(0.1);
+                ClusterReport expected = direct.detect(simulation.getState(), simulation.getBoundarySize(),
+                        simulation.getConstants(), simulation.getStepCount());
+                snapshot.copyFrom(simulation);
+                ClusterReport actual = analyzer.analyze(snapshot, 0);
+                assertTrue(expected.getClusterCount() > 0);
+                assertEquals(expected.getStep(), actual.getStep());
+                assertEquals(expected.getClusterCount(), actual.getClusterCount());
+                assertEquals(expected.getLargestSize(), actual.getLargestSize());
+                assertArrayEquals(expected.getSizeDistribution(), actual.getSizeDistribution());
+                for (int k = 0; k < expected.getClusterCount(); k++) {
+                    assertEquals(expected.getClusters().get(k).getId(), actual.getClusters().get(k).getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.shrine.particlesim.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.ScalarBackend;
+
+class CommandQueueTest {
+    private static Simulation simulation() {
+        return new Simulation(PhysicsConstants.DEFAULT, 500, new ScalarBackend());
+    }
+
+    @Test
+    void failingCommandIsDroppedAndTheRestOfTheBatchApplied() {
+        try (Simulation simulation = simulation()) {
+            CommandQueue queue = simulation.getCommandQueue();
+            queue.submit(SimulationCommand.spawn(Species.PROTON, new double[] {0, 0, 0}, null));
+            queue.submit(new SimulationCommand() {
+                @Override
+                void apply(Simulation s) {
+                    throw new IllegalStateException("broken");
+                }
+            });
+            queue.submit(SimulationCommand.spawn(Species.ELECTRON, new double[] {50, 0, 0}, null));
+
+            simulation.step(0.1);
+            assertEquals(2, simulation.getParticleCount());
+            assertEquals(1, queue.getFailedCount());
+            assertEquals(2, simulation.getCommandsApplied());
+
+            // Nothing is replayed on later steps
+            simulation.step(0.1);
+            simulation.step(0.1);
+            assertEquals(2, simulation.getParticleCount());
+            assertEquals(1, queue.getFailedCount());
+        }
+    }
+
+    @Test
+    void removeIgnoresIdsThatWereNeverHandedOut() {
+        try (Simulation simulation = simulation()) {
+            CommandQueue queue = simulation.getCommandQueue();
+            queue.submit(SimulationCommand.spawnRandom(Species.NEUTRON, 10, 1));
+            queue.submit(SimulationCommand.remove(3, Integer.MAX_VALUE - 1, -5));
+            queue.submit(SimulationCommand.remove(4));
+            simulation.applyCommands();
+            assertEquals(8, simulation.getParticleCount());
+            assertEquals(0, queue.getFailedCount());
+        }
+    }
+
+    @Test
+    void serverRejectsOversizedSpawns() {
+        JSONObject huge = new JSONObject().put("action", "spawn").put("count", 2_000_000_000);
+        assertThrows(IllegalArgumentException.class, () -> CommandServer.parse(huge));
+        JSONObject ok = new JSONObject().put("action", "spawn").put("count", 1000);
+        assertEquals(1000, CommandServer.parse(ok).spawnCount());
+    }
+
+    @Test
+    void setConstantsChangesOnlyTheGivenKeys() {
+        try (Simulation simulation = simulation()) {
+            simulation.getCommandQueue().submit(CommandServer.parse(
+                    new JSONObject().put("action", "set_constants").put("coulombConstant", 1234)));
+            simulation.applyCommands();
+            assertEquals(1234, simulation.getConstants().getCoulombConstant());
+            assertEquals(PhysicsConstants.DEFAULT.getStrongForceOuterRadius(),
+                    simulation.getConstants().getStrongForceOuterRadius());
+        }
+        JSONObject negative = new JSONObject().put("action", "set_constants").put("maxSpeed", -1);
+        assertThrows(IllegalArgumentException.class, () -> CommandServer.parse(negative));
+    }
+}
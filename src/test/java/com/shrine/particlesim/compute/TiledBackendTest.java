@@ -0,0 +1,50 @@
+package com.shrine.particlesim.compute;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * Tiles are split between workers up front, so the same scene gives bit-identical results on
+ * every run however the workers are scheduled.
+ */
+class TiledBackendTest {
+    private static final double BOUNDARY = 500;
+
+    @Test
+    void repeatedRunsAreBitIdentical() {
+        double[] first = run();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertArrayEquals(first, run());
+        }
+    }
+
+    // Positions and velocities after a few steps of a scene with contacts, on 4 workers
+    private static double[] run() {
+        ParticleArrays state = new ParticleArrays();
+        BuiltInScenarios.populate(BuiltInScenarios.DENSE_NUCLEUS, state, new Random(3), BOUNDARY);
+        BuiltInScenarios.uniform(state, new Random(4), BOUNDARY, 500);
+        try (TiledBackend backend = new TiledBackend(4, 32)) {
+            for (int step = 0; step < 10; step++) {
+                backend.resetForces(state);
+                backend.computeForces(state, PhysicsConstants.DEFAULT);
+                backend.resolveCollisions(state);
+                backend.integrate(state, PhysicsConstants.DEFAULT, 0.1, BOUNDARY);
+            }
+        }
+        int n = state.size();
+        double[] out = new double[6 * n];
+        System.arraycopy(state.x, 0, out, 0, n);
+        System.arraycopy(state.y, 0, out, n, n);
+        System.arraycopy(state.z, 0, out, 2 * n, n);
+        System.arraycopy(state.vx, 0, out, 3 * n, n);
+        System.arraycopy(state.vy, 0, out, 4 * n, n);
+        System.arraycopy(state.vz, 0, out, 5 * n, n);
+        return out;
+    }
+}
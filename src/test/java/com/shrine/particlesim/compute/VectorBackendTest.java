@@ -0,0 +1,87 @@
+package com.shrine.particlesim.compute;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Species;
+
+import jdk.incubator.vector.DoubleVector;
+
+/**
+ * The vector kernel runs full vectors only and hands each row's remainder to the scalar kernel.
+ * Every row length from none up to a few vectors plus a remainder is checked against
+ * {@link ScalarBackend}, in crowded scenes where contacts, swirl and the strong force all occur.
+ */
+class VectorBackendTest {
+    private static final int LANES = DoubleVector.SPECIES_PREFERRED.length();
+
+    @Test
+    void everyRemainderMatchesScalarKernel() {
+        for (boolean diagnostics : new boolean[] {false, true}) {
+            for (int n = 1; n <= 3 * LANES + 2; n++) {
+                for (long seed = 0; seed < 4; seed++) {
+                    compare(crowdedScene(n, seed), diagnostics, "n=" + n + " seed=" + seed + " diagnostics=" + diagnostics);
+                }
+            }
+        }
+    }
+
+    private static void compare(ParticleArrays scene, boolean diagnostics, String label) {
+        ParticleArrays expected = new ParticleArrays();
+        ParticleArrays actual = new ParticleArrays();
+        expected.copyFrom(scene);
+        actual.copyFrom(scene);
+        EnergyDiagnostics expectedEnergy = new EnergyDiagnostics();
+        EnergyDiagnostics actualEnergy = new EnergyDiagnostics();
+        try (ScalarBackend scalar = new ScalarBackend(); VectorBackend vector = new VectorBackend(1)) {
+            forcePass(scalar, expected, diagnostics);
+            forcePass(vector, actual, diagnostics);
+            assertEquals(diagnostics, scalar.collectDiagnostics(expectedEnergy));
+            assertEquals(diagnostics, vector.collectDiagnostics(actualEnergy));
+        }
+
+        double scale = 0;
+        for (int i = 0; i < scene.size(); i++) {
+            scale = Math.max(scale, Math.abs(expected.fx[i]) + Math.abs(expected.fy[i]) + Math.abs(expected.fz[i]));
+        }
+        double tolerance = 1e-10 * Math.max(1, scale);
+        for (int i = 0; i < scene.size(); i++) {
+            assertEquals(expected.fx[i], actual.fx[i], tolerance, label + " fx[" + i + "]");
+            assertEquals(expected.fy[i], actual.fy[i], tolerance, label + " fy[" + i + "]");
+            assertEquals(expected.fz[i], actual.fz[i], tolerance, label + " fz[" + i + "]");
+            // Positions after resolveCollisions show the same contacts were found
+            assertEquals(expected.x[i], actual.x[i], 1e-9, label + " x[" + i + "]");
+        }
+        if (diagnostics) {
+            double energyTolerance = 1e-9 * Math.max(1, Math.abs(expectedEnergy.getCoulombEnergy())
+                    + Math.abs(expectedEnergy.getGravityEnergy()) + Math.abs(expectedEnergy.getStrongEnergy()));
+            assertEquals(expectedEnergy.getCoulombEnergy(), actualEnergy.getCoulombEnergy(), energyTolerance, label);
+            assertEquals(expectedEnergy.getGravityEnergy(), actualEnergy.getGravityEnergy(), energyTolerance, label);
+            assertEquals(expectedEnergy.getStrongEnergy(), actualEnergy.getStrongEnergy(), energyTolerance, label);
+        }
+    }
+
+    private static void forcePass(ComputeBackend backend, ParticleArrays state, boolean diagnostics) {
+        backend.setDiagnosticsEnabled(diagnostics);
+        backend.resetForces(state);
+        backend.computeForces(state, PhysicsConstants.DEFAULT);
+        backend.resolveCollisions(state);
+    }
+
+    // Mixed species packed into a 40-unit box, so most pairs are inside the strong and swirl ranges
+    private static ParticleArrays crowdedScene(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Species[] species = Species.values();
+        ParticleArrays scene = new ParticleArrays();
+        for (int i = 0; i < n; i++) {
+            scene.add(random.nextDouble(-20, 20), random.nextDouble(-20, 20), random.nextDouble(-20, 20),
+                    random.nextDouble(-5, 5), random.nextDouble(-5, 5), random.nextDouble(-5, 5),
+                    species[random.nextInt(species.length)]);
+        }
+        return scene;
+    }
+}
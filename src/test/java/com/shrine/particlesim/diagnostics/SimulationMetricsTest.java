@@ -0,0 +1,46 @@
+package com.shrine.particlesim.diagnostics;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.command.SimulationCommand;
+import com.shrine.particlesim.compute.ScalarBackend;
+
+class SimulationMetricsTest {
+    @Test
+    void speciesCountsFollowSpawnsAndRemovals() {
+        try (Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, 500, new ScalarBackend())) {
+            SimulationMetrics metrics = new SimulationMetrics();
+            simulation.addStepListener(metrics);
+            simulation.getCommandQueue().submit(SimulationCommand.spawnRandom(Species.PROTON, 5, 1));
+            simulation.getCommandQueue().submit(SimulationCommand.spawnRandom(Species.ELECTRON, 3, 2));
+            simulation.step(0.1);
+            String scrape = scrape(metrics);
+            assertTrue(scrape.contains("particlesim_particles{species=\"proton\"} 5\n"), scrape);
+            assertTrue(scrape.contains("particlesim_particles{species=\"electron\"} 3\n"), scrape);
+            assertTrue(scrape.contains("particlesim_particles_total 8\n"), scrape);
+            assertFalse(scrape.contains("particlesim_energy"), scrape);
+
+            // Proton ids are 0..4
+            simulation.getCommandQueue().submit(SimulationCommand.remove(0, 2));
+            simulation.setDiagnosticsEnabled(true);
+            simulation.step(0.1);
+            scrape = scrape(metrics);
+            assertTrue(scrape.contains("particlesim_particles{species=\"proton\"} 3\n"), scrape);
+            assertTrue(scrape.contains("particlesim_particles{species=\"electron\"} 3\n"), scrape);
+            assertTrue(scrape.contains("particlesim_particles_total 6\n"), scrape);
+            assertTrue(scrape.contains("particlesim_energy{kind=\"kinetic\"}"), scrape);
+        }
+    }
+
+    private static String scrape(SimulationMetrics metrics) {
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.shrine.particlesim.distributed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.scenario.BuiltInScenarios;
+
+/**
+ * Several {@link DomainNode} ranks on loopback, one thread each, against the single-rank run of
+ * the same scene.
+ */
+class DomainNodeTest {
+    private static final double BOUNDARY = 500;
+    private static final int PARTICLES = 600;
+    private static final int STEPS = 20;
+    private static final double TIMESTEP = 0.166666666667;
+
+    @Test
+    void twoRanksWithFullSlabHaloMatchOneRank() throws Exception {
+        // A halo as wide as the slab makes every pair exact; only the summation order differs
+        double[] error = positionError(run(1, BOUNDARY, STEPS), run(2, BOUNDARY, STEPS));
+        assertTrue(error[0] <= 1e-14 * BOUNDARY, "median " + error[0]);
+        assertTrue(error[1] <= 1e-11 * BOUNDARY, "max " + error[1]);
+    }
+
+    // Beyond the halo the far field is a monopole per cell, so the runs drift apart a little.
+    // These scenes show a median of 0.007 and a max of 2.6 after 20 steps; dropping a tenth of
+    // the halo particles gives 0.1 and 22
+    @Test
+    void twoAndThreeRanksWithDefaultHaloStayCloseToOneRank() throws Exception {
+        double halo = DomainNode.defaultHaloWidth(PhysicsConstants.DEFAULT);
+        ParticleArrays single = run(1, halo, STEPS);
+        for (int ranks = 2; ranks <= 3; ranks++) {
+            double[] error = positionError(single, run(ranks, halo, STEPS));
+            assertTrue(error[0] <= 0.02, ranks + " ranks, median " + error[0]);
+            assertTrue(error[1] <= 0.01 * BOUNDARY, ranks + " ranks, max " + error[1]);
+        }
+    }
+
+    // After one step the far-field error is at most 4% of any particle's move; with a tenth of
+    // the halo particles missing, their neighbours are off by 25% or more of theirs
+    @Test
+    void oneStepWithDefaultHaloMovesEveryParticleLikeOneRank() throws Exception {
+        double halo = DomainNode.defaultHaloWidth(PhysicsConstants.DEFAULT);
+        ParticleArrays start = scene();
+        ParticleArrays single = run(1, halo, 1);
+        for (int ranks = 2; ranks <= 3; ranks++) {
+            ParticleArrays multi = run(ranks, halo, 1);
+            for (int i = 0; i < PARTICLES; i++) {
+                double moved = distance(start, single, i);
+                double error = distance(single, multi, i);
+                assertTrue(error <= 0.1 * moved, ranks + " ranks, particle " + single.getId()[i] + " off by "
+                        + error + " after moving " + moved);
+            }
+        }
+    }
+
+    // Both arrays hold the same ids in the same order
+    private static double distance(ParticleArrays a, ParticleArrays b, int i) {
+        double dx = a.getX()[i] - b.getX()[i];
+        double dy = a.getY()[i] - b.getY()[i];
+        double dz = a.getZ()[i] - b.getZ()[i];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    // Median and largest position difference, after checking both runs hold the same particles
+    private static double[] positionError(ParticleArrays expected, ParticleArrays actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(Arrays.copyOf(expected.getId(), expected.size()), Arrays.copyOf(actual.getId(), actual.size()));
+        double[] d = new double[expected.size()];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = Math.max(Math.abs(expected.getX()[i] - actual.getX()[i]),
+                    Math.max(Math.abs(expected.getY()[i] - actual.getY()[i]),
+                            Math.abs(expected.getZ()[i] - actual.getZ()[i])));
+        }
+        Arrays.sort(d);
+        return new double[] {d[d.length / 2], d[d.length - 1]};
+    }
+
+    // The scene every run starts from, in id order
+    private static ParticleArrays scene() {
+        ParticleArrays global = new ParticleArrays();
+        BuiltInScenarios.uniform(global, new Random(42), BOUNDARY, PARTICLES);
+        return global;
+    }
+
+    // Run every rank of one scene on its own thread and return rank 0's gathered state
+    private static ParticleArrays run(int ranks, double halo, int steps) throws Exception {
+        ParticleArrays global = scene();
+        SlabDecomposition decomposition = new SlabDecomposition(ranks, BOUNDARY, halo, 8);
+        InetAddress host = InetAddress.getLoopbackAddress();
+        int basePort = freePorts(host, ranks);
+        ExecutorService executor = Executors.newFixedThreadPool(ranks);
+        try {
+            List<Future<ParticleArrays>> results = new ArrayList<>();
+            for (int rank = 0; rank < ranks; rank++) {
+                int r = rank;
+                results.add(executor.submit(() -> {
+                    try (DomainNode node = DomainNode.connect(r, decomposition, host, basePort,
+                            PhysicsConstants.DEFAULT, BackendAutotuner.create("scalar"))) {
+                        node.populate(global);
+                        for (int s = 0; s < steps; s++) {
+                            node.step(TIMESTEP);
+                        }
+                        return node.gather(new long[2]);
+                    }
+                }));
+            }
+            ParticleArrays gathered = results.get(0).get(60, TimeUnit.SECONDS);
+            for (Future<ParticleArrays> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+            assertNotNull(gathered);
+            assertEquals(PARTICLES, gathered.size());
+            return gathered;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // First of a run of consecutive free ports, one per rank
+    private static int freePorts(InetAddress host, int count) throws IOException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            int base;
+            try (ServerSocket probe = new ServerSocket(0, 1, host)) {
+                base = probe.getLocalPort();
+            }
+            if (base + count > 65535) {
+                continue;
+            }
+            List<ServerSocket> held = new ArrayList<>();
+            try {
+                for (int k = 0; k < count; k++) {
+                    ServerSocket socket = new ServerSocket();
+                    socket.setReuseAddress(true);
+                    held.add(socket);
+                    socket.bind(new InetSocketAddress(host, base + k));
+                }
+                return base;
+            } catch (IOException e) {
+                // Taken; try another range
+            } finally {
+                for (ServerSocket socket : held) {
+                    socket.close();
+                }
+            }
+        }
+        throw new IOException("No run of " + count + " free ports");
+    }
+}
@@ -0,0 +1,340 @@
+package com.shrine.particlesim.recording;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Simulation;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.command.SimulationCommand;
+import com.shrine.particlesim.compute.ParticleArrays;
+import com.shrine.particlesim.compute.ScalarBackend;
+
+/**
+ * Full, slow and box-filtered clients against a server on an ephemeral loopback port. The test
+ * thread plays the stepping thread: it moves the particles by hand and calls
+ * {@link FrameStreamServer#stepCompleted} instead of running the physics.
+ */
+class FrameStreamServerTest {
+    private static final double BOUNDARY = 500;
+    private static final int BITS = 20;
+    private static final long PUBLISH_GAP_MS = 15;
+
+    private static Simulation simulation(int particles) {
+        Simulation simulation = new Simulation(PhysicsConstants.DEFAULT, BOUNDARY, new ScalarBackend());
+        simulation.getCommandQueue().submit(SimulationCommand.spawnRandom(Species.PROTON, particles / 2, 1));
+        simulation.getCommandQueue().submit(SimulationCommand.spawnRandom(Species.ELECTRON, particles - particles / 2, 2));
+        simulation.applyCommands();
+        return simulation;
+    }
+
+    private static FrameStreamServer server() throws IOException {
+        return new FrameStreamServer(InetAddress.getLoopbackAddress(), 0, 1);
+    }
+
+    @Test
+    void lateClientGetsTheKeyframeBeforeAnyDelta() throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        try (Simulation simulation = simulation(2000); FrameStreamServer server = server();
+             RawClient early = new RawClient(server.getPort(), null, 0)) {
+            awaitClients(server, 1);
+            long step = 0;
+            for (int k = 0; k < 10; k++) {
+                jitter(simulation, random, 2);
+                publish(server, simulation, ++step);
+            }
+            try (RawClient late = new RawClient(server.getPort(), null, 0)) {
+                awaitClients(server, 2);
+                for (int k = 0; k < 10; k++) {
+                    jitter(simulation, random, 2);
+                    publish(server, simulation, ++step);
+                }
+                long last = publishSurely(server, simulation, ++step);
+
+                Message first = early.next();
+                assertEquals(FrameStreamServer.FRAME, first.kind);
+                assertTrue(FrameCodec.isKeyframe(first.payload), "first frame after a quiet server is a keyframe");
+                Message lateFirst = late.next();
+                assertEquals(FrameStreamServer.KEYFRAME, lateFirst.kind, "late client starts mid-stream");
+
+                TrajectoryFrame frame = new TrajectoryFrame();
+                try (FrameDecoder decoder = new FrameDecoder(1)) {
+                    decoder.decode(lateFirst.payload, frame);
+                    readKeyframedStream(late, decoder, frame, last);
+                }
+                assertMatches(simulation, frame);
+                try (FrameDecoder decoder = new FrameDecoder(1)) {
+                    decoder.decode(first.payload, frame);
+                    readKeyframedStream(early, decoder, frame, last);
+                }
+                assertMatches(simulation, frame);
+            }
+        }
+    }
+
+    @Test
+    void slowClientSkipsFramesWithoutHoldingUpOthers() throws Exception {
+        SplittableRandom random = new SplittableRandom(11);
+        try (Simulation simulation = simulation(50_000); FrameStreamServer server = server();
+             RawClient fast = new RawClient(server.getPort(), null, 0);
+             RawClient slow = new RawClient(server.getPort(), null, 4096)) {
+            awaitClients(server, 2);
+            int frames = 40;
+            long step = 0;
+            // Both clients take a first frame, so both are waiting on the stream before counting starts
+            long first = publishSurely(server, simulation, ++step);
+            readUntil(slow, first);
+            CompletableFuture<Long> fastLast = new CompletableFuture<>();
+            Thread reader = Thread.ofVirtual().start(() -> {
+                try {
+                    fastLast.complete(readUntil(fast, frames + 2));
+                } catch (IOException e) {
+                    fastLast.completeExceptionally(e);
+                }
+            });
+            // Fresh positions every frame, so deltas are about as large as keyframes
+            long droppedBefore = server.getDroppedFrames();
+            for (int k = 0; k < frames; k++) {
+                scatter(simulation, random);
+                publish(server, simulation, ++step);
+            }
+            // publishSurely only retries dropped frames, so every drop up to here is one of the 40
+            long encoded = frames + 1 - (server.getDroppedFrames() - droppedBefore);
+            long last = publishSurely(server, simulation, ++step);
+
+            // The fast client gets the newest frame while the slow one has not read past the first
+            assertEquals(last, fastLast.get(30, TimeUnit.SECONDS));
+            reader.join();
+
+            long received = 0, skipped = 0, seen = 0;
+            while (seen != last) {
+                Message m = slow.next();
+                if (m.kind == FrameStreamServer.FRAME) {
+                    received++;
+                    skipped += m.skipped;
+                    seen = FrameCodec.getStep(m.payload);
+                }
+            }
+            assertEquals(encoded, received + skipped, "every frame is either sent or counted as skipped");
+            assertTrue(skipped > 0, "slow client skipped nothing: " + received + " frames sent");
+            assertTrue(server.getSkippedFrames() >= skipped);
+        }
+    }
+
+    @Test
+    void boxFilteredClientGetsOnlyTheParticlesInside() throws Exception {
+        SplittableRandom random = new SplittableRandom(5);
+        float half = 200;
+        try (Simulation simulation = simulation(5000); FrameStreamServer server = server();
+             FrameStreamClient client = new FrameStreamClient("127.0.0.1", server.getPort(),
+                     FrameStreamClient.box(-half, -half, -half, half, half, half))) {
+            awaitClients(server, 1);
+            long step = 0;
+            for (int k = 0; k < 5; k++) {
+                scatter(simulation, random);
+                publish(server, simulation, ++step);
+            }
+            long last = publishSurely(server, simulation, ++step);
+
+            TrajectoryFrame frame = new TrajectoryFrame();
+            do {
+                assertTrue(client.next(frame), "stream ended early");
+            } while (frame.getStep() != last);
+            assertEquals(BOUNDARY, frame.getBoundarySize());
+
+            double eps = FrameCodec.quantizationError(BITS, BOUNDARY) + 1e-3;
+            Map<Integer, Integer> received = index(frame);
+            ParticleArrays state = simulation.getState();
+            int inside = 0;
+            for (int i = 0; i < state.size(); i++) {
+                double outside = Math.max(Math.abs(state.getX()[i]),
+                        Math.max(Math.abs(state.getY()[i]), Math.abs(state.getZ()[i]))) - half;
+                Integer k = received.get(state.getId()[i]);
+                if (outside < -eps) {
+                    inside++;
+                    assertNotNull(k, "missing particle " + state.getId()[i] + " inside the box");
+                } else if (outside > eps) {
+                    assertFalse(k != null, "particle " + state.getId()[i] + " outside the box was sent");
+                }
+                if (k != null) {
+                    assertEquals(state.getX()[i], frame.getX()[k], eps);
+                    assertEquals(state.getY()[i], frame.getY()[k], eps);
+                    assertEquals(state.getZ()[i], frame.getZ()[k], eps);
+                    assertEquals(state.getType()[i], frame.getType()[k]);
+                }
+            }
+            assertTrue(inside > 0 && inside < state.size());
+            assertTrue(Math.abs(frame.size() - inside) <= 5, frame.size() + " sent, " + inside + " inside");
+        }
+    }
+
+    // Decode messages up to the given step, after a first keyframe; every delta must be decodable on arrival
+    private static void readKeyframedStream(RawClient client, FrameDecoder decoder, TrajectoryFrame frame,
+                                            long lastStep) throws IOException {
+        boolean haveKeyframe = true;
+        long step = -1;
+        while (step != lastStep) {
+            Message m = client.next();
+            if (m.kind == FrameStreamServer.KEYFRAME) {
+                assertTrue(FrameCodec.isKeyframe(m.payload));
+                haveKeyframe = true;
+            } else {
+                assertEquals(FrameStreamServer.FRAME, m.kind);
+                haveKeyframe |= FrameCodec.isKeyframe(m.payload);
+                assertTrue(haveKeyframe, "delta frame sent before its keyframe");
+                step = FrameCodec.getStep(m.payload);
+            }
+            assertTrue(decoder.canDecode(m.payload));
+            decoder.decode(m.payload, frame);
+        }
+    }
+
+    private static void assertMatches(Simulation simulation, TrajectoryFrame frame) {
+        ParticleArrays state = simulation.getState();
+        assertEquals(state.size(), frame.size());
+        double eps = FrameCodec.quantizationError(BITS, BOUNDARY) + 1e-3;
+        Map<Integer, Integer> received = index(frame);
+        for (int i = 0; i < state.size(); i++) {
+            Integer k = received.get(state.getId()[i]);
+            assertNotNull(k);
+            assertEquals(state.getX()[i], frame.getX()[k], eps);
+            assertEquals(state.getY()[i], frame.getY()[k], eps);
+            assertEquals(state.getZ()[i], frame.getZ()[k], eps);
+        }
+    }
+
+    private static Map<Integer, Integer> index(TrajectoryFrame frame) {
+        Map<Integer, Integer> byId = new HashMap<>();
+        for (int k = 0; k < frame.size(); k++) {
+            byId.put(frame.getId()[k], k);
+        }
+        return byId;
+    }
+
+    private static void jitter(Simulation simulation, SplittableRandom random, double amount) {
+        ParticleArrays state = simulation.getState();
+        double limit = BOUNDARY * 0.9;
+        for (int i = 0; i < state.size(); i++) {
+            state.getX()[i] = Math.max(-limit, Math.min(limit, state.getX()[i] + (random.nextDouble() * 2 - 1) * amount));
+            state.getY()[i] = Math.max(-limit, Math.min(limit, state.getY()[i] + (random.nextDouble() * 2 - 1) * amount));
+            state.getZ()[i] = Math.max(-limit, Math.min(limit, state.getZ()[i] + (random.nextDouble() * 2 - 1) * amount));
+        }
+    }
+
+    private static void scatter(Simulation simulation, SplittableRandom random) {
+        ParticleArrays state = simulation.getState();
+        double limit = BOUNDARY * 0.9;
+        for (int i = 0; i < state.size(); i++) {
+            state.getX()[i] = (random.nextDouble() * 2 - 1) * limit;
+            state.getY()[i] = (random.nextDouble() * 2 - 1) * limit;
+            state.getZ()[i] = (random.nextDouble() * 2 - 1) * limit;
+        }
+    }
+
+    private static void publish(FrameStreamServer server, Simulation simulation, long step) throws InterruptedException {
+        simulation.setStepCount(step);
+        server.stepCompleted(simulation);
+        Thread.sleep(PUBLISH_GAP_MS);
+    }
+
+    // Publish until the frame is not dropped for a busy encoder, so the stream ends on this step
+    private static long publishSurely(FrameStreamServer server, Simulation simulation, long step)
+            throws InterruptedException {
+        long dropped;
+        do {
+            dropped = server.getDroppedFrames();
+            Thread.sleep(100);
+            publish(server, simulation, step);
+        } while (server.getDroppedFrames() != dropped);
+        return step;
+    }
+
+    // Read frames until the given step arrives; returns it
+    private static long readUntil(RawClient client, long step) throws IOException {
+        long seen = 0;
+        while (seen != step) {
+            Message m = client.next();
+            if (m.kind == FrameStreamServer.FRAME) {
+                seen = FrameCodec.getStep(m.payload);
+            }
+        }
+        return seen;
+    }
+
+    private static void awaitClients(FrameStreamServer server, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getClientCount() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("Only " + server.getClientCount() + " of " + count + " clients connected");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private record Message(int kind, int skipped, ByteBuffer payload) {
+    }
+
+    // A client that sees the raw messages, and can shrink its receive buffer to fall behind sooner
+    private static final class RawClient implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+
+        RawClient(int port, float[] planes, int receiveBuffer) throws IOException {
+            socket = new Socket();
+            if (receiveBuffer > 0) {
+                socket.setReceiveBufferSize(receiveBuffer);
+            }
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            socket.setSoTimeout(30_000);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 4096));
+            ByteBuffer hello = read(16);
+            assertEquals(FrameStreamServer.MAGIC, hello.getLong(0));
+            assertEquals(BITS, hello.getInt(12));
+            int count = planes == null ? 0 : planes.length / 4;
+            ByteBuffer subscription = ByteBuffer.allocate(4 + 16 * count).order(ByteOrder.LITTLE_ENDIAN);
+            subscription.putInt(count);
+            for (int k = 0; k < 4 * count; k++) {
+                subscription.putFloat(planes[k]);
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(subscription.array());
+            out.flush();
+        }
+
+        Message next() throws IOException {
+            ByteBuffer header = read(12);
+            return new Message(header.getInt(0), header.getInt(4), read(header.getInt(8)));
+        }
+
+        private ByteBuffer read(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.shrine.particlesim.verify;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.Species;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.ComputeBackendProvider;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Runs a compute backend side by side with {@link ReferenceKernel} and checks per-particle
+ * forces and short trajectories against error bounds; {@link DifferentialTest} drives it over
+ * every backend. A failing scene can be shrunk to a minimal reproducer and written as JSON.
+ *
+ * <p>The reference resolves collisions inside the pair loop while the backends resolve them
+ * after the force pass. On general scenes the two legitimately differ once particles touch, so
+ * {@link #check} stops at the first contact. {@link #checkContacts} covers the collision path on
+ * scenes where the order does not matter: contacts between isolated pairs, with the forces off.
+ */
+public final class DifferentialHarness {
+    public static final double FORCE_TOLERANCE = 1e-9;    // relative to the reference force
+    public static final double POSITION_TOLERANCE = 1e-6; // relative to the boundary size
+    public static final double VELOCITY_TOLERANCE = 1e-9; // relative to the reference speed, at least 1
+    public static final double BOUNDARY = 500;
+    public static final double TIMESTEP = 0.166666666667;
+    // Forces off, so a step is only contacts, drag and walls
+    public static final PhysicsConstants CONTACTS_ONLY = new PhysicsConstants(0, 0, 0, 9, 27, 1e4);
+
+    private DifferentialHarness() {
+    }
+
+    // Every supported provider with every parameter set the autotuner would consider
+    public static List<String> allBackendSpecs(int particleCount) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> specs = new ArrayList<>();
+        for (ComputeBackendProvider provider : BackendAutotuner.providers()) {
+            for (String parameters : provider.candidateParameters(Math.max(4, threads), particleCount)) {
+                specs.add(parameters.isEmpty() ? provider.getName() : provider.getName() + ":" + parameters);
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * Compares one backend against the reference on the scene. Returns null on success,
+     * otherwise a description of the first violated bound.
+     */
+    public static String check(String backendSpec, ParticleArrays scene, int steps, PhysicsConstants constants,
+                               double boundary) {
+        try (ComputeBackend backend = BackendAutotuner.create(backendSpec)) {
+            ParticleArrays reference = new ParticleArrays();
+            ParticleArrays candidate = new ParticleArrays();
+
+            // Forces on the initial scene
+            reference.copyFrom(scene);
+            candidate.copyFrom(scene);
+            ReferenceKernel.computeForces(reference, constants);
+            backend.resetForces(candidate);
+            backend.computeForces(candidate, constants);
+            String forceError = compareForces(reference, candidate);
+            if (forceError != null) {
+                return "force: " + forceError;
+            }
+
+            // Short trajectory, until the first contact
+            reference.copyFrom(scene);
+            candidate.copyFrom(scene);
+            for (int step = 0; step < steps && !hasContact(reference); step++) {
+                ReferenceKernel.step(reference, constants, TIMESTEP, boundary);
+                stepBackend(backend, candidate, constants, boundary);
+                String trajectoryError = compareTrajectory(reference, candidate, boundary);
+                if (trajectoryError != null) {
+                    return "trajectory step " + (step + 1) + ": " + trajectoryError;
+                }
+            }
+            return null;
+        } catch (RuntimeException e) {
+            return "exception: " + e;
+        }
+    }
+
+    /**
+     * Steps the backend and the reference without stopping at contacts and compares positions
+     * and velocities after every step. Only meaningful where the order of resolution does not
+     * matter, such as {@link #contactPairScene} under {@link #CONTACTS_ONLY}.
+     */
+    public static String checkContacts(String backendSpec, ParticleArrays scene, int steps,
+                                       PhysicsConstants constants, double boundary) {
+        try (ComputeBackend backend = BackendAutotuner.create(backendSpec)) {
+            ParticleArrays reference = new ParticleArrays();
+            ParticleArrays candidate = new ParticleArrays();
+            reference.copyFrom(scene);
+            candidate.copyFrom(scene);
+            for (int step = 0; step < steps; step++) {
+                ReferenceKernel.step(reference, constants, TIMESTEP, boundary);
+                stepBackend(backend, candidate, constants, boundary);
+                String error = compareTrajectory(reference, candidate, boundary);
+                if (error == null) {
+                    error = compareVelocities(reference, candidate);
+                }
+                if (error != null) {
+                    return "contact step " + (step + 1) + ": " + error;
+                }
+            }
+            return null;
+        } catch (RuntimeException e) {
+            return "exception: " + e;
+        }
+    }
+
+    public static void stepBackend(ComputeBackend backend, ParticleArrays state, PhysicsConstants constants,
+                                   double boundary) {
+        backend.resetForces(state);
+        backend.computeForces(state, constants);
+        backend.resolveCollisions(state);
+        backend.integrate(state, constants, TIMESTEP, boundary);
+    }
+
+    static String compareVelocities(ParticleArrays reference, ParticleArrays candidate) {
+        for (int i = 0; i < reference.size(); i++) {
+            double refSpeed = norm(reference.getVx()[i], reference.getVy()[i], reference.getVz()[i]);
+            double error = norm(candidate.getVx()[i] - reference.getVx()[i],
+                    candidate.getVy()[i] - reference.getVy()[i], candidate.getVz()[i] - reference.getVz()[i]);
+            if (!(error <= VELOCITY_TOLERANCE * Math.max(1, refSpeed))) {
+                return String.format("particle %d velocity error %.3e (reference |v|=%.6e)", i, error, refSpeed);
+            }
+        }
+        return null;
+    }
+
+    // Total momentum, {px, py, pz}
+    public static double[] momentum(ParticleArrays s) {
+        double px = 0, py = 0, pz = 0;
+        for (int i = 0; i < s.size(); i++) {
+            px += s.getMass()[i] * s.getVx()[i];
+            py += s.getMass()[i] * s.getVy()[i];
+            pz += s.getMass()[i] * s.getVz()[i];
+        }
+        return new double[] {px, py, pz};
+    }
+
+    static String compareForces(ParticleArrays reference, ParticleArrays candidate) {
+        int n = reference.size();
+        double maxNorm = 0;
+        for (int i = 0; i < n; i++) {
+            maxNorm = Math.max(maxNorm, norm(reference.getFx()[i], reference.getFy()[i], reference.getFz()[i]));
+        }
+        // Floor the denominator so forces that nearly cancel are judged against the scene's scale
+        double floor = Math.max(1e-6 * maxNorm, Double.MIN_NORMAL);
+        for (int i = 0; i < n; i++) {
+            double refNorm = norm(reference.getFx()[i], reference.getFy()[i], reference.getFz()[i]);
+            double error = norm(candidate.getFx()[i] - reference.getFx()[i], candidate.getFy()[i] - reference.getFy()[i],
+                    candidate.getFz()[i] - reference.getFz()[i]);
+            double relative = error / Math.max(refNorm, floor);
+            if (!(relative <= FORCE_TOLERANCE)) {
+                return String.format("particle %d relative error %.3e > %.1e (reference |F|=%.6e)", i, relative,
+                        FORCE_TOLERANCE, refNorm);
+            }
+        }
+        return null;
+    }
+
+    static String compareTrajectory(ParticleArrays reference, ParticleArrays candidate, double boundary) {
+        double tolerance = POSITION_TOLERANCE * boundary;
+        for (int i = 0; i < reference.size(); i++) {
+            double error = norm(candidate.getX()[i] - reference.getX()[i], candidate.getY()[i] - reference.getY()[i],
+                    candidate.getZ()[i] - reference.getZ()[i]);
+            if (!(error <= tolerance)) {
+                return String.format("particle %d position error %.3e > %.1e", i, error, tolerance);
+            }
+        }
+        return null;
+    }
+
+    static boolean hasContact(ParticleArrays s) {
+        for (int i = 0; i < s.size(); i++) {
+            for (int j = i + 1; j < s.size(); j++) {
+                double dx = s.getX()[j] - s.getX()[i];
+                double dy = s.getY()[j] - s.getY()[i];
+                double dz = s.getZ()[j] - s.getZ()[i];
+                double radiusSum = s.getRadius()[i] + s.getRadius()[j];
+                if (dx * dx + dy * dy + dz * dz < radiusSum * radiusSum) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Random species mix without overlaps. About half the particles are placed just outside
+     * contact range of an earlier one so the swirl and strong-force branches are exercised.
+     */
+    public static ParticleArrays randomScene(SplittableRandom rand, int count, double boundary) {
+        ParticleArrays scene = new ParticleArrays();
+        Species[] species = Species.values();
+        int attempts = 0;
+        while (scene.size() < count && attempts++ < count * 1000) {
+            Species kind = species[rand.nextInt(species.length)];
+            double x, y, z;
+            if (scene.size() > 0 && rand.nextBoolean()) {
+                int anchor = rand.nextInt(scene.size());
+                double distance = scene.getRadius()[anchor] + kind.getRadius() + rand.nextDouble(0.5, 25);
+                double[] dir = randomDirection(rand);
+                x = scene.getX()[anchor] + dir[0] * distance;
+                y = scene.getY()[anchor] + dir[1] * distance;
+                z = scene.getZ()[anchor] + dir[2] * distance;
+            } else {
+                x = rand.nextDouble(-boundary, boundary);
+                y = rand.nextDouble(-boundary, boundary);
+                z = rand.nextDouble(-boundary, boundary);
+            }
+            double limit = boundary - kind.getRadius();
+            if (Math.abs(x) > limit || Math.abs(y) > limit || Math.abs(z) > limit || overlapsAny(scene, x, y, z, kind.getRadius())) {
+                continue;
+            }
+            scene.add(x, y, z, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), kind);
+        }
+        return scene;
+    }
+
+    /**
+     * Pairs of overlapping particles, each pair alone in its own cell of a grid so no particle
+     * touches more than one other for a few steps, whatever order the contacts are resolved in.
+     */
+    public static ParticleArrays contactPairScene(SplittableRandom rand, int pairs, double boundary) {
+        ParticleArrays scene = new ParticleArrays();
+        Species[] species = Species.values();
+        double cell = 80;
+        int perAxis = (int) Math.floor(2 * (boundary - cell / 2) / cell);
+        for (int k = 0; k < pairs && k < perAxis * perAxis * perAxis; k++) {
+            double cx = -boundary + cell * (1 + k % perAxis);
+            double cy = -boundary + cell * (1 + (k / perAxis) % perAxis);
+            double cz = -boundary + cell * (1 + k / perAxis / perAxis);
+            Species a = species[rand.nextInt(species.length)];
+            Species b = species[rand.nextInt(species.length)];
+            // Anywhere from a graze to deep overlap
+            double distance = (a.getRadius() + b.getRadius()) * rand.nextDouble(0.2, 0.98);
+            double[] dir = randomDirection(rand);
+            scene.add(cx, cy, cz, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), a);
+            scene.add(cx + dir[0] * distance, cy + dir[1] * distance, cz + dir[2] * distance,
+                    rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), b);
+        }
+        return scene;
+    }
+
+    /**
+     * Clusters of touching particles in the middle of the box, with the full forces. Used to
+     * bound what the backends may do differently there: both versions conserve momentum.
+     */
+    public static ParticleArrays contactClusterScene(SplittableRandom rand, int clusters, int perCluster,
+                                                     double boundary) {
+        ParticleArrays scene = new ParticleArrays();
+        Species[] species = Species.values();
+        for (int c = 0; c < clusters; c++) {
+            double[] center = {rand.nextDouble(-boundary / 2, boundary / 2), rand.nextDouble(-boundary / 2, boundary / 2),
+                    rand.nextDouble(-boundary / 2, boundary / 2)};
+            for (int k = 0, attempts = 0; k < perCluster && attempts < 1000; attempts++) {
+                Species kind = species[rand.nextInt(species.length)];
+                double[] dir = randomDirection(rand);
+                double r = rand.nextDouble(0, 12);
+                double x = center[0] + dir[0] * r, y = center[1] + dir[1] * r, z = center[2] + dir[2] * r;
+                // Keep centers apart so no pair force is large enough to hit the speed limit
+                if (closerThan(scene, x, y, z, 2)) {
+                    continue;
+                }
+                scene.add(x, y, z, rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), rand.nextDouble(-5, 5), kind);
+                k++;
+            }
+        }
+        return scene;
+    }
+
+    private static boolean overlapsAny(ParticleArrays scene, double x, double y, double z, double radius) {
+        for (int i = 0; i < scene.size(); i++) {
+            double dx = scene.getX()[i] - x;
+            double dy = scene.getY()[i] - y;
+            double dz = scene.getZ()[i] - z;
+            double minDist = scene.getRadius()[i] + radius + 0.5;
+            if (dx * dx + dy * dy + dz * dz < minDist * minDist) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean closerThan(ParticleArrays scene, double x, double y, double z, double distance) {
+        for (int i = 0; i < scene.size(); i++) {
+            double dx = scene.getX()[i] - x;
+            double dy = scene.getY()[i] - y;
+            double dz = scene.getZ()[i] - z;
+            if (dx * dx + dy * dy + dz * dz < distance * distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double[] randomDirection(SplittableRandom rand) {
+        double z = rand.nextDouble(-1, 1);
+        double phi = rand.nextDouble(0, 2 * Math.PI);
+        double r = Math.sqrt(1 - z * z);
+        return new double[] {r * Math.cos(phi), r * Math.sin(phi), z};
+    }
+
+    /**
+     * Delta-debugging style shrinking: drop chunks of particles while the scene keeps failing,
+     * halving the chunk size whenever no chunk can be removed.
+     */
+    public static ParticleArrays minimize(ParticleArrays scene, Predicate<ParticleArrays> fails) {
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < scene.size(); i++) {
+            kept.add(i);
+        }
+        int chunk = Math.max(1, kept.size() / 2);
+        while (chunk >= 1 && kept.size() > 1) {
+            boolean removed = false;
+            for (int start = 0; start < kept.size() && kept.size() > 1; ) {
+                List<Integer> candidate = new ArrayList<>(kept);
+                candidate.subList(start, Math.min(start + chunk, candidate.size())).clear();
+                if (!candidate.isEmpty() && fails.test(subset(scene, candidate))) {
+                    kept = candidate;
+                    removed = true;
+                } else {
+                    start += chunk;
+                }
+            }
+            if (!removed) {
+                chunk /= 2;
+            }
+        }
+        return subset(scene, kept);
+    }
+
+    private static ParticleArrays subset(ParticleArrays scene, List<Integer> indices) {
+        ParticleArrays result = new ParticleArrays();
+        for (int i : indices) {
+            result.add(scene.getX()[i], scene.getY()[i], scene.getZ()[i], scene.getVx()[i], scene.getVy()[i],
+                    scene.getVz()[i], scene.getCharge()[i], scene.getMass()[i], scene.getRadius()[i], scene.getType()[i]);
+        }
+        return result;
+    }
+
+    public static Path writeReproducer(Path dir, String backend, long seed, int steps, ParticleArrays scene,
+                                        String failure) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("backend", backend);
+        json.put("seed", seed);
+        json.put("steps", steps);
+        json.put("boundary", BOUNDARY);
+        json.put("failure", failure == null ? JSONObject.NULL : failure);
+        JSONArray particles = new JSONArray();
+        for (int i = 0; i < scene.size(); i++) {
+            JSONObject p = new JSONObject();
+            p.put("x", scene.getX()[i]);
+            p.put("y", scene.getY()[i]);
+            p.put("z", scene.getZ()[i]);
+            p.put("vx", scene.getVx()[i]);
+            p.put("vy", scene.getVy()[i]);
+            p.put("vz", scene.getVz()[i]);
+            p.put("type", Species.fromTypeCode(scene.getType()[i]).getTypeName());
+            particles.put(p);
+        }
+        json.put("particles", particles);
+
+        Files.createDirectories(dir);
+        Path file = dir.resolve(backend.replace(':', '_').replace(',', '_').replace('=', '-') + "-seed" + seed + ".json");
+        Files.writeString(file, json.toString(2));
+        return file;
+    }
+
+    static ParticleArrays fromJson(JSONObject json) {
+        ParticleArrays scene = new ParticleArrays();
+        JSONArray particles = json.getJSONArray("particles");
+        for (int i = 0; i < particles.length(); i++) {
+            JSONObject p = particles.getJSONObject(i);
+            scene.add(p.getDouble("x"), p.getDouble("y"), p.getDouble("z"), p.getDouble("vx"), p.getDouble("vy"),
+                    p.getDouble("vz"), Species.fromTypeName(p.getString("type")));
+        }
+        return scene;
+    }
+
+    private static double norm(double x, double y, double z) {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+}
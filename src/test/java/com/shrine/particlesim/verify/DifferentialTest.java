@@ -0,0 +1,141 @@
+package com.shrine.particlesim.verify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.BackendAutotuner;
+import com.shrine.particlesim.compute.ComputeBackend;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Every compute backend against {@link ReferenceKernel}. Scene counts and sizes can be raised
+ * for a longer soak with {@code -Ddifferential.scenes=200 -Ddifferential.particles=500}; a failing
+ * scene is shrunk and written under {@code target/differential}, and
+ * {@code -Ddifferential.replay=<file>} reruns one reproducer.
+ */
+class DifferentialTest {
+    private static final int SCENES = Integer.getInteger("differential.scenes", 8);
+    private static final int PARTICLES = Integer.getInteger("differential.particles", 150);
+    private static final int STEPS = Integer.getInteger("differential.steps", 10);
+    private static final long SEED = Long.getLong("differential.seed", 1);
+    private static final Path OUT = Path.of("target", "differential");
+    private static final PhysicsConstants UNCLAMPED = new PhysicsConstants(6e5, 10, 4e5, 9, 27, Double.MAX_VALUE);
+    private static final double OPEN_BOUNDARY = 1e9;
+
+    @TestFactory
+    Stream<DynamicTest> forcesAndTrajectoriesMatchReference() {
+        return DifferentialHarness.allBackendSpecs(PARTICLES).stream().map(backend ->
+                DynamicTest.dynamicTest(backend, () -> {
+                    for (int k = 0; k < SCENES; k++) {
+                        long sceneSeed = SEED + k;
+                        ParticleArrays scene = DifferentialHarness.randomScene(new SplittableRandom(sceneSeed),
+                                PARTICLES, DifferentialHarness.BOUNDARY);
+                        String failure = DifferentialHarness.check(backend, scene, STEPS, PhysicsConstants.DEFAULT,
+                                DifferentialHarness.BOUNDARY);
+                        if (failure != null) {
+                            fail(failure + "; " + reproducer(backend, sceneSeed, scene));
+                        }
+                    }
+                }));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> isolatedContactsMatchReference() {
+        return DifferentialHarness.allBackendSpecs(PARTICLES).stream().map(backend ->
+                DynamicTest.dynamicTest(backend, () -> {
+                    for (int k = 0; k < SCENES; k++) {
+                        ParticleArrays scene = DifferentialHarness.contactPairScene(new SplittableRandom(SEED + k),
+                                PARTICLES / 2, DifferentialHarness.BOUNDARY);
+                        assertTrue(DifferentialHarness.hasContact(scene));
+                        assertNull(DifferentialHarness.checkContacts(backend, scene, 5,
+                                DifferentialHarness.CONTACTS_ONLY, DifferentialHarness.BOUNDARY), "seed " + (SEED + k));
+                    }
+                }));
+    }
+
+    // Where contacts and forces mix the two orders differ, but both must conserve momentum: with the
+    // walls out of reach and no speed limit, a step only applies pairwise forces and the drag
+    @TestFactory
+    Stream<DynamicTest> contactClustersConserveMomentumLikeReference() {
+        return DifferentialHarness.allBackendSpecs(PARTICLES).stream().map(backend ->
+                DynamicTest.dynamicTest(backend, () -> {
+                    for (int k = 0; k < SCENES; k++) {
+                        ParticleArrays scene = DifferentialHarness.contactClusterScene(new SplittableRandom(SEED + k),
+                                6, 12, DifferentialHarness.BOUNDARY);
+                        assertTrue(DifferentialHarness.hasContact(scene));
+                        ParticleArrays reference = new ParticleArrays();
+                        ParticleArrays candidate = new ParticleArrays();
+                        reference.copyFrom(scene);
+                        candidate.copyFrom(scene);
+                        ReferenceKernel.step(reference, UNCLAMPED, DifferentialHarness.TIMESTEP, OPEN_BOUNDARY);
+                        try (ComputeBackend b = BackendAutotuner.create(backend)) {
+                            DifferentialHarness.stepBackend(b, candidate, UNCLAMPED, OPEN_BOUNDARY);
+                        }
+                        double scale = absoluteMomentum(scene) + absoluteMomentum(reference) + absoluteMomentum(candidate);
+                        double[] before = DifferentialHarness.momentum(scene);
+                        double[] expected = DifferentialHarness.momentum(reference);
+                        double[] actual = DifferentialHarness.momentum(candidate);
+                        for (int axis = 0; axis < 3; axis++) {
+                            String where = "seed " + (SEED + k) + " axis " + axis;
+                            assertEquals(0.9 * before[axis], expected[axis], 1e-9 * scale, "reference, " + where);
+                            assertEquals(expected[axis], actual[axis], 1e-9 * scale, where);
+                        }
+                    }
+                }));
+    }
+
+    @Test
+    void minimizeKeepsTheFailingParticles() {
+        ParticleArrays scene = DifferentialHarness.randomScene(new SplittableRandom(3), 40, DifferentialHarness.BOUNDARY);
+        ParticleArrays minimal = DifferentialHarness.minimize(scene, s -> {
+            boolean hasA = false, hasB = false;
+            for (int i = 0; i < s.size(); i++) {
+                hasA |= s.getX()[i] == scene.getX()[7];
+                hasB |= s.getX()[i] == scene.getX()[23];
+            }
+            return hasA && hasB;
+        });
+        assertEquals(2, minimal.size());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "differential.replay", matches = ".+")
+    void replayReproducer() throws IOException {
+        JSONObject reproducer = new JSONObject(Files.readString(Path.of(System.getProperty("differential.replay"))));
+        assertNull(DifferentialHarness.check(reproducer.getString("backend"), DifferentialHarness.fromJson(reproducer),
+                reproducer.getInt("steps"), PhysicsConstants.DEFAULT, reproducer.getDouble("boundary")));
+    }
+
+    // Sum of m|v| over every component, the scale of rounding in a momentum sum
+    private static double absoluteMomentum(ParticleArrays s) {
+        double sum = 0;
+        for (int i = 0; i < s.size(); i++) {
+            sum += s.getMass()[i] * (Math.abs(s.getVx()[i]) + Math.abs(s.getVy()[i]) + Math.abs(s.getVz()[i]));
+        }
+        return sum;
+    }
+
+    private static String reproducer(String backend, long seed, ParticleArrays scene) throws IOException {
+        ParticleArrays minimal = DifferentialHarness.minimize(scene, s -> DifferentialHarness.check(backend, s, STEPS,
+                PhysicsConstants.DEFAULT, DifferentialHarness.BOUNDARY) != null);
+        String failure = DifferentialHarness.check(backend, minimal, STEPS, PhysicsConstants.DEFAULT,
+                DifferentialHarness.BOUNDARY);
+        Path file = DifferentialHarness.writeReproducer(OUT, backend, seed, STEPS, minimal, failure);
+        return "minimized to " + minimal.size() + " particles: " + file;
+    }
+}
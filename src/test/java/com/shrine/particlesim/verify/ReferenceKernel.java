@@ -0,0 +1,256 @@
+package com.shrine.particlesim.verify;
+
+import com.shrine.particlesim.PhysicsConstants;
+import com.shrine.particlesim.compute.ParticleArrays;
+
+/**
+ * Frozen copy of the original step: {@code Particle.calculateForces}, a single
+ * {@code ForceCalculationTask} over every particle (collisions handled inside the pair loop),
+ * then {@code updateVelocity}/{@code updatePos} per particle. It works on {@link ParticleArrays}
+ * with explicit constants so it keeps today's semantics even if the original classes change.
+ * Do not optimize this class; it is what the fast paths are checked against.
+ */
+public final class ReferenceKernel {
+    private ReferenceKernel() {
+    }
+
+    public static void step(ParticleArrays s, PhysicsConstants c, double timeStep, double boundary) {
+        computeForces(s, c);
+        for (int i = 0; i < s.size(); i++) {
+            updateVelocity(s, i, timeStep);
+            updatePos(s, i, c, timeStep, boundary);
+        }
+    }
+
+    // Reset forces, then the ForceCalculationTask pair loop over [0, n)
+    public static void computeForces(ParticleArrays s, PhysicsConstants c) {
+        int n = s.size();
+        double[] batchForceX = new double[n];
+        double[] batchForceY = new double[n];
+        double[] batchForceZ = new double[n];
+        double[] x = s.getX(), y = s.getY(), z = s.getZ(), radius = s.getRadius();
+
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double[] forceOnP1 = calculateForces(s, i, j, c);
+
+                batchForceX[i] += forceOnP1[0];
+                batchForceY[i] += forceOnP1[1];
+                batchForceZ[i] += forceOnP1[2];
+                batchForceX[j] -= forceOnP1[0];
+                batchForceY[j] -= forceOnP1[1];
+                batchForceZ[j] -= forceOnP1[2];
+
+                double distX = x[j] - x[i];
+                double distY = y[j] - y[i];
+                double distZ = z[j] - z[i];
+                double distSq = distX * distX + distY * distY + distZ * distZ;
+                double collisionRadiusSum = radius[i] + radius[j];
+                if (distSq < collisionRadiusSum * collisionRadiusSum && distSq > 1e-9) {
+                    handleCollision(s, i, j, distX, distY, distZ, distSq);
+                }
+            }
+        }
+        System.arraycopy(batchForceX, 0, s.getFx(), 0, n);
+        System.arraycopy(batchForceY, 0, s.getFy(), 0, n);
+        System.arraycopy(batchForceZ, 0, s.getFz(), 0, n);
+    }
+
+    static double[] calculateForces(ParticleArrays s, int p1, int p2, PhysicsConstants c) {
+        double kConstant = c.getCoulombConstant();
+        double strongForceOuterRadius = c.getStrongForceOuterRadius();
+        double strongForceInnerRadius = c.getStrongForceInnerRadius();
+        double strongForceConstant = c.getStrongForceConstant();
+        double gravityConstant = c.getGravityConstant();
+        byte[] type = s.getType();
+
+        double forceX = 0;
+        double forceY = 0;
+        double forceZ = 0;
+
+        double distX = s.getX()[p2] - s.getX()[p1];
+        double distY = s.getY()[p2] - s.getY()[p1];
+        double distZ = s.getZ()[p2] - s.getZ()[p1];
+        double distsq = distX * distX + distY * distY + distZ * distZ;
+        double dist = Math.sqrt(distsq);
+
+        if (dist < 1e-8) {
+            return new double[] {0, 0, 0};
+        }
+
+        double dirX = distX / dist;
+        double dirY = distY / dist;
+        double dirZ = distZ / dist;
+
+        double charge1 = s.getCharge()[p1];
+        double charge2 = s.getCharge()[p2];
+
+        // Coulomb Force
+        double coulombForce = (kConstant * charge1 * charge2) / distsq;
+        forceX -= coulombForce * dirX;
+        forceY -= coulombForce * dirY;
+        forceZ -= coulombForce * dirZ;
+
+        // Swirl effect
+        boolean electron1 = type[p1] == ParticleArrays.ELECTRON;
+        boolean electron2 = type[p2] == ParticleArrays.ELECTRON;
+        if ((electron1 && charge2 > 0) || (electron2 && charge1 > 0)) {
+            double combinedRadius = s.getRadius()[p1] + s.getRadius()[p2];
+            if (dist < combinedRadius + 20) {
+                forceX = -forceX;
+                forceY = -forceY;
+                forceZ = -forceZ;
+
+                double helperX = 0;
+                double helperY = 1;
+                double helperZ = 0;
+
+                double tangentX = dirY * helperZ - dirZ * helperY;
+                double tangentY = dirZ * helperX - dirX * helperZ;
+                double tangentZ = dirX * helperY - dirY * helperX;
+
+                double mag = Math.sqrt(tangentX * tangentX + tangentY * tangentY + tangentZ * tangentZ);
+                if (mag != 0) {
+                    tangentX /= mag;
+                    tangentY /= mag;
+                    tangentZ /= mag;
+
+                    double tangentialForce = coulombForce * 0.5;
+                    forceX += tangentialForce * tangentX;
+                    forceY += tangentialForce * tangentY;
+                    forceZ += tangentialForce * tangentZ;
+                }
+            }
+        }
+
+        // Strong Force
+        if (ParticleArrays.isNucleon(type[p1]) && ParticleArrays.isNucleon(type[p2]) && dist <= strongForceOuterRadius) {
+            double protonRadius = 9.0;
+            double decayFactor = Math.exp(-(dist - protonRadius) / protonRadius);
+            double strongForce = (strongForceConstant / (distsq * dist)) * decayFactor;
+            if (dist < strongForceInnerRadius) {
+                forceX += -strongForce * dirX;
+                forceY += -strongForce * dirY;
+                forceZ += -strongForce * dirZ;
+            } else {
+                forceX += strongForce * dirX;
+                forceY += strongForce * dirY;
+                forceZ += strongForce * dirZ;
+            }
+        }
+
+        // Gravity
+        double gravityForce = (gravityConstant * s.getMass()[p1] * s.getMass()[p2]) / distsq;
+        forceX += gravityForce * dirX;
+        forceY += gravityForce * dirY;
+        forceZ += gravityForce * dirZ;
+
+        return new double[] {forceX, forceY, forceZ};
+    }
+
+    static void handleCollision(ParticleArrays s, int p1, int p2, double distX, double distY, double distZ, double distSq) {
+        double[] x = s.getX(), y = s.getY(), z = s.getZ();
+        double[] vx = s.getVx(), vy = s.getVy(), vz = s.getVz();
+        double[] mass = s.getMass();
+
+        double dist = Math.sqrt(distSq);
+        double overlap = (s.getRadius()[p1] + s.getRadius()[p2]) - dist;
+
+        double dirX = distX / dist;
+        double dirY = distY / dist;
+        double dirZ = distZ / dist;
+
+        double totalMass = mass[p1] + mass[p2];
+        double pushFactor1 = (mass[p2] / totalMass) * overlap;
+        double pushFactor2 = (mass[p1] / totalMass) * overlap;
+
+        x[p1] -= dirX * pushFactor1;
+        y[p1] -= dirY * pushFactor1;
+        z[p1] -= dirZ * pushFactor1;
+        x[p2] += dirX * pushFactor2;
+        y[p2] += dirY * pushFactor2;
+        z[p2] += dirZ * pushFactor2;
+
+        double relativeVelX = vx[p2] - vx[p1];
+        double relativeVelY = vy[p2] - vy[p1];
+        double relativeVelZ = vz[p2] - vz[p1];
+        double dotProduct = relativeVelX * dirX + relativeVelY * dirY + relativeVelZ * dirZ;
+
+        if (dotProduct < 0) {
+            double elasticity = 0.7;
+            double collisionScale = (1.0 + elasticity) * dotProduct / totalMass;
+            double impulseFactorX = collisionScale * dirX;
+            double impulseFactorY = collisionScale * dirY;
+            double impulseFactorZ = collisionScale * dirZ;
+
+            vx[p1] += impulseFactorX * mass[p2];
+            vy[p1] += impulseFactorY * mass[p2];
+            vz[p1] += impulseFactorZ * mass[p2];
+            vx[p2] -= impulseFactorX * mass[p1];
+            vy[p2] -= impulseFactorY * mass[p1];
+            vz[p2] -= impulseFactorZ * mass[p1];
+        }
+    }
+
+    static void updateVelocity(ParticleArrays s, int i, double timeStep) {
+        double mass = s.getMass()[i];
+        if (mass == 0) return;
+        s.getVx()[i] += s.getFx()[i] / mass * timeStep;
+        s.getVy()[i] += s.getFy()[i] / mass * timeStep;
+        s.getVz()[i] += s.getFz()[i] / mass * timeStep;
+    }
+
+    static void updatePos(ParticleArrays s, int i, PhysicsConstants c, double timeStep, double boundary) {
+        double maxSpeed = c.getMaxSpeed();
+        double xVel = s.getVx()[i], yVel = s.getVy()[i], zVel = s.getVz()[i];
+
+        double speed = Math.sqrt(xVel * xVel + yVel * yVel + zVel * zVel);
+        if (speed > maxSpeed) {
+            xVel *= maxSpeed / speed;
+            yVel *= maxSpeed / speed;
+            zVel *= maxSpeed / speed;
+        }
+
+        // Apply drag
+        xVel *= .90;
+        yVel *= .90;
+        zVel *= .90;
+
+        double xCor = s.getX()[i] + xVel * timeStep;
+        double yCor = s.getY()[i] + yVel * timeStep;
+        double zCor = s.getZ()[i] + zVel * timeStep;
+        double radius = s.getRadius()[i];
+
+        // Bounce off simulation boundary
+        if (xCor < -boundary + radius) {
+            xCor = -boundary + radius;
+            xVel = -xVel * 0.8;
+        } else if (xCor > boundary - radius) {
+            xCor = boundary - radius;
+            xVel = -xVel * 0.8;
+        }
+
+        if (yCor < -boundary + radius) {
+            yCor = -boundary + radius;
+            yVel = -yVel * 0.8;
+        } else if (yCor > boundary - radius) {
+            yCor = boundary - radius;
+            yVel = -yVel * 0.8;
+        }
+
+        if (zCor < -boundary + radius) {
+            zCor = -boundary + radius;
+            zVel = -zVel * 0.8;
+        } else if (zCor > boundary - radius) {
+            zCor = boundary - radius;
+            zVel = -zVel * 0.8;
+        }
+
+        s.getX()[i] = xCor;
+        s.getY()[i] = yCor;
+        s.getZ()[i] = zCor;
+        s.getVx()[i] = xVel;
+        s.getVy()[i] = yVel;
+        s.getVz()[i] = zVel;
+    }
+}